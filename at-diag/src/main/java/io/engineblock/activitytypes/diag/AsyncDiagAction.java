@@ -57,7 +57,8 @@ public class AsyncDiagAction extends BaseAsyncAction<DiagOpData, DiagActivity> i
 //    private PriorityBlockingQueue<StartedOp<DiagOpData>> asyncOps;
     private LinkedBlockingDeque<StartedOp<DiagOpData>> opQueue;
     private OpFinisher finisher;
-    private boolean enableOutputProcessing;
+    private volatile boolean enableOutputProcessing;
+    private final DiagOpData sharedOpData = new DiagOpData("a diag op");
 
 
     public AsyncDiagAction(DiagActivity activity, int slot) {
@@ -143,21 +144,28 @@ public class AsyncDiagAction extends BaseAsyncAction<DiagOpData, DiagActivity> i
         this.enableOutputProcessing = params.getOptionalBoolean("enable_output_processing").orElse(false);
     }
 
+    /**
+     * Op data is only needed per op for the diag log, which is only read when
+     * output processing is enabled. Otherwise, all ops share the same op data,
+     * so that the diag action does not allocate per cycle.
+     */
     @Override
     public LongFunction<DiagOpData> getOpInitFunction() {
-        return (l) -> new DiagOpData("a diag op");
+        return (l) -> enableOutputProcessing ? new DiagOpData("a diag op") : sharedOpData;
     }
 
 
     @Override
     public void startOpCycle(TrackedOp<DiagOpData> opc) {
-        opc.getData().log("starting at " + System.nanoTime());
-        opc.getData().setSimulatedDelayNanos(delayFunc.applyAsLong(opc.getCycle()));
+        if (enableOutputProcessing) {
+            opc.getData().log("starting at " + System.nanoTime());
+        }
         StartedOp<DiagOpData> started = opc.start();
         opQueue.add(started);
     }
 
-    private int backendExecuteOp(StartedOp<DiagOpData> opc) {
+    // package visible for benchmarks
+    int backendExecuteOp(StartedOp<DiagOpData> opc) {
 
         long cycle = opc.getCycle();
 
@@ -239,9 +247,8 @@ public class AsyncDiagAction extends BaseAsyncAction<DiagOpData, DiagActivity> i
                 try {
                     opc=queue.take();
 
-                    DiagOpData op = opc.getData();
                     long now = System.nanoTime();
-                    long simulatedCompletionTime = opc.getStartedAtNanos() + op.getSimulatedDelayNanos();
+                    long simulatedCompletionTime = opc.getStartedAtNanos() + action.delayFunc.applyAsLong(opc.getCycle());
 
                     long nanodelay = Math.max(0L,simulatedCompletionTime-now);
                     if (nanodelay>=1000) { // It's not worth calling this for very small values
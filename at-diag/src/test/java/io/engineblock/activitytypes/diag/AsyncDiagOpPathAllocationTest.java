@@ -0,0 +1,67 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.diag;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Check the zero allocation goal of the async op path, by running the same per-cycle
+ * work as {@link AsyncDiagOpPathBenchmark} and measuring the bytes allocated by this thread.
+ */
+@Test
+public class AsyncDiagOpPathAllocationTest {
+
+    private final static int STRIDES = 2000;
+
+    /**
+     * Reading the allocation counter may itself allocate a little, so a small total
+     * is allowed for measurement noise. It is far below one byte per op.
+     */
+    private final static long NOISE_BYTES = 1024L;
+
+    @Test
+    public void testSteadyStateIsAllocationFree() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled()) {
+            throw new SkipException("thread allocation measurement is not available");
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        AsyncDiagOpPathBenchmark benchmark = new AsyncDiagOpPathBenchmark();
+        benchmark.setup();
+        for (int i = 0; i < STRIDES; i++) {
+            benchmark.runDiagStride();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < STRIDES; i++) {
+            benchmark.runDiagStride();
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        long ops = (long) STRIDES * AsyncDiagOpPathBenchmark.STRIDE;
+        assertThat(allocated).as("bytes allocated over " + ops + " ops").isLessThanOrEqualTo(NOISE_BYTES);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.diag;
+
+import io.engineblock.activityapi.core.ops.fluent.OpTrackerImpl;
+import io.engineblock.activityapi.core.ops.fluent.opfacets.StartedOp;
+import io.engineblock.activityapi.core.ops.fluent.opfacets.TrackedOp;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
+import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.input.AtomicInput;
+import io.engineblock.activityimpl.motor.StrideTracker;
+import io.engineblock.activityimpl.motor.StrideTrackerPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark runs the per-cycle work of the async motor path for the diag
+ * activity type on a single thread: input segments, stride trackers, tracked ops,
+ * and the diag op logic. Run it with the GC profiler, as {@link #main(String[])}
+ * does, and check that gc.alloc.rate.norm is zero bytes per op. The same work is
+ * checked for allocations in {@link AsyncDiagOpPathAllocationTest}.
+ *
+ * <p>The hand-off to the diag finisher thread is not included, since it only
+ * simulates a remote service.</p>
+ */
+@State(Scope.Thread)
+public class AsyncDiagOpPathBenchmark {
+
+    final static int STRIDE = 100;
+
+    private AtomicInput input;
+    private OpTrackerImpl<DiagOpData> opTracker;
+    private StrideTrackerPool<DiagOpData> stridePool;
+    private AsyncDiagAction action;
+
+    @Setup
+    public void setup() {
+        ActivityDef activityDef = ActivityDef.parseActivityDef(
+                "type=diag;alias=diagbench;threads=1;interval=0;cycles=1000000000;recycles=1000000" +
+                        ";stride=" + STRIDE + ";async=" + STRIDE);
+        DiagActivity activity = new DiagActivity(activityDef);
+
+        input = new AtomicInput(activityDef);
+        action = new AsyncDiagAction(activity, 0);
+        opTracker = new OpTrackerImpl<>(activity, 0);
+        opTracker.onActivityDefUpdate(activityDef);
+        opTracker.setCycleOpFunction(action.getOpInitFunction());
+        stridePool = new StrideTrackerPool<>(
+                activity.getInstrumentation().getOrCreateStridesServiceTimer(),
+                activity.getInstrumentation().getStridesResponseTimerOrNull(),
+                STRIDE,
+                null,
+                action);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(STRIDE)
+    @Threads(1)
+    @Warmup(iterations = 3, timeUnit = TimeUnit.SECONDS, time = 5)
+    @Measurement(iterations = 3, timeUnit = TimeUnit.SECONDS, time = 5)
+    public void runDiagStride() {
+        CycleSegment segment = input.getInputSegment(STRIDE);
+        StrideTracker<DiagOpData> strideTracker = stridePool.take(System.nanoTime(), segment.peekNextCycle());
+        strideTracker.start();
+        while (!segment.isExhausted()) {
+            TrackedOp<DiagOpData> op = opTracker.newOp(segment.nextCycle(), strideTracker);
+            op.setWaitTime(0L);
+            StartedOp<DiagOpData> started = op.start();
+            int result = action.backendExecuteOp(started);
+            if (result == 0) {
+                started.succeed(result);
+            } else {
+                started.fail(result);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AsyncDiagOpPathBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
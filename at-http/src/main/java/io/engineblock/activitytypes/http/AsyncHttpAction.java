@@ -0,0 +1,106 @@
+package io.engineblock.activitytypes.http;
+
+import com.codahale.metrics.Timer;
+import io.engineblock.activityapi.core.BaseAsyncAction;
+import io.engineblock.activityapi.core.ops.fluent.opfacets.StartedOp;
+import io.engineblock.activityapi.core.ops.fluent.opfacets.TrackedOp;
+import io.engineblock.activityapi.planning.OpSequence;
+import io.engineblock.activityimpl.ActivityDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * An async action for the http activity type. Requests are sent with the
+ * non-blocking {@link HttpClient} which is shared by the activity, so a single
+ * motor thread can keep as many requests in flight as the async parameter allows.
+ * Each op completes on the client's completion threads via the tracked op
+ * lifecycle, which releases its slot in the op tracker.
+ *
+ * <p>The result of each op is 0 for a 2xx response, the status class (status/100)
+ * for any other response, or 1 if no response was received after maxTries attempts.</p>
+ */
+public class AsyncHttpAction extends BaseAsyncAction<HttpOpContext, HttpActivity> {
+    private final static Logger logger = LoggerFactory.getLogger(AsyncHttpAction.class);
+
+    private OpSequence<HttpRequestTemplate> sequencer;
+    private HttpClient client;
+    private HttpResponse.BodyHandler<?> bodyHandler;
+    private int maxTries;
+
+    public AsyncHttpAction(int slot, HttpActivity activity) {
+        super(activity, slot);
+    }
+
+    @Override
+    public void onActivityDefUpdate(ActivityDef activityDef) {
+        super.onActivityDefUpdate(activityDef);
+        this.sequencer = activity.getOpSequence();
+        this.client = activity.getClient();
+        this.bodyHandler = activity.isDrain() ? HttpResponse.BodyHandlers.discarding() : HttpResponse.BodyHandlers.ofByteArray();
+        this.maxTries = activity.getMaxTries();
+    }
+
+    public HttpOpContext allocateOpData(long cycle) {
+        HttpOpContext opc = new HttpOpContext();
+        try (Timer.Context bindTime = activity.bindTimer.time()) {
+            URI uri = sequencer.get(cycle).getURI(cycle);
+            if (activity.getShowstmts()) {
+                logger.info("STMT(cycle=" + cycle + "):\n" + uri);
+            }
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri).GET();
+            if (activity.getTimeout() != null) {
+                builder.timeout(activity.getTimeout());
+            }
+            opc.request = builder.build();
+        }
+        return opc;
+    }
+
+    @Override
+    public void startOpCycle(TrackedOp<HttpOpContext> opc) {
+        send(opc.start());
+    }
+
+    private void send(StartedOp<HttpOpContext> started) {
+        client.sendAsync(started.getData().request, bodyHandler)
+                .whenComplete((response, error) -> onResponse(started, response, error));
+    }
+
+    private void onResponse(StartedOp<HttpOpContext> started, HttpResponse<?> response, Throwable error) {
+        if (error != null) {
+            if (started.getTries() < maxTries) {
+                send(started.retry());
+                return;
+            }
+            logger.debug("Error on cycle " + started.getCycle() + " after " + started.getTries() + " tries: " + error);
+            activity.triesHisto.update(started.getTries());
+            started.fail(1);
+            return;
+        }
+
+        // The op may be reused as soon as it completes, so read its timing first
+        long serviceTime = started.getCurrentServiceTimeNanos();
+        activity.executeTimer.update(serviceTime, TimeUnit.NANOSECONDS);
+        activity.triesHisto.update(started.getTries());
+
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            activity.resultSuccessTimer.update(serviceTime, TimeUnit.NANOSECONDS);
+            started.succeed(0);
+        } else {
+            started.fail(status / 100);
+        }
+    }
+
+    @Override
+    public LongFunction<HttpOpContext> getOpInitFunction() {
+        return this::allocateOpData;
+    }
+}
@@ -11,7 +11,6 @@ import io.engineblock.activityapi.core.SyncAction;
 import io.engineblock.activityapi.planning.OpSequence;
 import io.engineblock.activityimpl.ActivityDef;
 import io.virtdata.core.ContextualBindingsTemplate;
-import io.virtdata.templates.StringBindings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +27,7 @@ public class HttpAction implements SyncAction {
     private int maxTries = 1;
     private boolean showstmts;
 
-    private OpSequence<StringBindings> sequencer;
+    private OpSequence<HttpRequestTemplate> sequencer;
 
 
     public HttpAction(ActivityDef activityDef, int slot, HttpActivity httpActivity) {
@@ -43,58 +42,36 @@ public class HttpAction implements SyncAction {
 
     @Override
     public int runCycle(long cycleValue) {
-        StringBindings stringBindings;
-        String statement = null;
+        URL url;
         InputStream result = null;
 
         try (Timer.Context bindTime = httpActivity.bindTimer.time()) {
-            stringBindings = sequencer.get(cycleValue);
-            statement = stringBindings.bind(cycleValue);
-
-            String[] splitStatement = statement.split("\\?");
-            String path, query;
-
-            String host = httpActivity.getHosts()[(int) cycleValue % httpActivity.getHosts().length];
-
-            path = splitStatement[0];
-            query = "";
-
-            if (splitStatement.length >= 2) {
-                query = splitStatement[1];
-            }
-
-            URI uri = new URI(
-                "http",
-                null,
-                host,
-                httpActivity.getPort(),
-                path,
-                query,
-                null);
-
-                statement = uri.toString();
+            url = sequencer.get(cycleValue).getURI(cycleValue).toURL();
 
             showstmts = httpActivity.getShowstmts();
             if (showstmts) {
-                logger.info("STMT(cycle=" + cycleValue + "):\n" + statement);
+                logger.info("STMT(cycle=" + cycleValue + "):\n" + url);
             }
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Unable to build a URL for cycle " + cycleValue + ":" + e, e);
         }
 
         long nanoStartTime=System.nanoTime();
         int tries = 0;
+        maxTries = httpActivity.getMaxTries();
 
         while (tries < maxTries) {
             tries++;
 
             try (Timer.Context executeTime = httpActivity.executeTimer.time()) {
-                URL url = new URL(statement);
 //
                 HttpURLConnection conn = (HttpURLConnection) url.openConnection();
                 conn.setRequestMethod("GET");
                 result = conn.getInputStream();
             } catch (Exception e) {
+                if (tries < maxTries) {
+                    continue;
+                }
                 throw new RuntimeException("Error writing output:" + e, e);
             }
 
@@ -118,8 +95,9 @@ public class HttpAction implements SyncAction {
                 }
 
             }
-
+            break;
         }
+        httpActivity.triesHisto.update(tries);
         long resultNanos=System.nanoTime() - nanoStartTime;
         httpActivity.resultSuccessTimer.update(resultNanos, TimeUnit.NANOSECONDS);
 
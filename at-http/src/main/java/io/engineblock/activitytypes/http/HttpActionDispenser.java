@@ -12,6 +12,9 @@ public class HttpActionDispenser implements ActionDispenser {
 
     @Override
     public Action getAction(int i) {
+        if (httpActivity.getActivityDef().getParams().getOptionalString("async").isPresent()) {
+            return new AsyncHttpAction(i, httpActivity);
+        }
         return new HttpAction(httpActivity.getActivityDef(), i, httpActivity);
     }
 }
\ No newline at end of file
@@ -15,12 +15,11 @@ import io.engineblock.activityapi.planning.SequencerType;
 import io.engineblock.activityimpl.ActivityDef;
 import io.engineblock.activityimpl.SimpleActivity;
 import io.engineblock.metrics.ActivityMetrics;
-import io.virtdata.core.BindingsTemplate;
-import io.virtdata.templates.StringBindings;
-import io.virtdata.templates.StringBindingsTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Function;
 
@@ -48,8 +47,12 @@ public class HttpActivity extends SimpleActivity implements Activity, ActivityDe
 
     private String[] hosts;
     private int port;
+    private boolean drain;
+    private HttpClient.Version version;
+    private Duration timeout;
+    private HttpClient client;
 
-    private OpSequence<StringBindings> opSequence;
+    private OpSequence<HttpRequestTemplate> opSequence;
 
     public HttpActivity(ActivityDef activityDef) {
         super(activityDef);
@@ -75,26 +78,40 @@ public class HttpActivity extends SimpleActivity implements Activity, ActivityDe
         hosts = activityDef.getParams().getOptionalString("host").orElse("localhost").split(",");
         port = activityDef.getParams().getOptionalInteger("port").orElse(80);
 
+        drain = activityDef.getParams().getOptionalBoolean("drain").orElse(false);
+        String versionName = activityDef.getParams().getOptionalString("version").orElse("http1");
+        switch (versionName) {
+            case "http1":
+                version = HttpClient.Version.HTTP_1_1;
+                break;
+            case "http2":
+                version = HttpClient.Version.HTTP_2;
+                break;
+            default:
+                throw new RuntimeException("version=" + versionName + " is not valid. Valid values are http1 and http2.");
+        }
+        timeout = activityDef.getParams().getOptionalLong("timeout").map(Duration::ofMillis).orElse(null);
+
 
         opSequence = initOpSequencer();
         setDefaultsFromOpSequence(opSequence);
 
-        bindTimer = ActivityMetrics.timer(activityDef, "bind");
-        executeTimer = ActivityMetrics.timer(activityDef, "execute");
-        resultTimer = ActivityMetrics.timer(activityDef, "result");
+        bindTimer = getInstrumentation().getOrCreateTimer("bind");
+        executeTimer = getInstrumentation().getOrCreateTimer("execute");
+        resultTimer = getInstrumentation().getOrCreateTimer("result");
         triesHisto = ActivityMetrics.histogram(activityDef, "tries");
         rowCounter = ActivityMetrics.meter(activityDef, "rows");
         skippedTokens = ActivityMetrics.histogram(activityDef, "skipped-tokens");
-        resultSuccessTimer = ActivityMetrics.timer(activityDef,"result-success");
+        resultSuccessTimer = getInstrumentation().getOrCreateTimer("result-success");
 
         onActivityDefUpdate(activityDef);
     }
 
-    private OpSequence<StringBindings> initOpSequencer() {
+    private OpSequence<HttpRequestTemplate> initOpSequencer() {
         SequencerType sequencerType = SequencerType.valueOf(
                 getParams().getOptionalString("seq").orElse("bucket")
         );
-        SequencePlanner<StringBindings> sequencer = new SequencePlanner<>(sequencerType);
+        SequencePlanner<HttpRequestTemplate> sequencer = new SequencePlanner<>(sequencerType);
 
         String tagfilter = activityDef.getParams().getOptionalString("tags").orElse("");
         List<StmtDef> stmts = stmtsDocList.getStmts(tagfilter);
@@ -102,19 +119,17 @@ public class HttpActivity extends SimpleActivity implements Activity, ActivityDe
         if (stmts.size() > 0) {
             for (StmtDef stmt : stmts) {
                 ParsedStmt parsed = stmt.getParsed().orError();
-                BindingsTemplate bt = new BindingsTemplate(parsed.getBindPoints());
                 String statement = parsed.getPositionalStatement(Function.identity());
                 Objects.requireNonNull(statement);
 
-                StringBindingsTemplate sbt = new StringBindingsTemplate(stmt.getStmt(), bt);
-                StringBindings sb = sbt.resolve();
-                sequencer.addOp(sb,Long.valueOf(stmt.getParams().getOrDefault("ratio","1")));
+                HttpRequestTemplate template = new HttpRequestTemplate(stmt.getStmt(), parsed.getBindPoints(), hosts, port);
+                sequencer.addOp(template,Long.valueOf(stmt.getParams().getOrDefault("ratio","1")));
             }
         } else {
             logger.error("Unable to create an HTTP statement if no bindings or statements are defined.");
         }
 //
-        OpSequence<StringBindings> opSequence = sequencer.resolve();
+        OpSequence<HttpRequestTemplate> opSequence = sequencer.resolve();
         return opSequence;
     }
 
@@ -123,6 +138,34 @@ public class HttpActivity extends SimpleActivity implements Activity, ActivityDe
         super.onActivityDefUpdate(activityDef);
     }
 
+    /**
+     * The http client is shared by all async actions of this activity. It keeps a pool of
+     * keep-alive connections for each host. With version=http2, requests to the same host
+     * are multiplexed over one connection when the server supports it.
+     *
+     * @return The shared http client for this activity
+     */
+    public synchronized HttpClient getClient() {
+        if (client == null) {
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(version)
+                    .followRedirects(HttpClient.Redirect.NEVER);
+            if (timeout != null) {
+                builder.connectTimeout(timeout);
+            }
+            client = builder.build();
+        }
+        return client;
+    }
+
+    public boolean isDrain() {
+        return drain;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
     public Integer getMaxTries() {
         return maxTries;
     }
@@ -139,7 +182,7 @@ public class HttpActivity extends SimpleActivity implements Activity, ActivityDe
         return port;
     }
 
-    public OpSequence<StringBindings> getOpSequence() {
+    public OpSequence<HttpRequestTemplate> getOpSequence() {
         return opSequence;
     }
 }
\ No newline at end of file
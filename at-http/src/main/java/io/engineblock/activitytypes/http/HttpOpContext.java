@@ -0,0 +1,7 @@
+package io.engineblock.activitytypes.http;
+
+import java.net.http.HttpRequest;
+
+public class HttpOpContext {
+    HttpRequest request;
+}
@@ -0,0 +1,108 @@
+package io.engineblock.activitytypes.http;
+
+import activityconfig.CompiledTemplate;
+import activityconfig.RenderBuffer;
+import io.virtdata.templates.BindPoint;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The request template for one http statement. The statement is split into its path
+ * and its query at the first '?' outside of an anchor when the activity starts, and
+ * each is compiled into a {@link CompiledTemplate} which percent-encodes the
+ * characters which are not allowed in that part of a URI. The scheme, host and port
+ * of each host are encoded once too. For each cycle, the request URI is rendered
+ * into a buffer of the calling thread, and parsed once, without splitting the
+ * statement or building an intermediate URI.
+ */
+public class HttpRequestTemplate {
+
+    private final static String UNRESERVED = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_.!~*'()";
+    private final static String PATH_CHARS = UNRESERVED + ",;:$&+=/@";
+    private final static String QUERY_CHARS = UNRESERVED + ";/?:@&=+$,[]";
+
+    private final String statement;
+    private final CompiledTemplate path;
+    private final CompiledTemplate query;
+    private final byte[][] origins;
+    private final ThreadLocal<RenderBuffer> buffers = ThreadLocal.withInitial(() -> new RenderBuffer(256));
+
+    /**
+     * @param statement  The statement, as a path with an optional query
+     * @param bindPoints The bind points of the statement
+     * @param hosts      The hosts to send requests to, in round-robin fashion by cycle
+     * @param port       The port to send requests to
+     */
+    public HttpRequestTemplate(String statement, List<BindPoint> bindPoints, String[] hosts, int port) {
+        this.statement = statement;
+        int split = querySplit(statement);
+        if (split < 0) {
+            this.path = new CompiledTemplate(statement, bindPoints, PATH_CHARS);
+            this.query = null;
+        } else {
+            this.path = new CompiledTemplate(statement.substring(0, split), bindPoints, PATH_CHARS);
+            this.query = new CompiledTemplate(statement.substring(split + 1), bindPoints, QUERY_CHARS);
+        }
+        this.origins = new byte[hosts.length][];
+        for (int i = 0; i < hosts.length; i++) {
+            origins[i] = ("http://" + hosts[i] + ":" + port).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the index of the first '?' which is not within braces, or -1 if there is none
+     */
+    static int querySplit(String statement) {
+        int depth = 0;
+        for (int i = 0; i < statement.length(); i++) {
+            char c = statement.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+            } else if (c == '?' && depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Render the request URI for a cycle into the buffer of the calling thread. The
+     * buffer is reused for the next request the thread renders.
+     *
+     * @param cycle The cycle of the request
+     * @return The buffer, holding the request URI in ASCII
+     */
+    public RenderBuffer render(long cycle) {
+        RenderBuffer buffer = buffers.get().clear();
+        buffer.put(origins[(int) (cycle % origins.length)]);
+        path.renderTo(cycle, buffer);
+        if (query != null) {
+            buffer.put((byte) '?');
+            query.renderTo(cycle, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * @param cycle The cycle of the request
+     * @return The request URI
+     */
+    public URI getURI(long cycle) {
+        RenderBuffer buffer = render(cycle);
+        String uri = new String(buffer.array(), 0, buffer.length(), StandardCharsets.ISO_8859_1);
+        try {
+            return URI.create(uri);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unable to build a URI for cycle " + cycle + " from '" + statement + "': " + e, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRequestTemplate{" + statement + "}";
+    }
+}
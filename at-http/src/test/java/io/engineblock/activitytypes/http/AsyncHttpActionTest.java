@@ -0,0 +1,97 @@
+package io.engineblock.activitytypes.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.engineblock.activityapi.core.ops.fluent.OpTrackerImpl;
+import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.motor.StrideTracker;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class AsyncHttpActionTest {
+
+    private HttpServer server;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger requests = new AtomicInteger(0);
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(status.get(), body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testAsyncRequests() throws Exception {
+        status.set(200);
+        Map<Long, Integer> results = runStride("drain=true;", 0L, 16);
+        assertThat(results).hasSize(16);
+        assertThat(results.keySet()).containsExactly(
+                0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L);
+        assertThat(results.values()).containsOnly(0);
+    }
+
+    @Test
+    public void testErrorStatusClass() throws Exception {
+        status.set(404);
+        Map<Long, Integer> results = runStride("", 100L, 4);
+        assertThat(results.keySet()).containsExactly(100L, 101L, 102L, 103L);
+        assertThat(results.values()).containsOnly(4);
+    }
+
+    /**
+     * Run one stride, and copy out the cycle and result of each op, since the ops are reused
+     * once the stride is idle.
+     */
+    private Map<Long, Integer> runStride(String params, long initialCycle, int stride) throws Exception {
+        ActivityDef ad = ActivityDef.parseActivityDef(
+                "type=http; yaml=http-local; alias=http-local-" + initialCycle + "; host=127.0.0.1; port="
+                        + server.getAddress().getPort() + "; async=4; " + params);
+        HttpActivity activity = new HttpActivity(ad);
+        activity.initActivity();
+        AsyncHttpAction action = (AsyncHttpAction) new HttpActionDispenser(activity).getAction(0);
+
+        OpTrackerImpl<HttpOpContext> tracker = new OpTrackerImpl<>(activity, 0);
+        tracker.onActivityDefUpdate(ad);
+        tracker.setCycleOpFunction(action.getOpInitFunction());
+
+        Map<Long, Integer> results = new ConcurrentSkipListMap<>();
+        StrideTracker<HttpOpContext> strideTracker = new StrideTracker<>(
+                activity.getInstrumentation().getOrCreateStridesServiceTimer(), null,
+                System.nanoTime(), initialCycle, stride, null,
+                ops -> ops.forEach(op -> results.put(op.getCycle(), op.getResult())));
+        strideTracker.start();
+
+        int before = requests.get();
+        for (long cycle = initialCycle; cycle < initialCycle + stride; cycle++) {
+            action.enqueue(tracker.newOp(cycle, strideTracker));
+        }
+        assertThat(tracker.awaitCompletion(10000L)).isTrue();
+        long endAt = System.currentTimeMillis() + 10000L;
+        while (!strideTracker.isIdle() && System.currentTimeMillis() < endAt) {
+            Thread.yield();
+        }
+        assertThat(strideTracker.isIdle()).isTrue();
+        assertThat(requests.get() - before).isEqualTo(stride);
+        return results;
+    }
+}
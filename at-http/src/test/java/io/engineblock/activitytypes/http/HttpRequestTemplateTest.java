@@ -0,0 +1,28 @@
+package io.engineblock.activitytypes.http;
+
+import io.virtdata.templates.BindPoint;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class HttpRequestTemplateTest {
+
+    public void testQueryIsSplitOutsideOfAnchors() {
+        assertThat(HttpRequestTemplate.querySplit("/{path}?{query}")).isEqualTo(7);
+        assertThat(HttpRequestTemplate.querySplit("/{path?}")).isEqualTo(-1);
+        assertThat(HttpRequestTemplate.querySplit("/path")).isEqualTo(-1);
+    }
+
+    public void testRequestUriIsRenderedForEachHost() {
+        HttpRequestTemplate template = new HttpRequestTemplate(
+                "/docs/{name}?q={name}&n={cycle}",
+                Arrays.asList(new BindPoint("name", "NumberNameToString()"), new BindPoint("cycle", "Identity()")),
+                new String[]{"alpha", "beta"},
+                8080);
+        assertThat(template.getURI(1L).toString()).isEqualTo("http://beta:8080/docs/one?q=one&n=1");
+        assertThat(template.getURI(22L).toString()).isEqualTo("http://alpha:8080/docs/twenty%20two?q=twenty%20two&n=22");
+    }
+}
@@ -1,12 +1,13 @@
 package io.engineblock.activitytypes.stdout;
 
+import activityconfig.CompiledTemplate;
+import activityconfig.RenderBuffer;
 import com.codahale.metrics.Timer;
 import io.engineblock.activityapi.core.BaseAsyncAction;
 import io.engineblock.activityapi.core.ops.fluent.opfacets.StartedOp;
 import io.engineblock.activityapi.core.ops.fluent.opfacets.TrackedOp;
 import io.engineblock.activityapi.planning.OpSequence;
 import io.engineblock.activityimpl.ActivityDef;
-import io.virtdata.templates.StringBindings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,7 +17,7 @@ import java.util.function.LongFunction;
 public class AsyncStdoutAction extends BaseAsyncAction<StdoutOpContext, StdoutActivity> {
     private final static Logger logger = LoggerFactory.getLogger(AsyncStdoutAction.class);
 
-    private OpSequence<StringBindings> sequencer;
+    private OpSequence<CompiledTemplate> sequencer;
 
     public AsyncStdoutAction(int slot, StdoutActivity activity) {
         super(activity, slot);
@@ -31,29 +32,36 @@ public class AsyncStdoutAction extends BaseAsyncAction<StdoutOpContext, StdoutAc
     public StdoutOpContext allocateOpData(long cycle) {
 
         StdoutOpContext opc = new StdoutOpContext();
-        try (Timer.Context bindTime = activity.bindTimer.time()) {
-            opc.stringBindings = sequencer.get(cycle);
-            opc.statement = opc.stringBindings.bind(cycle);
-            if (activity.getShowstmts()) {
-                logger.info("STMT(cycle=" + cycle + "):\n" + opc.statement);
-            }
-        }
+        opc.template = sequencer.get(cycle);
+        opc.cycle = cycle;
         return opc;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The statement is rendered as the op is started, into the render buffer of
+     * this thread, and then written before any other op is started.</p>
+     */
     @Override
     public void startOpCycle(TrackedOp<StdoutOpContext> opc) {
+        StdoutOpContext data = opc.getData();
+        RenderBuffer rendered;
+        try (Timer.Context bindTime = activity.bindTimer.time()) {
+            rendered = data.template.render(data.cycle);
+            if (activity.getShowstmts()) {
+                logger.info("STMT(cycle=" + data.cycle + "):\n" + rendered);
+            }
+        }
         StartedOp<StdoutOpContext> started = opc.start();
-        int result=0;
         try (Timer.Context executeTime = activity.executeTimer.time()) {
-            activity.write(opc.getData().statement);
+            activity.write(rendered);
         } catch (Exception e) {
-            result=1;
-            started.fail(result);
+            // Each op must be completed exactly once, since completion releases its permit
+            started.fail(1);
             throw new RuntimeException("Error writing output:" + e, e);
-        } finally {
-            started.succeed(result);
         }
+        started.succeed(0);
     }
 
     @Override
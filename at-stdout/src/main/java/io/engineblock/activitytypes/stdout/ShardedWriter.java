@@ -0,0 +1,519 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.stdout;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>A sharded writer lets many threads write statements to files without contending
+ * on a shared lock for each statement. Each thread which writes to it has its own
+ * shard, which encodes statements into a direct buffer. The lock of each shard is
+ * only contended by the flusher thread and by {@link #close()}.</p>
+ *
+ * <H2>Modes</H2>
+ * <p>In {@link Mode#buffered} mode, full buffers are handed off through a lock-free
+ * queue to one writer thread, which writes them to a single file with a
+ * {@link FileChannel} and hands them back to their shard for reuse. Each shard has
+ * a bounded number of buffers, so a thread which gets ahead of the writer thread
+ * waits for one of its buffers to be returned. Statements from one thread stay in
+ * order, while statements from different threads are interleaved a buffer at a time.</p>
+ *
+ * <p>In {@link Mode#sharded} mode, each thread writes its full buffers directly to its
+ * own file, named after the target file with the shard number appended, as in
+ * <em>out.txt.0</em>, <em>out.txt.1</em>, and so on.</p>
+ *
+ * <H2>Flushing</H2>
+ * <p>A buffer is written when it is full, or by a flusher thread once its oldest
+ * statement has waited for the flush interval, whether or not its thread writes
+ * again. A flush interval of 0 means that buffers are only written when they are
+ * full, and when the writer is closed.
+ * Statements are never split across buffers, unless a statement is larger than a
+ * buffer, in which case it is written by itself.</p>
+ *
+ * <p>The shard of a thread which has ended is flushed one last time and dropped, along
+ * with its buffers and its file in sharded mode. This is done by the flusher thread,
+ * and when a new thread first writes, so threads which come and go do not leave their
+ * shards behind.</p>
+ */
+public class ShardedWriter extends Writer {
+    private final static Logger logger = LoggerFactory.getLogger(ShardedWriter.class);
+    private final static long WAIT_PARK_NANOS = 1_000_000L;
+
+    public enum Mode {
+        /**
+         * Hand off full per-thread buffers to one writer thread, which writes a single file
+         */
+        buffered,
+        /**
+         * Write full per-thread buffers to a separate file for each thread
+         */
+        sharded
+    }
+
+    private final Path path;
+    private final Mode mode;
+    private final int bufferSize;
+    private final int buffersPerShard;
+    private final long flushNanos;
+
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Shard> threadShard = ThreadLocal.withInitial(this::newShard);
+    private final AtomicInteger nextShard = new AtomicInteger(0);
+    private final ConcurrentLinkedQueue<Block> written = new ConcurrentLinkedQueue<>();
+    private final FileChannel channel;
+    private final Thread writerThread;
+    private final Thread flusherThread;
+    private volatile boolean running = true;
+    private volatile boolean flushing = true;
+    private volatile IOException failure;
+
+    public ShardedWriter(String fileName, Mode mode, int bufferSize, int buffersPerShard, long flushMillis) {
+        if (bufferSize < 1 || buffersPerShard < 1) {
+            throw new RuntimeException("The buffer size and the buffers per shard must be at least 1, but they were "
+                    + bufferSize + " and " + buffersPerShard);
+        }
+        this.path = Paths.get(fileName);
+        this.mode = mode;
+        this.bufferSize = bufferSize;
+        this.buffersPerShard = buffersPerShard;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+
+        if (mode == Mode.buffered) {
+            this.channel = open(path);
+            this.writerThread = new Thread(this::writeBlocks);
+            writerThread.setDaemon(true);
+            writerThread.setName("ShardedWriter/" + path);
+            writerThread.start();
+        } else {
+            this.channel = null;
+            this.writerThread = null;
+        }
+
+        if (flushNanos > 0L) {
+            this.flusherThread = new Thread(this::flushShards);
+            flusherThread.setDaemon(true);
+            flusherThread.setName("ShardedWriterFlusher/" + path);
+            flusherThread.start();
+        } else {
+            this.flusherThread = null;
+        }
+    }
+
+    /**
+     * Add a statement to the shard of the calling thread.
+     *
+     * @param statement The statement to write
+     */
+    @Override
+    public void write(String statement) {
+        threadShard.get().append(statement);
+    }
+
+    /**
+     * Add a statement which is already encoded as UTF-8 to the shard of the calling
+     * thread. The bytes are copied before this returns.
+     *
+     * @param bytes  The array holding the statement
+     * @param offset The offset of the statement in the array
+     * @param length The length of the statement in bytes
+     */
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        threadShard.get().append(bytes, offset, length);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        write(new String(cbuf, off, len));
+    }
+
+    /**
+     * Hand off the buffered statements of the calling thread to be written.
+     */
+    @Override
+    public void flush() {
+        threadShard.get().flush();
+    }
+
+    /**
+     * Write out everything which is buffered in all shards, and close all files. This
+     * must only be called once no more statements are being written.
+     */
+    @Override
+    public void close() {
+        if (flusherThread != null) {
+            flushing = false;
+            LockSupport.unpark(flusherThread);
+            join(flusherThread);
+        }
+        for (Shard shard : shards) {
+            shard.flush();
+        }
+        if (writerThread != null) {
+            running = false;
+            LockSupport.unpark(writerThread);
+            join(writerThread);
+            close(channel);
+        }
+        for (Shard shard : shards) {
+            if (shard.shardChannel != null) {
+                close(shard.shardChannel);
+            }
+        }
+        if (failure != null) {
+            throw new RuntimeException("Error writing to " + path + ":" + failure, failure);
+        }
+    }
+
+    /**
+     * @return the number of shards which statements are written into
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    private Shard newShard() {
+        dropEndedShards();
+        Shard shard = new Shard(nextShard.getAndIncrement());
+        shards.add(shard);
+        return shard;
+    }
+
+    private void dropEndedShards() {
+        for (Shard shard : shards) {
+            // checked before the final flush, so that nothing is written to a shard after it
+            if (shard.isEnded() && shards.remove(shard)) {
+                try {
+                    shard.retire();
+                } catch (RuntimeException e) {
+                    logger.error("Error flushing " + path + ":" + e, e);
+                }
+            }
+        }
+    }
+
+    private void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while closing " + this, e);
+        }
+    }
+
+    private void flushShards() {
+        long parkNanos = Math.max(WAIT_PARK_NANOS, flushNanos / 2);
+        while (flushing) {
+            LockSupport.parkNanos(this, parkNanos);
+            dropEndedShards();
+            long now = System.nanoTime();
+            for (Shard shard : shards) {
+                shard.flushIfDue(now);
+            }
+        }
+    }
+
+    private void writeBlocks() {
+        while (true) {
+            Block block = written.poll();
+            if (block == null) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+                continue;
+            }
+            try {
+                if (failure == null) {
+                    writeFully(channel, block.buffer);
+                }
+            } catch (IOException e) {
+                logger.error("Error writing to " + path + ":" + e, e);
+                failure = e;
+            }
+            block.recycle();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static FileChannel open(Path path) {
+        try {
+            return FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening " + path + ":" + e, e);
+        }
+    }
+
+    private void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing " + channel + ":" + e, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedWriter " + mode + " " + path + " shards=" + shards.size();
+    }
+
+    private final static class Block {
+        private final Shard owner;
+        private final ByteBuffer buffer;
+
+        private Block(Shard owner, ByteBuffer buffer) {
+            this.owner = owner;
+            this.buffer = buffer;
+        }
+
+        private void recycle() {
+            if (owner != null) {
+                buffer.clear();
+                owner.free.add(this);
+            }
+        }
+    }
+
+    private final class Shard {
+        private final ConcurrentLinkedQueue<Block> free = new ConcurrentLinkedQueue<>();
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final WeakReference<Thread> owner;
+        private final FileChannel shardChannel;
+        private int allocated = 0;
+        private Block current;
+        private long firstAppendAt;
+
+        private Shard(int index) {
+            this.owner = new WeakReference<>(Thread.currentThread());
+            this.shardChannel = (mode == Mode.sharded) ? open(Paths.get(path.toString() + "." + index)) : null;
+        }
+
+        private void append(String statement) {
+            lock.lock();
+            try {
+                encode(statement);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void append(byte[] bytes, int offset, int length) {
+            lock.lock();
+            try {
+                put(bytes, offset, length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void flush() {
+            lock.lock();
+            try {
+                handoff();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isEnded() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        /**
+         * Hand off what is left in this shard, and close its file if it has one.
+         */
+        private void retire() {
+            lock.lock();
+            try {
+                handoff();
+            } finally {
+                lock.unlock();
+                if (shardChannel != null) {
+                    close(shardChannel);
+                }
+            }
+        }
+
+        /**
+         * Hand off the buffer of this shard if its oldest statement has waited for the
+         * flush interval. A shard which is busy is skipped until the next pass, since
+         * its thread may be waiting for the writer thread to return a buffer.
+         */
+        private void flushIfDue(long now) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                if (current != null && current.buffer.position() > 0 && now - firstAppendAt >= flushNanos) {
+                    handoff();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error flushing " + path + ":" + e, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void encode(String statement) {
+            if (failure != null) {
+                throw new RuntimeException("Unable to write to " + path + " after an earlier error:" + failure, failure);
+            }
+            if (current == null) {
+                current = take();
+            }
+            ByteBuffer buffer = current.buffer;
+            if (buffer.position() == 0) {
+                firstAppendAt = System.nanoTime();
+            }
+            int mark = buffer.position();
+            CoderResult result = encoder.encode(CharBuffer.wrap(statement), buffer, true);
+            encoder.reset();
+            if (result.isOverflow()) {
+                buffer.position(mark);
+                if (mark == 0) {
+                    writeAlone(statement);
+                    return;
+                }
+                handoff();
+                encode(statement);
+                return;
+            }
+            if (result.isError()) {
+                buffer.position(mark);
+                try {
+                    result.throwException();
+                } catch (CharacterCodingException e) {
+                    throw new RuntimeException("Unable to encode statement '" + statement + "':" + e, e);
+                }
+            }
+            if (!buffer.hasRemaining()) {
+                handoff();
+            }
+        }
+
+        private void put(byte[] bytes, int offset, int length) {
+            if (failure != null) {
+                throw new RuntimeException("Unable to write to " + path + " after an earlier error:" + failure, failure);
+            }
+            if (current == null) {
+                current = take();
+            }
+            ByteBuffer buffer = current.buffer;
+            if (buffer.remaining() < length) {
+                if (buffer.position() == 0) {
+                    writeAlone(ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + length)));
+                    return;
+                }
+                handoff();
+                put(bytes, offset, length);
+                return;
+            }
+            if (buffer.position() == 0) {
+                firstAppendAt = System.nanoTime();
+            }
+            buffer.put(bytes, offset, length);
+            if (!buffer.hasRemaining()) {
+                handoff();
+            }
+        }
+
+        private void writeAlone(String statement) {
+            writeAlone(ByteBuffer.wrap(statement.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private void writeAlone(ByteBuffer bytes) {
+            if (shardChannel != null) {
+                write(bytes);
+            } else {
+                written.add(new Block(null, bytes));
+                LockSupport.unpark(writerThread);
+            }
+        }
+
+        private void handoff() {
+            if (current == null || current.buffer.position() == 0) {
+                return;
+            }
+            current.buffer.flip();
+            if (shardChannel != null) {
+                write(current.buffer);
+                current.buffer.clear();
+                return;
+            }
+            written.add(current);
+            current = null;
+            LockSupport.unpark(writerThread);
+        }
+
+        private void write(ByteBuffer buffer) {
+            try {
+                writeFully(shardChannel, buffer);
+            } catch (IOException e) {
+                failure = e;
+                throw new RuntimeException("Error writing to " + shardChannel + ":" + e, e);
+            }
+        }
+
+        private Block take() {
+            while (true) {
+                Block block = free.poll();
+                if (block != null) {
+                    return block;
+                }
+                if (allocated < buffersPerShard) {
+                    allocated++;
+                    return new Block(this, ByteBuffer.allocateDirect(bufferSize));
+                }
+                if (failure != null) {
+                    throw new RuntimeException("Unable to write to " + path + " after an earlier error:" + failure, failure);
+                }
+                LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -17,10 +17,11 @@
 
 package io.engineblock.activitytypes.stdout;
 
+import activityconfig.CompiledTemplate;
+import activityconfig.RenderBuffer;
 import com.codahale.metrics.Timer;
 import io.engineblock.activityapi.core.SyncAction;
 import io.engineblock.activityapi.planning.OpSequence;
-import io.virtdata.templates.StringBindings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +33,7 @@ public class StdoutAction implements SyncAction {
     private StdoutActivity activity;
     private int maxTries = 10;
     private boolean showstmts;
-    private OpSequence<StringBindings> sequencer;
+    private OpSequence<CompiledTemplate> sequencer;
 
     public StdoutAction(int slot, StdoutActivity activity) {
         this.slot = slot;
@@ -46,19 +47,19 @@ public class StdoutAction implements SyncAction {
 
     @Override
     public int runCycle(long cycleValue) {
-        StringBindings stringBindings;
-        String statement = null;
+        CompiledTemplate template;
+        RenderBuffer rendered;
         try (Timer.Context bindTime = activity.bindTimer.time()) {
-            stringBindings = sequencer.get(cycleValue);
-            statement = stringBindings.bind(cycleValue);
+            template = sequencer.get(cycleValue);
+            rendered = template.render(cycleValue);
             showstmts = activity.getShowstmts();
             if (showstmts) {
-                logger.info("STMT(cycle=" + cycleValue + "):\n" + statement);
+                logger.info("STMT(cycle=" + cycleValue + "):\n" + rendered);
             }
         }
 
         try (Timer.Context executeTime = activity.executeTimer.time()) {
-            activity.write(statement);
+            activity.write(rendered);
         } catch (Exception e) {
             throw new RuntimeException("Error writing output:" + e, e);
         }
@@ -17,7 +17,9 @@
 
 package io.engineblock.activitytypes.stdout;
 
+import activityconfig.CompiledTemplate;
 import activityconfig.ParsedStmt;
+import activityconfig.RenderBuffer;
 import activityconfig.StatementsLoader;
 import activityconfig.yaml.StmtDef;
 import activityconfig.yaml.StmtsDocList;
@@ -33,9 +35,7 @@ import io.engineblock.activityimpl.SimpleActivity;
 import io.engineblock.metrics.ActivityMetrics;
 import io.engineblock.metrics.ExceptionMeterMetrics;
 import io.engineblock.util.StrInterpolater;
-import io.virtdata.core.BindingsTemplate;
-import io.virtdata.templates.StringBindings;
-import io.virtdata.templates.StringBindingsTemplate;
+import io.virtdata.templates.BindPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,16 +58,17 @@ public class StdoutActivity extends SimpleActivity implements ActivityDefObserve
     public Timer resultTimer;
     public Histogram triesHisto;
     private Writer pw;
+    private ShardedWriter shardedWriter;
     private String fileName;
     private ExceptionMeterMetrics exceptionMeterMetrics;
     private int retry_delay = 0;
     private int retries;
 
-    public OpSequence<StringBindings> getOpSequence() {
+    public OpSequence<CompiledTemplate> getOpSequence() {
         return opSequence;
     }
 
-    private OpSequence<StringBindings> opSequence;
+    private OpSequence<CompiledTemplate> opSequence;
 
     public StdoutActivity(ActivityDef activityDef) {
         super(activityDef);
@@ -99,9 +100,9 @@ public class StdoutActivity extends SimpleActivity implements ActivityDefObserve
         opSequence = initOpSequencer();
         setDefaultsFromOpSequence(opSequence);
 
-        bindTimer = ActivityMetrics.timer(activityDef, "bind");
-        executeTimer = ActivityMetrics.timer(activityDef, "execute");
-        resultTimer = ActivityMetrics.timer(activityDef, "result");
+        bindTimer = getInstrumentation().getOrCreateTimer("bind");
+        executeTimer = getInstrumentation().getOrCreateTimer("execute");
+        resultTimer = getInstrumentation().getOrCreateTimer("result");
         triesHisto = ActivityMetrics.histogram(activityDef, "tries");
 
         this.pw = createPrintWriter();
@@ -113,6 +114,17 @@ public class StdoutActivity extends SimpleActivity implements ActivityDefObserve
         if (fileName.toLowerCase().equals("stdout")) {
             pw = new PrintWriter(System.out);
         } else {
+            String writer = getParams().getOptionalString("writer").orElse("sync");
+            if (!writer.equals("sync")) {
+                shardedWriter = new ShardedWriter(
+                        fileName,
+                        ShardedWriter.Mode.valueOf(writer),
+                        getParams().getOptionalInteger("bufsize").orElse(65536),
+                        getParams().getOptionalInteger("buffers").orElse(4),
+                        getParams().getOptionalLong("flushms").orElse(100L));
+                logger.info("writing to " + shardedWriter);
+                return shardedWriter;
+            }
             try {
                 pw = new PrintWriter(fileName);
                 pw.print("");
@@ -124,12 +136,12 @@ public class StdoutActivity extends SimpleActivity implements ActivityDefObserve
         return pw;
     }
 
-    private OpSequence<StringBindings> initOpSequencer() {
+    private OpSequence<CompiledTemplate> initOpSequencer() {
         //List<StringBindingsTemplate> stringBindingsTemplates = new ArrayList<>();
         SequencerType sequencerType = SequencerType.valueOf(
                 getParams().getOptionalString("seq").orElse("bucket")
         );
-        SequencePlanner<StringBindings> sequencer = new SequencePlanner<>(sequencerType);
+        SequencePlanner<CompiledTemplate> sequencer = new SequencePlanner<>(sequencerType);
 
         String tagfilter = activityDef.getParams().getOptionalString("tags").orElse("");
         List<StmtDef> stmts = stmtsDocList.getStmts(tagfilter);
@@ -139,30 +151,26 @@ public class StdoutActivity extends SimpleActivity implements ActivityDefObserve
         if ((stmts.size()==0 && stmtsDocList.getDocBindings().size() > 0) || format!=null) {
             logger.info("Creating stdout statement template from bindings, since none is otherwise defined.");
             String generatedStmt = genStatementTemplate(stmtsDocList.getDocBindings().keySet());
-            BindingsTemplate bt = new BindingsTemplate();
-            stmtsDocList.getDocBindings().forEach(bt::addFieldBinding);
-            StringBindingsTemplate sbt = new StringBindingsTemplate(generatedStmt, bt);
-            StringBindings sb = sbt.resolve();
-            sequencer.addOp(sb,1L);
+            List<BindPoint> bindPoints = new ArrayList<>();
+            stmtsDocList.getDocBindings().forEach((name, spec) -> bindPoints.add(new BindPoint(name, spec)));
+            sequencer.addOp(new CompiledTemplate(generatedStmt, bindPoints), 1L);
         } else if (stmts.size() > 0) {
             for (StmtDef stmt : stmts) {
                 ParsedStmt parsed = stmt.getParsed().orError();
-                BindingsTemplate bt = new BindingsTemplate(parsed.getBindPoints());
                 String statement = parsed.getPositionalStatement(Function.identity());
                 Objects.requireNonNull(statement);
                 if (!statement.endsWith("\n") && getParams().getOptionalBoolean("newline").orElse(true)) {
                     statement = statement+"\n";
                 }
 
-                StringBindingsTemplate sbt = new StringBindingsTemplate(stmt.getStmt(), bt);
-                StringBindings sb = sbt.resolve();
-                sequencer.addOp(sb,Long.valueOf(stmt.getParams().getOrDefault("ratio","1")));
+                CompiledTemplate template = new CompiledTemplate(stmt.getStmt(), parsed.getBindPoints());
+                sequencer.addOp(template,Long.valueOf(stmt.getParams().getOrDefault("ratio","1")));
             }
         } else {
             logger.error("Unable to create a stdout statement if you have no active statements or bindings configured.");
         }
 
-        OpSequence<StringBindings> opSequence = sequencer.resolve();
+        OpSequence<CompiledTemplate> opSequence = sequencer.resolve();
         return opSequence;
     }
 
@@ -185,7 +193,30 @@ public class StdoutActivity extends SimpleActivity implements ActivityDefObserve
         this.retries = params.getOptionalInteger("retries").orElse(3);
     }
 
-    public synchronized void write(String statement) {
+    public void write(String statement) {
+        if (shardedWriter != null) {
+            shardedWriter.write(statement);
+            return;
+        }
+        writeSynchronized(statement);
+    }
+
+    /**
+     * Write a statement which was rendered into a buffer. With a sharded writer, the
+     * bytes are copied into the buffer of the calling thread as they are. Otherwise,
+     * they are written as a String.
+     *
+     * @param rendered The rendered statement
+     */
+    public void write(RenderBuffer rendered) {
+        if (shardedWriter != null) {
+            shardedWriter.writeBytes(rendered.array(), 0, rendered.length());
+            return;
+        }
+        write(rendered.toString());
+    }
+
+    private synchronized void writeSynchronized(String statement) {
         int tries = 0;
         Exception e = null;
         while (tries < retries) {
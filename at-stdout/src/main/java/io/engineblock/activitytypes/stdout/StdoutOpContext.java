@@ -1,8 +1,8 @@
 package io.engineblock.activitytypes.stdout;
 
-import io.virtdata.templates.StringBindings;
+import activityconfig.CompiledTemplate;
 
 public class StdoutOpContext {
-    StringBindings stringBindings;
-    String statement;
+    CompiledTemplate template;
+    long cycle;
 }
@@ -0,0 +1,106 @@
+package io.engineblock.activitytypes.stdout;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class ShardedWriterTest {
+
+    @Test
+    public void testBufferedWritesOneFile() throws Exception {
+        Path dir = Files.createTempDirectory("shardedwriter");
+        String fileName = dir.resolve("out.txt").toString();
+        ShardedWriter writer = new ShardedWriter(fileName, ShardedWriter.Mode.buffered, 64, 2, 0L);
+        writeLines(writer, 4, 1000);
+        writer.write(longLine());
+        writer.close();
+
+        List<String> lines = Files.readAllLines(dir.resolve("out.txt"));
+        assertThat(lines).hasSize(4001);
+        assertThat(new HashSet<>(lines)).hasSize(4001);
+        assertThat(lines).contains(longLine().trim());
+        assertThat(writer.getShardCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testShardedWritesFilePerThread() throws Exception {
+        Path dir = Files.createTempDirectory("shardedwriter");
+        String fileName = dir.resolve("out.txt").toString();
+        ShardedWriter writer = new ShardedWriter(fileName, ShardedWriter.Mode.sharded, 64, 1, 0L);
+        writeLines(writer, 3, 500);
+        writer.close();
+
+        Set<String> all = new HashSet<>();
+        for (int shard = 0; shard < 3; shard++) {
+            List<String> lines = Files.readAllLines(new File(fileName + "." + shard).toPath());
+            assertThat(lines).hasSize(500);
+            all.addAll(lines);
+        }
+        assertThat(all).hasSize(1500);
+    }
+
+    @Test
+    public void testEndedShardsAreDropped() throws Exception {
+        Path dir = Files.createTempDirectory("shardedwriter");
+        String fileName = dir.resolve("out.txt").toString();
+        ShardedWriter writer = new ShardedWriter(fileName, ShardedWriter.Mode.sharded, 65536, 1, 1L);
+        writeLines(writer, 3, 500);
+        long endAt = System.currentTimeMillis() + 10000L;
+        while (writer.getShardCount() > 0 && System.currentTimeMillis() < endAt) {
+            Thread.sleep(1L);
+        }
+        assertThat(writer.getShardCount()).isEqualTo(0);
+        for (int shard = 0; shard < 3; shard++) {
+            assertThat(Files.readAllLines(new File(fileName + "." + shard).toPath())).hasSize(500);
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testFlushInterval() throws Exception {
+        Path dir = Files.createTempDirectory("shardedwriter");
+        Path file = dir.resolve("out.txt");
+        ShardedWriter writer = new ShardedWriter(file.toString(), ShardedWriter.Mode.buffered, 65536, 2, 1L);
+        writer.write("first\n");
+        writer.write("second\n");
+        long endAt = System.currentTimeMillis() + 10000L;
+        while (Files.size(file) == 0L && System.currentTimeMillis() < endAt) {
+            Thread.sleep(1L);
+        }
+        assertThat(Files.readAllLines(file)).containsExactly("first", "second");
+        writer.close();
+    }
+
+    private void writeLines(ShardedWriter writer, int threads, int linesPerThread) throws Exception {
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i++) {
+                    writer.write("thread" + thread + " line" + i + "\n");
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread thread : writers) {
+            thread.join();
+        }
+    }
+
+    private String longLine() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            sb.append("0123456789");
+        }
+        return sb.append("\n").toString();
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.tcpclient;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>A batching client writes statements to a pool of connections. Each thread which
+ * writes to it has its own batch, so threads do not contend with each other on
+ * every statement. A batch is written to its connection when it is full, or when
+ * its oldest statement has waited for the flush interval.</p>
+ *
+ * <H2>Design Notes</H2>
+ * <p>Each batch encodes statements directly into a few direct byte buffers, and
+ * writes all of them with one gathering write. The connection for each batch is
+ * chosen in round-robin fashion when the batch is created, so the threads are spread
+ * evenly over the connections. Batches which share a connection take turns writing
+ * to it, so the statements of one batch are never interleaved with another.</p>
+ *
+ * <p>The duration of each flush is recorded by the flush timer. One flusher thread
+ * checks all batches once per flush interval, and flushes any which have data older
+ * than the interval. A flush interval of 0 disables this, so that batches are only
+ * written when they are full and when the client is closed.</p>
+ *
+ * <p>The batch of a thread which has ended is written one last time and dropped
+ * on the next timed flush, or on the next call to {@link #flush()}, so threads
+ * which come and go do not leave their direct buffers behind.</p>
+ */
+public class BatchingClient implements Runnable {
+    private final static Logger logger = LoggerFactory.getLogger(BatchingClient.class);
+    private final static int MAX_CHUNK_SIZE = 16384;
+
+    private final SocketChannel[] channels;
+    private final AtomicInteger nextChannel = new AtomicInteger(0);
+    private final List<Batch> batches = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Batch> threadBatch = ThreadLocal.withInitial(this::newBatch);
+    private final int batchSize;
+    private final long flushNanos;
+    private final Timer flushTimer;
+    private final Meter bytesMeter;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public BatchingClient(InetSocketAddress address, int connections, int batchSize, long flushMillis, Timer flushTimer, Meter bytesMeter) {
+        if (connections < 1) {
+            throw new RuntimeException("A batching client needs at least 1 connection, but it was given " + connections);
+        }
+        if (batchSize < 1) {
+            throw new RuntimeException("The batch size must be at least 1 byte, but it was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.flushTimer = flushTimer;
+        this.bytesMeter = bytesMeter;
+
+        this.channels = new SocketChannel[connections];
+        try {
+            for (int i = 0; i < connections; i++) {
+                channels[i] = SocketChannel.open(address);
+                channels[i].setOption(StandardSocketOptions.TCP_NODELAY, true);
+                logger.info("connected to " + channels[i].getRemoteAddress());
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Error connecting to " + address + ":" + e, e);
+        }
+
+        if (flushNanos > 0L) {
+            flusher = new Thread(this);
+            flusher.setDaemon(true);
+            flusher.setName("BatchingClient/" + address);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Add a statement to the batch of the calling thread. If this fills the batch,
+     * then it is written before this method returns.
+     *
+     * @param statement The statement to write
+     */
+    public void write(String statement) {
+        threadBatch.get().append(statement);
+    }
+
+    /**
+     * Add a statement which is already encoded as UTF-8 to the batch of the calling
+     * thread. The bytes are copied before this returns.
+     *
+     * @param bytes  The array holding the statement
+     * @param offset The offset of the statement in the array
+     * @param length The length of the statement in bytes
+     */
+    public void write(byte[] bytes, int offset, int length) {
+        threadBatch.get().append(bytes, offset, length);
+    }
+
+    /**
+     * Write all of the batched statements of all threads.
+     */
+    public void flush() {
+        for (Batch batch : batches) {
+            // checked before flushing, so that nothing is appended after the final flush of a batch
+            boolean ended = batch.isEnded();
+            batch.flush();
+            if (ended) {
+                batches.remove(batch);
+            }
+        }
+    }
+
+    /**
+     * Stop the flusher, write all batched statements, and close all connections.
+     */
+    public void close() {
+        running = false;
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join(1000L);
+            } catch (InterruptedException ignored) {
+            }
+        }
+        try {
+            flush();
+        } finally {
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        logger.warn("Error closing " + channel + ":" + e, e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            LockSupport.parkNanos(this, flushNanos);
+            long dueBefore = System.nanoTime() - flushNanos;
+            for (Batch batch : batches) {
+                try {
+                    if (batch.isEnded()) {
+                        batch.flush();
+                        batches.remove(batch);
+                    } else {
+                        batch.flushIfOlderThan(dueBefore);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error while flushing " + batch + ":" + e, e);
+                }
+            }
+        }
+    }
+
+    public int getConnectionCount() {
+        return channels.length;
+    }
+
+    /**
+     * @return the number of thread batches which statements are written into
+     */
+    int getBatchCount() {
+        return batches.size();
+    }
+
+    private Batch newBatch() {
+        SocketChannel channel = channels[Math.floorMod(nextChannel.getAndIncrement(), channels.length)];
+        Batch batch = new Batch(channel);
+        batches.add(batch);
+        return batch;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchingClient connections=" + channels.length + " batches=" + batches.size()
+                + " batchsize=" + batchSize + " flush=" + TimeUnit.NANOSECONDS.toMillis(flushNanos) + "ms";
+    }
+
+    private final class Batch {
+        private final SocketChannel channel;
+        private final WeakReference<Thread> owner;
+        private final ByteBuffer[] chunks;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private int current = 0;
+        private long firstAppendAt;
+
+        private Batch(SocketChannel channel) {
+            this.channel = channel;
+            this.owner = new WeakReference<>(Thread.currentThread());
+            int chunkSize = Math.min(batchSize, MAX_CHUNK_SIZE);
+            int chunkCount = (batchSize + chunkSize - 1) / chunkSize;
+            this.chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = ByteBuffer.allocateDirect(chunkSize);
+            }
+        }
+
+        /**
+         * Statements are never split across flushes, since another batch may write to
+         * the same connection in between. If a statement does not fit into what is left
+         * of this batch, the batch is written first. A statement which does not fit into
+         * an empty batch is written by itself.
+         */
+        private synchronized void append(String statement) {
+            if (isEmpty()) {
+                firstAppendAt = System.nanoTime();
+            }
+            int markChunk = current;
+            int markPosition = chunks[current].position();
+            CharBuffer input = CharBuffer.wrap(statement);
+            while (true) {
+                CoderResult result = encoder.encode(input, chunks[current], true);
+                if (result.isOverflow()) {
+                    if (current < chunks.length - 1) {
+                        current++;
+                        continue;
+                    }
+                    rollback(markChunk, markPosition);
+                    encoder.reset();
+                    if (isEmpty()) {
+                        writeAlone(statement);
+                        return;
+                    }
+                    flush();
+                    firstAppendAt = System.nanoTime();
+                    markChunk = 0;
+                    markPosition = 0;
+                    input = CharBuffer.wrap(statement);
+                    continue;
+                }
+                if (result.isError()) {
+                    rollback(markChunk, markPosition);
+                    encoder.reset();
+                    try {
+                        result.throwException();
+                    } catch (CharacterCodingException e) {
+                        throw new RuntimeException("Unable to encode statement '" + statement + "':" + e, e);
+                    }
+                }
+                break;
+            }
+            encoder.reset();
+            if (current == chunks.length - 1 && !chunks[current].hasRemaining()) {
+                flush();
+            }
+        }
+
+        private synchronized void append(byte[] bytes, int offset, int length) {
+            if (remaining() < length) {
+                if (isEmpty()) {
+                    writeAlone(ByteBuffer.wrap(bytes, offset, length));
+                    return;
+                }
+                flush();
+                append(bytes, offset, length);
+                return;
+            }
+            if (isEmpty()) {
+                firstAppendAt = System.nanoTime();
+            }
+            while (length > 0) {
+                ByteBuffer chunk = chunks[current];
+                if (!chunk.hasRemaining()) {
+                    current++;
+                    continue;
+                }
+                int count = Math.min(length, chunk.remaining());
+                chunk.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+            if (current == chunks.length - 1 && !chunks[current].hasRemaining()) {
+                flush();
+            }
+        }
+
+        private int remaining() {
+            int remaining = chunks[current].remaining();
+            for (int i = current + 1; i < chunks.length; i++) {
+                remaining += chunks[i].capacity();
+            }
+            return remaining;
+        }
+
+        private void rollback(int markChunk, int markPosition) {
+            for (int i = markChunk + 1; i <= current; i++) {
+                chunks[i].clear();
+            }
+            chunks[markChunk].position(markPosition);
+            current = markChunk;
+        }
+
+        private void writeAlone(String statement) {
+            writeAlone(ByteBuffer.wrap(statement.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private void writeAlone(ByteBuffer bytes) {
+            int length = bytes.remaining();
+            long startedAt = System.nanoTime();
+            try {
+                synchronized (channel) {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing " + length + " bytes to " + channel + ":" + e, e);
+            }
+            flushTimer.update(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            bytesMeter.mark(length);
+        }
+
+        private synchronized void flushIfOlderThan(long dueBefore) {
+            if (!isEmpty() && firstAppendAt - dueBefore <= 0L) {
+                flush();
+            }
+        }
+
+        private synchronized void flush() {
+            if (isEmpty()) {
+                return;
+            }
+            long bytes = 0L;
+            for (int i = 0; i <= current; i++) {
+                chunks[i].flip();
+                bytes += chunks[i].remaining();
+            }
+            long startedAt = System.nanoTime();
+            try {
+                synchronized (channel) {
+                    long remaining = bytes;
+                    while (remaining > 0L) {
+                        remaining -= channel.write(chunks, 0, current + 1);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing " + bytes + " bytes to " + channel + ":" + e, e);
+            } finally {
+                for (int i = 0; i <= current; i++) {
+                    chunks[i].clear();
+                }
+                current = 0;
+            }
+            flushTimer.update(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            bytesMeter.mark(bytes);
+        }
+
+        private boolean isEmpty() {
+            return current == 0 && chunks[0].position() == 0;
+        }
+
+        private boolean isEnded() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        @Override
+        public String toString() {
+            return "Batch to " + channel;
+        }
+    }
+}
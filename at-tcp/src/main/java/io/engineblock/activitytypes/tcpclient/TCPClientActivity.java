@@ -17,8 +17,10 @@
 
 package io.engineblock.activitytypes.tcpclient;
 
+import activityconfig.RenderBuffer;
 import io.engineblock.activitytypes.stdout.StdoutActivity;
 import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.metrics.ActivityMetrics;
 import io.engineblock.util.SSLKsFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,13 +28,35 @@ import org.slf4j.LoggerFactory;
 import javax.net.SocketFactory;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 
 public class TCPClientActivity extends StdoutActivity {
     private final static Logger logger = LoggerFactory.getLogger(TCPClientActivity.class);
+    private final Mode mode;
+    private BatchingClient batchingClient;
+
+    /**
+     * The client implementation. The nio client batches statements for each thread,
+     * and writes them to a pool of connections with gathering writes. The blocking
+     * client writes and flushes each statement to one socket. SSL is only supported
+     * by the blocking client.
+     */
+    public enum Mode {
+        nio,
+        blocking
+    }
 
     public TCPClientActivity(ActivityDef activityDef) {
         super(activityDef);
+        boolean sslEnabled = activityDef.getParams().getOptionalBoolean("ssl").orElse(false);
+        mode = activityDef.getParams().getOptionalString("mode")
+                .map(Mode::valueOf)
+                .orElse(Mode.blocking);
+        if (mode == Mode.nio && sslEnabled) {
+            throw new RuntimeException("mode=nio does not support ssl, use mode=blocking with ssl=true");
+        }
     }
 
     @Override
@@ -41,7 +65,28 @@ public class TCPClientActivity extends StdoutActivity {
     }
 
     @Override
-    protected PrintWriter createPrintWriter() {
+    public void write(String statement) {
+        if (batchingClient != null) {
+            batchingClient.write(statement);
+            return;
+        }
+        super.write(statement);
+    }
+
+    @Override
+    public void write(RenderBuffer rendered) {
+        if (batchingClient != null) {
+            batchingClient.write(rendered.array(), 0, rendered.length());
+            return;
+        }
+        super.write(rendered);
+    }
+
+    @Override
+    protected Writer createPrintWriter() {
+        if (mode == Mode.nio) {
+            return createBatchingWriter();
+        }
 
         SocketFactory socketFactory = SocketFactory.getDefault();
         boolean sslEnabled = activityDef.getParams().getOptionalBoolean("ssl").orElse(false);
@@ -61,5 +106,54 @@ public class TCPClientActivity extends StdoutActivity {
         }
     }
 
+    private Writer createBatchingWriter() {
+        if (batchingClient == null) {
+            String host = getActivityDef().getParams().getOptionalString("host").orElse("localhost");
+            int port = getActivityDef().getParams().getOptionalInteger("port").orElse(12345);
+            int connections = getActivityDef().getParams().getOptionalInteger("connections").orElse(1);
+            int batchSize = getActivityDef().getParams().getOptionalInteger("batchsize").orElse(65536);
+            long flushMillis = getActivityDef().getParams().getOptionalLong("flushms").orElse(10L);
+
+            batchingClient = new BatchingClient(
+                    new InetSocketAddress(host, port),
+                    connections,
+                    batchSize,
+                    flushMillis,
+                    ActivityMetrics.timer(getActivityDef(), "flush"),
+                    ActivityMetrics.meter(getActivityDef(), "bytes"));
+            logger.info("started " + batchingClient);
+        }
+        return new BatchingWriterAdapter(batchingClient);
+    }
+
+    /**
+     * @return The batching client for this activity, or null if it is not running in nio mode
+     */
+    public BatchingClient getBatchingClient() {
+        return batchingClient;
+    }
+
+    public static class BatchingWriterAdapter extends Writer {
+        private final BatchingClient client;
+
+        public BatchingWriterAdapter(BatchingClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            client.write(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void flush() {
+            client.flush();
+        }
+
+        @Override
+        public void close() {
+            client.close();
+        }
+    }
 
 }
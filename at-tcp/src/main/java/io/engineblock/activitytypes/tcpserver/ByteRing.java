@@ -0,0 +1,186 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.tcpserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of bytes which are waiting to be written to one connection.
+ *
+ * <p>Any number of threads may put data into the ring. Producers are serialized
+ * with a monitor, so that each put is contiguous in the ring. A single consumer,
+ * the selector thread, drains the ring into a channel without taking the monitor.
+ * Since the ring positions only ever increase, the producer only writes into space
+ * which the consumer has released, and the consumer only reads what the producer
+ * has published.</p>
+ *
+ * <p>When the ring is full, producers wait for the consumer to make space, so the
+ * memory used for each connection is bounded by the capacity of its ring.</p>
+ */
+public class ByteRing {
+
+    private final static long FULL_PARK_NANOS = 50_000L;
+
+    private final byte[] ring;
+    private final int mask;
+    private final ByteBuffer[] views = new ByteBuffer[2];
+
+    private volatile long readPosition = 0L;
+    private volatile long writePosition = 0L;
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity The capacity of this ring in bytes, which is rounded up to a power of two
+     */
+    public ByteRing(int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("The ring capacity must be at least 1 byte, but it was " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new byte[size];
+        this.mask = size - 1;
+        this.views[0] = ByteBuffer.wrap(ring);
+        this.views[1] = ByteBuffer.wrap(ring);
+    }
+
+    /**
+     * Put all of the given bytes into the ring, waiting for space as needed. Data which
+     * is larger than the ring is put in pieces as the consumer makes space. The consumer
+     * must already be draining this ring, or else the put waits forever once the ring
+     * is full. Use {@link #put(byte[], Runnable)} to make sure of it.
+     *
+     * @param data The bytes to put
+     * @return true, if all of the data was put, or false if the ring was closed first
+     */
+    public boolean put(byte[] data) {
+        return put(data, null);
+    }
+
+    /**
+     * Put all of the given bytes into the ring, waiting for space as needed. Data which
+     * is larger than the ring is put in pieces as the consumer makes space. Before waiting
+     * for space, the onFull callback is run, so that the caller can make sure the consumer
+     * is going to drain the ring.
+     *
+     * @param data   The bytes to put
+     * @param onFull A callback to run each time the ring is found full, or null
+     * @return true, if all of the data was put, or false if the ring was closed first
+     */
+    public boolean put(byte[] data, Runnable onFull) {
+        return put(data, 0, data.length, onFull);
+    }
+
+    /**
+     * Put a range of the given bytes into the ring, as with {@link #put(byte[], Runnable)}.
+     * The bytes are copied before this returns, so the array may be reused afterwards.
+     *
+     * @param data   The array holding the bytes to put
+     * @param off    The offset of the bytes in the array
+     * @param len    The number of bytes to put
+     * @param onFull A callback to run each time the ring is found full, or null
+     * @return true, if all of the data was put, or false if the ring was closed first
+     */
+    public synchronized boolean put(byte[] data, int off, int len, Runnable onFull) {
+        int offset = off;
+        int end = off + len;
+        while (offset < end) {
+            if (closed) {
+                return false;
+            }
+            long write = writePosition;
+            int free = ring.length - (int) (write - readPosition);
+            if (free == 0) {
+                if (onFull != null) {
+                    onFull.run();
+                }
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                continue;
+            }
+            int length = Math.min(free, end - offset);
+            int start = (int) (write & mask);
+            int first = Math.min(length, ring.length - start);
+            System.arraycopy(data, offset, ring, start, first);
+            if (first < length) {
+                System.arraycopy(data, offset + first, ring, 0, length - first);
+            }
+            offset += length;
+            writePosition = write + length;
+        }
+        return true;
+    }
+
+    /**
+     * Write as much of the buffered data as the channel will take, with one gathering
+     * write. This must only be called by the consumer.
+     *
+     * @param channel The channel to write to
+     * @return The number of bytes written
+     * @throws IOException if the channel could not be written
+     */
+    public long drainTo(GatheringByteChannel channel) throws IOException {
+        long read = readPosition;
+        int length = (int) (writePosition - read);
+        if (length == 0) {
+            return 0L;
+        }
+        int start = (int) (read & mask);
+        int first = Math.min(length, ring.length - start);
+        views[0].limit(start + first).position(start);
+        views[1].limit(length - first).position(0);
+        long written = channel.write(views, 0, first < length ? 2 : 1);
+        readPosition = read + written;
+        return written;
+    }
+
+    /**
+     * @return The number of bytes which are waiting to be written
+     */
+    public int size() {
+        return (int) (writePosition - readPosition);
+    }
+
+    public boolean isEmpty() {
+        return writePosition == readPosition;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Close this ring, so that any waiting or future puts return false.
+     */
+    public void close() {
+        this.closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRing " + size() + "/" + capacity() + (closed ? " closed" : "");
+    }
+}
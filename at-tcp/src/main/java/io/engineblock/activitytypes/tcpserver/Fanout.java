@@ -0,0 +1,32 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.tcpserver;
+
+/**
+ * How the nio server distributes each statement to its connected clients.
+ */
+public enum Fanout {
+    /**
+     * Each statement is written to every connected client.
+     */
+    broadcast,
+    /**
+     * Each statement is written to one connected client, taking turns.
+     */
+    roundrobin
+}
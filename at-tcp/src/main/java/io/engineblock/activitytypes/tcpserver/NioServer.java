@@ -0,0 +1,321 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activitytypes.tcpserver;
+
+import com.codahale.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>A selector based server which writes statements to all of its connected clients
+ * from one thread. Each connection has its own {@link ByteRing}, so writers only
+ * contend with other writers to the same connection, and a slow client does not
+ * hold up the others in {@link Fanout#roundrobin} mode.</p>
+ *
+ * <H2>Design Notes</H2>
+ * <p>Writers copy each statement into the ring of the chosen connection, or of every
+ * connection for {@link Fanout#broadcast}. The first write into an empty ring schedules
+ * the connection with the selector thread, as does a writer which finds the ring full,
+ * so that statements larger than the ring are written in pieces. The selector thread then writes everything
+ * in the ring with one gathering write, so statements which arrive while the socket
+ * is busy are batched into the same write. If the socket can not take all of it, the
+ * connection waits for the socket to become writable again.</p>
+ *
+ * <p>While no clients are connected, writers wait for one to connect. Data which
+ * clients send to the server is read and discarded, so that disconnects are noticed.</p>
+ */
+public class NioServer implements Runnable, TCPServerActivity.Shutdown {
+    private final static Logger logger = LoggerFactory.getLogger(NioServer.class);
+    private final static long IDLE_PARK_NANOS = 1_000_000L;
+    private final static long SHUTDOWN_DRAIN_MILLIS = 1000L;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Fanout fanout;
+    private final int ringSize;
+    private final Meter bytesMeter;
+
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextConnection = new AtomicLong(0L);
+    private final ByteBuffer discard = ByteBuffer.allocateDirect(4096);
+    private volatile boolean running = true;
+
+    public NioServer(InetSocketAddress address, Fanout fanout, int ringSize, Meter bytesMeter) {
+        this.fanout = fanout;
+        this.ringSize = ringSize;
+        this.bytesMeter = bytesMeter;
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(address, 10);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new RuntimeException("Error listening on " + address + ":" + e, e);
+        }
+    }
+
+    /**
+     * Write the data to the connected clients, according to the fanout. This waits for
+     * a client to connect if there are none, and for space in the rings of the clients
+     * which are written to.
+     *
+     * @param data The bytes to write
+     */
+    public void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * Write a range of the given bytes, as with {@link #write(byte[])}. The bytes are
+     * copied into the rings of the clients before this returns, so the array may be
+     * reused afterwards.
+     *
+     * @param data The array holding the bytes to write
+     * @param off  The offset of the bytes in the array
+     * @param len  The number of bytes to write
+     */
+    public void write(byte[] data, int off, int len) {
+        while (true) {
+            if (!running) {
+                throw new RuntimeException("Unable to write to " + this + " after it was shut down.");
+            }
+            List<Connection> current = this.connections;
+            int size = current.size();
+            if (size == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                if (fanout == Fanout.broadcast) {
+                    boolean written = false;
+                    for (Connection connection : current) {
+                        written |= connection.put(data, off, len);
+                    }
+                    if (written) {
+                        return;
+                    }
+                } else {
+                    Connection connection = current.get((int) (nextConnection.getAndIncrement() % size));
+                    if (connection.put(data, off, len)) {
+                        return;
+                    }
+                }
+            } catch (IndexOutOfBoundsException ignored) {
+                // a connection was closed while choosing one, so try again
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.running = false;
+        selector.wakeup();
+    }
+
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return The number of bytes which are buffered for all connections
+     */
+    public long getBufferedBytes() {
+        long buffered = 0L;
+        for (Connection connection : connections) {
+            buffered += connection.ring.size();
+        }
+        return buffered;
+    }
+
+    @Override
+    public void run() {
+        long drainUntil = Long.MAX_VALUE;
+        try {
+            while (running || (getBufferedBytes() > 0 && System.currentTimeMillis() < drainUntil)) {
+                if (!running && drainUntil == Long.MAX_VALUE) {
+                    drainUntil = System.currentTimeMillis() + SHUTDOWN_DRAIN_MILLIS;
+                }
+                selector.select(100L);
+
+                Connection scheduled;
+                while ((scheduled = ready.poll()) != null) {
+                    flush(scheduled);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error in " + this + ":" + e, e);
+        } finally {
+            for (Connection connection : connections) {
+                close(connection);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                logger.warn("Error closing " + this + ":" + e, e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel, new ByteRing(ringSize));
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        logger.info("Accepted connection from " + channel.getRemoteAddress() + " on " + this);
+    }
+
+    private void read(Connection connection) {
+        try {
+            int read;
+            do {
+                discard.clear();
+                read = connection.channel.read(discard);
+            } while (read > 0);
+            if (read < 0) {
+                close(connection);
+            }
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    private void flush(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        try {
+            while (true) {
+                long written = connection.ring.drainTo(connection.channel);
+                if (written > 0) {
+                    bytesMeter.mark(written);
+                }
+                if (!connection.ring.isEmpty()) {
+                    if (written == 0) {
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    continue;
+                }
+                connection.scheduled.set(false);
+                if (connection.ring.isEmpty() || !connection.scheduled.compareAndSet(false, true)) {
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        connection.ring.close();
+        connections.remove(connection);
+        connection.key.cancel();
+        try {
+            logger.info("Closing connection " + connection.channel.getRemoteAddress() + " on " + this);
+            connection.channel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing connection on " + this + ":" + e, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NioServer/" + serverChannel.socket().getLocalSocketAddress() + " " + fanout
+                + " connections=" + connections.size();
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteRing ring;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel, ByteRing ring) {
+            this.channel = channel;
+            this.ring = ring;
+        }
+
+        private boolean put(byte[] data, int off, int len) {
+            if (!ring.put(data, off, len, this::schedule)) {
+                return false;
+            }
+            schedule();
+            return true;
+        }
+
+        /**
+         * Make sure the selector thread is going to flush this connection. This is also
+         * called while a put waits for space, since the ring is only drained once the
+         * connection is scheduled.
+         */
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+                selector.wakeup();
+            }
+        }
+    }
+}
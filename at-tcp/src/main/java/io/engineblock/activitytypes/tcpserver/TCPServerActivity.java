@@ -17,8 +17,11 @@
 
 package io.engineblock.activitytypes.tcpserver;
 
+import activityconfig.RenderBuffer;
+import com.codahale.metrics.Gauge;
 import io.engineblock.activitytypes.stdout.StdoutActivity;
 import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.metrics.ActivityMetrics;
 import io.engineblock.util.SSLKsFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,9 +33,11 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
@@ -43,10 +48,22 @@ public class TCPServerActivity extends StdoutActivity {
 
     private final static Logger logger = LoggerFactory.getLogger(TCPServerActivity.class);
     private final ServerSocketFactory socketFactory;
+    private final Mode mode;
     private BlockingQueue<String> queue = new LinkedBlockingQueue<>(10);
     private ServerSocket listenerSocket;
+    private NioServer nioServer;
     private List<Shutdown> managedShutdown = new ArrayList<>();
 
+    /**
+     * The server implementation. The nio server writes to all clients from one selector
+     * thread, with a bounded ring buffer per client. The blocking server uses a thread
+     * per client, which all take statements from one shared queue. SSL is only supported
+     * by the blocking server.
+     */
+    public enum Mode {
+        nio,
+        blocking
+    }
 
     public TCPServerActivity(ActivityDef activityDef) {
         super(activityDef);
@@ -57,6 +74,13 @@ public class TCPServerActivity extends StdoutActivity {
         } else {
             socketFactory = ServerSocketFactory.getDefault();
         }
+
+        mode = activityDef.getParams().getOptionalString("mode")
+                .map(Mode::valueOf)
+                .orElse(Mode.blocking);
+        if (mode == Mode.nio && sslEnabled) {
+            throw new RuntimeException("mode=nio does not support ssl, use mode=blocking with ssl=true");
+        }
     }
 
     @Override
@@ -74,7 +98,20 @@ public class TCPServerActivity extends StdoutActivity {
     }
 
     @Override
-    public synchronized void write(String statement) {
+    public void write(RenderBuffer rendered) {
+        if (nioServer != null) {
+            nioServer.write(rendered.array(), 0, rendered.length());
+            return;
+        }
+        super.write(rendered);
+    }
+
+    @Override
+    public void write(String statement) {
+        if (nioServer != null) {
+            nioServer.write(statement.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
         while (true) {
             try {
                 queue.put(statement);
@@ -92,6 +129,10 @@ public class TCPServerActivity extends StdoutActivity {
         String host = getActivityDef().getParams().getOptionalString("host").orElse("localhost");
         int port = getActivityDef().getParams().getOptionalInteger("port").orElse(12345);
 
+        if (mode == Mode.nio) {
+            return createNioWriter(host, port);
+        }
+
         if (listenerSocket == null || listenerSocket.isClosed()) {
             try {
                 InetAddress hostAddr = InetAddress.getByName(host);
@@ -116,7 +157,39 @@ public class TCPServerActivity extends StdoutActivity {
 
     }
 
-    private static interface Shutdown {
+    private Writer createNioWriter(String host, int port) {
+        if (nioServer == null) {
+            Fanout fanout = getActivityDef().getParams().getOptionalString("fanout")
+                    .map(Fanout::valueOf)
+                    .orElse(Fanout.roundrobin);
+            int ringSize = getActivityDef().getParams().getOptionalInteger("ringsize").orElse(262144);
+
+            nioServer = new NioServer(
+                    new InetSocketAddress(host, port),
+                    fanout,
+                    ringSize,
+                    ActivityMetrics.meter(getActivityDef(), "bytes"));
+            managedShutdown.add(nioServer);
+            ActivityMetrics.gauge(getActivityDef(), "buffered-bytes", (Gauge<Long>) nioServer::getBufferedBytes);
+            ActivityMetrics.gauge(getActivityDef(), "connections", (Gauge<Integer>) nioServer::getConnectionCount);
+
+            Thread serverThread = new Thread(nioServer);
+            serverThread.setDaemon(true);
+            serverThread.setName(nioServer.toString());
+            serverThread.start();
+            logger.info("started " + nioServer);
+        }
+        return new NioWriterAdapter(nioServer);
+    }
+
+    /**
+     * @return The nio server for this activity, or null if it is not running in nio mode
+     */
+    public NioServer getNioServer() {
+        return nioServer;
+    }
+
+    interface Shutdown {
         void shutdown();
     }
 
@@ -200,6 +273,27 @@ public class TCPServerActivity extends StdoutActivity {
 
     }
 
+    public static class NioWriterAdapter extends Writer {
+        private final NioServer server;
+
+        public NioWriterAdapter(NioServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            server.write(new String(cbuf, off, len).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     public class SocketAcceptor implements Runnable, Shutdown {
         private final BlockingQueue<String> queue;
         private final ServerSocket serverSocket;
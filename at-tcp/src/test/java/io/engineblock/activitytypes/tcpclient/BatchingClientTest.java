@@ -0,0 +1,105 @@
+package io.engineblock.activitytypes.tcpclient;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class BatchingClientTest {
+
+    @Test
+    public void testBatchesFromManyThreads() throws Exception {
+        try (ServerSocket sink = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            ConcurrentHashMap<String, Boolean> received = new ConcurrentHashMap<>();
+            AtomicInteger lines = new AtomicInteger(0);
+            List<Thread> readers = new ArrayList<>();
+            Thread acceptor = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2; i++) {
+                        Socket socket = sink.accept();
+                        Thread reader = new Thread(() -> readLines(socket, received, lines));
+                        readers.add(reader);
+                        reader.start();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            acceptor.start();
+
+            Timer flushTimer = new Timer();
+            Meter bytes = new Meter();
+            BatchingClient client = new BatchingClient(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), sink.getLocalPort()),
+                    2, 100, 0L, flushTimer, bytes);
+            acceptor.join(10000L);
+
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                writers.add(new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        client.write("thread" + thread + " line" + i + "\n");
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                writer.join(10000L);
+            }
+            assertThat(client.getBatchCount()).isEqualTo(4);
+            client.close();
+            assertThat(client.getBatchCount()).isEqualTo(0);
+            for (Thread reader : readers) {
+                reader.join(10000L);
+            }
+
+            assertThat(lines.get()).isEqualTo(4000);
+            assertThat(received.size()).isEqualTo(4000);
+            assertThat(flushTimer.getCount()).isGreaterThan(4L);
+            assertThat(bytes.getCount()).isGreaterThan(4000L * 13L);
+        }
+    }
+
+    @Test
+    public void testTimedFlush() throws Exception {
+        try (ServerSocket sink = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            BatchingClient client = new BatchingClient(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), sink.getLocalPort()),
+                    1, 65536, 5L, new Timer(), new Meter());
+            try (Socket socket = sink.accept()) {
+                socket.setSoTimeout(10000);
+                client.write("one line\n");
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                assertThat(reader.readLine()).isEqualTo("one line");
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    private static void readLines(Socket socket, ConcurrentHashMap<String, Boolean> received, AtomicInteger lines) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                received.put(line, true);
+                lines.incrementAndGet();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.engineblock.activitytypes.tcpserver;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class ByteRingTest {
+
+    @Test
+    public void testCapacityIsPowerOfTwo() {
+        assertThat(new ByteRing(1000).capacity()).isEqualTo(1024);
+        assertThat(new ByteRing(1024).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        ByteRing ring = new ByteRing(8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GatheringByteChannel channel = new GatheringAdapter(Channels.newChannel(out));
+
+        assertThat(ring.put("abcdef".getBytes())).isTrue();
+        assertThat(ring.drainTo(channel)).isEqualTo(6L);
+        assertThat(ring.put("ghijkl".getBytes())).isTrue();
+        assertThat(ring.size()).isEqualTo(6);
+        assertThat(ring.drainTo(channel)).isEqualTo(6L);
+        assertThat(ring.isEmpty()).isTrue();
+        assertThat(new String(out.toByteArray())).isEqualTo("abcdefghijkl");
+    }
+
+    @Test
+    public void testPutLargerThanCapacity() throws Exception {
+        ByteRing ring = new ByteRing(4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GatheringByteChannel channel = new GatheringAdapter(Channels.newChannel(out));
+
+        Thread producer = new Thread(() -> ring.put("0123456789".getBytes()));
+        producer.start();
+        while (producer.isAlive() || !ring.isEmpty()) {
+            ring.drainTo(channel);
+        }
+        assertThat(new String(out.toByteArray())).isEqualTo("0123456789");
+    }
+
+    @Test
+    public void testPutRange() throws Exception {
+        ByteRing ring = new ByteRing(4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GatheringByteChannel channel = new GatheringAdapter(Channels.newChannel(out));
+
+        Thread producer = new Thread(() -> ring.put("xx0123456789xx".getBytes(), 2, 10, null));
+        producer.start();
+        while (producer.isAlive() || !ring.isEmpty()) {
+            ring.drainTo(channel);
+        }
+        assertThat(new String(out.toByteArray())).isEqualTo("0123456789");
+    }
+
+    @Test
+    public void testCloseReleasesProducer() throws Exception {
+        ByteRing ring = new ByteRing(2);
+        ring.put("ab".getBytes());
+        ring.close();
+        assertThat(ring.put("c".getBytes())).isFalse();
+    }
+
+    private static class GatheringAdapter implements GatheringByteChannel {
+        private final WritableByteChannel channel;
+
+        private GatheringAdapter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws java.io.IOException {
+            long written = 0L;
+            for (int i = offset; i < offset + length; i++) {
+                written += channel.write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws java.io.IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws java.io.IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.engineblock.activitytypes.tcpserver;
+
+import com.codahale.metrics.Meter;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class NioServerTest {
+
+    @Test
+    public void testBroadcast() throws Exception {
+        Meter bytes = new Meter();
+        NioServer server = start(Fanout.broadcast, bytes);
+        try (Socket first = connect(server, 1); Socket second = connect(server, 2)) {
+            for (int i = 0; i < 100; i++) {
+                server.write(("line" + i + "\n").getBytes());
+            }
+            for (Socket client : new Socket[]{first, second}) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+                for (int i = 0; i < 100; i++) {
+                    assertThat(reader.readLine()).isEqualTo("line" + i);
+                }
+            }
+            assertThat(bytes.getCount()).isEqualTo(2L * 690L);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        NioServer server = start(Fanout.roundrobin, new Meter());
+        try (Socket first = connect(server, 1); Socket second = connect(server, 2)) {
+            for (int i = 0; i < 10; i++) {
+                server.write(("line" + i + "\n").getBytes());
+            }
+            BufferedReader firstReader = new BufferedReader(new InputStreamReader(first.getInputStream()));
+            BufferedReader secondReader = new BufferedReader(new InputStreamReader(second.getInputStream()));
+            for (int i = 0; i < 10; i += 2) {
+                assertThat(firstReader.readLine()).isEqualTo("line" + i);
+                assertThat(secondReader.readLine()).isEqualTo("line" + (i + 1));
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test(timeOut = 10000L)
+    public void testStatementLargerThanRing() throws Exception {
+        NioServer server = start(Fanout.roundrobin, new Meter());
+        try (Socket client = connect(server, 1)) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                sb.append((char) ('a' + (i % 26)));
+            }
+            String line = sb.toString();
+            for (int i = 0; i < 3; i++) {
+                server.write((line + "\n").getBytes());
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            for (int i = 0; i < 3; i++) {
+                assertThat(reader.readLine()).isEqualTo(line);
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private NioServer start(Fanout fanout, Meter bytes) {
+        NioServer server = new NioServer(new InetSocketAddress("127.0.0.1", 0), fanout, 64, bytes);
+        Thread thread = new Thread(server);
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    private Socket connect(NioServer server, int connections) throws Exception {
+        Socket socket = new Socket("127.0.0.1", server.getLocalPort());
+        long endAt = System.currentTimeMillis() + 10000L;
+        while (server.getConnectionCount() < connections && System.currentTimeMillis() < endAt) {
+            Thread.sleep(1L);
+        }
+        assertThat(server.getConnectionCount()).isEqualTo(connections);
+        return socket;
+    }
+}
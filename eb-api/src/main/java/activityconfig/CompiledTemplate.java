@@ -0,0 +1,159 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package activityconfig;
+
+import io.virtdata.core.Bindings;
+import io.virtdata.core.BindingsTemplate;
+import io.virtdata.templates.BindPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A statement template which is parsed once, and then rendered for each cycle
+ * directly into a {@link RenderBuffer} as UTF-8 bytes. The literal parts of the
+ * template are encoded when it is compiled, and each bound value is encoded as it
+ * is added, so no String is created for the whole statement. Integral values are
+ * added as digits without creating a String for them at all.
+ *
+ * <p>Anchors are written as <em>{name}</em>. Anchors which do not name one of the
+ * given bind points are left in the statement as they are.</p>
+ *
+ * <p>If a set of verbatim characters is given, then all other characters of the
+ * statement are percent-encoded, as for a URI component.</p>
+ */
+public class CompiledTemplate {
+
+    private final static Pattern anchorPattern = Pattern.compile("\\{(\\w+[-_\\d\\w.]*)}");
+
+    private final String template;
+    private final byte[][] literals;
+    private final int[] valueIndexes;
+    private final Bindings bindings;
+    private final boolean[] verbatim;
+    private final ThreadLocal<RenderBuffer> buffers = ThreadLocal.withInitial(() -> new RenderBuffer(256));
+
+    public CompiledTemplate(String template, List<BindPoint> bindPoints) {
+        this(template, bindPoints, null);
+    }
+
+    /**
+     * @param template   The statement template
+     * @param bindPoints The bind points which anchors may name
+     * @param verbatim   The ASCII characters which are not percent-encoded, or null to
+     *                   leave all characters as they are
+     */
+    public CompiledTemplate(String template, List<BindPoint> bindPoints, String verbatim) {
+        this.template = template;
+        this.verbatim = verbatim == null ? null : RenderBuffer.verbatim(verbatim);
+
+        List<String> parts = new ArrayList<>();
+        List<BindPoint> used = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        Matcher matcher = anchorPattern.matcher(template);
+        int literalStart = 0;
+        while (matcher.find()) {
+            BindPoint bindPoint = find(bindPoints, matcher.group(1));
+            if (bindPoint == null) {
+                continue;
+            }
+            parts.add(template.substring(literalStart, matcher.start()));
+            int index = used.indexOf(bindPoint);
+            if (index < 0) {
+                index = used.size();
+                used.add(bindPoint);
+            }
+            indexes.add(index);
+            literalStart = matcher.end();
+        }
+        parts.add(template.substring(literalStart));
+
+        this.literals = new byte[parts.size()][];
+        for (int i = 0; i < literals.length; i++) {
+            RenderBuffer encoded = new RenderBuffer(parts.get(i).length()).putChars(parts.get(i), this.verbatim);
+            literals[i] = Arrays.copyOf(encoded.array(), encoded.length());
+        }
+        this.valueIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        this.bindings = used.isEmpty() ? null : new BindingsTemplate(used).resolveBindings();
+    }
+
+    private static BindPoint find(List<BindPoint> bindPoints, String anchor) {
+        for (BindPoint bindPoint : bindPoints) {
+            if (bindPoint.getAnchor().equals(anchor)) {
+                return bindPoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Render this template for a cycle into the buffer of the calling thread. The
+     * buffer is reused for the next statement that the thread renders with this
+     * template, so the bytes must be used before then.
+     *
+     * @param cycle The cycle to bind values for
+     * @return The buffer of the calling thread, holding only the rendered statement
+     */
+    public RenderBuffer render(long cycle) {
+        RenderBuffer buffer = buffers.get().clear();
+        renderTo(cycle, buffer);
+        return buffer;
+    }
+
+    /**
+     * Add this template, rendered for a cycle, to a buffer.
+     *
+     * @param cycle  The cycle to bind values for
+     * @param buffer The buffer to add the rendered statement to
+     */
+    public void renderTo(long cycle, RenderBuffer buffer) {
+        Object[] values = bindings == null ? null : bindings.getAll(cycle);
+        for (int i = 0; i < valueIndexes.length; i++) {
+            buffer.put(literals[i]);
+            Object value = values[valueIndexes[i]];
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                buffer.putLong(((Number) value).longValue());
+            } else if (value instanceof CharSequence) {
+                buffer.putChars((CharSequence) value, verbatim);
+            } else {
+                buffer.putChars(String.valueOf(value), verbatim);
+            }
+        }
+        buffer.put(literals[valueIndexes.length]);
+    }
+
+    /**
+     * @param cycle The cycle to bind values for
+     * @return The statement for the cycle, as a String
+     */
+    public String bind(long cycle) {
+        return render(cycle).toString();
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledTemplate{" + template + "}";
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package activityconfig;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of UTF-8 bytes which statements are rendered into. A buffer
+ * is meant to be reused by one thread for each statement it renders, so that text
+ * based drivers can write the bytes without creating a String for each statement.
+ *
+ * <p>Characters may be percent-encoded as they are added, by giving the set of
+ * ASCII characters which may be added as they are. Every other character is added
+ * as the percent-encoded bytes of its UTF-8 encoding, as for URI components.</p>
+ */
+public class RenderBuffer {
+
+    private final static byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes;
+    private int length;
+
+    public RenderBuffer(int capacity) {
+        this.bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * @param chars The ASCII characters which are not to be percent-encoded
+     * @return A table for {@link #putChars(CharSequence, boolean[])}
+     */
+    public static boolean[] verbatim(String chars) {
+        boolean[] verbatim = new boolean[128];
+        for (int i = 0; i < chars.length(); i++) {
+            verbatim[chars.charAt(i)] = true;
+        }
+        return verbatim;
+    }
+
+    public RenderBuffer clear() {
+        length = 0;
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return The array which holds the bytes of this buffer, which is only valid
+     * up to {@link #length()}, and until more bytes are added
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * @return A new ByteBuffer which wraps the bytes of this buffer
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    public RenderBuffer put(byte value) {
+        ensure(1);
+        bytes[length++] = value;
+        return this;
+    }
+
+    public RenderBuffer put(byte[] values) {
+        ensure(values.length);
+        System.arraycopy(values, 0, bytes, length, values.length);
+        length += values.length;
+        return this;
+    }
+
+    /**
+     * Add a long in decimal, without creating a String for it.
+     */
+    public RenderBuffer putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return putChars(Long.toString(value), null);
+        }
+        ensure(20);
+        if (value < 0L) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long bound = 10L; digits < 19 && value >= bound; bound *= 10L) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + (value % 10L));
+            value /= 10L;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Add characters as UTF-8.
+     *
+     * @param chars    The characters to add
+     * @param verbatim The ASCII characters which are added as they are, as from
+     *                 {@link #verbatim(String)}, or null to add all characters as they are
+     * @return this buffer
+     */
+    public RenderBuffer putChars(CharSequence chars, boolean[] verbatim) {
+        int count = chars.length();
+        ensure(verbatim == null ? count * 3 : count * 12);
+        for (int i = 0; i < count; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                putByte(c, verbatim);
+            } else if (c < 0x800) {
+                putByte(0xC0 | (c >> 6), verbatim);
+                putByte(0x80 | (c & 0x3F), verbatim);
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                putByte(0xF0 | (codePoint >> 18), verbatim);
+                putByte(0x80 | ((codePoint >> 12) & 0x3F), verbatim);
+                putByte(0x80 | ((codePoint >> 6) & 0x3F), verbatim);
+                putByte(0x80 | (codePoint & 0x3F), verbatim);
+            } else if (Character.isSurrogate(c)) {
+                putByte('?', verbatim);
+            } else {
+                putByte(0xE0 | (c >> 12), verbatim);
+                putByte(0x80 | ((c >> 6) & 0x3F), verbatim);
+                putByte(0x80 | (c & 0x3F), verbatim);
+            }
+        }
+        return this;
+    }
+
+    private void putByte(int value, boolean[] verbatim) {
+        if (verbatim == null || (value < 0x80 && verbatim[value])) {
+            bytes[length++] = (byte) value;
+        } else {
+            bytes[length++] = '%';
+            bytes[length++] = HEX[(value >> 4) & 0xF];
+            bytes[length++] = HEX[value & 0xF];
+        }
+    }
+
+    private void ensure(int more) {
+        if (length + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+        }
+    }
+
+    /**
+     * @return The bytes of this buffer, decoded as UTF-8
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
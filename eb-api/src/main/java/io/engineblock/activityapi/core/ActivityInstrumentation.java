@@ -81,6 +81,15 @@ public interface ActivityInstrumentation {
      */
     Timer getPhasesResponseTimerOrNull();
 
+    /**
+     * Any other timer of the activity, such as the bind and execute timers of an activity type.
+     * If the activity is configured with {@code threadlocalmetrics=true}, this and the other timers
+     * above use a recorder for each thread, which is merged when the timer is read.
+     * @param name The name of the timer, within the activity
+     * @return A new or existing Timer
+     */
+    Timer getOrCreateTimer(String name);
+
     /**
      * The pending ops counter keeps track of how many ops are submitted or in-flight, but
      * which haven't been completed yet.
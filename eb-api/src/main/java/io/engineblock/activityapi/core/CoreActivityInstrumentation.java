@@ -26,6 +26,7 @@ import io.engineblock.metrics.ActivityMetrics;
 public class CoreActivityInstrumentation implements ActivityInstrumentation {
 
     private static final String STRICTMETRICNAMES = "strictmetricnames";
+    private static final String THREADLOCALMETRICS = "threadlocalmetrics";
 
     private static final String WAIT_TIME = ".waittime";
     private static final String SERVICE_TIME = ".servicetime";
@@ -36,6 +37,7 @@ public class CoreActivityInstrumentation implements ActivityInstrumentation {
     private final ParameterMap params;
     private final String svcTimeSuffix;
     private final boolean strictNaming;
+    private final boolean threadLocal;
 
     public CoreActivityInstrumentation(Activity activity) {
         this.activity = activity;
@@ -43,19 +45,20 @@ public class CoreActivityInstrumentation implements ActivityInstrumentation {
         this.params = def.getParams();
         this.strictNaming = params.getOptionalBoolean(STRICTMETRICNAMES).orElse(true);
         svcTimeSuffix = strictNaming ? SERVICE_TIME : "";
+        this.threadLocal = params.getOptionalBoolean(THREADLOCALMETRICS).orElse(false);
     }
 
 
     @Override
     public synchronized Timer getOrCreateInputTimer() {
         String metricName = "read_input";
-        return ActivityMetrics.timer(def, metricName);
+        return getOrCreateTimer(metricName);
     }
 
 
     @Override
     public synchronized Timer getOrCreateStridesServiceTimer() {
-        return ActivityMetrics.timer(def, "strides" + SERVICE_TIME);
+        return getOrCreateTimer("strides" + SERVICE_TIME);
     }
 
     @Override
@@ -63,13 +66,13 @@ public class CoreActivityInstrumentation implements ActivityInstrumentation {
         if (activity.getStrideLimiter()==null) {
             return null;
         }
-        return ActivityMetrics.timer(def, "strides" + RESPONSE_TIME);
+        return getOrCreateTimer("strides" + RESPONSE_TIME);
     }
 
 
     @Override
     public synchronized Timer getOrCreateCyclesServiceTimer() {
-        return ActivityMetrics.timer(def, "cycles" + svcTimeSuffix);
+        return getOrCreateTimer("cycles" + svcTimeSuffix);
     }
 
     @Override
@@ -78,20 +81,25 @@ public class CoreActivityInstrumentation implements ActivityInstrumentation {
             return null;
         }
         String metricName = "cycles" + RESPONSE_TIME;
-        return ActivityMetrics.timer(def, metricName);
+        return getOrCreateTimer(metricName);
     }
 
 
     @Override
     public synchronized Timer getOrCreatePhasesServiceTimer() {
-        return ActivityMetrics.timer(def, "phases" + SERVICE_TIME);
+        return getOrCreateTimer("phases" + SERVICE_TIME);
     }
     @Override
     public synchronized Timer getPhasesResponseTimerOrNull() {
         if (activity.getPhaseLimiter()==null) {
             return null;
         }
-        return ActivityMetrics.timer(def,"phases" + RESPONSE_TIME);
+        return getOrCreateTimer("phases" + RESPONSE_TIME);
+    }
+
+    @Override
+    public synchronized Timer getOrCreateTimer(String name) {
+        return ActivityMetrics.timer(def, name, threadLocal);
     }
 
     @Override
@@ -15,7 +15,8 @@ public interface OpTracker<D> extends OpEvents<D> {
 
     void setCycleOpFunction(LongFunction<D> newOpFunction);
 
-    // By making the op tracker the factory for ops, we allow it to hook their event streams
+    // By making the op tracker the factory for ops, we allow it to hook their event streams.
+    // This blocks while the maximum number of ops are pending.
     TrackedOp<D> newOp(long cycle, OpEvents<D> strideTracker);
 
     boolean awaitCompletion(long timeout);
@@ -7,24 +7,43 @@ import io.engineblock.activityapi.core.ActivityDefObserver;
 import io.engineblock.activityapi.core.ops.fluent.opfacets.*;
 import io.engineblock.activityimpl.ActivityDef;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.LongFunction;
 
 /**
  * This tracker keeps track of the state of operations associated with it.
  *
+ * <p>The number of ops in flight is limited with permits. Each op which is
+ * created by {@link #newOp(long, OpEvents)} holds a permit until it succeeds,
+ * fails, or is skipped. When all permits are taken, newOp parks the calling
+ * thread until a completion releases one. Completions only take a permit back
+ * and unpark the waiting thread, if there is one, so they do not contend with
+ * the submitting thread on a monitor.</p>
+ *
+ * <p>Only the motor thread which owns this tracker may wait on it, either for
+ * a permit or for completion.</p>
+ *
  * @param <D> The payload data type of the associated Op, based on OpImpl
  */
 public class OpTrackerImpl<D> implements OpTracker<D>, ActivityDefObserver {
+    private final static Logger logger = LoggerFactory.getLogger(OpTrackerImpl.class);
+    private final static long MAX_PARK_NANOS = 10_000_000L;
+
     private final AtomicInteger pendingOps = new AtomicInteger(0);
     private final String label;
     private final long slot;
     private final Timer cycleServiceTimer;
     private final Timer cycleResponseTimer;
     private final Counter pendingOpsCounter;
+    private final Counter blockedCounter;
 
-    private int maxPendingOps =1;
+    private volatile int maxPendingOps =1;
+    private volatile Thread waiter;
     private LongFunction<D> cycleOpFunction;
 
 
@@ -33,75 +52,103 @@ public class OpTrackerImpl<D> implements OpTracker<D>, ActivityDefObserver {
         this.label = "tracker-" + slot + "_" + activity.getAlias();
 
         this.pendingOpsCounter = activity.getInstrumentation().getOrCreatePendingOpCounter();
+        this.blockedCounter = activity.getInstrumentation().getOrCreateOpTrackerBlockedCounter();
         this.cycleServiceTimer = activity.getInstrumentation().getOrCreateCyclesServiceTimer();
         this.cycleResponseTimer = activity.getInstrumentation().getCyclesResponseTimerOrNull();
     }
 
     // for testing
     public OpTrackerImpl(String name, int slot, Timer cycleServiceTimer, Timer cycleResponseTimer, Counter pendingOpsCounter) {
+        this(name, slot, cycleServiceTimer, cycleResponseTimer, pendingOpsCounter, new Counter());
+    }
+
+    // for testing
+    public OpTrackerImpl(String name, int slot, Timer cycleServiceTimer, Timer cycleResponseTimer, Counter pendingOpsCounter, Counter blockedCounter) {
         this.label = name;
         this.slot = slot;
         this.cycleResponseTimer = cycleResponseTimer;
         this.cycleServiceTimer = cycleServiceTimer;
         this.pendingOpsCounter = pendingOpsCounter;
+        this.blockedCounter = blockedCounter;
     }
 
     @Override
     public void onOpStarted(StartedOp<D> op) {
-        pendingOps.incrementAndGet();
-        pendingOpsCounter.inc();
     }
 
     @Override
     public void onOpSuccess(SucceededOp<D> op) {
-        pendingOpsCounter.dec();
-        int pending = this.pendingOps.decrementAndGet();
-
         cycleServiceTimer.update(op.getServiceTimeNanos(), TimeUnit.NANOSECONDS);
         if (cycleResponseTimer !=null) { cycleResponseTimer.update(op.getResponseTimeNanos(), TimeUnit.NANOSECONDS); }
-
-        if (pending< maxPendingOps) {
-            synchronized (this) {
-                notify();
-            }
-        }
+        releasePermit();
     }
 
     @Override
     public void onOpSkipped(SkippedOp<D> op) {
-        pendingOpsCounter.dec();
-        int pending = this.pendingOps.decrementAndGet();
-
-        if (pending< maxPendingOps) {
-            synchronized (this) {
-                notify();
-            }
-        }
-
+        releasePermit();
     }
 
-
-
     @Override
     public void onOpFailure(FailedOp<D> op) {
-        pendingOpsCounter.dec();
-        int pending = this.pendingOps.decrementAndGet();
-
         cycleServiceTimer.update(op.getServiceTimeNanos(), TimeUnit.NANOSECONDS);
         if (cycleResponseTimer !=null) { cycleResponseTimer.update(op.getResponseTimeNanos(), TimeUnit.NANOSECONDS); }
+        releasePermit();
+    }
+
+    /**
+     * Take a permit for another op in flight if one is available, without waiting.
+     * @return true, if a permit was taken
+     */
+    public boolean tryAcquirePermit() {
+        while (true) {
+            int pending = pendingOps.get();
+            if (pending >= maxPendingOps) {
+                return false;
+            }
+            if (pendingOps.compareAndSet(pending, pending + 1)) {
+                pendingOpsCounter.inc();
+                return true;
+            }
+        }
+    }
 
-        if (pending< maxPendingOps) {
-            synchronized (this) {
-                notify();
+    /**
+     * Take a permit for another op in flight, parking the calling thread until one
+     * is available. Each time the caller has to wait, the blocked counter is incremented.
+     */
+    public void acquirePermit() {
+        if (tryAcquirePermit()) {
+            return;
+        }
+        blockedCounter.inc();
+        if (logger.isTraceEnabled()) {
+            logger.trace("Blocking for enqueue with (" + getPendingOps() + "/" + getMaxPendingOps() + ") queued ops");
+        }
+        waiter = Thread.currentThread();
+        try {
+            while (!tryAcquirePermit()) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
             }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    private void releasePermit() {
+        pendingOpsCounter.dec();
+        pendingOps.decrementAndGet();
+        Thread waiting = this.waiter;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
         }
     }
 
     @Override
     public void setMaxPendingOps(int maxPendingOps) {
         this.maxPendingOps =maxPendingOps;
-        synchronized (this) {
-            notifyAll();
+        Thread waiting = this.waiter;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
         }
     }
 
@@ -120,10 +167,22 @@ public class OpTrackerImpl<D> implements OpTracker<D>, ActivityDefObserver {
         this.cycleOpFunction = newOpFunction;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This waits for a permit for the new op first, so it blocks while the
+     * maximum number of ops are in flight.</p>
+     */
     @Override
     public TrackedOp<D> newOp(long cycle, OpEvents<D> strideTracker) {
+        acquirePermit();
         D opstate = cycleOpFunction.apply(cycle);
-        OpImpl<D> op = new EventedOpImpl<>(this,strideTracker);
+        OpImpl<D> op;
+        if (strideTracker instanceof OpPool) {
+            op = ((OpPool<D>) strideTracker).takeOp(this);
+        } else {
+            op = new EventedOpImpl<>(this,strideTracker);
+        }
         op.setCycle(cycle);
         op.setData(opstate);
         return op;
@@ -134,14 +193,16 @@ public class OpTrackerImpl<D> implements OpTracker<D>, ActivityDefObserver {
     }
 
     @Override
-    public synchronized boolean awaitCompletion(long timeout) {
+    public boolean awaitCompletion(long timeout) {
         long endAt = System.currentTimeMillis() + timeout;
-        while (getPendingOps() > 0 && System.currentTimeMillis() < endAt) {
-            try {
+        waiter = Thread.currentThread();
+        try {
+            while (getPendingOps() > 0 && System.currentTimeMillis() < endAt) {
                 long waitfor = Math.max(0, endAt - System.currentTimeMillis());
-                wait(waitfor);
-            } catch (InterruptedException ignored) {
+                LockSupport.parkNanos(this, Math.min(TimeUnit.MILLISECONDS.toNanos(waitfor), MAX_PARK_NANOS));
             }
+        } finally {
+            waiter = null;
         }
         return getPendingOps() == 0;
     }
@@ -153,7 +214,7 @@ public class OpTrackerImpl<D> implements OpTracker<D>, ActivityDefObserver {
 
     @Override
     public void onActivityDefUpdate(ActivityDef activityDef) {
-        this.maxPendingOps=getMaxPendingOpsForThisThread(activityDef);
+        setMaxPendingOps(getMaxPendingOpsForThisThread(activityDef));
     }
 
     private int getMaxPendingOpsForThisThread(ActivityDef def) {
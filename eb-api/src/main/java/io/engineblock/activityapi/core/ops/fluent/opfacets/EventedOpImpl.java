@@ -32,6 +32,14 @@ public class EventedOpImpl<D> extends OpImpl<D> {
         this.strideTracker = new NullTracker<>();
     }
 
+    /**
+     * @param opTracker An op tracker
+     * @return true, if the events for this op are sent to the given op tracker
+     */
+    public boolean isTrackedBy(OpEvents<D> opTracker) {
+        return this.opTracker == opTracker;
+    }
+
     @Override
     public StartedOp<D> start() {
         super.start();
@@ -56,6 +64,14 @@ public class EventedOpImpl<D> extends OpImpl<D> {
         return this;
     }
 
+    @Override
+    public SkippedOp<D> skip(int reason) {
+        super.skip(reason);
+        opTracker.onOpSkipped(this);
+        strideTracker.onOpSkipped(this);
+        return this;
+    }
+
     private static class NullTracker<D> implements OpEvents<D> {
         @Override
         public void onOpStarted(StartedOp<D> op) {
@@ -25,7 +25,9 @@ public class OpImpl<D> implements OpFacets<D> {
     private long cycle;
     private int cycleResult;
 
-    private long waitTime;
+    private final static long UNSCHEDULED = Long.MIN_VALUE;
+
+    private long scheduledAtNanos = UNSCHEDULED;
     private long endedAtNanos;
     private long startedAtNanos;
 
@@ -37,6 +39,20 @@ public class OpImpl<D> implements OpFacets<D> {
     public OpImpl() {
     }
 
+    /**
+     * Clear all of the state of this op, so that it can be reused for another cycle.
+     */
+    public void reset() {
+        this.data = null;
+        this.cycle = 0L;
+        this.cycleResult = 0;
+        this.scheduledAtNanos = UNSCHEDULED;
+        this.startedAtNanos = 0L;
+        this.endedAtNanos = Long.MIN_VALUE;
+        this.tries = 0;
+        this.skipreason = 0;
+    }
+
     @Override
     public StartedOp<D> start() {
         this.endedAtNanos = Long.MIN_VALUE;
@@ -49,12 +65,21 @@ public class OpImpl<D> implements OpFacets<D> {
     @Override
     public OpImpl<D> setWaitTime(long waitTime) {
         this.endedAtNanos = Long.MIN_VALUE;
-        this.waitTime = waitTime;
         this.startedAtNanos = System.nanoTime();
+        this.scheduledAtNanos = startedAtNanos - waitTime;
 //        usages++;
         return this;
     }
 
+    @Override
+    public OpImpl<D> setScheduledStart(long scheduledStartNanos) {
+        this.endedAtNanos = Long.MIN_VALUE;
+        this.startedAtNanos = System.nanoTime();
+        // Concurrent grants may take their slots on the schedule slightly out of order
+        this.scheduledAtNanos = Math.min(scheduledStartNanos, startedAtNanos);
+        return this;
+    }
+
     @Override
     public SucceededOp<D> succeed(int status) {
         // TODO: Enable a debug version of OpImpl which can assert invariants (succeed is only called once after start, ...)
@@ -119,9 +144,18 @@ public class OpImpl<D> implements OpFacets<D> {
         return System.nanoTime() - this.startedAtNanos;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the op was given a scheduled start time, this is measured from that time.
+     * Otherwise it is the same as the service time.</p>
+     */
     @Override
     public long getCurrentResponseTimeNanos() {
-        return waitTime + getCurrentServiceTimeNanos();
+        if (scheduledAtNanos == UNSCHEDULED) {
+            return getCurrentServiceTimeNanos();
+        }
+        return System.nanoTime() - this.scheduledAtNanos;
     }
 
     @Override
@@ -129,9 +163,19 @@ public class OpImpl<D> implements OpFacets<D> {
         return this.endedAtNanos - this.startedAtNanos;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the op was given a scheduled start time, this is measured from that time,
+     * so it includes any time spent waiting to be submitted or started. Otherwise it is
+     * the same as the service time.</p>
+     */
     @Override
     public long getResponseTimeNanos() {
-        return waitTime + getServiceTimeNanos();
+        if (scheduledAtNanos == UNSCHEDULED) {
+            return getServiceTimeNanos();
+        }
+        return this.endedAtNanos - this.scheduledAtNanos;
     }
 
     @Override
@@ -144,7 +188,7 @@ public class OpImpl<D> implements OpFacets<D> {
         return "Op{" +
                 "cycle=" + cycle +
                 ", result=" + cycleResult +
-                ", wait=" + waitTime +
+                ", scheduled=" + scheduledAtNanos +
                 ", started=" + startedAtNanos +
                 ", ended=" + endedAtNanos +
                 ", tries=" + tries +
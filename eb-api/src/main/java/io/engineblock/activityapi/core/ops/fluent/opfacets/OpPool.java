@@ -0,0 +1,41 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.core.ops.fluent.opfacets;
+
+/**
+ * An op pool provides reusable ops to an op tracker. When the op events
+ * for a new op are sent to an op pool, the op tracker takes the op from
+ * that pool instead of allocating a new one.
+ *
+ * <p>Ops which are taken from a pool belong to the pool again once they are
+ * completed. An action must not use an op after it has called succeed or
+ * fail on it.</p>
+ *
+ * @param <D> The payload data type of the ops
+ */
+public interface OpPool<D> {
+
+    /**
+     * Take an op from this pool. The op is reset, and its events will be
+     * sent to the given op tracker and then to this pool.
+     *
+     * @param opTracker The op tracker which will receive events for the op
+     * @return A reset op
+     */
+    EventedOpImpl<D> takeOp(OpEvents<D> opTracker);
+}
@@ -43,6 +43,11 @@ public interface StartedOp<D> extends Payload<D>, CycleReadable {
      */
     StartedOp<D> retry();
 
+    /**
+     * @return The number of times this op has been tried so far, including the current try
+     */
+    int getTries();
+
     /**
      * Mark this op as successful as of the time it is called, and record the resulting status code.
      * @param status The status for this op, determined by individual activity types
@@ -73,8 +78,8 @@ public interface StartedOp<D> extends Payload<D>, CycleReadable {
     public long getCurrentServiceTimeNanos();
 
     /**
-     * Return the nanos that have elapsed since this op was started at the time of this call,
-     * plus any prior waittime.
+     * Return the nanos that have elapsed since this op was scheduled to start at the time of
+     * this call, or since it was started if it was not scheduled.
      * @return nanosecond response time duration
      */
     public long getCurrentResponseTimeNanos();
@@ -55,4 +55,13 @@ public interface TrackedOp<D> extends Payload<D>, CycleMutable {
      */
     TrackedOp<D> setWaitTime(long cycleDelay);
 
+    /**
+     * Indicate to this op the time at which it was scheduled to start, in {@link System#nanoTime()}
+     * terms. The response time of the op is measured from this time, so that any delay before the op
+     * actually started, including waiting to be submitted, is included in it.
+     * @param scheduledStartNanos The intended start time of the op, usually from a rate limiter schedule
+     * @return a TrackedOp for method chaining
+     */
+    TrackedOp<D> setScheduledStart(long scheduledStartNanos);
+
 }
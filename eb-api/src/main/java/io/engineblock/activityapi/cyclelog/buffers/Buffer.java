@@ -39,6 +39,14 @@ public abstract class Buffer<T extends Comparable> {
     protected void onFull() {
     }
 
+    /**
+     * Empty this buffer so that it can be filled again, keeping its capacity.
+     */
+    protected void clear() {
+        data.clear();
+        position=0;
+    }
+
     protected abstract int compare(T one, T other);
 
     public int remaining() {
@@ -18,7 +18,9 @@
 package io.engineblock.activityapi.cyclelog.buffers.results_rle;
 
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
 import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
 import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CanFilterResultValue;
 import io.engineblock.activityapi.output.Output;
 import org.slf4j.Logger;
@@ -51,7 +53,7 @@ public class CycleResultsRLEBufferTarget implements Output,CanFilterResultValue
     private boolean flushed = false;
     private long count=0L;
     private long min=Long.MAX_VALUE;
-    private Predicate<ResultReadable> filter;
+    private ResultValuePredicate filter;
 
     /**
      * Create a buffer with the provided ByteBuffer.
@@ -110,8 +112,7 @@ public class CycleResultsRLEBufferTarget implements Output,CanFilterResultValue
      */
     @Override
     public boolean onCycleResult(long cycle, int result) {
-        ResultReadableWrapper resultReadableWrapper = new ResultReadableWrapper(result);
-        if (filter!=null && !filter.test(resultReadableWrapper)) {
+        if (filter!=null && !filter.testResult(result)) {
             return true;
         }
         if (cycle != lastCycle + 1 || lastResult != result) {
@@ -127,6 +128,48 @@ public class CycleResultsRLEBufferTarget implements Output,CanFilterResultValue
         return true;
     }
 
+    /**
+     * Record a span of cycles which all have the same result. The filter, if any, is
+     * applied once to the whole span.
+     *
+     * @param start The first cycle of the span
+     * @param end The cycle after the last cycle of the span
+     * @param result the result ordinal
+     */
+    public void onCycleResultSpan(long start, long end, int result) {
+        if (start >= end || (filter!=null && !filter.testResult(result))) {
+            return;
+        }
+        if (start != lastCycle + 1 || lastResult != result) {
+            if (lastCycle != Long.MIN_VALUE) {
+                checkpoint(lastCycle + 1 - runlength, lastCycle + 1, lastResult);
+            }
+        }
+
+        lastCycle = end - 1;
+        lastResult = result;
+        runlength += end - start;
+        flushed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Spans of cycles with the same result are recorded as a whole, rather than
+     * one cycle at a time.</p>
+     */
+    @Override
+    public void onCycleResultSegment(CycleResultsSegment segment) {
+        if (segment instanceof CycleSpanResults) {
+            CycleSpanResults span = (CycleSpanResults) segment;
+            onCycleResultSpan(span.getMinCycle(), span.getMinCycle() + span.getCount(), span.getResult());
+        } else {
+            for (CycleResult cycleResult : segment) {
+                onCycleResult(cycleResult.getCycle(), cycleResult.getResult());
+            }
+        }
+    }
+
     private void checkpoint(long istart, long iend, long lastResult) {
         if (buf.remaining()==0) {
             buf=resize(buf);
@@ -146,14 +189,6 @@ public class CycleResultsRLEBufferTarget implements Output,CanFilterResultValue
         }
     }
 
-    private static class ResultReadableWrapper implements ResultReadable {
-        private int result;
-        ResultReadableWrapper(int result) {
-            this.result = result;
-        }
-        public int getResult() { return result; }
-    }
-
     private ByteBuffer resize(ByteBuffer buf) {
         ByteBuffer doubled=ByteBuffer.allocate(buf.capacity()*2);
         buf.flip();
@@ -170,6 +205,26 @@ public class CycleResultsRLEBufferTarget implements Output,CanFilterResultValue
         return buf.capacity() / BYTES;
     }
 
+    /**
+     * @return the number of complete RLE records in the buffer, not counting a
+     * run which is still in progress
+     */
+    public int getRecordCount() {
+        return buf.position() / BYTES;
+    }
+
+    /**
+     * Discard all buffered data, so that this buffer can be reused for another extent.
+     * Any buffer previously returned by {@link #toByteBuffer()} must not be used after this.
+     */
+    public void reset() {
+        buf.clear();
+        lastCycle = Long.MIN_VALUE;
+        lastResult = Integer.MIN_VALUE;
+        runlength = 0L;
+        flushed = false;
+    }
+
     /**
      * Flushes any partial data that was submitted (an incomplete run of results,
      * for example), to the internal ByteBuffer, and marks flushed status.
@@ -195,6 +250,6 @@ public class CycleResultsRLEBufferTarget implements Output,CanFilterResultValue
 
     @Override
     public void setFilter(Predicate<ResultReadable> filter) {
-        this.filter = filter;
+        this.filter = filter == null ? null : ResultValuePredicate.of(filter);
     }
 }
@@ -0,0 +1,65 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.filters;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+
+import java.util.function.Predicate;
+
+/**
+ * A result filter which is evaluated once for each result code from 0 to
+ * {@link #SIZE}-1, the range of results which can be stored in a cycle log,
+ * and then answered from a table. Other result codes are passed to the
+ * original filter.
+ */
+public class ResultValueLookup implements ResultValuePredicate {
+
+    public final static int SIZE = 128;
+
+    private final boolean[] table = new boolean[SIZE];
+    private final Predicate<ResultReadable> predicate;
+
+    public ResultValueLookup(Predicate<ResultReadable> predicate) {
+        this.predicate = predicate;
+        for (int result = 0; result < SIZE; result++) {
+            int value = result;
+            table[result] = predicate.test(() -> value);
+        }
+    }
+
+    @Override
+    public boolean testResult(int result) {
+        if (result >= 0 && result < SIZE) {
+            return table[result];
+        }
+        return predicate.test(() -> result);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ResultValueLookup[");
+        String delim = "";
+        for (int result = 0; result < SIZE; result++) {
+            if (table[result]) {
+                sb.append(delim).append(result);
+                delim = ",";
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
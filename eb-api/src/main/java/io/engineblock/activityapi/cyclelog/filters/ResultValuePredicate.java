@@ -0,0 +1,52 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.filters;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+
+import java.util.function.Predicate;
+
+/**
+ * A result filter which depends only on the result code. It can be evaluated
+ * once for a whole span of cycles which share a result, rather than once for
+ * each cycle, and without creating a {@link ResultReadable} to test.
+ */
+public interface ResultValuePredicate extends Predicate<ResultReadable> {
+
+    boolean testResult(int result);
+
+    @Override
+    default boolean test(ResultReadable resultReadable) {
+        return testResult(resultReadable.getResult());
+    }
+
+    /**
+     * Adapt any result filter to a result value predicate. Since a {@link ResultReadable}
+     * only provides a result code, any result filter can be evaluated ahead of time
+     * for each result code, as in {@link ResultValueLookup}.
+     *
+     * @param predicate A result filter
+     * @return The predicate, if it already is a result value predicate, or a lookup table for it
+     */
+    static ResultValuePredicate of(Predicate<ResultReadable> predicate) {
+        if (predicate instanceof ResultValuePredicate) {
+            return (ResultValuePredicate) predicate;
+        }
+        return new ResultValueLookup(predicate);
+    }
+}
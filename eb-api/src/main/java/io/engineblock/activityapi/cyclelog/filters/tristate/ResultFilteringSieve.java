@@ -18,23 +18,57 @@
 package io.engineblock.activityapi.cyclelog.filters.tristate;
 
 import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
 
+/**
+ * A sieve applies a sequence of tri-state filter phases to a result, and
+ * takes the policy of the first phase which does not ignore it, or the default
+ * policy if every phase ignores it.
+ *
+ * <p>Since the phases only see the result code, the sieve is evaluated once for
+ * each result code from 0 to {@link #LOOKUP_SIZE}-1 when it is built, and the
+ * policies are then taken from a lookup table. The predicates which are made from
+ * a sieve are {@link ResultValuePredicate}s, so they can be applied once to a whole
+ * span of cycles with the same result.</p>
+ */
 public class ResultFilteringSieve implements TristateFilter<ResultReadable> {
 
+    public final static int LOOKUP_SIZE = 128;
+
     private Policy defaultPolicy;
     private List<TristateFilter<ResultReadable>> phases;
+    private final Policy[] lookup = new Policy[LOOKUP_SIZE];
 
     private ResultFilteringSieve(Policy defaultPolicy, List<TristateFilter<ResultReadable>> phases) {
         this.defaultPolicy = defaultPolicy;
         this.phases = phases;
+        for (int result = 0; result < LOOKUP_SIZE; result++) {
+            lookup[result] = evaluate(result);
+        }
     }
 
     @Override
     public Policy apply(ResultReadable resultReadable) {
+        return getPolicy(resultReadable.getResult());
+    }
+
+    /**
+     * @param result A result code
+     * @return The policy for the result code
+     */
+    public Policy getPolicy(int result) {
+        if (result >= 0 && result < LOOKUP_SIZE) {
+            return lookup[result];
+        }
+        return evaluate(result);
+    }
+
+    private Policy evaluate(int result) {
+        ResultReadable resultReadable = () -> result;
         Policy policy;
         for (TristateFilter<ResultReadable> phase : phases) {
             policy = phase.apply(resultReadable);
@@ -56,7 +90,7 @@ public class ResultFilteringSieve implements TristateFilter<ResultReadable> {
     }
 
 
-    private class InclusiveFilterPredicate implements Predicate<ResultReadable> {
+    private class InclusiveFilterPredicate implements ResultValuePredicate {
         private ResultFilteringSieve resultFilteringSieve;
 
         public InclusiveFilterPredicate(ResultFilteringSieve resultFilteringSieve) {
@@ -64,8 +98,8 @@ public class ResultFilteringSieve implements TristateFilter<ResultReadable> {
         }
 
         @Override
-        public boolean test(ResultReadable cycleResult) {
-            return resultFilteringSieve.apply(cycleResult)!=Policy.Discard;
+        public boolean testResult(int result) {
+            return resultFilteringSieve.getPolicy(result)!=Policy.Discard;
         }
     }
 
@@ -73,7 +107,7 @@ public class ResultFilteringSieve implements TristateFilter<ResultReadable> {
         return new InclusiveFilterPredicate(this);
     }
 
-    private static class ExclusiveFilterPredicate implements Predicate<ResultReadable> {
+    private static class ExclusiveFilterPredicate implements ResultValuePredicate {
 
         private final ResultFilteringSieve sieve;
 
@@ -82,8 +116,8 @@ public class ResultFilteringSieve implements TristateFilter<ResultReadable> {
         }
 
         @Override
-        public boolean test(ResultReadable cycleResult) {
-            return sieve.apply(cycleResult)== Policy.Keep;
+        public boolean testResult(int result) {
+            return sieve.getPolicy(result)== Policy.Keep;
         }
     }
 
@@ -24,6 +24,8 @@ import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
 import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferReadable;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogFormat;
 import io.engineblock.activityapi.input.Input;
 import io.engineblock.util.SimpleConfig;
 
@@ -34,20 +36,33 @@ import java.io.File;
 import java.io.RandomAccessFile;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.function.Predicate;
 
+/**
+ * An {@link Input} which reads the cycles of a cycle log. Both v1 and v2 cycle
+ * logs can be read, and the format is detected from the file. With a v2 cycle log,
+ * blocks which contain none of the result codes that pass the filter are skipped.
+ */
 public class CycleLogInput implements Input, AutoCloseable, Iterable<CycleResultsSegment>, CanFilterResultValue {
     private final static Logger logger = LoggerFactory.getLogger(CycleLogInput.class);
-    private final Iterator<CycleResultsSegment> cycleResultSegmentIterator;
+    private Iterator<CycleResultsSegment> cycleResultSegmentIterator;
     private RandomAccessFile raf;
     private MappedByteBuffer mbb;
+    private CycleLogV2Reader v2reader;
     private Iterator<CycleResult> segmentIter;
     private Predicate<ResultReadable> filter;
+    private ResultValuePredicate resultFilter;
+    private boolean segmentFiltered = false;
 
     public CycleLogInput(Activity activity) {
         SimpleConfig conf = new SimpleConfig(activity, "input");
-        mbb = initMappedBuffer(conf.getString("file").orElse(activity.getAlias()) + ".cyclelog");
+        String filename = conf.getString("file").orElse(activity.getAlias()) + ".cyclelog";
+        if (isV2(filename)) {
+            return;
+        }
+        mbb = initMappedBuffer(filename);
         cycleResultSegmentIterator = iterator();
         segmentIter = cycleResultSegmentIterator.next().iterator();
     }
@@ -65,14 +80,46 @@ public class CycleLogInput implements Input, AutoCloseable, Iterable<CycleResult
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        if (isV2(cycleFile.getPath())) {
+            return;
+        }
         mbb = initMappedBuffer(cycleFile.getPath());
         cycleResultSegmentIterator = new CycleResultsRLEBufferReadable(mbb).iterator();
         segmentIter = cycleResultSegmentIterator.next().iterator();
     }
 
+    private boolean isV2(String filename) {
+        File file = new File(filename);
+        if (!file.exists()) {
+            throw new RuntimeException("file path '" + filename + "' does not exist!");
+        }
+        if (CycleLogFormat.of(file) != CycleLogFormat.v2) {
+            return false;
+        }
+        v2reader = new CycleLogV2Reader(file);
+        cycleResultSegmentIterator = iterator();
+        segmentIter = Collections.emptyIterator();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>With a v2 cycle log, this restarts reading from the beginning, so that
+     * blocks can be skipped according to the filter. It should be called before
+     * any input segments are taken. Setting the same filter again has no effect.</p>
+     */
     @Override
-    public void setFilter(Predicate<ResultReadable> filter) {
+    public synchronized void setFilter(Predicate<ResultReadable> filter) {
+        if (filter == this.filter) {
+            return;
+        }
         this.filter = filter;
+        this.resultFilter = filter == null ? null : ResultValuePredicate.of(filter);
+        if (v2reader != null) {
+            cycleResultSegmentIterator = iterator();
+            segmentIter = Collections.emptyIterator();
+        }
     }
 
     @Override
@@ -83,11 +130,18 @@ public class CycleLogInput implements Input, AutoCloseable, Iterable<CycleResult
         while (csb.remaining() > 0) {
 
             while (!segmentIter.hasNext() && cycleResultSegmentIterator.hasNext()) {
-                segmentIter = cycleResultSegmentIterator.next().iterator();
+                CycleResultsSegment segment = cycleResultSegmentIterator.next();
+                // spans with one result are filtered as a whole
+                segmentFiltered = segment instanceof ResultReadable;
+                if (resultFilter != null && segmentFiltered
+                        && !resultFilter.testResult(((ResultReadable) segment).getResult())) {
+                    continue;
+                }
+                segmentIter = segment.iterator();
             }
             if (segmentIter.hasNext()) {
                 CycleResult cycleResult = segmentIter.next();
-                if (filter==null || filter.test(cycleResult)) {
+                if (resultFilter==null || segmentFiltered || resultFilter.testResult(cycleResult.getResult())) {
                     csb.append(cycleResult.getCycle());
                 }
             } else {
@@ -146,6 +200,9 @@ public class CycleLogInput implements Input, AutoCloseable, Iterable<CycleResult
 
     @Override
     public Iterator<CycleResultsSegment> iterator() {
+        if (v2reader != null) {
+            return v2reader.iterator(Long.MIN_VALUE, Long.MAX_VALUE, filter);
+        }
         CycleResultsRLEBufferReadable cycleResultsSegments = new CycleResultsRLEBufferReadable(mbb.duplicate());
         if (cycleResultsSegments instanceof CanFilterResultValue) {
             ((CanFilterResultValue)cycleResultsSegments).setFilter(filter);
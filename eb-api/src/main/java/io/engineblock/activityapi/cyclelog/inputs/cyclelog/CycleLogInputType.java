@@ -21,6 +21,7 @@ import io.engineblock.activityapi.core.Activity;
 import io.engineblock.activityapi.input.Input;
 import io.engineblock.activityapi.input.InputDispenser;
 import io.engineblock.activityapi.input.InputType;
+import io.engineblock.util.SimpleConfig;
 import io.virtdata.annotations.Service;
 
 @Service(InputType.class)
@@ -35,6 +36,17 @@ public class CycleLogInputType implements InputType {
         return new Dispenser(activity);
     }
 
+    public enum Mode {
+        /**
+         * Threads claim chunks of the cycle log, and replay them concurrently
+         */
+        parallel,
+        /**
+         * Threads take turns reading from one iterator over the cycle log
+         */
+        serial
+    }
+
     public static class Dispenser implements InputDispenser {
 
         private final Activity activity;
@@ -42,7 +54,15 @@ public class CycleLogInputType implements InputType {
 
         public Dispenser(Activity activity) {
             this.activity = activity;
-            this.input = new CycleLogInput(activity);
+            Mode mode = new SimpleConfig(activity, "input").getString("mode").map(Mode::valueOf).orElse(Mode.serial);
+            switch (mode) {
+                case parallel:
+                    this.input = new CycleLogReplayInput(activity);
+                    break;
+                case serial:
+                default:
+                    this.input = new CycleLogInput(activity);
+            }
         }
 
         @Override
@@ -0,0 +1,319 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.inputs.cyclelog;
+
+import io.engineblock.activityapi.core.Activity;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferReadable;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogFormat;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogV2;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogV2Block;
+import io.engineblock.activityapi.input.Input;
+import io.engineblock.activityimpl.input.ProgressCapable;
+import io.engineblock.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>An {@link Input} which replays the cycles of a cycle log from many threads
+ * at once, without a shared lock.</p>
+ *
+ * <H2>Design Notes</H2>
+ * <p>The cycle log is divided into chunks of contiguous spans. For a v1 cycle log,
+ * a chunk is a fixed number of RLE tuples in the mapped file. For a v2 cycle log, a
+ * chunk is a block. Each thread claims a whole chunk with a single atomic increment,
+ * and then takes its input segments from that chunk until it is used up, so threads
+ * only contend with each other once per chunk.</p>
+ *
+ * <p>The result filter is applied to each span as a chunk is claimed, by looking up
+ * its result code in a bitmap of the result codes which pass the filter. The cycles
+ * of the spans which pass are copied into a buffer of primitive cycle numbers for
+ * each segment, so no objects are created for each cycle. Chunks of a v2 cycle log
+ * which contain none of the wanted result codes are skipped without being read.</p>
+ *
+ * <p>Within a thread, cycles are returned in the order of the cycle log. Across
+ * threads, chunks are claimed in order, but are consumed concurrently.</p>
+ */
+public class CycleLogReplayInput implements Input, CanFilterResultValue, ProgressCapable {
+    private final static Logger logger = LoggerFactory.getLogger(CycleLogReplayInput.class);
+    public final static int DEFAULT_CHUNK_SPANS = 4096;
+
+    private final File file;
+    private final ByteBuffer v1buf;
+    private final CycleLogV2Reader v2reader;
+    private final List<CycleLogV2Block> v2blocks;
+    private final int chunkSpans;
+    private final int chunkCount;
+    private final AtomicInteger nextChunk = new AtomicInteger(0);
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+
+    private volatile long[] wanted = CycleLogV2.resultsMatching(null);
+    private Predicate<ResultReadable> filter;
+
+    public CycleLogReplayInput(Activity activity) {
+        this(new SimpleConfig(activity, "input"), activity.getAlias());
+    }
+
+    private CycleLogReplayInput(SimpleConfig conf, String alias) {
+        this(fileFor(conf.getString("file").orElse(alias) + ".cyclelog"),
+                conf.getInteger("chunkSize").orElse(DEFAULT_CHUNK_SPANS));
+    }
+
+    public CycleLogReplayInput(File file, int chunkSpans) {
+        if (chunkSpans < 1) {
+            throw new RuntimeException("The replay chunk size must be at least 1 span, but it was " + chunkSpans);
+        }
+        this.file = file;
+        if (CycleLogFormat.of(file) == CycleLogFormat.v2) {
+            this.v1buf = null;
+            this.v2reader = new CycleLogV2Reader(file);
+            this.v2blocks = v2reader.getBlocks();
+            this.chunkSpans = 0;
+            this.chunkCount = v2blocks.size();
+        } else {
+            this.v1buf = map(file);
+            this.v2reader = null;
+            this.v2blocks = null;
+            this.chunkSpans = chunkSpans;
+            long tuples = v1buf.remaining() / CycleResultsRLEBufferReadable.BYTES;
+            this.chunkCount = (int) ((tuples + chunkSpans - 1) / chunkSpans);
+        }
+        logger.debug("replaying " + file + " in " + chunkCount + " chunks");
+    }
+
+    private static File fileFor(String filename) {
+        File file = new File(filename);
+        if (!file.exists()) {
+            throw new RuntimeException("file path '" + filename + "' does not exist!");
+        }
+        return file;
+    }
+
+    private static ByteBuffer map(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to map cycle log " + file + ":" + e, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The filter should be set before any input segments are taken.</p>
+     */
+    @Override
+    public synchronized void setFilter(Predicate<ResultReadable> filter) {
+        if (filter == this.filter) {
+            return;
+        }
+        this.filter = filter;
+        this.wanted = CycleLogV2.resultsMatching(filter);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Each calling thread gets the same segment instance back on every call, refilled
+     * with the next cycles. Callers must be done with a segment before they ask for the
+     * next one.</p>
+     */
+    @Override
+    public CycleSegment getInputSegment(int segmentLength) {
+        return cursors.get().fill(segmentLength);
+    }
+
+    @Override
+    public double getProgress() {
+        return Math.min(nextChunk.get(), chunkCount);
+    }
+
+    @Override
+    public double getTotal() {
+        return chunkCount;
+    }
+
+    @Override
+    public String getProgressDetails() {
+        return "chunks claimed=" + Math.min(nextChunk.get(), chunkCount) + "/" + chunkCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CycleLogReplayInput{" +
+                "file=" + file +
+                ", format=" + (v2reader != null ? CycleLogFormat.v2 : CycleLogFormat.v1) +
+                ", " + getProgressDetails() +
+                '}';
+    }
+
+    /**
+     * The chunk which a thread has claimed, as the spans which passed the filter.
+     */
+    private class Cursor {
+        private final ByteBuffer buf = v1buf != null ? v1buf.duplicate() : null;
+        private final BufferSegment segment = new BufferSegment();
+        private long[] starts = new long[0];
+        private long[] ends = new long[0];
+        private int spans = 0;
+        private int span = 0;
+        private long next = 0L;
+        private long[] cycles = new long[0];
+
+        private CycleSegment fill(int segmentLength) {
+            if (cycles.length < segmentLength) {
+                cycles = new long[segmentLength];
+            }
+            int filled = 0;
+            while (filled < segmentLength) {
+                if (span == spans || next == ends[span]) {
+                    if (span < spans) {
+                        span++;
+                    }
+                    if (span == spans && !claimChunk()) {
+                        break;
+                    }
+                    next = starts[span];
+                    continue;
+                }
+                long take = Math.min(segmentLength - filled, ends[span] - next);
+                for (long i = 0; i < take; i++) {
+                    cycles[filled++] = next++;
+                }
+            }
+            if (filled == 0) {
+                return null;
+            }
+            return segment.reset(cycles, filled);
+        }
+
+        /**
+         * Claim the next chunk which has any spans that pass the filter.
+         * @return false, if there are no more chunks
+         */
+        private boolean claimChunk() {
+            long[] wanted = CycleLogReplayInput.this.wanted;
+            while (true) {
+                int chunk = nextChunk.getAndIncrement();
+                if (chunk >= chunkCount) {
+                    spans = 0;
+                    span = 0;
+                    return false;
+                }
+                if (v2reader != null) {
+                    loadBlock(v2blocks.get(chunk), wanted);
+                } else {
+                    loadTuples(chunk, wanted);
+                }
+                if (spans > 0) {
+                    span = 0;
+                    return true;
+                }
+            }
+        }
+
+        private void loadTuples(int chunk, long[] wanted) {
+            int first = chunk * chunkSpans;
+            int count = Math.min(chunkSpans, buf.limit() / CycleResultsRLEBufferReadable.BYTES - first);
+            ensureCapacity(count);
+            spans = 0;
+            int offset = first * CycleResultsRLEBufferReadable.BYTES;
+            for (int i = 0; i < count; i++) {
+                int result = buf.get(offset + Long.BYTES + Long.BYTES);
+                if (CycleLogV2.containsResult(wanted, result)) {
+                    long start = buf.getLong(offset);
+                    long end = buf.getLong(offset + Long.BYTES);
+                    if (start < end) {
+                        starts[spans] = start;
+                        ends[spans] = end;
+                        spans++;
+                    }
+                }
+                offset += CycleResultsRLEBufferReadable.BYTES;
+            }
+        }
+
+        private void loadBlock(CycleLogV2Block block, long[] wanted) {
+            spans = 0;
+            if (!block.containsAnyOf(wanted)) {
+                return;
+            }
+            List<CycleSpanResults> blockSpans = v2reader.readBlock(block);
+            ensureCapacity(blockSpans.size());
+            for (CycleSpanResults blockSpan : blockSpans) {
+                if (CycleLogV2.containsResult(wanted, blockSpan.getResult()) && blockSpan.getCount() > 0) {
+                    starts[spans] = blockSpan.getMinCycle();
+                    ends[spans] = blockSpan.getMinCycle() + blockSpan.getCount();
+                    spans++;
+                }
+            }
+        }
+
+        private void ensureCapacity(int count) {
+            if (starts.length < count) {
+                starts = new long[count];
+                ends = new long[count];
+            }
+        }
+    }
+
+    private static class BufferSegment implements CycleSegment {
+        private long[] values;
+        private int length;
+        private int offset;
+
+        private BufferSegment reset(long[] values, int length) {
+            this.values = values;
+            this.length = length;
+            this.offset = 0;
+            return this;
+        }
+
+        @Override
+        public long nextCycle() {
+            if (offset < length) {
+                return values[offset++];
+            }
+            return -100;
+        }
+
+        @Override
+        public long peekNextCycle() {
+            if (offset < length) {
+                return values[offset];
+            }
+            return -100;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return offset >= length;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.inputs.cyclelog;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogV2;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogV2Block;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads version 2 cycle logs, as described in {@link CycleLogV2}.
+ *
+ * <p>The block index is read when the reader is created. If the file has no
+ * footer, the blocks are found by scanning the file instead. Iterators can be
+ * limited to a range of cycles and to the result codes which pass a filter, in
+ * which case blocks which do not overlap the range or which contain none of the
+ * result codes are not read at all.</p>
+ *
+ * <p>The reader may be shared, but each iterator may only be used by one thread.</p>
+ */
+public class CycleLogV2Reader implements Iterable<CycleResultsSegment> {
+
+    private final ByteBuffer buf;
+    private final List<CycleLogV2Block> blocks;
+
+    public CycleLogV2Reader(File file) {
+        this(map(file));
+    }
+
+    public CycleLogV2Reader(ByteBuffer buf) {
+        this.buf = buf.duplicate();
+        if (buf.remaining() < CycleLogV2.HEADER_BYTES) {
+            throw new RuntimeException("Cycle log is too short for a v2 header: " + buf.remaining() + " bytes");
+        }
+        byte[] magic = new byte[CycleLogV2.MAGIC.length];
+        this.buf.duplicate().get(magic);
+        if (!Arrays.equals(magic, CycleLogV2.MAGIC)) {
+            throw new RuntimeException("Cycle log does not have the v2 header");
+        }
+        int version = this.buf.getInt(this.buf.position() + CycleLogV2.MAGIC.length);
+        if (version != CycleLogV2.VERSION) {
+            throw new RuntimeException("Unsupported cycle log version " + version);
+        }
+        List<CycleLogV2Block> index = readIndex();
+        this.blocks = Collections.unmodifiableList(index != null ? index : scanBlocks());
+    }
+
+    private static ByteBuffer map(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to map cycle log " + file + ":" + e, e);
+        }
+    }
+
+    private List<CycleLogV2Block> readIndex() {
+        int base = buf.position();
+        int limit = buf.limit();
+        if (limit - base < CycleLogV2.HEADER_BYTES + CycleLogV2.FOOTER_BYTES) {
+            return null;
+        }
+        byte[] magic = new byte[CycleLogV2.MAGIC.length];
+        ByteBuffer footer = buf.duplicate();
+        footer.position(limit - CycleLogV2.FOOTER_BYTES);
+        long indexOffset = footer.getLong();
+        footer.get(magic);
+        if (!Arrays.equals(magic, CycleLogV2.MAGIC)) {
+            return null;
+        }
+        ByteBuffer index = buf.duplicate();
+        index.position(base + (int) indexOffset);
+        if (index.get() != CycleLogV2.INDEX_MARK) {
+            throw new RuntimeException("Cycle log footer does not point at the block index");
+        }
+        int count = index.getInt();
+        List<CycleLogV2Block> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(CycleLogV2Block.readIndexEntry(index));
+        }
+        return entries;
+    }
+
+    private List<CycleLogV2Block> scanBlocks() {
+        int base = buf.position();
+        ByteBuffer scan = buf.duplicate();
+        scan.position(base + CycleLogV2.HEADER_BYTES);
+        List<CycleLogV2Block> entries = new ArrayList<>();
+        while (scan.remaining() >= CycleLogV2.BLOCK_HEADER_BYTES) {
+            long offset = scan.position() - base;
+            byte codec = scan.get();
+            if (codec != CycleLogV2.CODEC_NONE && codec != CycleLogV2.CODEC_DEFLATE) {
+                break;
+            }
+            int spans = scan.getInt();
+            long min = scan.getLong();
+            long max = scan.getLong();
+            long[] results = new long[CycleLogV2.RESULT_WORDS];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = scan.getLong();
+            }
+            scan.getInt();
+            int storedLength = scan.getInt();
+            if (storedLength > scan.remaining()) {
+                break;
+            }
+            scan.position(scan.position() + storedLength);
+            entries.add(new CycleLogV2Block(offset, spans, min, max, results));
+        }
+        return entries;
+    }
+
+    public List<CycleLogV2Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Decode all of the spans in a block.
+     *
+     * @param block A block of this cycle log
+     * @return The spans of the block, in the order they were written
+     */
+    public List<CycleSpanResults> readBlock(CycleLogV2Block block) {
+        ByteBuffer in = buf.duplicate();
+        in.position(buf.position() + (int) block.getOffset());
+        byte codec = in.get();
+        int spans = in.getInt();
+        in.position(in.position() + Long.BYTES + Long.BYTES + CycleLogV2.RESULT_WORDS * Long.BYTES);
+        int rawLength = in.getInt();
+        int storedLength = in.getInt();
+
+        ByteBuffer payload;
+        if (codec == CycleLogV2.CODEC_DEFLATE) {
+            byte[] stored = new byte[storedLength];
+            in.get(stored);
+            byte[] raw = new byte[rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int count = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new RuntimeException("Unable to decompress cycle log " + block +
+                                ": the compressed data ended after " + inflated + " of " + rawLength + " bytes");
+                    }
+                    inflated += count;
+                }
+                if (inflated != rawLength) {
+                    throw new RuntimeException("Unable to decompress cycle log " + block +
+                            ": expected " + rawLength + " bytes, but got " + inflated);
+                }
+            } catch (DataFormatException e) {
+                throw new RuntimeException("Unable to decompress cycle log " + block + ":" + e, e);
+            } finally {
+                inflater.end();
+            }
+            payload = ByteBuffer.wrap(raw);
+        } else {
+            payload = in.slice();
+            payload.limit(storedLength);
+        }
+
+        List<CycleSpanResults> results = new ArrayList<>(spans);
+        long lastEnd = 0L;
+        for (int i = 0; i < spans; i++) {
+            long start = lastEnd + CycleLogV2.unzigzag(CycleLogV2.getVarLong(payload));
+            long end = start + CycleLogV2.getVarLong(payload);
+            int result = payload.get();
+            results.add(new CycleSpanResults(start, end, result));
+            lastEnd = end;
+        }
+        return results;
+    }
+
+    @Override
+    public Iterator<CycleResultsSegment> iterator() {
+        return iterator(Long.MIN_VALUE, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Iterate the spans of the cycle log which are within a range of cycles and pass
+     * a filter. Spans which are partly within the range are cut to the range.
+     *
+     * @param minCycle The first cycle of the range
+     * @param maxCycle The cycle after the last cycle of the range
+     * @param filter A result filter, or null for all results
+     * @return An iterator of spans
+     */
+    public Iterator<CycleResultsSegment> iterator(long minCycle, long maxCycle, Predicate<ResultReadable> filter) {
+        return new BlockSpanIterator(minCycle, maxCycle, filter);
+    }
+
+    private class BlockSpanIterator implements Iterator<CycleResultsSegment> {
+        private final long minCycle;
+        private final long maxCycle;
+        private final Predicate<ResultReadable> filter;
+        private final long[] wanted;
+        private final Iterator<CycleLogV2Block> blockIter;
+        private Iterator<CycleSpanResults> spanIter = Collections.emptyIterator();
+        private CycleResultsSegment next;
+
+        private BlockSpanIterator(long minCycle, long maxCycle, Predicate<ResultReadable> filter) {
+            this.minCycle = minCycle;
+            this.maxCycle = maxCycle;
+            this.filter = filter;
+            this.wanted = CycleLogV2.resultsMatching(filter);
+            this.blockIter = blocks.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (spanIter.hasNext()) {
+                    CycleSpanResults span = spanIter.next();
+                    long start = Math.max(span.getMinCycle(), minCycle);
+                    long end = Math.min(span.getMinCycle() + span.getCount(), maxCycle);
+                    if (start < end && (filter == null || filter.test(span))) {
+                        next = (start == span.getMinCycle() && end == span.getMinCycle() + span.getCount())
+                                ? span : new CycleSpanResults(start, end, span.getResult());
+                    }
+                } else if (blockIter.hasNext()) {
+                    CycleLogV2Block block = blockIter.next();
+                    if (block.overlaps(minCycle, maxCycle) && block.containsAnyOf(wanted)) {
+                        spanIter = readBlock(block).iterator();
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public CycleResultsSegment next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CycleResultsSegment wasNext = next;
+            next = null;
+            return wasNext;
+        }
+    }
+}
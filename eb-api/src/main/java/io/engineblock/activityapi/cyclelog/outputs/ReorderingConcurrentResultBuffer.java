@@ -21,6 +21,7 @@ import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultArray;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegmentReadable;
 import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
 import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CanFilterResultValue;
 import io.engineblock.activityapi.output.Output;
 import org.slf4j.Logger;
@@ -99,7 +100,7 @@ public class ReorderingConcurrentResultBuffer implements Output, CanFilterResult
 
     @Override
     public void setFilter(Predicate<ResultReadable> filter) {
-        this.resultFilter = filter;
+        this.resultFilter = filter == null ? null : ResultValuePredicate.of(filter);
 
     }
 }
@@ -20,6 +20,7 @@ package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferReadable;
+import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CycleLogV2Reader;
 
 import java.io.File;
 import java.io.RandomAccessFile;
@@ -30,7 +31,7 @@ public class CycleLogDumperUtility {
 
     public static void main(String[] args) {
         if (args.length == 0) {
-            System.out.println("USAGE: CyclesCLI <filename>");
+            System.out.println("USAGE: CyclesCLI <filename> [spans|cycles|blocks]");
         }
         String filename = args[0];
 
@@ -52,6 +53,13 @@ public class CycleLogDumperUtility {
                 }
             }
         }
+        if (CycleLogFormat.of(filepath) == CycleLogFormat.v2) {
+            dumpV2Data(new CycleLogV2Reader(filepath), displayType);
+            return;
+        }
+        if (displayType == DisplayType.blocks) {
+            throw new RuntimeException("Only v2 cycle logs have blocks, but '" + filepath + "' is a v1 cycle log.");
+        }
         try {
             RandomAccessFile raf = new RandomAccessFile(filepath, "rw");
             mbb = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
@@ -86,8 +94,28 @@ public class CycleLogDumperUtility {
 
     }
 
+    private void dumpV2Data(CycleLogV2Reader reader, DisplayType displayType) {
+        if (displayType == DisplayType.blocks) {
+            reader.getBlocks().forEach(System.out::println);
+            return;
+        }
+        for (CycleResultsSegment segment : reader) {
+            switch (displayType) {
+                case cycles:
+                    for (CycleResult cycleResult : segment) {
+                        System.out.println(cycleResult);
+                    }
+                    break;
+                case spans:
+                    System.out.println(segment.toString());
+                    break;
+            }
+        }
+    }
+
     static enum DisplayType {
         cycles,
-        spans
+        spans,
+        blocks
     }
 }
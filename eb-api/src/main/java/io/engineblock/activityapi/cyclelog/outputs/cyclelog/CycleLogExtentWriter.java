@@ -0,0 +1,208 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>The extent writer appends extents of cycle log data to a file from a background
+ * thread, so that the threads which produce the extents never wait on the disk.</p>
+ *
+ * <H2>Design Notes</H2>
+ * <p>Extents are handed to the writer thread through a lock-free queue, and each
+ * extent carries a callback which is run once it has been written, so that the
+ * producer can reuse its buffer. The number of extents which are waiting to be
+ * written is the backlog. A producer can bound its memory use by waiting for the
+ * backlog to drain below a limit before it queues another extent.</p>
+ *
+ * <p>The extents are written to a {@link CycleLogSink}, which encodes them in the
+ * format of the file.</p>
+ *
+ * <p>How often the data is forced to the storage device is set by the
+ * {@link Durability}. The time taken to write and force each extent is recorded
+ * by the flush timer.</p>
+ */
+public class CycleLogExtentWriter implements Runnable {
+    private final static Logger logger = LoggerFactory.getLogger(CycleLogExtentWriter.class);
+    private final static long IDLE_PARK_NANOS = 10_000_000L;
+    private final static long BACKLOG_PARK_NANOS = 100_000L;
+
+    public enum Durability {
+        /**
+         * Never force data to the storage device, leaving it to the operating system
+         */
+        none,
+        /**
+         * Force data to the storage device at a fixed interval, and on close
+         */
+        periodic,
+        /**
+         * Force data to the storage device once, on close
+         */
+        close
+    }
+
+    private final File file;
+    private final CycleLogSink sink;
+    private final Durability durability;
+    private final long forceNanos;
+    private final Timer flushTimer;
+    private final ConcurrentLinkedQueue<Extent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger(0);
+    private final Thread thread;
+
+    private long lastForceAt;
+    private volatile boolean running = true;
+    private volatile Exception failure;
+
+    public CycleLogExtentWriter(File file, CycleLogSink sink, Durability durability, long forceMillis, Timer flushTimer) {
+        this.file = file;
+        this.sink = sink;
+        this.durability = durability;
+        this.forceNanos = TimeUnit.MILLISECONDS.toNanos(forceMillis);
+        this.flushTimer = flushTimer;
+        this.lastForceAt = System.nanoTime();
+        this.thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.setName("CycleLogExtentWriter/" + file.getName());
+        thread.start();
+    }
+
+    /**
+     * Queue an extent to be written. This does not wait for the extent to be written.
+     *
+     * @param data The extent data, from position to limit
+     * @param onWritten Run by the writer thread after the data has been written
+     */
+    public void write(ByteBuffer data, Runnable onWritten) {
+        if (failure != null) {
+            throw new RuntimeException("Unable to write to cycle log " + file + " after an earlier error:" + failure, failure);
+        }
+        backlog.incrementAndGet();
+        queue.add(new Extent(data, onWritten));
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Park the calling thread until fewer than the given number of extents are waiting
+     * to be written.
+     *
+     * @param limit The backlog which must not be reached before this returns
+     */
+    public void awaitBacklogBelow(int limit) {
+        while (backlog.get() >= limit) {
+            LockSupport.parkNanos(this, BACKLOG_PARK_NANOS);
+        }
+    }
+
+    /**
+     * @return The number of extents waiting to be written
+     */
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Extent extent = queue.poll();
+            if (extent == null) {
+                if (!running) {
+                    return;
+                }
+                if (failure == null) {
+                    try {
+                        maybeForce();
+                    } catch (Exception e) {
+                        logger.error("Error forcing cycle log " + file + ":" + e, e);
+                        failure = e;
+                    }
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            if (failure == null) {
+                long startedAt = System.nanoTime();
+                try {
+                    sink.append(extent.data);
+                    maybeForce();
+                } catch (Exception e) {
+                    logger.error("Error writing to cycle log " + file + ":" + e, e);
+                    failure = e;
+                }
+                flushTimer.update(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+            backlog.decrementAndGet();
+            extent.onWritten.run();
+        }
+    }
+
+    private void maybeForce() throws IOException {
+        if (durability == Durability.periodic && System.nanoTime() - lastForceAt >= forceNanos) {
+            sink.force();
+            lastForceAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Write all queued extents, and close the sink, forcing it if the durability
+     * calls for it.
+     */
+    public void close() throws Exception {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+        try {
+            sink.close(failure == null && durability != Durability.none);
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw new RuntimeException("Error writing to cycle log " + file + ":" + failure, failure);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CycleLogExtentWriter " + file + " position=" + sink.getPosition() + " backlog=" + backlog.get()
+                + " durability=" + durability;
+    }
+
+    private final static class Extent {
+        private final ByteBuffer data;
+        private final Runnable onWritten;
+
+        private Extent(ByteBuffer data, Runnable onWritten) {
+            this.data = data;
+            this.onWritten = onWritten;
+        }
+    }
+}
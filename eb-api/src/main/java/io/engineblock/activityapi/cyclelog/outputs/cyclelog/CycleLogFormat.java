@@ -0,0 +1,55 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * The formats of cycle log files.
+ *
+ * <p>Version 1 files have no header. They are a flat sequence of (long,long,byte)
+ * RLE tuples. Version 2 files start with the {@link CycleLogV2#MAGIC} bytes, and
+ * are described in {@link CycleLogV2}. Readers detect the format of a file with
+ * {@link #of(File)}.</p>
+ */
+public enum CycleLogFormat {
+    v1,
+    v2;
+
+    /**
+     * Detect the format of a cycle log file from its header.
+     *
+     * @param file A cycle log file
+     * @return v2, if the file starts with the v2 magic bytes, otherwise v1
+     */
+    public static CycleLogFormat of(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < CycleLogV2.MAGIC.length) {
+                return v1;
+            }
+            byte[] magic = new byte[CycleLogV2.MAGIC.length];
+            raf.readFully(magic);
+            return Arrays.equals(magic, CycleLogV2.MAGIC) ? v2 : v1;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read cycle log header from " + file + ":" + e, e);
+        }
+    }
+}
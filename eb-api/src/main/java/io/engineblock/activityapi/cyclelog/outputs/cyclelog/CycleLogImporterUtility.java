@@ -17,33 +17,72 @@
 
 package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
 
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferReadable;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
+import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CycleLogV2Reader;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Imports a text cycle log, as written by {@link CycleLogDumperUtility}, into a cycle log.
+ * If the input file is already a cycle log, it is converted to the output format instead,
+ * which can be used to convert between v1 and v2 cycle logs.
+ */
 public class CycleLogImporterUtility {
 
     private final static Pattern linePattern = Pattern.compile("\\[?(?<start>\\d+)(,(?<end>\\d+)\\))?->(?<result>\\d+)");
 
     public static void main(String[] args) {
         if (args.length == 0) {
-            System.out.println("USAGE: CyclesCLI <input-textfile>, <output-cyclelog>");
+            System.out.println("USAGE: CyclesCLI <input-textfile|input-cyclelog>, <output-cyclelog> [v1|v2]");
         }
         String infile = args[0];
         String outfile = args[1];
+        CycleLogFormat format = CycleLogFormat.v1;
+        if (args.length >= 3) {
+            format = CycleLogFormat.valueOf(args[2]);
+        }
         try {
-            new CycleLogImporterUtility().convert(infile, outfile);
+            if (infile.endsWith(".cyclelog")) {
+                new CycleLogImporterUtility().convertCycleLog(infile, outfile, format);
+            } else {
+                new CycleLogImporterUtility().convert(infile, outfile, format);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void convert(String infile, String outfile) throws Exception {
-        CycleLogOutput output = new CycleLogOutput(new File(outfile), 1024);
+    private void convertCycleLog(String infile, String outfile, CycleLogFormat format) throws Exception {
+        File inputFile = new File(infile);
+        if (inputFile.getCanonicalFile().equals(new File(outfile).getCanonicalFile())) {
+            throw new RuntimeException("The input and output cycle logs must be different files: " + infile);
+        }
+        Iterable<CycleResultsSegment> segments;
+        if (CycleLogFormat.of(inputFile) == CycleLogFormat.v2) {
+            segments = new CycleLogV2Reader(inputFile);
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(inputFile, "r")) {
+                segments = new CycleResultsRLEBufferReadable(
+                        raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+            }
+        }
+        CycleLogOutput output = new CycleLogOutput(new File(outfile), 1024, format);
+        for (CycleResultsSegment segment : segments) {
+            output.onCycleResultSegment(segment);
+        }
+        output.close();
+    }
+
+    private void convert(String infile, String outfile, CycleLogFormat format) throws Exception {
+        CycleLogOutput output = new CycleLogOutput(new File(outfile), 1024, format);
         BufferedReader reader = new BufferedReader(new FileReader(infile));
         String line = reader.readLine();
         while (line != null) {
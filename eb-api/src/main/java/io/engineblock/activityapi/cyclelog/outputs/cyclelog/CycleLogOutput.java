@@ -17,25 +17,28 @@
 
 package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
 import io.engineblock.activityapi.core.Activity;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
 import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferTarget;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
 import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CanFilterResultValue;
 import io.engineblock.activityapi.output.Output;
+import io.engineblock.metrics.ActivityMetrics;
 import io.engineblock.util.SimpleConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * A {@link Output} that writes cycles and results to an RLE-based file format.
@@ -47,35 +50,110 @@ import java.util.function.Predicate;
  *
  * <p>It <em>is</em> valid for RLE segments to be broken apart into contiguous
  * ranges. Any implementation should treat this as normal.
+ *
+ * <p>Extents are double buffered. When an extent is full, it is handed to a
+ * {@link CycleLogExtentWriter}, which writes it to the file in the background, and
+ * buffering continues in a spare extent. The number of extents waiting to be
+ * written is reported as the backlog. Callers only wait on the disk when the writer
+ * falls so far behind that the backlog reaches its limit, which bounds the number
+ * of extents in memory.
+ *
+ * <p>With the v2 {@link CycleLogFormat}, the extents are encoded into compressed
+ * and indexed blocks by a {@link CycleLogV2Writer}, rather than written as they are.
  */
 public class CycleLogOutput implements Output, CanFilterResultValue {
 
     // For use in allocating file data, etc
     private final static Logger logger = LoggerFactory.getLogger(CycleLogOutput.class);
-    private MappedByteBuffer mbb;
-    private RandomAccessFile file;
-    //    private FileBufferConfig config;
+    public final static int DEFAULT_EXTENT_SIZE = 1000;
+    public final static int DEFAULT_MAX_BACKLOG = 4;
+    public final static long DEFAULT_PREALLOCATE_BYTES = 16L * 1024L * 1024L;
+
+    private final ConcurrentLinkedQueue<CycleResultsRLEBufferTarget> spareBuffers = new ConcurrentLinkedQueue<>();
     private CycleResultsRLEBufferTarget targetBuffer;
+    private CycleLogExtentWriter writer;
     private int extentSizeInSpans;
+    private int maxBacklog = DEFAULT_MAX_BACKLOG;
     private File outputFile;
-    private Predicate<ResultReadable> filter;
+    private CycleLogFormat format;
+    private ResultValuePredicate filter;
 
     public CycleLogOutput(Activity activity) {
 
         SimpleConfig conf = new SimpleConfig(activity, "output");
-        this.extentSizeInSpans = conf.getInteger("extentSize").orElse(1000);
+        this.extentSizeInSpans = conf.getInteger("extentSize").orElse(DEFAULT_EXTENT_SIZE);
+        this.maxBacklog = conf.getInteger("backlog").orElse(DEFAULT_MAX_BACKLOG);
         this.outputFile = new File(conf.getString("file").orElse(activity.getAlias()) + ".cyclelog");
+        CycleLogExtentWriter.Durability durability = conf.getString("durability")
+                .map(CycleLogExtentWriter.Durability::valueOf)
+                .orElse(CycleLogExtentWriter.Durability.close);
+        long forceMillis = conf.getLong("forcems").orElse(1000L);
+        long preallocate = conf.getLong("preallocate").orElse(DEFAULT_PREALLOCATE_BYTES);
+        this.format = conf.getString("format").map(CycleLogFormat::valueOf).orElse(CycleLogFormat.v1);
+        int blockSpans = conf.getInteger("blockSize").orElse(CycleLogV2Writer.DEFAULT_BLOCK_SPANS);
+        boolean compress = conf.getString("compress").map(Boolean::parseBoolean).orElse(true);
 
-
-        targetBuffer = new CycleResultsRLEBufferTarget(extentSizeInSpans);
-        removeIfPresent(outputFile);
+        Timer flushTimer = ActivityMetrics.timer(activity.getActivityDef(), "cyclelog-flush");
+        init(durability, forceMillis, flushTimer, () -> openSink(preallocate, blockSpans, compress));
+        ActivityMetrics.gauge(activity.getActivityDef(), "cyclelog-backlog", (Gauge<Integer>) writer::getBacklog);
     }
 
     public CycleLogOutput(File outputFile, int extentSizeInSpans) {
+        this(outputFile, extentSizeInSpans, CycleLogFormat.v1);
+    }
+
+    public CycleLogOutput(File outputFile, int extentSizeInSpans, CycleLogFormat format) {
+        this(outputFile, extentSizeInSpans, format, CycleLogExtentWriter.Durability.close, 1000L, new Timer());
+    }
+
+    public CycleLogOutput(
+            File outputFile,
+            int extentSizeInSpans,
+            CycleLogExtentWriter.Durability durability,
+            long forceMillis,
+            long preallocateBytes,
+            Timer flushTimer) {
+        this.extentSizeInSpans = extentSizeInSpans;
+        this.outputFile = outputFile;
+        this.format = CycleLogFormat.v1;
+        init(durability, forceMillis, flushTimer,
+                () -> openSink(preallocateBytes, CycleLogV2Writer.DEFAULT_BLOCK_SPANS, true));
+    }
+
+    public CycleLogOutput(
+            File outputFile,
+            int extentSizeInSpans,
+            CycleLogFormat format,
+            CycleLogExtentWriter.Durability durability,
+            long forceMillis,
+            Timer flushTimer) {
         this.extentSizeInSpans = extentSizeInSpans;
         this.outputFile = outputFile;
-        targetBuffer = new CycleResultsRLEBufferTarget(extentSizeInSpans);
+        this.format = format;
+        init(durability, forceMillis, flushTimer,
+                () -> openSink(DEFAULT_PREALLOCATE_BYTES, CycleLogV2Writer.DEFAULT_BLOCK_SPANS, true));
+    }
+
+    private void init(CycleLogExtentWriter.Durability durability, long forceMillis, Timer flushTimer, Supplier<CycleLogSink> sinkSupplier) {
+        if (extentSizeInSpans < 1) {
+            throw new RuntimeException("The cycle log extent size must be at least 1 span, but it was " + extentSizeInSpans);
+        }
+        if (maxBacklog < 1) {
+            throw new RuntimeException("The cycle log backlog must be at least 1 extent, but it was " + maxBacklog);
+        }
         removeIfPresent(outputFile);
+        targetBuffer = takeBuffer();
+        writer = new CycleLogExtentWriter(outputFile, sinkSupplier.get(), durability, forceMillis, flushTimer);
+    }
+
+    private CycleLogSink openSink(long preallocateBytes, int blockSpans, boolean compress) {
+        switch (format) {
+            case v2:
+                return new CycleLogV2Writer(outputFile, blockSpans, compress);
+            case v1:
+            default:
+                return new CycleLogV1Writer(outputFile, preallocateBytes);
+        }
     }
 
     private void removeIfPresent(File filename) {
@@ -101,45 +179,67 @@ public class CycleLogOutput implements Output, CanFilterResultValue {
 
     @Override
     public void onCycleResultSegment(CycleResultsSegment segment) {
+        if (segment instanceof CycleSpanResults) {
+            CycleSpanResults span = (CycleSpanResults) segment;
+            if (filter == null || filter.testResult(span.getResult())) {
+                targetBuffer.onCycleResultSpan(span.getMinCycle(), span.getMinCycle() + span.getCount(), span.getResult());
+                if (targetBuffer.getRecordCount() >= extentSizeInSpans) {
+                    flush();
+                }
+            }
+            return;
+        }
         for (CycleResult cycleResult : segment) {
-            if (filter == null || filter.test(cycleResult)) {
-                boolean buffered = targetBuffer.onCycleResult(cycleResult);
-                if (!buffered) {
+            if (filter == null || filter.testResult(cycleResult.getResult())) {
+                targetBuffer.onCycleResult(cycleResult);
+                if (targetBuffer.getRecordCount() >= extentSizeInSpans) {
                     flush();
-                    targetBuffer = new CycleResultsRLEBufferTarget(extentSizeInSpans);
-                    boolean bufferedAfterFlush = targetBuffer.onCycleResult(cycleResult);
-                    if (!bufferedAfterFlush) {
-                        throw new RuntimeException("Failed to record result in new target buffer");
-                    }
                 }
             }
         }
     }
 
+    /**
+     * Hand off the current extent to the writer, and continue in a spare one. If the
+     * backlog is at its limit, this waits for the writer first, so that no more than
+     * the limit of extents are waiting to be written at once.
+     */
     private void flush() {
-        ByteBuffer nextFileExtent = targetBuffer.toByteBuffer();
-        logger.debug("RLE result extent is " + nextFileExtent.remaining() + " bytes ("
-                + (nextFileExtent.remaining() / CycleResultsRLEBufferTarget.BYTES)
-                + ") tuples");
-        int targetCapacity = (mbb == null ? 0 : mbb.capacity()) + nextFileExtent.remaining();
-        logger.trace("ensuring capacity for " + targetCapacity);
-        this.ensureCapacity(targetCapacity);
-        mbb.put(nextFileExtent);
-        mbb.force();
-        logger.trace("extent appended");
-        logger.trace("mbb position now at " + mbb.position());
+        CycleResultsRLEBufferTarget filled = targetBuffer;
+        ByteBuffer nextFileExtent = filled.toByteBuffer();
+        if (nextFileExtent.remaining() == 0) {
+            filled.reset();
+            return;
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("RLE result extent is " + nextFileExtent.remaining() + " bytes ("
+                    + (nextFileExtent.remaining() / CycleResultsRLEBufferTarget.BYTES)
+                    + ") tuples");
+        }
+        writer.awaitBacklogBelow(maxBacklog);
+        writer.write(nextFileExtent, () -> recycle(filled));
+        targetBuffer = takeBuffer();
+    }
+
+    private CycleResultsRLEBufferTarget takeBuffer() {
+        CycleResultsRLEBufferTarget buffer = spareBuffers.poll();
+        if (buffer == null) {
+            // one more span than the extent size, for the run which is in progress when it is flushed
+            buffer = new CycleResultsRLEBufferTarget(extentSizeInSpans + 1);
+        }
+        return buffer;
+    }
 
+    private void recycle(CycleResultsRLEBufferTarget buffer) {
+        buffer.reset();
+        spareBuffers.add(buffer);
     }
 
     @Override
     public synchronized void close() throws Exception {
         try {
             flush();
-            if (file != null) {
-                file.getFD().sync();
-                file.close();
-                file = null;
-            }
+            writer.close();
         } catch (Throwable t) {
             logger.error("Error while closing CycleLogOutput: " + t, t);
             throw t;
@@ -147,39 +247,20 @@ public class CycleLogOutput implements Output, CanFilterResultValue {
 
     }
 
-    private synchronized void ensureCapacity(long newCapacity) {
-        try {
-            logger.info("resizing marking file from " + (mbb == null ? 0 : mbb.capacity()) + " to " + newCapacity);
-            if (file == null) {
-                file = new RandomAccessFile(outputFile, "rw");
-                file.seek(0);
-                mbb = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
-            } else {
-                int pos = mbb.position();
-                file.setLength(newCapacity);
-                file.seek(pos);
-                mbb = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
-                mbb.position(pos);
-            }
-            logger.trace("mbb position now at " + mbb.position());
-
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     @Override
     public String toString() {
         return "CycleLogOutput{" +
-                "mbb=" + mbb +
-                ", file=" + file +
-                ", mbb=" + (mbb == null ? "null" : "(pos=" + mbb.position() + ", limit=" + mbb.limit() + ", capacity=" + mbb.capacity() + ")") +
+                "file=" + outputFile +
+                ", format=" + format +
+                ", extentSize=" + extentSizeInSpans +
+                ", backlog=" + maxBacklog +
+                ", writer=" + writer +
                 '}';
     }
 
     @Override
     public void setFilter(Predicate<ResultReadable> filter) {
-        this.filter = filter;
+        this.filter = filter == null ? null : ResultValuePredicate.of(filter);
     }
 
 }
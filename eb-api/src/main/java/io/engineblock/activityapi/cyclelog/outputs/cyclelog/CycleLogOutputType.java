@@ -23,6 +23,7 @@ import io.engineblock.activityapi.input.Input;
 import io.engineblock.activityapi.output.Output;
 import io.engineblock.activityapi.output.OutputDispenser;
 import io.engineblock.activityapi.output.OutputType;
+import io.engineblock.activityimpl.marker.ContiguousCompletionTracker;
 import io.virtdata.annotations.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,19 +52,16 @@ public class CycleLogOutputType implements OutputType {
             Input input = activity.getInputDispenserDelegate().getInput(0);
             CycleLogOutput rleFileWriter = new CycleLogOutput(activity);
 
-            // TODO: Rework this so that the contiguous marking chunker can onAfterOpStop filtering
-//            if (input.isContiguous()) {
-//                logger.debug("pre-buffering output extents contiguously before RLE buffering");
-//                ContiguousOutputChunker contiguousOutputChunker = new ContiguousOutputChunker(activity);
-//                contiguousOutputChunker.addExtentReader(rleFileWriter);
-//                this.output = contiguousOutputChunker;
-//            }
-//            else {
+            boolean recycles = activity.getParams().getOptionalString("recycles").isPresent();
+            if (input.isContiguous() && !recycles) {
+                logger.debug("tracking completion of contiguous cycles before RLE buffering");
+                this.output = new ContiguousCompletionTracker(activity, rleFileWriter);
+            } else {
                 logger.debug("pre-buffering output extents with best-effort before RLE buffering");
                 ReorderingConcurrentResultBuffer prebuffer =
                         new ReorderingConcurrentResultBuffer(rleFileWriter);
                 this.output=prebuffer;
-//            }
+            }
             activity.registerAutoCloseable(output);
         }
 
@@ -0,0 +1,53 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A cycle log file which is written by a {@link CycleLogExtentWriter}. Each
+ * format of cycle log has its own sink. Sinks are only called from the writer
+ * thread.
+ */
+public interface CycleLogSink {
+
+    /**
+     * Append RLE spans to the file.
+     *
+     * @param tuples (long,long,byte) RLE tuples, from position to limit
+     */
+    void append(ByteBuffer tuples) throws IOException;
+
+    /**
+     * Force the data which has been written so far to the storage device.
+     */
+    void force() throws IOException;
+
+    /**
+     * Finish and close the file.
+     *
+     * @param force true, if the data should be forced to the storage device before closing
+     */
+    void close(boolean force) throws IOException;
+
+    /**
+     * @return The number of bytes written to the file so far
+     */
+    long getPosition();
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes version 1 cycle logs, which are the RLE tuples as they are given.
+ *
+ * <p>The file is grown in large chunks ahead of the data which is written to it,
+ * rather than once per extent, and it is truncated to the length of the data when
+ * it is closed.</p>
+ */
+public class CycleLogV1Writer implements CycleLogSink {
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long preallocateBytes;
+
+    private long position = 0L;
+    private long allocated = 0L;
+
+    public CycleLogV1Writer(File file, long preallocateBytes) {
+        this.preallocateBytes = Math.max(1L, preallocateBytes);
+        try {
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open cycle log file " + file + ":" + e, e);
+        }
+    }
+
+    @Override
+    public void append(ByteBuffer tuples) throws IOException {
+        long end = position + tuples.remaining();
+        if (end > allocated) {
+            allocated = end + preallocateBytes;
+            raf.setLength(allocated);
+        }
+        while (tuples.hasRemaining()) {
+            position += channel.write(tuples, position);
+        }
+    }
+
+    @Override
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close(boolean force) throws IOException {
+        try {
+            raf.setLength(position);
+            if (force) {
+                channel.force(true);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+}
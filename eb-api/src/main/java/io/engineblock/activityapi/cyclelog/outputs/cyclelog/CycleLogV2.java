@@ -0,0 +1,158 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>Layout and encoding of version 2 cycle log files, which are written by
+ * {@link CycleLogV2Writer}.</p>
+ *
+ * <H2>Layout</H2>
+ * <pre>
+ * header:  magic[8] version:int flags:int
+ * block:   codec:byte spans:int min:long max:long results:long[4]
+ *          rawLength:int storedLength:int payload[storedLength]
+ * ...
+ * index:   INDEX_MARK:byte blocks:int
+ *          (offset:long spans:int min:long max:long results:long[4]) * blocks
+ * footer:  indexOffset:long magic[8]
+ * </pre>
+ *
+ * <p>Each block holds a run of spans, in the order they were written. The
+ * min and max of a block are the lowest cycle and the highest cycle plus one
+ * that it contains, and the results are a bitmap of the result codes it
+ * contains, indexed by the unsigned value of the result byte.</p>
+ *
+ * <p>The payload of a block has one entry for each span: the start of the
+ * span as a zigzag varint delta from the end of the previous span in the
+ * block (or from 0 for the first span), the length of the span as a varint,
+ * and the result byte. With {@link #CODEC_DEFLATE}, the payload is
+ * compressed, and rawLength is its length before compression. Each block can
+ * be decoded on its own.</p>
+ *
+ * <p>The index repeats the block headers, so that a reader can choose which
+ * blocks to read without reading any others. If a file has no footer, because
+ * the writer did not finish, the blocks can still be found by scanning from
+ * the header.</p>
+ */
+public final class CycleLogV2 {
+
+    public final static byte[] MAGIC = "EBCYCLG2".getBytes(StandardCharsets.US_ASCII);
+    public final static int VERSION = 2;
+    public final static int HEADER_BYTES = MAGIC.length + Integer.BYTES + Integer.BYTES;
+    public final static int FOOTER_BYTES = Long.BYTES + MAGIC.length;
+
+    public final static byte CODEC_NONE = 0;
+    public final static byte CODEC_DEFLATE = 1;
+    public final static byte INDEX_MARK = 0x7F;
+
+    public final static int RESULT_WORDS = 4;
+    public final static int BLOCK_HEADER_BYTES =
+            Byte.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + RESULT_WORDS * Long.BYTES + Integer.BYTES + Integer.BYTES;
+    public final static int INDEX_ENTRY_BYTES =
+            Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + RESULT_WORDS * Long.BYTES;
+
+    private CycleLogV2() {
+    }
+
+    /**
+     * Add a result code to a result bitmap.
+     *
+     * @param results A result bitmap of {@link #RESULT_WORDS} words
+     * @param result The result code, of which only the low byte is stored
+     */
+    public static void addResult(long[] results, int result) {
+        int bit = result & 0xFF;
+        results[bit >>> 6] |= 1L << (bit & 63);
+    }
+
+    /**
+     * Build a result bitmap of the result codes which pass a filter, so that blocks
+     * which contain none of them can be skipped.
+     *
+     * @param filter A result filter, or null for all result codes
+     * @return A result bitmap of {@link #RESULT_WORDS} words
+     */
+    public static long[] resultsMatching(Predicate<ResultReadable> filter) {
+        long[] results = new long[RESULT_WORDS];
+        for (int value = Byte.MIN_VALUE; value <= Byte.MAX_VALUE; value++) {
+            int result = value;
+            if (filter == null || filter.test(() -> result)) {
+                addResult(results, result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param results A result bitmap of {@link #RESULT_WORDS} words
+     * @param result A result code, of which only the low byte is used
+     * @return true, if the result code is in the bitmap
+     */
+    public static boolean containsResult(long[] results, int result) {
+        int bit = result & 0xFF;
+        return (results[bit >>> 6] & (1L << (bit & 63))) != 0L;
+    }
+
+    public static boolean intersects(long[] results, long[] others) {
+        for (int i = 0; i < RESULT_WORDS; i++) {
+            if ((results[i] & others[i]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void putVarLong(ByteBuffer buf, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    public static long getVarLong(ByteBuffer buf) {
+        long value = 0L;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new RuntimeException("Malformed varint in cycle log block at position " + buf.position());
+            }
+        }
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+}
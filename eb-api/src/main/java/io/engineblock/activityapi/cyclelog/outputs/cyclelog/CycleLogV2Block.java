@@ -0,0 +1,119 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An entry in the block index of a version 2 cycle log. See {@link CycleLogV2}.
+ */
+public class CycleLogV2Block {
+
+    private final long offset;
+    private final int spans;
+    private final long minCycle;
+    private final long maxCycle;
+    private final long[] results;
+
+    public CycleLogV2Block(long offset, int spans, long minCycle, long maxCycle, long[] results) {
+        this.offset = offset;
+        this.spans = spans;
+        this.minCycle = minCycle;
+        this.maxCycle = maxCycle;
+        this.results = results;
+    }
+
+    public static CycleLogV2Block readIndexEntry(ByteBuffer buf) {
+        long offset = buf.getLong();
+        int spans = buf.getInt();
+        long min = buf.getLong();
+        long max = buf.getLong();
+        long[] results = new long[CycleLogV2.RESULT_WORDS];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = buf.getLong();
+        }
+        return new CycleLogV2Block(offset, spans, min, max, results);
+    }
+
+    public void putIndexEntry(ByteBuffer buf) {
+        buf.putLong(offset).putInt(spans).putLong(minCycle).putLong(maxCycle);
+        for (long word : results) {
+            buf.putLong(word);
+        }
+    }
+
+    /**
+     * @return The file offset of the block header
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getSpans() {
+        return spans;
+    }
+
+    public long getMinCycle() {
+        return minCycle;
+    }
+
+    /**
+     * @return The highest cycle in the block, plus one
+     */
+    public long getMaxCycle() {
+        return maxCycle;
+    }
+
+    /**
+     * @param minCycle The first cycle of a range
+     * @param maxCycle The cycle after the last cycle of a range
+     * @return true, if this block may contain cycles in the range
+     */
+    public boolean overlaps(long minCycle, long maxCycle) {
+        return this.minCycle < maxCycle && minCycle < this.maxCycle;
+    }
+
+    /**
+     * @param results A result bitmap, as built by {@link CycleLogV2#resultsMatching}
+     * @return true, if this block contains any of the result codes
+     */
+    public boolean containsAnyOf(long[] results) {
+        return CycleLogV2.intersects(this.results, results);
+    }
+
+    public boolean containsResult(int result) {
+        return CycleLogV2.containsResult(results, result);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("block@").append(offset)
+                .append(" [").append(minCycle).append(",").append(maxCycle).append(")")
+                .append(" spans=").append(spans)
+                .append(" results=");
+        String delim = "";
+        for (int value = Byte.MIN_VALUE; value <= Byte.MAX_VALUE; value++) {
+            if (containsResult(value)) {
+                sb.append(delim).append(value);
+                delim = ",";
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferTarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes version 2 cycle logs, as described in {@link CycleLogV2}.
+ *
+ * <p>Spans are encoded into the payload of the current block as they are
+ * appended. Adjacent spans with the same result are joined, since RLE extents
+ * may split a run at their boundaries. When a block has the configured number
+ * of spans, it is compressed if that is enabled and makes it smaller, and it
+ * is written to the file. The block index and footer are written on close.</p>
+ */
+public class CycleLogV2Writer implements CycleLogSink {
+
+    public final static int DEFAULT_BLOCK_SPANS = 4096;
+    private final static int MAX_SPAN_BYTES = 10 + 10 + 1;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int blockSpans;
+    private final Deflater deflater;
+    private final List<CycleLogV2Block> blocks = new ArrayList<>();
+
+    private final ByteBuffer header = ByteBuffer.allocate(CycleLogV2.BLOCK_HEADER_BYTES);
+    private final ByteBuffer payload;
+    private final byte[] packed;
+
+    private long position = 0L;
+
+    // The block in progress
+    private int spans;
+    private long minCycle;
+    private long maxCycle;
+    private long lastEnd;
+    private long[] results;
+
+    // The span in progress, which may still be joined with the next one
+    private boolean pending;
+    private long pendingStart;
+    private long pendingEnd;
+    private byte pendingResult;
+
+    public CycleLogV2Writer(File file, int blockSpans, boolean compress) {
+        if (blockSpans < 1) {
+            throw new RuntimeException("The cycle log block size must be at least 1 span, but it was " + blockSpans);
+        }
+        this.file = file;
+        this.blockSpans = blockSpans;
+        this.payload = ByteBuffer.allocate(blockSpans * MAX_SPAN_BYTES);
+        this.packed = compress ? new byte[payload.capacity()] : null;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            this.raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0L);
+            this.channel = raf.getChannel();
+            ByteBuffer fileHeader = ByteBuffer.allocate(CycleLogV2.HEADER_BYTES);
+            fileHeader.put(CycleLogV2.MAGIC).putInt(CycleLogV2.VERSION).putInt(0).flip();
+            write(fileHeader);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open cycle log file " + file + ":" + e, e);
+        }
+        startBlock();
+    }
+
+    @Override
+    public void append(ByteBuffer tuples) throws IOException {
+        while (tuples.remaining() >= CycleResultsRLEBufferTarget.BYTES) {
+            long start = tuples.getLong();
+            long end = tuples.getLong();
+            byte result = tuples.get();
+            if (pending && start == pendingEnd && result == pendingResult) {
+                pendingEnd = end;
+                continue;
+            }
+            if (pending) {
+                addSpan(pendingStart, pendingEnd, pendingResult);
+            }
+            pending = true;
+            pendingStart = start;
+            pendingEnd = end;
+            pendingResult = result;
+        }
+    }
+
+    private void addSpan(long start, long end, byte result) throws IOException {
+        CycleLogV2.putVarLong(payload, CycleLogV2.zigzag(start - lastEnd));
+        CycleLogV2.putVarLong(payload, end - start);
+        payload.put(result);
+        lastEnd = end;
+        minCycle = Math.min(minCycle, start);
+        maxCycle = Math.max(maxCycle, end);
+        CycleLogV2.addResult(results, result);
+        if (++spans == blockSpans) {
+            writeBlock();
+        }
+    }
+
+    private void startBlock() {
+        spans = 0;
+        minCycle = Long.MAX_VALUE;
+        maxCycle = Long.MIN_VALUE;
+        lastEnd = 0L;
+        results = new long[CycleLogV2.RESULT_WORDS];
+        payload.clear();
+    }
+
+    private void writeBlock() throws IOException {
+        payload.flip();
+        int rawLength = payload.remaining();
+        byte codec = CycleLogV2.CODEC_NONE;
+        ByteBuffer stored = payload;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(payload.array(), 0, rawLength);
+            deflater.finish();
+            int packedLength = 0;
+            while (!deflater.finished() && packedLength < rawLength) {
+                packedLength += deflater.deflate(packed, packedLength, rawLength - packedLength);
+            }
+            if (deflater.finished() && packedLength < rawLength) {
+                codec = CycleLogV2.CODEC_DEFLATE;
+                stored = ByteBuffer.wrap(packed, 0, packedLength);
+            }
+        }
+
+        CycleLogV2Block block = new CycleLogV2Block(position, spans, minCycle, maxCycle, results);
+        header.clear();
+        header.put(codec).putInt(spans).putLong(minCycle).putLong(maxCycle);
+        for (long word : results) {
+            header.putLong(word);
+        }
+        header.putInt(rawLength).putInt(stored.remaining()).flip();
+        write(header);
+        write(stored);
+        blocks.add(block);
+        startBlock();
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    @Override
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Write the remaining spans, the block index and the footer, and close the file.
+     */
+    @Override
+    public void close(boolean force) throws IOException {
+        try {
+            if (pending) {
+                addSpan(pendingStart, pendingEnd, pendingResult);
+                pending = false;
+            }
+            if (spans > 0) {
+                writeBlock();
+            }
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(
+                    Byte.BYTES + Integer.BYTES + blocks.size() * CycleLogV2.INDEX_ENTRY_BYTES + CycleLogV2.FOOTER_BYTES);
+            index.put(CycleLogV2.INDEX_MARK).putInt(blocks.size());
+            for (CycleLogV2Block block : blocks) {
+                block.putIndexEntry(index);
+            }
+            index.putLong(indexOffset).put(CycleLogV2.MAGIC).flip();
+            write(index);
+            raf.setLength(position);
+            if (force) {
+                channel.force(true);
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            raf.close();
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "CycleLogV2Writer " + file + " position=" + position + " blocks=" + blocks.size();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.planning;
+
+import io.engineblock.activityapi.core.ActivityDefObserver;
+import io.engineblock.activityimpl.ActivityDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A sequence which picks elements at random in proportion to their ratios, as
+ * {@link WeightedRandomSequence} does, but whose ratios can be changed while the
+ * activity is running. New ratios are built into a new {@link AliasTable}, which
+ * then replaces the current one, so each selection is still a single table lookup.
+ *
+ * <p>The ratios are taken from the <em>weights</em> activity parameter, as a comma
+ * separated list with one ratio for each element in order, whenever the activity
+ * definition is updated. This allows a scenario script to shift the mix of ops, like
+ * this:</p>
+ * <pre>
+ * activities.myactivity.weights="9,1";
+ * </pre>
+ *
+ * <p>Sequences which are transformed from this one share its ratios.</p>
+ *
+ * @param <T> The type of element which is sequenced
+ */
+public class AdaptiveSequence<T> implements OpSequence<T>, ActivityDefObserver {
+    private final static Logger logger = LoggerFactory.getLogger(AdaptiveSequence.class);
+
+    private final List<T> elems;
+    private final Object[] table;
+    private final AtomicReference<AliasTable> aliasTable;
+    private final int[] seq;
+
+    AdaptiveSequence(List<T> elems, AliasTable aliasTable) {
+        this(elems, new AtomicReference<>(aliasTable));
+    }
+
+    private AdaptiveSequence(List<T> elems, AtomicReference<AliasTable> aliasTable) {
+        if (elems.size() != aliasTable.get().size()) {
+            throw new RuntimeException("There must be one ratio for each of the " + elems.size() + " elements");
+        }
+        this.elems = elems;
+        this.table = elems.toArray();
+        this.aliasTable = aliasTable;
+        this.seq = new int[elems.size()];
+        for (int i = 0; i < seq.length; i++) {
+            seq[i] = i;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(long selector) {
+        return (T) table[aliasTable.get().select(selector)];
+    }
+
+    /**
+     * Replace the ratios of the elements.
+     *
+     * @param ratios One ratio for each element, in order
+     */
+    public void setRatios(long... ratios) {
+        if (ratios.length != table.length) {
+            throw new RuntimeException("There must be one ratio for each of the " + table.length
+                    + " elements, but there were " + ratios.length + ": " + Arrays.toString(ratios));
+        }
+        AliasTable reweighted = new AliasTable(ratios);
+        if (!Arrays.equals(reweighted.getRatios(), aliasTable.get().getRatios())) {
+            aliasTable.set(reweighted);
+            logger.info("reweighted op sequence to ratios " + Arrays.toString(ratios));
+        }
+    }
+
+    public long[] getRatios() {
+        return aliasTable.get().getRatios();
+    }
+
+    @Override
+    public void onActivityDefUpdate(ActivityDef activityDef) {
+        activityDef.getParams().getOptionalString("weights")
+                .map(weights -> Arrays.stream(weights.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray())
+                .ifPresent(this::setRatios);
+    }
+
+    @Override
+    public List<T> getOps() {
+        return elems;
+    }
+
+    @Override
+    public int[] getSequence() {
+        return seq;
+    }
+
+    public SequencerType getSequencerType() {
+        return SequencerType.adaptive;
+    }
+
+    @Override
+    public <U> AdaptiveSequence<U> transform(Function<T, U> func) {
+        return new AdaptiveSequence<>(elems.stream().map(func).collect(Collectors.toList()), aliasTable);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.planning;
+
+import java.util.Arrays;
+
+/**
+ * An alias table selects an index at random, with the probability of each index
+ * in proportion to its ratio, in constant time. This is Vose's alias method. The
+ * random value is derived from the selector by a hash, so the same selector always
+ * picks the same index.
+ */
+public class AliasTable {
+
+    private final long[] thresholds;
+    private final int[] aliases;
+    private final long[] ratios;
+
+    /**
+     * @param ratios The ratio of each index, which must not be negative, and must not all be zero
+     */
+    public AliasTable(long[] ratios) {
+        int count = ratios.length;
+        double total = 0.0D;
+        for (long ratio : ratios) {
+            if (ratio < 0L) {
+                throw new RuntimeException("ratios must not be negative, but they were " + Arrays.toString(ratios));
+            }
+            total += ratio;
+        }
+        if (total == 0.0D) {
+            throw new RuntimeException("at least one ratio must be greater than zero, but they were " + Arrays.toString(ratios));
+        }
+        this.ratios = ratios.clone();
+        this.thresholds = new long[count];
+        this.aliases = new int[count];
+
+        double[] scaled = new double[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            scaled[i] = ratios[i] * count / total;
+            if (scaled[i] < 1.0D) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            thresholds[less] = (long) (scaled[less] * 0x1p32);
+            aliases[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0D;
+            if (scaled[more] < 1.0D) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        while (largeCount > 0) {
+            int more = large[--largeCount];
+            thresholds[more] = 1L << 32;
+            aliases[more] = more;
+        }
+        while (smallCount > 0) {
+            int less = small[--smallCount];
+            thresholds[less] = 1L << 32;
+            aliases[less] = less;
+        }
+    }
+
+    /**
+     * @param selector The value to select an index for, such as a cycle
+     * @return The selected index
+     */
+    public int select(long selector) {
+        long hash = mix(selector);
+        int column = (int) (((hash >>> 32) * thresholds.length) >>> 32);
+        return (hash & 0xFFFFFFFFL) < thresholds[column] ? column : aliases[column];
+    }
+
+    /**
+     * @return The number of indexes in this table
+     */
+    public int size() {
+        return thresholds.length;
+    }
+
+    public long[] getRatios() {
+        return ratios.clone();
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads each bit of the input over all
+     * of the output bits.
+     */
+    private static long mix(long value) {
+        value += 0x9E3779B97F4A7C15L;
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -29,8 +29,8 @@ public interface OpSequence<T> {
 
     /**
      * Get the next operation for the given long value. This is simply
-     * the offset indicated by the offset sequence array at a modulo
-     * position.
+     * the element indicated by the offset sequence array at a modulo
+     * position, for non-negative selectors.
      *
      * @param selector the long value that determines the next op
      * @return An op of type T
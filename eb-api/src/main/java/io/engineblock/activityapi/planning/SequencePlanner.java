@@ -60,27 +60,55 @@ public class SequencePlanner<T> {
             case concat:
                 logger.trace("sequencing elements by concatenation");
                 this.elementIndex = new ConcatSequencer<T>().seqIndexesByRatios(elements, ratios);
+                break;
+            case random:
+                logger.trace("sequencing elements by weighted random selection");
+                return new WeightedRandomSequence<>(elements, aliasTable());
+            case adaptive:
+                logger.trace("sequencing elements by adjustable weighted random selection");
+                return new AdaptiveSequence<>(elements, aliasTable());
         }
         this.elements = elements;
         return new Sequence<>(sequencerType, elements, elementIndex);
     }
 
+    private AliasTable aliasTable() {
+        return new AliasTable(ratios.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * A resolved sequence keeps a flat dispatch table with the element for each
+     * position in the sequence, so that {@link #get(long)} is a single array lookup.
+     * When the length of the sequence is a power of two, the position is found with
+     * a mask instead of a modulo.
+     *
+     * @param <T> The type of element which is sequenced
+     */
     public static class Sequence<T> implements OpSequence<T> {
         private final SequencerType type;
         private final List<T> elems;
         private final int[] seq;
+        private final Object[] table;
+        private final int mask;
 
         Sequence(SequencerType type, List<T> elems, int[] seq) {
             this.type = type;
             this.elems = elems;
             this.seq = seq;
+            this.table = new Object[seq.length];
+            for (int i = 0; i < seq.length; i++) {
+                table[i] = elems.get(seq[i]);
+            }
+            this.mask = Integer.bitCount(seq.length) == 1 ? seq.length - 1 : -1;
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public T get(long selector) {
-            int index = (int) (selector % seq.length);
-            index = seq[index];
-            return elems.get(index);
+            if (mask >= 0) {
+                return (T) table[(int) selector & mask];
+            }
+            return (T) table[(int) (selector % table.length)];
         }
 
         @Override
@@ -32,5 +32,13 @@ public enum SequencerType {
     /** Space out elements each according to their frequency over the unit interval, with
     // order of appearance taking precedence over equal timing, then take all events in
     // the order that they appear on the unit interval. */
-    interval
+    interval,
+
+    /** Pick an element at random for each cycle, in proportion to its ratio, so that the
+     * same cycle always picks the same element. */
+    random,
+
+    /** Pick elements as with random, but with ratios which may be changed while the
+     * activity is running, with the weights parameter. */
+    adaptive
 }
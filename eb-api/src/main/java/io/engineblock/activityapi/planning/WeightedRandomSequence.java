@@ -0,0 +1,79 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.planning;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A sequence which picks an element at random for each selector, with each element
+ * picked in proportion to its ratio, using an {@link AliasTable}. The same selector
+ * always picks the same element, so a cycle runs the same op each time it is run.
+ *
+ * <p>Unlike the fixed sequencers, the size of this does not depend on the ratios, so
+ * large ratios can be used for realistic mixes of ops. The sequence reported by
+ * {@link #getSequence()} has each element once.</p>
+ *
+ * @param <T> The type of element which is sequenced
+ */
+public class WeightedRandomSequence<T> implements OpSequence<T> {
+
+    private final List<T> elems;
+    private final Object[] table;
+    private final AliasTable aliasTable;
+    private final int[] seq;
+
+    WeightedRandomSequence(List<T> elems, AliasTable aliasTable) {
+        if (elems.size() != aliasTable.size()) {
+            throw new RuntimeException("There must be one ratio for each of the " + elems.size() + " elements");
+        }
+        this.elems = elems;
+        this.table = elems.toArray();
+        this.aliasTable = aliasTable;
+        this.seq = new int[elems.size()];
+        for (int i = 0; i < seq.length; i++) {
+            seq[i] = i;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(long selector) {
+        return (T) table[aliasTable.select(selector)];
+    }
+
+    @Override
+    public List<T> getOps() {
+        return elems;
+    }
+
+    @Override
+    public int[] getSequence() {
+        return seq;
+    }
+
+    public SequencerType getSequencerType() {
+        return SequencerType.random;
+    }
+
+    @Override
+    public <U> WeightedRandomSequence<U> transform(Function<T, U> func) {
+        return new WeightedRandomSequence<>(elems.stream().map(func).collect(Collectors.toList()), aliasTable);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.ratelimits;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <h2>Synopsis</h2>
+ *
+ * This is a lock free version of the {@link ThreadDrivenTokenPool}. The pool
+ * accounting is the same, but callers take tokens from the active pool with
+ * a compare-and-set loop rather than by holding the pool monitor. This allows
+ * many motor threads to share a rate limiter at high rates without the pool
+ * monitor becoming the bottleneck.
+ *
+ * <p>Refills are expected to come from a single {@link TokenFiller}. Besides the
+ * filler, only {@link #giveBack(long)} adds to the active pool. It never fills the
+ * active pool past its maximum, and spills the rest to the waiting pool. A give-back
+ * which races with a refill can leave the active pool over its maximum by at most
+ * the returned amount, and the next refill adds nothing to it until takers drain it.
+ * The waiting pool is only changed by the filler, by give-backs, and by
+ * {@link #restart()}.</p>
+ *
+ * <p>Callers which find the active pool empty do not wait on a monitor.
+ * They spin briefly, then yield, then park for increasing intervals up to
+ * {@link #MAX_PARK_NANOS}, which is the refill interval of the token filler.</p>
+ */
+public class AtomicTokenPool implements TokenPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(AtomicTokenPool.class);
+
+    public static final double MIN_CONCURRENT_OPS = 2;
+
+    private final static int SPIN_TRIES = 100;
+    private final static int YIELD_TRIES = 10;
+    private final static long MIN_PARK_NANOS = 1_000L;
+    private final static long MAX_PARK_NANOS = 1_000_000L;
+
+    private volatile long maxActivePool;
+    private volatile long burstPoolSize;
+    private volatile long maxOverActivePool;
+    private volatile double burstRatio;
+    private volatile long nanosPerOp;
+    private volatile RateSpec rateSpec;
+
+    private final AtomicLong activePool = new AtomicLong(0L);
+    private final AtomicLong waitingPool = new AtomicLong(0L);
+    private final LongAdder blocks = new LongAdder();
+
+    /**
+     * Create an atomic token pool with the same defaults as the
+     * {@link ThreadDrivenTokenPool}.
+     *
+     * @param rateSpec a {@link RateSpec}
+     */
+    public AtomicTokenPool(RateSpec rateSpec) {
+        apply(rateSpec);
+        logger.debug("initialized token pool: " + this.toString() + " for rate:" + rateSpec.toString());
+    }
+
+    public AtomicTokenPool(long poolsize, double burstRatio) {
+        this.maxActivePool = poolsize;
+        this.burstRatio = burstRatio;
+        this.maxOverActivePool = (long) (maxActivePool * burstRatio);
+        this.burstPoolSize = maxOverActivePool - maxActivePool;
+    }
+
+    /**
+     * Change the settings of this token pool. Since blocked callers
+     * poll the active pool, there is nothing to wake up.
+     *
+     * @param rateSpec The rate specifier.
+     */
+    @Override
+    public synchronized void apply(RateSpec rateSpec) {
+        this.rateSpec = rateSpec;
+        this.maxActivePool = Math.max((long) 1E6, (long) ((double) rateSpec.getNanosPerOp() * MIN_CONCURRENT_OPS));
+        this.maxOverActivePool = (long) (maxActivePool * rateSpec.getBurstRatio());
+        this.burstRatio = rateSpec.getBurstRatio();
+
+        this.burstPoolSize = maxOverActivePool - maxActivePool;
+        this.nanosPerOp = rateSpec.getNanosPerOp();
+    }
+
+    @Override
+    public double getBurstRatio() {
+        return burstRatio;
+    }
+
+    @Override
+    public long takeUpTo(long amt) {
+        while (true) {
+            long active = activePool.get();
+            long take = Math.min(amt, active);
+            if (take <= 0L) {
+                return 0L;
+            }
+            if (activePool.compareAndSet(active, active - take)) {
+                return take;
+            }
+        }
+    }
+
+    @Override
+    public void giveBack(long amt) {
+        while (true) {
+            long active = activePool.get();
+            long toActive = Math.min(amt, Math.max(maxActivePool - active, 0L));
+            if (activePool.compareAndSet(active, active + toActive)) {
+                if (amt > toActive) {
+                    waitingPool.addAndGet(amt - toActive);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long blockAndTake() {
+        return blockAndTake(nanosPerOp);
+    }
+
+    @Override
+    public long blockAndTake(long tokens) {
+        int tries = 0;
+        long parkNanos = MIN_PARK_NANOS;
+        while (true) {
+            long active = activePool.get();
+            if (active >= tokens) {
+                if (activePool.compareAndSet(active, active - tokens)) {
+                    return waitingPool.get() + active - tokens;
+                }
+                continue;
+            }
+            if (tries == 0) {
+                blocks.increment();
+            }
+            if (tries < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+            }
+            tries++;
+        }
+    }
+
+    @Override
+    public long getWaitTime() {
+        return activePool.get() + waitingPool.get();
+    }
+
+    @Override
+    public long getWaitPool() {
+        return waitingPool.get();
+    }
+
+    @Override
+    public long getActivePool() {
+        return activePool.get();
+    }
+
+    /**
+     * Add the given number of new tokens to the pool, using the same overflow
+     * and backfill rules as {@link ThreadDrivenTokenPool#refill(long)}. This
+     * method is meant to be called by a single filler.
+     *
+     * @param newTokens The number of new tokens to add to the token pools
+     * @return the total number of tokens in all pools
+     */
+    @Override
+    public long refill(long newTokens) {
+        long maxActive = this.maxActivePool;
+        long maxOverActive = this.maxOverActivePool;
+
+        long needed = Math.max(maxActive - activePool.get(), 0L);
+        long allocatedToActivePool = Math.min(newTokens, needed);
+        long active = activePool.addAndGet(allocatedToActivePool);
+
+        // overflow logic
+        long allocatedToOverflowPool = newTokens - allocatedToActivePool;
+        long waiting = waitingPool.addAndGet(allocatedToOverflowPool);
+
+        // backfill logic
+        double refillFactor = Math.min((double) newTokens / maxActive, 1.0D);
+        long burstFillAllowed = (long) (refillFactor * burstPoolSize);
+
+        burstFillAllowed = Math.min(maxOverActive - active, burstFillAllowed);
+        long burstFill = Math.max(Math.min(burstFillAllowed, waiting), 0L);
+
+        waiting = waitingPool.addAndGet(-burstFill);
+        active = activePool.addAndGet(burstFill);
+
+        return active + waiting;
+    }
+
+    @Override
+    public RateSpec getRateSpec() {
+        return rateSpec;
+    }
+
+    @Override
+    public long restart() {
+        return activePool.getAndSet(0L) + waitingPool.getAndSet(0L);
+    }
+
+    @Override
+    public String toString() {
+        long active = activePool.get();
+        return "Tokens(atomic): active=" + active + "/" + maxActivePool
+                + String.format(
+                " (%3.1f%%)A (%3.1f%%)B ",
+                (((double) active / (double) maxActivePool) * 100.0),
+                (((double) active / (double) maxOverActivePool) * 100.0)) + " waiting=" + waitingPool.get() +
+                " blocks=" + blocks.sum() +
+                " rateSpec:" + ((rateSpec != null) ? rateSpec.toString() : "NULL");
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.ratelimits;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>A batching rate limiter is a per-thread view of a shared
+ * {@link HybridRateLimiter}. Rather than taking one op worth of tokens
+ * from the shared {@link TokenPool} for every call, it claims up to
+ * <em>batch</em> ops worth of tokens in one step and then hands them
+ * out locally. This reduces the traffic on the shared pool by up to
+ * the batch size.</p>
+ *
+ * <p>A batch is claimed without blocking, by taking up to <em>batch</em>
+ * ops worth of whatever is in the active pool, and giving back any
+ * part of an op which was taken. Only when the active pool does not
+ * hold a whole op does a claim block, and then for exactly one op, just
+ * as the shared limiter would. Since the active pool is bounded, the
+ * amount of time that one thread can hold in reserve is bounded as well.
+ * Tokens which are still held when a motor stops are given back to the
+ * shared pool with {@link #release()}.</p>
+ *
+ * <H2>Wait Time</H2>
+ * <p>The tokens held in a local batch are still owed to ops which have
+ * not yet started, so they are counted as wait time just as they would
+ * be if they were still in the shared pool. The wait time reported for
+ * each op is the current wait time of the shared pool, plus the tokens
+ * still held for the ops which follow it in the same batch.</p>
+ *
+ * <H2>Schedule</H2>
+ * <p>Each batch also claims its slots on the schedule of the shared
+ * limiter, so the ops of a batch are scheduled one op apart, just as
+ * they would be if each were granted by the shared limiter. Slots of
+ * ops which are given back are given back to the schedule as well.</p>
+ *
+ * <p>Instances of this class are meant to be owned by a single motor.
+ * Only {@link #release()} may be called from another thread.</p>
+ */
+public class BatchingRateLimiter implements RateLimiter {
+
+    private final HybridRateLimiter shared;
+    private final int batch;
+    private final AtomicLong heldOps = new AtomicLong(0L);
+
+    private volatile TokenPool pool;
+    private volatile long nanosPerOp;
+    private long scheduledStart;
+
+    public BatchingRateLimiter(HybridRateLimiter shared, int batch) {
+        if (batch < 1) {
+            throw new RuntimeException("The rate limiter batch size must be at least 1, but it was " + batch);
+        }
+        this.shared = shared;
+        this.batch = batch;
+    }
+
+    @Override
+    public long maybeWaitForOp() {
+        long held = take();
+        return pool.getWaitTime() + (held * nanosPerOp);
+    }
+
+    @Override
+    public long maybeWaitForScheduledOp() {
+        take();
+        return scheduledStart;
+    }
+
+    /**
+     * Grant one op from the local batch, claiming a new batch if it is empty.
+     *
+     * @return the number of ops still held after this one
+     */
+    private long take() {
+        long held = heldOps.decrementAndGet();
+        if (held < 0L) {
+            return claim();
+        }
+        scheduledStart += nanosPerOp;
+        return held;
+    }
+
+    /**
+     * Claim a batch, and keep all but the op which is being granted now.
+     *
+     * @return the number of ops still held after this one
+     */
+    private long claim() {
+        TokenPool pool = shared.getTokenPool();
+        long nanosPerOp = pool.getRateSpec().getNanosPerOp();
+        this.pool = pool;
+        this.nanosPerOp = nanosPerOp;
+
+        long taken = pool.takeUpTo(batch * nanosPerOp);
+        long ops = taken / nanosPerOp;
+        long partial = taken - (ops * nanosPerOp);
+        if (partial > 0L) {
+            pool.giveBack(partial);
+        }
+        if (ops == 0L) {
+            pool.blockAndTake(nanosPerOp);
+            ops = 1L;
+        }
+        scheduledStart = shared.takeSchedule(ops * nanosPerOp);
+        heldOps.set(ops - 1L);
+        return ops - 1L;
+    }
+
+    /**
+     * Give the tokens of any ops which are still held back to the shared pool.
+     *
+     * @return the number of tokens given back
+     */
+    public long release() {
+        long held = heldOps.getAndSet(0L);
+        TokenPool pool = this.pool;
+        if (held <= 0L || pool == null) {
+            return 0L;
+        }
+        long tokens = held * nanosPerOp;
+        pool.giveBack(tokens);
+        shared.giveBackSchedule(tokens);
+        return tokens;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public HybridRateLimiter getShared() {
+        return shared;
+    }
+
+    @Override
+    public long getTotalWaitTime() {
+        return shared.getTotalWaitTime();
+    }
+
+    @Override
+    public long getWaitTime() {
+        return shared.getWaitTime();
+    }
+
+    @Override
+    public void applyRateSpec(RateSpec spec) {
+        shared.applyRateSpec(spec);
+    }
+
+    @Override
+    public long getStartTime() {
+        return shared.getStartTime();
+    }
+
+    @Override
+    public RateSpec getRateSpec() {
+        return shared.getRateSpec();
+    }
+
+    @Override
+    public void start() {
+        shared.start();
+    }
+
+    @Override
+    public String toString() {
+        return "batch=" + batch + " held=" + heldOps.get() + " of " + shared.toString();
+    }
+}
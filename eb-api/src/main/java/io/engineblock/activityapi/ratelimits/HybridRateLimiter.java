@@ -75,6 +75,15 @@ import java.util.concurrent.atomic.AtomicLong;
  * behavior while allowing clients to still track truer to rate limit expectations, so long as the
  * overall workload is not saturating resources.
  * </p>
+ *
+ * <H2>Schedule</H2>
+ * <p>
+ * Alongside the token pool, this rate limiter keeps a schedule clock, which is the start time plus
+ * the nanoseconds of every op granted since. Since the filler adds exactly the elapsed time to the
+ * pool, the schedule clock trails the system clock by the wait time of the pool, and each op is
+ * handed the slot on the schedule which it was granted. This is the scheduled start which response
+ * times are measured from.
+ * </p>
  */
 public class HybridRateLimiter implements Startable, RateLimiter {
 
@@ -99,6 +108,9 @@ public class HybridRateLimiter implements Startable, RateLimiter {
 
     // TODO Doc rate limiter scenarios, including when you want to reset the waittime, and when you don't
     private AtomicLong cumulativeWaitTimeNanos = new AtomicLong(0L);
+    // the start time plus the nanos of all ops granted since, with ops granted before the start counted from creation
+    private final long createdAt = System.nanoTime();
+    private final AtomicLong schedule = new AtomicLong(createdAt);
 
     protected HybridRateLimiter() {
     }
@@ -120,7 +132,41 @@ public class HybridRateLimiter implements Startable, RateLimiter {
 
     @Override
     public long maybeWaitForOp() {
-        return tokens.blockAndTake();
+        TokenPool tokens = this.tokens;
+        long waitTime = tokens.blockAndTake();
+        schedule.getAndAdd(tokens.getRateSpec().getNanosPerOp());
+        return waitTime;
+    }
+
+    @Override
+    public long maybeWaitForScheduledOp() {
+        TokenPool tokens = this.tokens;
+        tokens.blockAndTake();
+        return schedule.getAndAdd(tokens.getRateSpec().getNanosPerOp());
+    }
+
+    /**
+     * Advance the schedule for ops which were granted directly from the token pool.
+     *
+     * @param nanos the nanoseconds of the ops which were granted
+     * @return the scheduled start of the first of them
+     */
+    long takeSchedule(long nanos) {
+        return schedule.getAndAdd(nanos);
+    }
+
+    /**
+     * Move the schedule back for ops whose tokens were given back to the token pool
+     * before they started.
+     *
+     * @param nanos the nanoseconds of the ops which were given back
+     */
+    void giveBackSchedule(long nanos) {
+        schedule.addAndGet(-nanos);
+    }
+
+    TokenPool getTokenPool() {
+        return tokens;
     }
 
     @Override
@@ -149,9 +195,10 @@ public class HybridRateLimiter implements Startable, RateLimiter {
             return;
         }
 
-        this.rateSpec = updatingRateSpec;
-        this.filler = (this.filler == null) ? new TokenFiller(rateSpec, activityDef) : filler.apply(rateSpec);
+        this.filler = (this.filler == null) ? new TokenFiller(updatingRateSpec) : filler.apply(updatingRateSpec);
         this.tokens = this.filler.getTokenPool();
+        // The filler keeps its original pool, so report the spec which is actually in effect
+        this.rateSpec = this.filler.getRateSpec();
 
         if (this.state == State.Idle && updatingRateSpec.isAutoStart()) {
             this.start();
@@ -176,6 +223,10 @@ public class HybridRateLimiter implements Startable, RateLimiter {
                 // starts, since the check condition was not properly isolated
             case Idle:
                 long nanos = getNanoClockTime();
+                if (state == State.Idle) {
+                    // The schedule begins once, when the filler starts adding time to the pool
+                    schedule.addAndGet(nanos - createdAt);
+                }
                 this.starttime = nanos;
                 this.filler.start();
                 state = State.Started;
@@ -191,7 +242,9 @@ public class HybridRateLimiter implements Startable, RateLimiter {
             case Started:
                 long accumulatedWaitSinceLastStart = cumulativeWaitTimeNanos.get();
                 cumulativeWaitTimeNanos.set(0L);
-                return this.filler.restart() + accumulatedWaitSinceLastStart;
+                long waitTime = this.filler.restart();
+                schedule.set(getNanoClockTime());
+                return waitTime + accumulatedWaitSinceLastStart;
             default:
                 return 0L;
         }
@@ -35,6 +35,18 @@ public interface RateLimiter extends Startable {
      */
     long maybeWaitForOp();
 
+    /**
+     * Block until it is time for the next operation, as with {@link #maybeWaitForOp()},
+     * and return the time at which that operation was scheduled to start.
+     *
+     * The schedule is a virtual clock which begins when the rate limiter is started,
+     * and which advances by the nanoseconds per op for each op that is granted. The
+     * scheduled start of an op does not depend on when the caller reads the system
+     * clock, so an op which is granted late is still scheduled when it was due.
+     * @return the scheduled start of the op, in {@link System#nanoTime()} terms
+     */
+    long maybeWaitForScheduledOp();
+
     /**
      * Return the total number of nanoseconds behind schedule
      * that this rate limiter is, including the full history across all
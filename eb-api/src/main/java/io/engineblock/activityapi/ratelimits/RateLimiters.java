@@ -43,6 +43,33 @@ public class RateLimiters {
         return createOrUpdate(def, label, null, new RateSpec(specString));
     }
 
+    /**
+     * Provide a per-thread view of a shared rate limiter which claims tokens in batches.
+     * An extant batching view is kept if it is still valid for the shared limiter and batch size.
+     * Otherwise, any tokens it still holds are given back to its shared limiter.
+     *
+     * @param extant The batching view which was previously returned, or null
+     * @param shared The shared rate limiter of the activity, or null
+     * @param batch  The number of ops to claim at once
+     * @return a {@link BatchingRateLimiter}, or the shared rate limiter if batching does not apply
+     */
+    public static RateLimiter batchedOrShared(RateLimiter extant, RateLimiter shared, int batch) {
+        if (batch <= 1 || !(shared instanceof HybridRateLimiter)) {
+            if (extant instanceof BatchingRateLimiter) {
+                ((BatchingRateLimiter) extant).release();
+            }
+            return shared;
+        }
+        if (extant instanceof BatchingRateLimiter) {
+            BatchingRateLimiter batching = (BatchingRateLimiter) extant;
+            if (batching.getShared() == shared && batching.getBatch() == batch) {
+                return extant;
+            }
+            batching.release();
+        }
+        return new BatchingRateLimiter((HybridRateLimiter) shared, batch);
+    }
+
     public static class WaitTimeGauge implements Gauge<Long> {
 
         private final RateLimiter rateLimiter;
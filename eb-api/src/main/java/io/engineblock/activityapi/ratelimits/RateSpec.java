@@ -45,6 +45,7 @@ import org.slf4j.LoggerFactory;
  * <LI>&lt;rate&gt;</LI>
  * <LI>&lt;rate&gt;,&lt;burst ratio&gt;</LI>
  * <LI>&lt;rate&gt;,&lt;burst ratio&gt;,&lt;verb&gt;</LI>
+ * <LI>&lt;rate&gt;,&lt;burst ratio&gt;,&lt;verb&gt;,&lt;pool&gt;</LI>
  * </UL>
  *
  * Where:
@@ -53,6 +54,8 @@ import org.slf4j.LoggerFactory;
  * <EM>burst ratio</EM> is a floating point value greater than 1.0 which determines how much faster
  * the rate limiter may go to catch up to the overall.
  * <EM>verb</EM> is one of configure, start, or restart, as explained below.
+ * <EM>pool</EM> is one of monitor or atomic, which selects the token pool implementation
+ * as explained below.
  *
  * For example:
  * <UL>
@@ -63,6 +66,7 @@ import org.slf4j.LoggerFactory;
  * <LI>1000,1.05,restart - Allow up to 1000 ops per second on average, but allow 1050 ops per second
  * if the workload gets behind. If the rate limiter was already running, restart it, clearing any
  * previous backlog (wait time) and resource pools.</LI>
+ * <LI>5000000,1.1,start,atomic - Allow up to 5M ops per second, using the lock free token pool.</LI>
  * </UL>
  *
  * <H2>Rate Limiter Life Cycle</H2>
@@ -98,6 +102,14 @@ import org.slf4j.LoggerFactory;
  * restarting forces a re-initialization as part of the configuration.</DD>
  *
  * </DL>
+ *
+ * <H2>Token Pools</H2>
+ *
+ * <P>The <em>monitor</em> pool is the default. It uses intrinsic locks, which is efficient enough
+ * for most rates and thread counts. When many threads share a rate limiter at very high rates,
+ * the <em>atomic</em> pool can be used instead. It takes tokens with compare-and-set, and blocked
+ * callers spin and park rather than wait on a monitor. The pool type of a rate limiter is fixed
+ * when it is first configured.</P>
  */
 public class RateSpec {
 
@@ -106,6 +118,7 @@ public class RateSpec {
     public static final double DEFAULT_RATE_OPS_S = 1.0D;
     public static final double DEFAULT_BURST_RATIO = 1.1D;
     public static Verb DEFAULT_VERB = Verb.start;
+    public static Pool DEFAULT_POOL = Pool.monitor;
 
     /**
      * Target rate in Operations Per Second
@@ -113,6 +126,18 @@ public class RateSpec {
     public double opsPerSec = DEFAULT_RATE_OPS_S;
     public double burstRatio = DEFAULT_BURST_RATIO;
     public Verb verb = Verb.start;
+    public Pool pool = DEFAULT_POOL;
+
+    public static enum Pool {
+        /**
+         * Use the {@link ThreadDrivenTokenPool}, which synchronizes callers on the pool monitor.
+         */
+        monitor,
+        /**
+         * Use the {@link AtomicTokenPool}, which lets callers take tokens without locking.
+         */
+        atomic
+    }
 
     public static enum Verb {
         /**
@@ -146,9 +171,14 @@ public class RateSpec {
     }
 
     public RateSpec(double opsPerSec, double burstRatio, Verb type) {
+        this(opsPerSec, burstRatio, type, DEFAULT_POOL);
+    }
+
+    public RateSpec(double opsPerSec, double burstRatio, Verb type, Pool pool) {
         this.opsPerSec = opsPerSec;
         this.burstRatio = burstRatio;
         this.verb = type;
+        this.pool = pool;
     }
 
     public RateSpec(ParameterMap.NamedParameter tuple) {
@@ -161,6 +191,9 @@ public class RateSpec {
     public RateSpec(String spec) {
         String[] specs = spec.split("[,:;]");
         switch (specs.length) {
+            case 4:
+                pool = Pool.valueOf(specs[3].toLowerCase());
+                logger.debug("selected token pool type: " + pool);
             case 3:
                 verb = Verb.valueOf(specs[2].toLowerCase());
                 logger.debug("selected rate limiter type: " + verb);
@@ -173,7 +206,7 @@ public class RateSpec {
                 opsPerSec = Unit.doubleCountFor(specs[0]).orElseThrow(() -> new RuntimeException("Unparsable:" + specs[0]));
                 break;
             default:
-                throw new RuntimeException("Rate specs must be either '<rate>' or '<rate>:<burstRatio>' as in 5000.0 or 5000.0:1.0");
+                throw new RuntimeException("Rate specs must be in the form '<rate>[,<burstRatio>[,<verb>[,<pool>]]]' as in 5000.0 or 5000.0,1.0");
         }
     }
 
@@ -187,19 +220,25 @@ public class RateSpec {
         double burstPortion = Math.abs(br - ((long) br));
         String burstfmt = (burstPortion > 0.001D) ? String.format("%,.3f", br) : String.format("%,d", (long) br);
 
-        return String.format("rate=%s burstRatio=%.3f (%s SOPSS %s BOPSS) [%s]", ratefmt, burstRatio, ratefmt, burstfmt, verb);
+        String poolfmt = (pool != DEFAULT_POOL) ? " pool=" + pool : "";
+
+        return String.format("rate=%s burstRatio=%.3f (%s SOPSS %s BOPSS) [%s]%s", ratefmt, burstRatio, ratefmt, burstfmt, verb, poolfmt);
     }
 
     public RateSpec withOpsPerSecond(double rate) {
-        return new RateSpec(rate, this.burstRatio);
+        return new RateSpec(rate, this.burstRatio, DEFAULT_VERB, this.pool);
     }
 
     public RateSpec withBurstRatio(double burstRatio) {
-        return new RateSpec(this.opsPerSec, burstRatio);
+        return new RateSpec(this.opsPerSec, burstRatio, DEFAULT_VERB, this.pool);
     }
 
     public RateSpec withVerb(Verb verb) {
-        return new RateSpec(this.opsPerSec, this.burstRatio, verb);
+        return new RateSpec(this.opsPerSec, this.burstRatio, verb, this.pool);
+    }
+
+    public RateSpec withPool(Pool pool) {
+        return new RateSpec(this.opsPerSec, this.burstRatio, this.verb, pool);
     }
 
 
@@ -224,7 +263,7 @@ public class RateSpec {
 
         if (Double.compare(rateSpec.opsPerSec, opsPerSec) != 0) return false;
         if (Double.compare(rateSpec.burstRatio, burstRatio) != 0) return false;
-        return true;
+        return pool == rateSpec.pool;
     }
 
     @Override
@@ -235,6 +274,7 @@ public class RateSpec {
         result = (int) (temp ^ (temp >>> 32));
         temp = Double.doubleToLongBits(burstRatio);
         result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + pool.hashCode();
         return result;
     }
 
@@ -242,6 +282,10 @@ public class RateSpec {
         return this.verb;
     }
 
+    public Pool getPool() {
+        return this.pool;
+    }
+
     public boolean isAutoStart() {
         return this.verb == Verb.start || this.verb == Verb.restart;
     }
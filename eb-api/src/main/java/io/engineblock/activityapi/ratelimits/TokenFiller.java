@@ -17,111 +17,108 @@
 
 package io.engineblock.activityapi.ratelimits;
 
-import com.codahale.metrics.Timer;
 import io.engineblock.activityapi.sysperf.SysPerf;
 import io.engineblock.activityapi.sysperf.SysPerfData;
-import io.engineblock.activityimpl.ActivityDef;
-import io.engineblock.metrics.ActivityMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
-
-public class TokenFiller implements Runnable {
+/**
+ * A token filler adds tokens to a {@link TokenPool} based on the passage of time.
+ * Token fillers do not have their own threads. Once started, they are refilled by
+ * the shared {@link TokenFillerWheel}.
+ */
+public class TokenFiller {
     private final static Logger logger = LoggerFactory.getLogger(TokenFiller.class);
 
     public final static double MIN_PER_SECOND = 10D;
-    public final static double MAX_PER_SECOND = 1000D;
     private final SysPerfData PERFDATA = SysPerf.get().getPerfData(false);
-    private final long interval = (long) 1E6;
 
     private final TokenPool tokenPool;
-    private volatile boolean running = true;
-    private RateSpec rateSpec;
-    private Thread thread;
-    private volatile long lastRefillAt;
-    private Timer timer;
+    private volatile boolean running = false;
+    private volatile RateSpec rateSpec;
+    private long lastRefillAt;
 
     /**
      * A token filler adds tokens to a {@link TokenPool} at some rate.
-     * By default, this rate is at least every millisecond +- scheduling jitter
-     * in the JVM.
+     * By default, this rate is at least every tick of the {@link TokenFillerWheel},
+     * which is every millisecond +- scheduling jitter in the JVM. Fillers for
+     * rates below one op per tick are refilled about once per op.
      *
      * @param rateSpec A {@link RateSpec}
-     * @param def An {@link ActivityDef}
      */
-    public TokenFiller(RateSpec rateSpec, ActivityDef def) {
+    public TokenFiller(RateSpec rateSpec) {
         this.rateSpec = rateSpec;
-        this.tokenPool= new TokenPool(rateSpec);
+        this.tokenPool= newTokenPool(rateSpec);
         this.tokenPool.refill(rateSpec.getNanosPerOp());
-        this.timer = ActivityMetrics.timer(def, "tokenfiller");
+    }
+
+    private static TokenPool newTokenPool(RateSpec rateSpec) {
+        switch (rateSpec.getPool()) {
+            case atomic:
+                return new AtomicTokenPool(rateSpec);
+            case monitor:
+            default:
+                return new ThreadDrivenTokenPool(rateSpec);
+        }
     }
 
     public TokenFiller apply(RateSpec rateSpec) {
+        if (this.rateSpec.getPool() != rateSpec.getPool()) {
+            logger.warn("The token pool of a rate limiter can not be changed once it is created, " +
+                    "keeping the " + this.rateSpec.getPool() + " pool instead of " + rateSpec.getPool());
+            rateSpec = rateSpec.withPool(this.rateSpec.getPool());
+        }
         this.rateSpec = rateSpec;
         this.tokenPool.apply(rateSpec);
         return this;
     }
 
-    private void stop() {
-        this.running=false;
+    /**
+     * @return the rate spec in effect, which always names the pool this filler was created with
+     */
+    public RateSpec getRateSpec() {
+        return rateSpec;
     }
 
     public TokenPool getTokenPool() {
         return tokenPool;
     }
 
-    @Override
-    public void run() {
-        lastRefillAt = System.nanoTime();
-        while (running) {
-            long nextRefillTime = lastRefillAt + interval;
-            long thisRefillTime = System.nanoTime();
-            while (thisRefillTime < nextRefillTime) {
-//            while (thisRefillTime < lastRefillAt + interval) {
-                long parkfor = Math.max(nextRefillTime - thisRefillTime, 0L);
-                //System.out.println(ANSI_Blue + "parking for " + parkfor + "ns" + ANSI_Reset);
-                LockSupport.parkNanos(parkfor);
-                thisRefillTime = System.nanoTime();
-            }
-
-//            this.times[iteration]=thisRefillTime;
-            long delta = thisRefillTime - lastRefillAt;
-//            this.amounts[iteration]=delta;
-            lastRefillAt = thisRefillTime;
-
-            //System.out.println(this);
-            tokenPool.refill(delta);
-            timer.update(delta, TimeUnit.NANOSECONDS);
-//            iteration++;
+    /**
+     * @return the preferred time between refills, in nanoseconds. This is about one op,
+     * but no more than 1/{@link #MIN_PER_SECOND} seconds. The wheel will not refill more
+     * often than once per tick.
+     */
+    public long getIntervalNanos() {
+        return Math.min(rateSpec.getNanosPerOp(), (long) (1E9 / MIN_PER_SECOND));
+    }
 
-        }
+    /**
+     * Add the tokens for the time elapsed since the last refill.
+     *
+     * @param now The current nanosecond time as seen by the caller
+     */
+    public synchronized void refill(long now) {
+        long delta = now - lastRefillAt;
+        lastRefillAt = now;
+        tokenPool.refill(delta);
     }
 
-    public TokenFiller start() {
-        thread = new Thread(this);
-        thread.setName(this.toString());
-        thread.setPriority(Thread.MAX_PRIORITY);
-        thread.setDaemon(true);
-        thread.start();
-        logger.debug("Starting token filler thread: " + this.toString());
+    public synchronized TokenFiller start() {
+        if (!running) {
+            lastRefillAt = System.nanoTime();
+            running = true;
+            TokenFillerWheel.get().add(this);
+            logger.debug("Starting token filler: " + this.toString());
+        }
         return this;
     }
 
     @Override
     public String toString() {
-        return "TokenFiller spec=" + rateSpec + " interval=" + this.interval + "ns pool:" + tokenPool +" running=" + running;
+        return "TokenFiller spec=" + rateSpec + " interval=" + getIntervalNanos() + "ns pool:" + tokenPool +" running=" + running;
     }
 
-//    public String getRefillLog() {
-//        StringBuilder sb = new StringBuilder();
-//        for (int iter = 0; iter < iteration; iter++) {
-//            sb.append(times[iter]).append(" ").append(amounts[iter]).append("\n");
-//        }
-//        return sb.toString();
-//    }
-
     public synchronized long restart() {
         this.lastRefillAt=System.nanoTime();
         logger.debug("Restarting token filler at " + lastRefillAt + " thread: " + this.toString());
@@ -0,0 +1,201 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.ratelimits;
+
+import com.codahale.metrics.Timer;
+import io.engineblock.metrics.ActivityMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>The token filler wheel is a single refill scheduler for all {@link TokenFiller}s
+ * in the JVM. It replaces the dedicated thread that each token filler used to run.
+ * One thread at max priority wakes once per tick, and refills the token pools which
+ * are due at that tick.</p>
+ *
+ * <H2>Design Notes</H2>
+ * <p>This is a hashed timing wheel. Each token filler is placed in the slot for the
+ * tick at which it is next due, modulo the number of slots. Each filler has its own
+ * refill interval, which is a whole number of ticks. Fillers for high rates are
+ * refilled every tick, while fillers for low rates are refilled about once per op,
+ * and at least {@link TokenFiller#MIN_PER_SECOND} times per second. Since refills are
+ * based on the measured time since the last refill, the interval only affects how
+ * smoothly tokens are added, not how many.</p>
+ *
+ * <p>The slots are only touched by the wheel thread. New fillers are handed to it
+ * through a queue. When there are no fillers, the wheel thread parks until one is
+ * added. Fillers are held weakly, so a rate limiter which is no longer referenced
+ * drops out of the wheel without being stopped explicitly.</p>
+ *
+ * <p>The tick duration is the refill granularity. It defaults to 1ms, and can be
+ * changed with {@link #setTickNanos(long)} before the wheel is first used. How late
+ * each refill is compared to its due tick is recorded in the tokenfiller.jitter timer.</p>
+ */
+public class TokenFillerWheel implements Runnable {
+
+    private final static Logger logger = LoggerFactory.getLogger(TokenFillerWheel.class);
+
+    public final static long DEFAULT_TICK_NANOS = 1_000_000L;
+    private final static int SLOTS = 512;
+    private final static int SLOT_MASK = SLOTS - 1;
+
+    private static long tickNanos = DEFAULT_TICK_NANOS;
+    private static TokenFillerWheel instance;
+
+    private final long tick;
+    private final List<List<Entry>> slots = new ArrayList<>(SLOTS);
+    private final ConcurrentLinkedQueue<Entry> added = new ConcurrentLinkedQueue<>();
+    private final List<Entry> due = new ArrayList<>();
+    private final Thread thread;
+    private final Timer jitterTimer;
+    private int entries = 0;
+    private long wheelStart;
+    private long currentTick;
+
+    private TokenFillerWheel(long tickNanos) {
+        this.tick = tickNanos;
+        this.jitterTimer = ActivityMetrics.timer("tokenfiller.jitter");
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+        thread = new Thread(this);
+        thread.setName("TokenFillerWheel tick=" + tick + "ns");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.setDaemon(true);
+    }
+
+    public static synchronized TokenFillerWheel get() {
+        if (instance == null) {
+            instance = new TokenFillerWheel(tickNanos);
+            instance.thread.start();
+            logger.debug("Started token filler wheel with tick " + tickNanos + "ns");
+        }
+        return instance;
+    }
+
+    /**
+     * Set the refill granularity for all rate limiters. This only takes effect if
+     * the wheel has not been used yet.
+     *
+     * @param nanos The duration of one tick of the wheel, in nanoseconds
+     */
+    public static synchronized void setTickNanos(long nanos) {
+        if (nanos <= 0L) {
+            throw new RuntimeException("The token filler tick must be greater than zero, but it was " + nanos + "ns");
+        }
+        if (instance != null && instance.tick != nanos) {
+            logger.warn("The token filler wheel is already running with a tick of " + instance.tick +
+                    "ns, ignoring the new tick of " + nanos + "ns");
+            return;
+        }
+        tickNanos = nanos;
+    }
+
+    public long getTickNanos() {
+        return tick;
+    }
+
+    /**
+     * Add a token filler to the wheel. It will be refilled at its next due tick.
+     *
+     * @param filler The token filler to add.
+     */
+    public void add(TokenFiller filler) {
+        added.add(new Entry(filler));
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        wheelStart = System.nanoTime();
+        currentTick = 0L;
+        while (true) {
+            if (entries == 0 && added.isEmpty()) {
+                LockSupport.park(this);
+                wheelStart = System.nanoTime() - (currentTick * tick);
+                continue;
+            }
+
+            long now = System.nanoTime();
+            long nextTickAt = wheelStart + ((currentTick + 1) * tick);
+            while (now < nextTickAt) {
+                LockSupport.parkNanos(nextTickAt - now);
+                now = System.nanoTime();
+            }
+            currentTick++;
+
+            Entry newEntry;
+            while ((newEntry = added.poll()) != null) {
+                newEntry.dueTick = currentTick;
+                slots.get((int) (currentTick & SLOT_MASK)).add(newEntry);
+                entries++;
+            }
+
+            due.clear();
+            Iterator<Entry> iter = slots.get((int) (currentTick & SLOT_MASK)).iterator();
+            while (iter.hasNext()) {
+                Entry entry = iter.next();
+                if (entry.dueTick <= currentTick) {
+                    iter.remove();
+                    due.add(entry);
+                }
+            }
+
+            for (Entry entry : due) {
+                TokenFiller filler = entry.filler.get();
+                if (filler == null) {
+                    entries--;
+                    continue;
+                }
+                long jitter = now - (wheelStart + (entry.dueTick * tick));
+                jitterTimer.update(jitter, TimeUnit.NANOSECONDS);
+                try {
+                    filler.refill(now);
+                } catch (Exception e) {
+                    logger.error("Error while refilling " + filler + ": " + e, e);
+                }
+                long intervalTicks = Math.max(1L, filler.getIntervalNanos() / tick);
+                entry.dueTick = currentTick + intervalTicks;
+                slots.get((int) (entry.dueTick & SLOT_MASK)).add(entry);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenFillerWheel tick=" + tick + "ns fillers=" + entries;
+    }
+
+    private final static class Entry {
+        private final WeakReference<TokenFiller> filler;
+        private long dueTick;
+
+        private Entry(TokenFiller filler) {
+            this.filler = new WeakReference<>(filler);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl;
+
+import io.engineblock.activityapi.core.Activity;
+import io.engineblock.activityapi.output.Output;
+import io.engineblock.activityapi.output.OutputDispenser;
+import io.engineblock.activityimpl.marker.CheckpointingOutput;
+import io.engineblock.activityimpl.marker.CycleCheckpointer;
+
+public class CheckpointingOutputDispenser implements OutputDispenser {
+
+    private final Activity activity;
+    private final OutputDispenser outputDispenser;
+    private CycleCheckpointer checkpointer;
+
+    /**
+     * @param activity        The activity to checkpoint
+     * @param outputDispenser The dispenser of the configured outputs, or null if there are none
+     */
+    public CheckpointingOutputDispenser(Activity activity, OutputDispenser outputDispenser) {
+        this.activity = activity;
+        this.outputDispenser = outputDispenser;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The checkpointer is created with the first output, once the activity has
+     * been initialized, so that it sees the final cycles and stride.</p>
+     */
+    @Override
+    public synchronized Output getOutput(long slot) {
+        if (checkpointer == null) {
+            checkpointer = new CycleCheckpointer(activity);
+            activity.registerAutoCloseable(checkpointer);
+        }
+        Output output = outputDispenser == null ? null : outputDispenser.getOutput(slot);
+        return new CheckpointingOutput(checkpointer, output);
+    }
+}
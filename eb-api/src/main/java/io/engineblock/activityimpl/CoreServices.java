@@ -36,13 +36,15 @@ public class CoreServices {
         OutputDispenser outputDispenser = new SimpleConfig(activity, "output").getString("type")
                 .flatMap(OutputType.FINDER::get)
                 .map(mt -> mt.getOutputDispenser(activity)).orElse(null);
-        if (outputDispenser==null) {
-            return Optional.empty();
+        if (outputDispenser!=null) {
+            Optional<Predicate<ResultReadable>> outputFilterDispenser = getOutputFilter(activity);
+            if (outputFilterDispenser.isPresent()) {
+                outputDispenser = new FilteringOutputDispenser(outputDispenser, outputFilterDispenser.get());
+            }
         }
 
-        Optional<Predicate<ResultReadable>> outputFilterDispenser = getOutputFilter(activity);
-        if (outputFilterDispenser.isPresent()) {
-            outputDispenser = new FilteringOutputDispenser(outputDispenser, outputFilterDispenser.get());
+        if (activity.getParams().getOptionalString("checkpoint").isPresent()) {
+            outputDispenser = new CheckpointingOutputDispenser(activity, outputDispenser);
         }
 
         return Optional.ofNullable(outputDispenser);
@@ -9,7 +9,6 @@ import io.engineblock.activityapi.planning.OpSequence;
 import io.engineblock.activityapi.ratelimits.RateLimiter;
 import io.engineblock.activityapi.ratelimits.RateLimiters;
 import io.engineblock.activityapi.ratelimits.RateSpec;
-import io.engineblock.metrics.ActivityMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +36,7 @@ public class SimpleActivity implements Activity {
     private RateLimiter phaseLimiter;
     private ActivityController activityController;
     private ActivityInstrumentation activityInstrumentation;
+    private ActivityDefObserver opSequenceObserver;
 
     public SimpleActivity(ActivityDef activityDef) {
         this.activityDef = activityDef;
@@ -196,7 +196,7 @@ public class SimpleActivity implements Activity {
 
     @Override
     public Timer getResultTimer() {
-        return ActivityMetrics.timer(getActivityDef(),"result");
+        return getInstrumentation().getOrCreateTimer("result");
     }
 
     @Override
@@ -225,25 +225,54 @@ public class SimpleActivity implements Activity {
 
         activityDef.getParams().getOptionalNamedParameter("striderate")
                 .map(RateSpec::new)
+                .map(this::forMotorThreads)
                 .ifPresent(spec -> strideLimiter = RateLimiters.createOrUpdate(this.getActivityDef(), "strides", strideLimiter, spec));
 
         activityDef.getParams().getOptionalNamedParameter("cyclerate", "targetrate")
-                .map(RateSpec::new).ifPresent(
-                spec -> cycleLimiter = RateLimiters.createOrUpdate(this.getActivityDef(), "cycles", cycleLimiter, spec));
+                .map(RateSpec::new)
+                .map(this::forMotorThreads)
+                .ifPresent(spec -> cycleLimiter = RateLimiters.createOrUpdate(this.getActivityDef(), "cycles", cycleLimiter, spec));
 
         activityDef.getParams().getOptionalNamedParameter("phaserate")
                 .map(RateSpec::new)
+                .map(this::forMotorThreads)
                 .ifPresent(spec -> phaseLimiter = RateLimiters.createOrUpdate(this.getActivityDef(), "phases", phaseLimiter, spec));
 
+        if (opSequenceObserver != null) {
+            opSequenceObserver.onActivityDefUpdate(activityDef);
+        }
+
+    }
+
+    /**
+     * Motors which run on virtual threads (executor=virtual) must not wait on a monitor,
+     * since that pins their carrier threads. For these, rate limiters always use the
+     * lock-free token pool.
+     * @param spec The rate spec as given
+     * @return the rate spec to use for the motor threads of this activity
+     */
+    private RateSpec forMotorThreads(RateSpec spec) {
+        boolean virtual = activityDef.getParams().getOptionalString("executor").map("virtual"::equals).orElse(false);
+        if (virtual && spec.getPool() == RateSpec.Pool.monitor) {
+            return spec.withPool(RateSpec.Pool.atomic);
+        }
+        return spec;
     }
 
     /**
      * Modify the provided ActivityDef with defaults for stride and cycles, if
      * they haven't been provided, based on the length of the sequence as determined
      * by the provided ratios. Also, modify the ActivityDef with reasonable defaults when requested.
+     * If the sequence observes activity definition updates, as an adaptive sequence does, then it
+     * is updated now and each time the activity definition changes.
      * @param seq - The {@link OpSequence} to derive the defaults from
      */
     public void setDefaultsFromOpSequence(OpSequence seq) {
+        if (seq instanceof ActivityDefObserver) {
+            opSequenceObserver = (ActivityDefObserver) seq;
+            opSequenceObserver.onActivityDefUpdate(activityDef);
+        }
+
         Optional<String> strideOpt = getParams().getOptionalString("stride");
         if (strideOpt.isEmpty()) {
             String stride = String.valueOf(seq.getSequence().length);
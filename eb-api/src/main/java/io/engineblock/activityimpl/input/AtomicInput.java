@@ -20,6 +20,7 @@ import io.engineblock.activityapi.core.ActivityDefObserver;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
 import io.engineblock.activityapi.input.Input;
 import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.marker.CycleCheckpoint;
 import io.engineblock.util.Unit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,9 @@ import java.util.concurrent.atomic.AtomicLong;
  * <p>This input, and Inputs in general do not actively prevent usage of values
  * after the max value. They simply expose it to callers. It is up to the
  * caller to check the value to determine when the input is deemed "used up."</p>
+ * <p>If the resume parameter names a {@link CycleCheckpoint} file, then only the
+ * cycles which had not completed as of that checkpoint are provided, widened to
+ * whole strides. Such an input is not contiguous.</p>
  */
 public class AtomicInput implements Input, ActivityDefObserver, ProgressCapable {
     private final static Logger logger = LoggerFactory.getLogger(AtomicInput.class);
@@ -51,17 +55,38 @@ public class AtomicInput implements Input, ActivityDefObserver, ProgressCapable
     private final AtomicLong recycleValue = new AtomicLong(0L);
     private final AtomicLong recycleMax = new AtomicLong(0L);
 
+    private final ThreadLocal<InputInterval.Segment> segments =
+            ThreadLocal.withInitial(() -> new InputInterval.Segment(0L, 0L));
+
     private ActivityDef activityDef;
+    private CycleCheckpoint resumeFrom;
+    private boolean resumeLoaded;
+    private volatile long[] remaining;
 
     public AtomicInput(ActivityDef activityDef) {
         this.activityDef = activityDef;
         onActivityDefUpdate(activityDef);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Each calling thread gets the same segment instance back on every call, reset
+     * to the new interval of cycles. Callers must be done with a segment before they
+     * ask for the next one.</p>
+     */
     @Override
     public CycleSegment getInputSegment(int stride) {
         while (true) {
             long current = this.cycleValue.get();
+            long[] remaining = this.remaining;
+            if (remaining != null) {
+                long resumeAt = resumeAt(remaining, current);
+                if (resumeAt != current) {
+                    cycleValue.compareAndSet(current, resumeAt);
+                    continue;
+                }
+            }
             long next = current + stride;
             if (next > max.get()) {
                 if (recycleValue.get()>=recycleMax.get()) {
@@ -71,14 +96,27 @@ public class AtomicInput implements Input, ActivityDefObserver, ProgressCapable
                     if (cycleValue.compareAndSet(current,min.get()+stride)) {
                         recycleValue.getAndIncrement();
                         logger.trace("recycling input for " + activityDef.getAlias() + " recycle:" + recycleValue.get());
-                        return new InputInterval.Segment(min.get(), min.get()+stride);
+                        return segments.get().reset(min.get(), min.get()+stride);
                     }
                 }
             }
             if (cycleValue.compareAndSet(current, next)) {
-                return new InputInterval.Segment(current, next);
+                return segments.get().reset(current, next);
+            }
+        }
+    }
+
+    /**
+     * @return the given cycle if it is still to be run, or else the next cycle which is
+     * still to be run, or the max cycle if there are none
+     */
+    private long resumeAt(long[] remaining, long cycle) {
+        for (int i = 0; i < remaining.length; i += 2) {
+            if (cycle < remaining[i + 1]) {
+                return Math.max(cycle, remaining[i]);
             }
         }
+        return Math.max(cycle, max.get());
     }
 
     @Override
@@ -134,11 +172,30 @@ public class AtomicInput implements Input, ActivityDefObserver, ProgressCapable
         long recycles = activityDef.getParams().getOptionalString("recycles").flatMap(Unit::longCountFor).orElse(0L);
         this.recycleMax.set(recycles);
 
+        if (!resumeLoaded) {
+            resumeFrom = CycleCheckpoint.forResume(activityDef).orElse(null);
+            resumeLoaded = true;
+        }
+        if (resumeFrom != null) {
+            if (recycles > 0) {
+                throw new InvalidParameterException("resume may not be used with recycles");
+            }
+            long stride = activityDef.getParams().getOptionalLong("stride").orElse(1L);
+            long[] remaining = resumeFrom.getRemaining(startCycle, endCycle, stride);
+            long count = 0L;
+            for (int i = 0; i < remaining.length; i += 2) {
+                count += remaining[i + 1] - remaining[i];
+            }
+            logger.debug("resuming " + activityDef.getAlias() + " with " + count + " of "
+                    + (endCycle - startCycle) + " cycles remaining");
+            this.remaining = remaining;
+        }
+
     }
 
     @Override
     public boolean isContiguous() {
-        return true;
+        return remaining == null;
     }
 
 }
@@ -55,14 +55,25 @@ public class InputInterval implements Input {
 
     public static class Segment implements CycleSegment {
 
-        private final long afterEnd;
-        private final long start;
+        private long afterEnd;
+        private long start;
         private long next;
 
         public Segment(long start, long afterEnd) {
+            reset(start, afterEnd);
+        }
+
+        /**
+         * Reuse this segment for a new interval of cycles.
+         * @param start The first cycle of the interval
+         * @param afterEnd The cycle after the last cycle of the interval
+         * @return this segment
+         */
+        public Segment reset(long start, long afterEnd) {
             this.start = start;
             this.afterEnd = afterEnd;
             this.next = start;
+            return this;
         }
 
         @Override
@@ -0,0 +1,319 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+package io.engineblock.activityimpl.input;
+
+import io.engineblock.activityapi.core.ActivityDefObserver;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
+import io.engineblock.activityapi.input.Input;
+import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.marker.CycleCheckpoint;
+import io.engineblock.util.Unit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>An {@link Input} which provides the same cycles as {@link AtomicInput}, but
+ * without a single shared counter for all threads.</p>
+ *
+ * <H2>Design Notes</H2>
+ * <p>The cycles are divided into a number of shards, each a range of whole strides
+ * with its own counter on its own cache line. Each calling thread is given a home
+ * shard, and claims its strides from that shard with a single atomic increment.
+ * When its home shard is used up, a thread steals strides from the other shards in
+ * turn, so that the tail of the run is shared out among all threads. A thread only
+ * contends with the other threads of its home shard, and with stealers.</p>
+ *
+ * <p>The shards are kept in an immutable layout, which is replaced when a recycle
+ * starts or when the cycles are changed. When only the end cycle is changed, the
+ * counters of the current layout are closed off, and the cycles which had not been
+ * claimed yet are divided into a new layout, so no cycle is provided twice. When
+ * the start cycle is changed, the input starts over from it, as {@link AtomicInput}
+ * does.</p>
+ *
+ * <p>Within a shard, cycles are provided in order. Across shards, they are provided
+ * concurrently, so this input is not contiguous.</p>
+ */
+public class ShardedInput implements Input, ActivityDefObserver, ProgressCapable {
+    private final static Logger logger = LoggerFactory.getLogger(ShardedInput.class);
+
+    /**
+     * The distance between shard counters, in longs, so that each is on its own
+     * pair of cache lines
+     */
+    private final static int PAD = 16;
+
+    private final int shardCount;
+    private final AtomicInteger nextThread = new AtomicInteger(0);
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+
+    private final AtomicLong recycleValue = new AtomicLong(0L);
+    private final AtomicLong recycleMax = new AtomicLong(0L);
+
+    private ActivityDef activityDef;
+    private volatile long min = 0L;
+    private volatile long max = Long.MAX_VALUE;
+    private long stride = 1L;
+    private volatile Layout layout;
+
+    /**
+     * @param activityDef The activity definition
+     * @param shardCount  The number of shards to divide the cycles into
+     */
+    public ShardedInput(ActivityDef activityDef, int shardCount) {
+        if (shardCount < 1) {
+            throw new InvalidParameterException("shards must be at least 1, but it was " + shardCount);
+        }
+        this.activityDef = activityDef;
+        this.shardCount = shardCount;
+        onActivityDefUpdate(activityDef);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Each calling thread gets the same segment instance back on every call, reset
+     * to the new interval of cycles. Callers must be done with a segment before they
+     * ask for the next one.</p>
+     */
+    @Override
+    public CycleSegment getInputSegment(int stride) {
+        Cursor cursor = cursors.get();
+        while (true) {
+            Layout layout = this.layout;
+            int shards = layout.ends.length;
+            int shard = shards == 0 ? 0 : cursor.thread % shards;
+            for (int i = 0; i < shards; i++) {
+                long end = layout.ends[shard];
+                if (layout.cursors.get(shard * PAD) + stride <= end) {
+                    long start = layout.cursors.getAndAdd(shard * PAD, stride);
+                    if (start + stride <= end) {
+                        return cursor.segment.reset(start, start + stride);
+                    }
+                }
+                if (++shard == shards) {
+                    shard = 0;
+                }
+            }
+            if (!recycle(layout)) {
+                logger.debug("Exhausted input for " + activityDef.getAlias() + ", recycle count " + recycleValue.get());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Start the next recycle, if the given layout is used up and there are recycles left.
+     *
+     * @param exhausted The layout which is used up
+     * @return true, if there is a newer layout to take cycles from
+     */
+    private synchronized boolean recycle(Layout exhausted) {
+        if (layout != exhausted) {
+            return true;
+        }
+        if (recycleValue.get() >= recycleMax.get()) {
+            return false;
+        }
+        recycleValue.getAndIncrement();
+        layout = new Layout(split(new long[]{min, max}, shardCount, stride));
+        logger.trace("recycling input for " + activityDef.getAlias() + " recycle:" + recycleValue.get());
+        return true;
+    }
+
+    @Override
+    public double getProgress() {
+        return (double) (max - min - layout.getUnclaimed());
+    }
+
+    @Override
+    public double getTotal() {
+        return (double) (max - min);
+    }
+
+    @Override
+    public String getProgressDetails() {
+        return "min=" + min + " claimed=" + (max - min - layout.getUnclaimed()) + " max=" + max +
+                " shards=" + layout.ends.length +
+                (recycleMax.get() > 0L ? " recycles=" + recycleValue.get() + "/" + recycleMax.get() : "");
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedInput{" +
+                "min=" + min +
+                ", max=" + max +
+                ", shards=" + shardCount +
+                ", activity=" + activityDef.getAlias() +
+                '}';
+    }
+
+    @Override
+    public synchronized void onActivityDefUpdate(ActivityDef activityDef) {
+
+        if (activityDef.getCycleCount() == 0) {
+            if (activityDef.getParams().containsKey("cycles")) {
+                throw new RuntimeException("You specified cycles, but the range specified means zero cycles: " + activityDef.getParams().get("cycles"));
+            }
+        }
+
+        long startCycle = activityDef.getStartCycle();
+        long endCycle = activityDef.getEndCycle();
+        if (startCycle > endCycle) {
+            throw new InvalidParameterException("min (" + startCycle + ") must be less than or equal to max (" + endCycle + ")");
+        }
+
+        long recycles = activityDef.getParams().getOptionalString("recycles").flatMap(Unit::longCountFor).orElse(0L);
+        this.recycleMax.set(recycles);
+        this.stride = activityDef.getParams().getOptionalLong("stride").orElse(1L);
+
+        long[] ranges;
+        if (layout == null) {
+            CycleCheckpoint resumeFrom = CycleCheckpoint.forResume(activityDef).orElse(null);
+            if (resumeFrom != null) {
+                if (recycles > 0) {
+                    throw new InvalidParameterException("resume may not be used with recycles");
+                }
+                ranges = resumeFrom.getRemaining(startCycle, endCycle, stride);
+            } else {
+                ranges = new long[]{startCycle, endCycle};
+            }
+        } else if (startCycle != min) {
+            ranges = new long[]{startCycle, endCycle};
+        } else if (endCycle != max) {
+            ranges = layout.close(endCycle);
+            if (endCycle > max) {
+                ranges = Arrays.copyOf(ranges, ranges.length + 2);
+                ranges[ranges.length - 2] = max;
+                ranges[ranges.length - 1] = endCycle;
+            }
+        } else {
+            return;
+        }
+
+        this.min = startCycle;
+        this.max = endCycle;
+        this.layout = new Layout(split(ranges, shardCount, stride));
+        logger.debug("dividing " + layout.getUnclaimed() + " cycles of " + activityDef.getAlias()
+                + " into " + layout.ends.length + " shards");
+    }
+
+    @Override
+    public boolean isContiguous() {
+        return false;
+    }
+
+    /**
+     * Divide ranges of cycles into shards of about the same number of whole strides.
+     * Ranges which touch are joined first, so that strides are not cut short where
+     * they meet. Only the last shard of each range may end with a partial stride,
+     * which is not provided, as with {@link AtomicInput}.
+     *
+     * @param ranges The start and end of each range, in order
+     * @param shards The number of shards to divide the cycles into
+     * @param stride The stride of the activity
+     * @return The start and end of each shard, in order
+     */
+    static long[] split(long[] ranges, int shards, long stride) {
+        long[] joined = new long[ranges.length];
+        int count = 0;
+        long total = 0L;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] >= ranges[i + 1]) {
+                continue;
+            }
+            if (count > 0 && joined[count - 1] == ranges[i]) {
+                joined[count - 1] = ranges[i + 1];
+            } else {
+                joined[count++] = ranges[i];
+                joined[count++] = ranges[i + 1];
+            }
+            total += ranges[i + 1] - ranges[i];
+        }
+
+        long strides = (total + stride - 1) / stride;
+        long size = Math.max(1L, (strides + shards - 1) / shards) * stride;
+
+        long[] pieces = new long[(shards + count / 2) * 2];
+        int piece = 0;
+        for (int i = 0; i < count; i += 2) {
+            for (long start = joined[i]; start < joined[i + 1]; start += size) {
+                pieces[piece++] = start;
+                pieces[piece++] = Math.min(joined[i + 1], start + size);
+            }
+        }
+        return Arrays.copyOf(pieces, piece);
+    }
+
+    /**
+     * The shards of one pass over the cycles.
+     */
+    private final static class Layout {
+        private final long[] ends;
+        private final AtomicLongArray cursors;
+
+        private Layout(long[] pieces) {
+            int shards = pieces.length / 2;
+            this.ends = new long[shards];
+            this.cursors = new AtomicLongArray(Math.max(1, shards * PAD));
+            for (int shard = 0; shard < shards; shard++) {
+                cursors.set(shard * PAD, pieces[shard * 2]);
+                ends[shard] = pieces[shard * 2 + 1];
+            }
+        }
+
+        private long getUnclaimed() {
+            long unclaimed = 0L;
+            for (int shard = 0; shard < ends.length; shard++) {
+                unclaimed += Math.max(0L, ends[shard] - cursors.get(shard * PAD));
+            }
+            return unclaimed;
+        }
+
+        /**
+         * Stop any more cycles from being claimed from this layout.
+         *
+         * @param limit The cycle after the last cycle to keep
+         * @return The start and end of each range of cycles which had not been claimed,
+         * up to the limit, in order
+         */
+        private long[] close(long limit) {
+            long[] remaining = new long[ends.length * 2];
+            int count = 0;
+            for (int shard = 0; shard < ends.length; shard++) {
+                long next = cursors.getAndSet(shard * PAD, ends[shard]);
+                long end = Math.min(ends[shard], limit);
+                if (next < end) {
+                    remaining[count++] = next;
+                    remaining[count++] = end;
+                }
+            }
+            return Arrays.copyOf(remaining, count);
+        }
+    }
+
+    private class Cursor {
+        private final int thread = nextThread.getAndIncrement();
+        private final InputInterval.Segment segment = new InputInterval.Segment(0L, 0L);
+    }
+}
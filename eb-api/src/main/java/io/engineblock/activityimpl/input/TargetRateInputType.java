@@ -21,6 +21,7 @@ import io.engineblock.activityapi.core.Activity;
 import io.engineblock.activityapi.input.Input;
 import io.engineblock.activityapi.input.InputDispenser;
 import io.engineblock.activityapi.input.InputType;
+import io.engineblock.util.SimpleConfig;
 import io.virtdata.annotations.Service;
 
 @Service(InputType.class)
@@ -36,14 +37,36 @@ public class TargetRateInputType implements InputType {
         return new Dispenser(activity);
     }
 
+    public enum Mode {
+        /**
+         * All threads take their cycles from one shared counter
+         */
+        atomic,
+        /**
+         * Threads take their cycles from shards of the cycles, and steal from other
+         * shards when their own is used up
+         */
+        sharded
+    }
+
     public static class Dispenser implements InputDispenser {
 
         private final Activity activity;
-        private final AtomicInput input;
+        private final Input input;
 
         public Dispenser(Activity activity) {
             this.activity = activity;
-            this.input = new AtomicInput(activity.getActivityDef());
+            SimpleConfig conf = new SimpleConfig(activity, "input");
+            Mode mode = conf.getString("mode").map(Mode::valueOf).orElse(Mode.atomic);
+            switch (mode) {
+                case sharded:
+                    int shards = conf.getInteger("shards").orElse(Math.max(1, activity.getActivityDef().getThreads()));
+                    this.input = new ShardedInput(activity.getActivityDef(), shards);
+                    break;
+                case atomic:
+                default:
+                    this.input = new AtomicInput(activity.getActivityDef());
+            }
         }
 
         @Override
@@ -0,0 +1,66 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl.marker;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.output.Output;
+
+/**
+ * Pass each result on to the output of a slot, if there is one, and then mark it as
+ * completed with the checkpointer of the activity. Closing this does not close
+ * either of them, since they are closed with the activity.
+ */
+public class CheckpointingOutput implements Output {
+
+    private final CycleCheckpointer checkpointer;
+    private final Output output;
+
+    /**
+     * @param checkpointer The checkpointer of the activity
+     * @param output       The output of the slot, or null if there is none
+     */
+    public CheckpointingOutput(CycleCheckpointer checkpointer, Output output) {
+        this.checkpointer = checkpointer;
+        this.output = output;
+    }
+
+    @Override
+    public boolean onCycleResult(long completedCycle, int result) {
+        if (output != null) {
+            output.onCycleResult(completedCycle, result);
+        }
+        return checkpointer.getTracker().onCycleResult(completedCycle, result);
+    }
+
+    @Override
+    public void onCycleResultSegment(CycleResultsSegment segment) {
+        if (output != null) {
+            output.onCycleResultSegment(segment);
+        }
+        ContiguousCompletionTracker tracker = checkpointer.getTracker();
+        for (CycleResult cycleResult : segment) {
+            tracker.onCycleResult(cycleResult.getCycle(), cycleResult.getResult());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CheckpointingOutput{" + checkpointer + ", output=" + output + "}";
+    }
+}
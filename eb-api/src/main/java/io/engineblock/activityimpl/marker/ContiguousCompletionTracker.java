@@ -0,0 +1,480 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl.marker;
+
+import io.engineblock.activityapi.core.Activity;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
+import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CanFilterResultValue;
+import io.engineblock.activityapi.output.Output;
+import io.engineblock.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * This output tracks the completion of cycles which may finish in any order,
+ * and passes the results on to a downstream output in cycle order, as soon as
+ * all cycles below them have completed.
+ *
+ * <p>Completion is tracked in a window of pages. Each page covers
+ * {@link #PAGE_SIZE} cycles with a bitmap of 64 words, one bit per cycle, and a
+ * summary word with one bit for each full word. The result of each cycle is kept
+ * as one byte in the page, only for as long as the page is in the window.
+ * Marking a cycle is lock-free: it stores the result and sets the bit with CAS.
+ * The thread which fills the word at the low-water mark drains all contiguous
+ * full words after it to the downstream output as spans of equal results, and
+ * recycles each page it drains past to the end of the window. Only one thread
+ * drains at a time, so the downstream output is never called concurrently.</p>
+ *
+ * <p>Cycles more than one window beyond the low-water mark wait until it
+ * advances, so the window must be larger than the spread of cycles which may
+ * be in flight at once. Every cycle between the start and end cycle must be
+ * completed exactly once, so this is only for contiguous inputs without
+ * recycles. Cycles which are never completed are skipped over when this
+ * output is closed.</p>
+ *
+ * <p>Ranges of cycles may be given as completed already, as when an activity
+ * resumes from a {@link CycleCheckpoint}. These are not passed on, and the
+ * tracker does not wait for them.</p>
+ */
+public class ContiguousCompletionTracker implements Output, CanFilterResultValue {
+
+    private final static Logger logger = LoggerFactory.getLogger(ContiguousCompletionTracker.class);
+    public final static int DEFAULT_WINDOW_CYCLES = 1024 * 1024;
+
+    private final static int PAGE_SHIFT = 12;
+    public final static int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private final static int WORDS_PER_PAGE = PAGE_SIZE >>> 6;
+    private final static long WAIT_NANOS = 100_000L;
+
+    private final long min;
+    private final long cycleCount;
+    private final long endWord;
+    private final long[] completed;
+    private final Page[] pages;
+    private final long[] resetBits = new long[WORDS_PER_PAGE];
+    private final int pageMask;
+    private final Output downstream;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private volatile long lowWord;
+    private volatile long lowPage;
+    private volatile ResultValuePredicate filter;
+
+    public ContiguousCompletionTracker(Activity activity, Output downstream) {
+        this(
+                activity.getActivityDef().getStartCycle(),
+                activity.getActivityDef().getEndCycle(),
+                new SimpleConfig(activity, "output").getInteger("window").orElse(DEFAULT_WINDOW_CYCLES),
+                downstream
+        );
+        if (!activity.getInputDispenserDelegate().getInput(0).isContiguous()) {
+            throw new RuntimeException("This type of output may not be used with non-contiguous inputs.");
+        }
+    }
+
+    /**
+     * @param min          The first cycle to track
+     * @param nextMin      The cycle after the last cycle to track
+     * @param windowCycles The number of cycles beyond the low-water mark which may
+     *                     be marked before marking waits, rounded up to a power of
+     *                     two number of pages
+     * @param downstream   The output which receives the results in cycle order
+     */
+    public ContiguousCompletionTracker(long min, long nextMin, int windowCycles, Output downstream) {
+        this(min, nextMin, windowCycles, new long[0], downstream);
+    }
+
+    /**
+     * @param min          The first cycle to track
+     * @param nextMin      The cycle after the last cycle to track
+     * @param windowCycles The number of cycles beyond the low-water mark which may
+     *                     be marked before marking waits, rounded up to a power of
+     *                     two number of pages
+     * @param completed    The start and end of each range of cycles which have
+     *                     completed already, in order
+     * @param downstream   The output which receives the results in cycle order
+     */
+    public ContiguousCompletionTracker(long min, long nextMin, int windowCycles, long[] completed, Output downstream) {
+        if (nextMin < min) {
+            throw new RuntimeException("nextMin (" + nextMin + ") must not be less than min (" + min + ")");
+        }
+        this.min = min;
+        this.cycleCount = nextMin - min;
+        this.endWord = (cycleCount + 63) >>> 6;
+        this.downstream = downstream;
+        this.completed = completed;
+
+        int pageCount = Math.max(1, (windowCycles + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+        pageCount = Integer.highestOneBit(pageCount - 1) << 1;
+        this.pages = new Page[Math.max(1, pageCount)];
+        this.pageMask = pages.length - 1;
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new Page();
+            reset(pages[i], i);
+        }
+        logger.debug("tracking completion of " + cycleCount + " cycles with a window of "
+                + (pages.length * PAGE_SIZE) + " cycles");
+        drain();
+    }
+
+    @Override
+    public boolean onCycleResult(long completedCycle, int result) {
+        long offset = completedCycle - min;
+        if (offset < 0 || offset >= cycleCount) {
+            throw new RuntimeException("cycle " + completedCycle + " is outside of the tracked range ["
+                    + min + "," + (min + cycleCount) + ")");
+        }
+        long pageNumber = offset >>> PAGE_SHIFT;
+        if (pageNumber < lowPage) {
+            return true;
+        }
+        while (pageNumber >= lowPage + pages.length) {
+            LockSupport.parkNanos(this, WAIT_NANOS);
+        }
+        Page page = pages[(int) (pageNumber & pageMask)];
+        int index = (int) (offset & (PAGE_SIZE - 1));
+        page.results[index] = (byte) result;
+        if (page.mark(index)) {
+            if ((offset >>> 6) == lowWord) {
+                drain();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onCycleResultSegment(CycleResultsSegment segment) {
+        for (CycleResult cycleResult : segment) {
+            onCycleResult(cycleResult.getCycle(), cycleResult.getResult());
+        }
+    }
+
+    /**
+     * @return The first cycle which has not been passed on to the downstream output
+     */
+    public long getLowWaterMark() {
+        return min + Math.min(cycleCount, lowWord << 6);
+    }
+
+    /**
+     * Take a checkpoint of the cycles which have completed. This waits for any
+     * drain in progress, and then looks at the whole window, so it should be done
+     * occasionally rather than for each cycle.
+     *
+     * @return a checkpoint
+     */
+    public CycleCheckpoint getCheckpoint() {
+        while (!draining.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        try {
+            long lowCycle = getLowWaterMark();
+            long windowEnd = Math.min(cycleCount, (lowPage + pages.length) << PAGE_SHIFT);
+            Runs runs = new Runs();
+            for (long word = lowWord; word < endWord && (word << 6) < windowEnd; word++) {
+                long bits = pages[(int) ((word >>> 6) & pageMask)].words.get((int) (word & 63));
+                long base = min + (word << 6);
+                int bit = 0;
+                while (bit < 64 && (bits >>> bit) != 0L) {
+                    bit += Long.numberOfTrailingZeros(bits >>> bit);
+                    int ones = Long.numberOfTrailingZeros(~(bits >>> bit));
+                    runs.add(base + bit, Math.min(min + cycleCount, base + bit + ones));
+                    bit += ones;
+                }
+            }
+            for (int i = 0; i < completed.length; i += 2) {
+                runs.add(Math.max(min + windowEnd, completed[i]), completed[i + 1]);
+            }
+            return CycleCheckpoint.ofCompleted(lowCycle, runs.ranges, runs.count);
+        } finally {
+            releaseDrain();
+        }
+    }
+
+    @Override
+    public void setFilter(Predicate<ResultReadable> filter) {
+        this.filter = filter == null ? null : ResultValuePredicate.of(filter);
+    }
+
+    /**
+     * Drain the completed words at the low-water mark. A thread which marks the
+     * low word after the draining thread has looked at it either sees that word
+     * as the low word and drains it, or the draining thread sees it as full when
+     * it checks again after letting go of the drain.
+     */
+    private void drain() {
+        do {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                drainFullWords();
+            } finally {
+                draining.set(false);
+            }
+        } while (isFull(lowWord));
+    }
+
+    /**
+     * Let go of the drain when it was held for something other than draining. A
+     * thread which filled the low word in the meantime could not drain it, so it is
+     * drained here instead.
+     */
+    private void releaseDrain() {
+        draining.set(false);
+        if (isFull(lowWord)) {
+            drain();
+        }
+    }
+
+    private boolean isFull(long word) {
+        if (word >= endWord) {
+            return false;
+        }
+        Page page = pages[(int) ((word >>> 6) & pageMask)];
+        return ((page.summary.get() >>> (word & 63)) & 1L) != 0L;
+    }
+
+    private void drainFullWords() {
+        long word = lowWord;
+        while (word < endWord) {
+            long pageNumber = word >>> 6;
+            Page page = pages[(int) (pageNumber & pageMask)];
+            int first = (int) (word & 63);
+            int full = Long.numberOfTrailingZeros(~(page.summary.get() >>> first));
+            if (full == 0) {
+                break;
+            }
+            emit(page, pageNumber, first << 6, (first + full) << 6);
+            word += full;
+            if ((word & 63) == 0) {
+                reset(page, pageNumber + pages.length);
+                lowWord = word;
+                lowPage = pageNumber + 1;
+            } else {
+                break;
+            }
+        }
+        lowWord = word;
+    }
+
+    /**
+     * Pass on the results in a page as spans of equal results.
+     */
+    private void emit(Page page, long pageNumber, int from, int to) {
+        long base = pageNumber << PAGE_SHIFT;
+        to = (int) Math.min(to, cycleCount - base);
+        int index = from;
+        while (index < to) {
+            byte result = page.results[index];
+            int end = index + 1;
+            while (end < to && page.results[end] == result) {
+                end++;
+            }
+            ResultValuePredicate filter = this.filter;
+            if (filter == null || filter.testResult(result)) {
+                emitSpan(min + base + index, min + base + end, result);
+            }
+            index = end;
+        }
+    }
+
+    /**
+     * Pass on a span of results, leaving out any cycles which had completed already.
+     */
+    private void emitSpan(long start, long end, int result) {
+        int range = completedRangeAfter(start);
+        while (start < end) {
+            if (range < completed.length && completed[range] <= start) {
+                start = Math.max(start, completed[range + 1]);
+                range += 2;
+                continue;
+            }
+            long stop = range < completed.length ? Math.min(end, completed[range]) : end;
+            downstream.onCycleResultSegment(new CycleSpanResults(start, stop, result));
+            start = stop;
+        }
+    }
+
+    /**
+     * @return the index of the first completed range which ends after the given cycle
+     */
+    private int completedRangeAfter(long cycle) {
+        int low = 0;
+        int high = completed.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (completed[mid * 2 + 1] <= cycle) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low * 2;
+    }
+
+    /**
+     * Clear a page for the given page number, marking any cycles which completed
+     * already, or which are past the end of the tracked range, as completed.
+     */
+    private void reset(Page page, long pageNumber) {
+        long base = pageNumber << PAGE_SHIFT;
+        long[] bits = resetBits;
+        Arrays.fill(bits, 0L);
+        setBits(bits, cycleCount - base, PAGE_SIZE);
+        for (int range = completedRangeAfter(min + base); range < completed.length; range += 2) {
+            long start = completed[range] - min - base;
+            if (start >= PAGE_SIZE) {
+                break;
+            }
+            setBits(bits, start, completed[range + 1] - min - base);
+        }
+        page.reset(bits);
+    }
+
+    private static void setBits(long[] bits, long from, long to) {
+        int start = (int) Math.min(PAGE_SIZE, Math.max(0L, from));
+        int end = (int) Math.min(PAGE_SIZE, Math.max(0L, to));
+        for (int index = start; index < end; ) {
+            int bit = index & 63;
+            int count = Math.min(64 - bit, end - index);
+            long mask = count == 64 ? -1L : ((1L << count) - 1L) << bit;
+            bits[index >>> 6] |= mask;
+            index += count;
+        }
+    }
+
+    /**
+     * Pass on everything which has been marked, skipping over any cycles which
+     * were never completed, and close the downstream output.
+     */
+    @Override
+    public void close() throws Exception {
+        while (!draining.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        try {
+            drainFullWords();
+            long skipped = 0L;
+            long word = lowWord;
+            for (long pageNumber = word >>> 6; pageNumber < lowPage + pages.length && word < endWord; pageNumber++) {
+                Page page = pages[(int) (pageNumber & pageMask)];
+                int index = (int) ((word & 63) << 6);
+                int limit = (int) Math.min(PAGE_SIZE, cycleCount - (pageNumber << PAGE_SHIFT));
+                while (index < limit) {
+                    if (page.isMarked(index)) {
+                        int end = index + 1;
+                        while (end < limit && page.isMarked(end)) {
+                            end++;
+                        }
+                        emit(page, pageNumber, index, end);
+                        index = end;
+                    } else {
+                        skipped++;
+                        index++;
+                    }
+                }
+                word = (pageNumber + 1) << 6;
+            }
+            skipped += Math.max(0L, cycleCount - ((lowPage + pages.length) << PAGE_SHIFT));
+            if (skipped > 0) {
+                logger.warn("closing with " + skipped + " cycles which were never completed");
+            }
+            lowWord = endWord;
+        } finally {
+            releaseDrain();
+        }
+        downstream.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ContiguousCompletionTracker{lowWaterMark=" + getLowWaterMark()
+                + ", window=" + (pages.length * PAGE_SIZE) + "}";
+    }
+
+    private final static class Runs {
+        private long[] ranges = new long[16];
+        private int count;
+
+        private void add(long start, long end) {
+            if (start >= end) {
+                return;
+            }
+            if (count > 0 && ranges[count - 1] >= start) {
+                ranges[count - 1] = Math.max(end, ranges[count - 1]);
+                return;
+            }
+            if (count + 2 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[count++] = start;
+            ranges[count++] = end;
+        }
+    }
+
+    private final static class Page {
+        private final static LongBinaryOperator OR = (a, b) -> a | b;
+
+        private final AtomicLongArray words = new AtomicLongArray(WORDS_PER_PAGE);
+        private final AtomicLong summary = new AtomicLong();
+        private final byte[] results = new byte[PAGE_SIZE];
+
+        private void reset(long[] bits) {
+            long full = 0L;
+            for (int word = 0; word < WORDS_PER_PAGE; word++) {
+                words.set(word, bits[word]);
+                if (bits[word] == -1L) {
+                    full |= 1L << word;
+                }
+            }
+            summary.set(full);
+        }
+
+        /**
+         * @return true, if marking this cycle filled its word
+         */
+        private boolean mark(int index) {
+            int word = index >>> 6;
+            long bit = 1L << (index & 63);
+            long bits = words.getAndAccumulate(word, bit, OR);
+            if ((bits & bit) != 0L || (bits | bit) != -1L) {
+                return false;
+            }
+            long wordBit = 1L << word;
+            summary.getAndAccumulate(wordBit, OR);
+            return true;
+        }
+
+        private boolean isMarked(int index) {
+            return ((words.get(index >>> 6) >>> (index & 63)) & 1L) != 0L;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl.marker;
+
+import io.engineblock.activityimpl.ActivityDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A checkpoint records how far an activity has progressed through its cycles.
+ * All cycles below the low-water mark have completed, and all cycles from the
+ * high-water mark on have not. Between them, the gaps are the ranges of cycles
+ * which had not completed yet, while cycles around them had.
+ *
+ * <p>Checkpoints are stored as a small text file, like this:</p>
+ * <pre>
+ * lowwatermark=1000
+ * highwatermark=1210
+ * gap=1010,1020
+ * gap=1100,1101
+ * </pre>
+ *
+ * <p>Each gap is a closed-open interval of cycles. The file is replaced
+ * atomically each time it is saved, so a reader sees either the previous
+ * checkpoint or the new one.</p>
+ */
+public class CycleCheckpoint {
+    private final static Logger logger = LoggerFactory.getLogger(CycleCheckpoint.class);
+
+    private final long lowWaterMark;
+    private final long highWaterMark;
+    private final long[] gaps;
+
+    /**
+     * @param lowWaterMark  The first cycle which has not completed
+     * @param highWaterMark The cycle after the last cycle which has completed
+     * @param gaps          The start and end of each gap, in order
+     */
+    public CycleCheckpoint(long lowWaterMark, long highWaterMark, long[] gaps) {
+        if ((gaps.length & 1) != 0) {
+            throw new RuntimeException("gaps must be pairs of start and end cycles");
+        }
+        if (highWaterMark < lowWaterMark) {
+            throw new RuntimeException("highwatermark (" + highWaterMark + ") must not be less than lowwatermark (" + lowWaterMark + ")");
+        }
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+        this.gaps = gaps;
+    }
+
+    /**
+     * Create a checkpoint from ranges of completed cycles.
+     *
+     * @param lowWaterMark All cycles below this have completed
+     * @param completed    The start and end of each range of completed cycles at or above
+     *                     the low-water mark, in order, with gaps between them
+     * @param count        The number of values in completed
+     * @return a checkpoint
+     */
+    public static CycleCheckpoint ofCompleted(long lowWaterMark, long[] completed, int count) {
+        int first = 0;
+        if (count > 0 && completed[0] <= lowWaterMark) {
+            lowWaterMark = Math.max(lowWaterMark, completed[1]);
+            first = 2;
+        }
+        if (first >= count) {
+            return new CycleCheckpoint(lowWaterMark, lowWaterMark, new long[0]);
+        }
+        long[] gaps = new long[count - first];
+        long gapStart = lowWaterMark;
+        int gap = 0;
+        for (int i = first; i < count; i += 2) {
+            gaps[gap++] = gapStart;
+            gaps[gap++] = completed[i];
+            gapStart = completed[i + 1];
+        }
+        return new CycleCheckpoint(lowWaterMark, gapStart, gaps);
+    }
+
+    public long getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return The start and end of each gap, in order
+     */
+    public long[] getGaps() {
+        return gaps;
+    }
+
+    /**
+     * Determine which cycles of an activity are still to be run after this checkpoint.
+     * Each range is widened to whole strides from the first cycle, so that inputs can
+     * still hand out whole strides. This means that a few completed cycles on either
+     * side of a gap may be run again.
+     *
+     * @param min    The first cycle of the activity
+     * @param max    The cycle after the last cycle of the activity
+     * @param stride The stride of the activity
+     * @return The start and end of each range of cycles to run, in order
+     */
+    public long[] getRemaining(long min, long max, long stride) {
+        long[] ranges = new long[gaps.length + 2];
+        int count = 0;
+        for (int i = 0; i <= gaps.length; i += 2) {
+            long start = i < gaps.length ? gaps[i] : highWaterMark;
+            long end = i < gaps.length ? gaps[i + 1] : max;
+            start = Math.max(min, min + ((start - min) / stride) * stride);
+            end = Math.min(max, min + ((end - min + stride - 1) / stride) * stride);
+            if (start >= end) {
+                continue;
+            }
+            if (count > 0 && start <= ranges[count - 1]) {
+                ranges[count - 1] = Math.max(end, ranges[count - 1]);
+            } else {
+                ranges[count++] = start;
+                ranges[count++] = end;
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    /**
+     * @param min    The first cycle
+     * @param max    The cycle after the last cycle
+     * @param ranges The start and end of each range within min and max, in order
+     * @return The start and end of each range between min and max which is not in ranges
+     */
+    public static long[] complement(long min, long max, long[] ranges) {
+        long[] complement = new long[ranges.length + 2];
+        int count = 0;
+        long start = min;
+        for (int i = 0; i <= ranges.length; i += 2) {
+            long end = i < ranges.length ? ranges[i] : max;
+            if (start < end) {
+                complement[count++] = start;
+                complement[count++] = end;
+            }
+            if (i < ranges.length) {
+                start = ranges[i + 1];
+            }
+        }
+        return Arrays.copyOf(complement, count);
+    }
+
+    /**
+     * Load the checkpoint named by the resume parameter of an activity.
+     *
+     * @param activityDef The activity definition
+     * @return The checkpoint to resume from, or empty if there is none
+     */
+    public static Optional<CycleCheckpoint> forResume(ActivityDef activityDef) {
+        return activityDef.getParams().getOptionalString("resume").map(File::new).flatMap(file -> {
+            if (!file.exists()) {
+                logger.info("checkpoint " + file + " does not exist, so " + activityDef.getAlias() + " will run from the start");
+                return Optional.empty();
+            }
+            return Optional.of(load(file));
+        });
+    }
+
+    public static CycleCheckpoint load(File file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read checkpoint " + file + ":" + e, e);
+        }
+        Long low = null;
+        Long high = null;
+        long[] gaps = new long[16];
+        int count = 0;
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] kv = line.split("=", 2);
+            try {
+                switch (kv[0]) {
+                    case "lowwatermark":
+                        low = Long.parseLong(kv[1].trim());
+                        break;
+                    case "highwatermark":
+                        high = Long.parseLong(kv[1].trim());
+                        break;
+                    case "gap":
+                        String[] gap = kv[1].split(",");
+                        if (count + 2 > gaps.length) {
+                            gaps = Arrays.copyOf(gaps, gaps.length * 2);
+                        }
+                        gaps[count++] = Long.parseLong(gap[0].trim());
+                        gaps[count++] = Long.parseLong(gap[1].trim());
+                        break;
+                    default:
+                        throw new RuntimeException("Unknown checkpoint entry '" + line + "' in " + file);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new RuntimeException("Invalid checkpoint entry '" + line + "' in " + file + ":" + e, e);
+            }
+        }
+        if (low == null || high == null) {
+            throw new RuntimeException("Checkpoint " + file + " must have a lowwatermark and a highwatermark");
+        }
+        return new CycleCheckpoint(low, high, Arrays.copyOf(gaps, count));
+    }
+
+    /**
+     * Replace the given file with this checkpoint, by writing it to a temporary file
+     * which is forced to storage and then moved over the given file.
+     *
+     * @param file The checkpoint file
+     */
+    public void save(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(toString().getBytes(StandardCharsets.UTF_8));
+                out.getChannel().force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to save checkpoint " + file + ":" + e, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CycleCheckpoint)) {
+            return false;
+        }
+        CycleCheckpoint that = (CycleCheckpoint) o;
+        return lowWaterMark == that.lowWaterMark
+                && highWaterMark == that.highWaterMark
+                && Arrays.equals(gaps, that.gaps);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(lowWaterMark) + Long.hashCode(highWaterMark)) + Arrays.hashCode(gaps);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("lowwatermark=").append(lowWaterMark).append("\n");
+        sb.append("highwatermark=").append(highWaterMark).append("\n");
+        for (int i = 0; i < gaps.length; i += 2) {
+            sb.append("gap=").append(gaps[i]).append(",").append(gaps[i + 1]).append("\n");
+        }
+        return sb.toString();
+    }
+}
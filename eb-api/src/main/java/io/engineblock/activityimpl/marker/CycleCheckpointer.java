@@ -0,0 +1,147 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl.marker;
+
+import io.engineblock.activityapi.core.Activity;
+import io.engineblock.activityapi.input.Input;
+import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.input.AtomicInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The checkpointer of an activity tracks the completion of its cycles with a
+ * {@link ContiguousCompletionTracker}, and saves a {@link CycleCheckpoint} of them
+ * to the file given by the <em>checkpoint</em> parameter every <em>checkpointms</em>
+ * milliseconds, and once more when it is closed. The checkpoint is only saved
+ * when it has changed.
+ *
+ * <p>When the activity resumes from a checkpoint, the cycles which had completed
+ * already are counted as completed here too, so each checkpoint covers all of the
+ * runs of the activity so far.</p>
+ */
+public class CycleCheckpointer implements Runnable, AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(CycleCheckpointer.class);
+    public final static long DEFAULT_INTERVAL_MILLIS = 10000L;
+
+    private final File file;
+    private final long intervalNanos;
+    private final ContiguousCompletionTracker tracker;
+    private final Thread thread;
+
+    private CycleCheckpoint saved;
+    private volatile boolean running = true;
+
+    public CycleCheckpointer(Activity activity) {
+        ActivityDef def = activity.getActivityDef();
+        if (def.getParams().getOptionalString("recycles").isPresent()) {
+            throw new RuntimeException("checkpoint may not be used with recycles.");
+        }
+        this.file = new File(def.getParams().getOptionalString("checkpoint")
+                .orElseThrow(() -> new RuntimeException("checkpoint must name a file")));
+        long intervalMillis = def.getParams().getOptionalLong("checkpointms").orElse(DEFAULT_INTERVAL_MILLIS);
+
+        long min = def.getStartCycle();
+        long max = def.getEndCycle();
+        long stride = def.getParams().getOptionalLong("stride").orElse(1L);
+        Optional<CycleCheckpoint> resume = CycleCheckpoint.forResume(def);
+        Input input = activity.getInputDispenserDelegate().getInput(0);
+        if (!input.isContiguous() && !(resume.isPresent() && input instanceof AtomicInput)) {
+            throw new RuntimeException("checkpoint may not be used with non-contiguous inputs.");
+        }
+        long[] remaining = resume.map(c -> c.getRemaining(min, max, stride))
+                .orElse(min < max ? new long[]{min, max} : new long[0]);
+        long start = remaining.length > 0 ? remaining[0] : max;
+
+        this.tracker = new ContiguousCompletionTracker(
+                start, max, ContiguousCompletionTracker.DEFAULT_WINDOW_CYCLES,
+                CycleCheckpoint.complement(start, max, remaining),
+                (cycle, result) -> true
+        );
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.setName("CycleCheckpointer/" + def.getAlias());
+        thread.start();
+    }
+
+    // for testing
+    public CycleCheckpointer(File file, long intervalMillis, ContiguousCompletionTracker tracker) {
+        this.file = file;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.tracker = tracker;
+        this.thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.setName("CycleCheckpointer/" + file.getName());
+        thread.start();
+    }
+
+    public ContiguousCompletionTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            if (running) {
+                try {
+                    save();
+                } catch (Exception e) {
+                    logger.error("Error saving checkpoint " + file + ":" + e, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Save a checkpoint now, if it has changed since the last one was saved.
+     *
+     * @return the checkpoint
+     */
+    public synchronized CycleCheckpoint save() {
+        CycleCheckpoint checkpoint = tracker.getCheckpoint();
+        if (!checkpoint.equals(saved)) {
+            checkpoint.save(file);
+            saved = checkpoint;
+            logger.debug("saved checkpoint " + file + " with lowwatermark=" + checkpoint.getLowWaterMark()
+                    + " highwatermark=" + checkpoint.getHighWaterMark()
+                    + " gaps=" + (checkpoint.getGaps().length / 2));
+        }
+        return checkpoint;
+    }
+
+    @Override
+    public void close() throws Exception {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+        CycleCheckpoint checkpoint = save();
+        logger.info("saved checkpoint " + file + " at lowwatermark=" + checkpoint.getLowWaterMark());
+    }
+
+    @Override
+    public String toString() {
+        return "CycleCheckpointer{" + file + ", " + tracker + "}";
+    }
+}
@@ -16,7 +16,6 @@
  */
 package io.engineblock.activityimpl.motor;
 
-import com.codahale.metrics.Counter;
 import com.codahale.metrics.Timer;
 import io.engineblock.activityapi.core.*;
 import io.engineblock.activityapi.core.ops.fluent.OpTracker;
@@ -28,7 +27,9 @@ import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
 import io.engineblock.activityapi.input.Input;
 import io.engineblock.activityapi.output.Output;
+import io.engineblock.activityapi.ratelimits.BatchingRateLimiter;
 import io.engineblock.activityapi.ratelimits.RateLimiter;
+import io.engineblock.activityapi.ratelimits.RateLimiters;
 import io.engineblock.activityimpl.ActivityDef;
 import io.engineblock.activityimpl.SlotStateTracker;
 import org.slf4j.Logger;
@@ -49,6 +50,15 @@ import static io.engineblock.activityapi.core.RunState.*;
  * This motor implementation splits the handling of sync and async actions with a hard
  * fork in the middle to limit potential breakage of the prior sync implementation
  * with new async logic.
+ *
+ * When a rate limiter is in effect for strides, cycles or phases, each of them is stamped
+ * with the time it was scheduled to start, which is its slot on the schedule of the rate
+ * limiter, as given by {@link RateLimiter#maybeWaitForScheduledOp()}. The service timers
+ * measure from the actual start, and the response timers measure from the scheduled start,
+ * so that response times are not hidden by ops which started late. Without a rate limiter
+ * there is no schedule, so there are no response timers, and only service times are kept.
+ * The response timers are looked up when the motor starts, so a rate limiter which is added
+ * to a running activity only adds response timers once its motors are restarted.
  */
 public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
@@ -68,6 +78,7 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
     private RateLimiter phaseRateLimiter;
     private Timer phasesTimer;
+    private Timer phasesResponseTimer;
 
     private Input input;
     private Action action;
@@ -77,9 +88,9 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
     private SlotStateTracker slotStateTracker;
     private AtomicReference<RunState> slotState;
     private int stride = 1;
+    private int rateBatch = 1;
 
     private OpTracker<D> opTracker;
-    private Counter optrackerBlockCounter;
 
 
     /**
@@ -191,12 +202,11 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
         try {
             strideRateLimiter = activity.getStrideLimiter();
-            cycleRateLimiter = activity.getCycleLimiter();
+            cycleRateLimiter = RateLimiters.batchedOrShared(cycleRateLimiter, activity.getCycleLimiter(), rateBatch);
             phaseRateLimiter = activity.getPhaseLimiter();
 
             stridesServiceTimer = activity.getInstrumentation().getOrCreateStridesServiceTimer();
             stridesResponseTimer = activity.getInstrumentation().getStridesResponseTimerOrNull();
-            optrackerBlockCounter = activity.getInstrumentation().getOrCreateOpTrackerBlockedCounter();
 
 
             inputTimer = activity.getInstrumentation().getOrCreateInputTimer();
@@ -226,9 +236,9 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
             }
 
 
-            long strideDelay = 0L;
-            long cycleDelay = 0L;
-            long phaseDelay = 0L;
+            long strideScheduled = 0L;
+            long cycleScheduled = 0L;
+            long phaseScheduled = 0L;
 
             // Reviewer Note: This separate of code paths was used to avoid impacting the
             // previously logic for the SyncAction type. It may be consolidated later once
@@ -247,13 +257,15 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
                     outputreader = (StrideOutputConsumer<D>) async;
                 }
 
+                StrideTrackerPool<D> stridePool = null;
+
                 while (slotState.get() == Running) {
 
                     CycleSegment cycleSegment = null;
 
-                    try (Timer.Context inputTime = inputTimer.time()) {
-                        cycleSegment = input.getInputSegment(stride);
-                    }
+                    long inputStart = System.nanoTime();
+                    cycleSegment = input.getInputSegment(stride);
+                    inputTimer.update(System.nanoTime() - inputStart, TimeUnit.NANOSECONDS);
 
                     if (cycleSegment == null) {
                         logger.debug("input exhausted (input " + input + ") via null segment, stopping motor thread " + slotId);
@@ -263,17 +275,20 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
                     if (strideRateLimiter != null) {
                         // block for strides rate limiter
-                        strideDelay = strideRateLimiter.maybeWaitForOp();
+                        strideScheduled = strideRateLimiter.maybeWaitForScheduledOp();
+                    } else {
+                        strideScheduled = System.nanoTime();
                     }
 
-                    StrideTracker<D> strideTracker = new StrideTracker<>(
-                            stridesServiceTimer,
-                            stridesResponseTimer,
-                            strideDelay,
-                            cycleSegment.peekNextCycle(),
-                            stride,
-                            output,
-                            outputreader);
+                    if (stridePool == null || stridePool.getStride() != stride) {
+                        stridePool = new StrideTrackerPool<>(
+                                stridesServiceTimer,
+                                stridesResponseTimer,
+                                stride,
+                                output,
+                                outputreader);
+                    }
+                    StrideTracker<D> strideTracker = stridePool.take(strideScheduled, cycleSegment.peekNextCycle());
                     strideTracker.start();
 
                     long strideStart = System.nanoTime();
@@ -295,22 +310,13 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
                         if (cycleRateLimiter != null) {
                             // Block for cycle rate limiter
-                            cycleDelay = cycleRateLimiter.maybeWaitForOp();
+                            cycleScheduled = cycleRateLimiter.maybeWaitForScheduledOp();
                         }
 
                         try {
                             TrackedOp<D> op = opTracker.newOp(cyclenum,strideTracker);
-                            op.setWaitTime(cycleDelay);
-
-                            synchronized (opTracker) {
-                                while (opTracker.isFull()) {
-                                    try {
-                                        logger.trace("Blocking for enqueue with (" + opTracker.getPendingOps() + "/" + opTracker.getMaxPendingOps() + ") queued ops");
-                                        optrackerBlockCounter.inc();
-                                        opTracker.wait(10000);
-                                    } catch (InterruptedException ignored) {
-                                    }
-                                }
+                            if (cycleRateLimiter != null) {
+                                op.setScheduledStart(cycleScheduled);
                             }
 
                             async.enqueue(op);
@@ -349,8 +355,10 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
             } else if (action instanceof SyncAction) {
 
                 cyclesTimer = activity.getInstrumentation().getOrCreateCyclesServiceTimer();
+                cycleResponseTimer = activity.getInstrumentation().getCyclesResponseTimerOrNull();
                 stridesServiceTimer = activity.getInstrumentation().getOrCreateStridesServiceTimer();
                 phasesTimer = activity.getInstrumentation().getOrCreatePhasesServiceTimer();
+                phasesResponseTimer = activity.getInstrumentation().getPhasesResponseTimerOrNull();
 
                 if (activity.getActivityDef().getParams().containsKey("async")) {
                     throw new RuntimeException("The async parameter was given for this activity, but it does not seem to know how to do async.");
@@ -376,7 +384,7 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
                     if (strideRateLimiter != null) {
                         // block for strides rate limiter
-                        strideDelay = strideRateLimiter.maybeWaitForOp();
+                        strideScheduled = strideRateLimiter.maybeWaitForScheduledOp();
                     }
 
                     long strideStart = System.nanoTime();
@@ -400,7 +408,7 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
 
                             if (cycleRateLimiter != null) {
                                 // Block for cycle rate limiter
-                                cycleDelay = cycleRateLimiter.maybeWaitForOp();
+                                cycleScheduled = cycleRateLimiter.maybeWaitForScheduledOp();
                             }
 
                             long cycleStart = System.nanoTime();
@@ -408,37 +416,41 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
                                 logger.trace("cycle " + cyclenum);
 
                                 // runCycle
-                                long phaseStart = System.nanoTime();
                                 if (phaseRateLimiter != null) {
-                                    phaseDelay = phaseRateLimiter.maybeWaitForOp();
+                                    phaseScheduled = phaseRateLimiter.maybeWaitForScheduledOp();
                                 }
+                                long phaseStart = System.nanoTime();
                                 result = sync.runCycle(cyclenum);
-                                long phaseEnd = System.nanoTime();
-                                phasesTimer.update((phaseEnd - phaseStart) + phaseDelay, TimeUnit.NANOSECONDS);
+                                updatePhaseTimers(phaseStart, phaseScheduled);
 
                                 // ... runPhase ...
                                 if (multiPhaseAction != null) {
                                     while (multiPhaseAction.incomplete()) {
-                                        phaseStart = System.nanoTime();
                                         if (phaseRateLimiter != null) {
-                                            phaseDelay = phaseRateLimiter.maybeWaitForOp();
+                                            phaseScheduled = phaseRateLimiter.maybeWaitForScheduledOp();
                                         }
+                                        phaseStart = System.nanoTime();
                                         result = multiPhaseAction.runPhase(cyclenum);
-                                        phaseEnd = System.nanoTime();
-                                        phasesTimer.update((phaseEnd - phaseStart) + phaseDelay, TimeUnit.NANOSECONDS);
+                                        updatePhaseTimers(phaseStart, phaseScheduled);
                                     }
                                 }
 
                             } finally {
                                 long cycleEnd = System.nanoTime();
-                                cyclesTimer.update((cycleEnd - cycleStart) + cycleDelay, TimeUnit.NANOSECONDS);
+                                cyclesTimer.update(cycleEnd - cycleStart, TimeUnit.NANOSECONDS);
+                                if (cycleResponseTimer != null) {
+                                    cycleResponseTimer.update(cycleEnd - Math.min(cycleScheduled, cycleStart), TimeUnit.NANOSECONDS);
+                                }
                             }
                             segBuffer.append(cyclenum, result);
                         }
 
                     } finally {
                         long strideEnd = System.nanoTime();
-                        stridesServiceTimer.update((strideEnd - strideStart) + strideDelay, TimeUnit.NANOSECONDS);
+                        stridesServiceTimer.update(strideEnd - strideStart, TimeUnit.NANOSECONDS);
+                        if (stridesResponseTimer != null) {
+                            stridesResponseTimer.update(strideEnd - Math.min(strideScheduled, strideStart), TimeUnit.NANOSECONDS);
+                        }
                     }
 
                     if (output != null) {
@@ -464,10 +476,28 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
         } catch (Throwable t) {
             logger.error("Error in core motor loop:" + t, t);
             throw t;
+        } finally {
+            if (cycleRateLimiter instanceof BatchingRateLimiter) {
+                ((BatchingRateLimiter) cycleRateLimiter).release();
+            }
         }
     }
 
 
+    /**
+     * Record the service time of a phase, and its response time from when it was scheduled to start.
+     *
+     * @param phaseStart The time the phase actually started
+     * @param phaseScheduled The time the phase was scheduled to start by the phase rate limiter
+     */
+    private void updatePhaseTimers(long phaseStart, long phaseScheduled) {
+        long phaseEnd = System.nanoTime();
+        phasesTimer.update(phaseEnd - phaseStart, TimeUnit.NANOSECONDS);
+        if (phasesResponseTimer != null) {
+            phasesResponseTimer.update(phaseEnd - Math.min(phaseScheduled, phaseStart), TimeUnit.NANOSECONDS);
+        }
+    }
+
     @Override
     public String toString() {
         return "slot:" + this.slotId + "; state:" + slotState.get();
@@ -483,8 +513,9 @@ public class CoreMotor<D> implements ActivityDefObserver, Motor<D>, Stoppable {
         }
 
         this.stride = activityDef.getParams().getOptionalInteger("stride").orElse(1);
+        this.rateBatch = activityDef.getParams().getOptionalInteger("ratebatch").orElse(1);
         strideRateLimiter = activity.getStrideLimiter();
-        cycleRateLimiter = activity.getCycleLimiter();
+        cycleRateLimiter = RateLimiters.batchedOrShared(cycleRateLimiter, activity.getCycleLimiter(), rateBatch);
         phaseRateLimiter = activity.getPhaseLimiter();
 
     }
@@ -27,11 +27,28 @@ import io.engineblock.activityapi.output.Output;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-public class StrideTracker<D> extends Buffer<CompletedOp<D>> implements OpEvents<D>, CycleResultsSegment {
+/**
+ * A stride tracker collects the completed ops of one stride, and does the stride
+ * level house keeping once all of them are complete.
+ *
+ * <p>Stride trackers are reusable. A stride tracker is also the {@link OpPool} for
+ * the ops of its stride, so the ops are reused along with it. Once the last op of
+ * the stride is complete and the outputs have seen the stride, the tracker and all
+ * of its ops are idle again, and may be reset for another stride by the motor which
+ * owns it. This means that outputs and output readers must not keep a reference to
+ * the stride or to its ops after they are called.</p>
+ *
+ * <p>Ops may be completed on threads other than the motor thread, as with async
+ * actions which are driven by a client library, so completions are synchronized.</p>
+ *
+ * @param <D> The payload data type of the tracked ops
+ */
+public class StrideTracker<D> extends Buffer<CompletedOp<D>> implements OpEvents<D>, OpPool<D>, CycleResultsSegment {
     private final static Logger logger = LoggerFactory.getLogger(StrideTracker.class);
 
     private final Timer strideServiceTimer;
@@ -40,27 +57,87 @@ public class StrideTracker<D> extends Buffer<CompletedOp<D>> implements OpEvents
     private final OpImpl<Void> strideOp;
     private final Output output;
     private final StrideOutputConsumer<D> outputReader;
+    private final int size;
+
+    private final List<EventedOpImpl<D>> ops;
+    private int takenOps;
+    private volatile boolean idle = false;
 
     public StrideTracker(
             Timer strideServiceTimer,
             Timer strideResponseTimer,
-            long strideWaitTime,
+            long strideScheduledStart,
             long initialCycle,
             int size,
             Output output,
             StrideOutputConsumer<D> outputReader) {
+        this(strideServiceTimer, strideResponseTimer, size, output, outputReader);
+        reset(strideScheduledStart, initialCycle);
+    }
+
+    public StrideTracker(
+            Timer strideServiceTimer,
+            Timer strideResponseTimer,
+            int size,
+            Output output,
+            StrideOutputConsumer<D> outputReader) {
         super(size);
         this.strideServiceTimer = strideServiceTimer;
         this.strideResponseTimer = strideResponseTimer;
+        this.size = size;
+        this.ops = new ArrayList<>(size);
 
-        this.strideOp =new OpImpl<>();
-        strideOp.setCycle(initialCycle);
-        strideOp.setWaitTime(strideWaitTime);
+        this.strideOp = new OpImpl<>();
 
         this.output = output;
         this.outputReader = outputReader;
     }
 
+    /**
+     * Prepare this stride tracker for a new stride. This must only be called when
+     * the tracker is new or {@link #isIdle()}.
+     *
+     * @param strideScheduledStart The time the stride was scheduled to start, from the strides rate limiter
+     * @param initialCycle The first cycle of the stride
+     */
+    public void reset(long strideScheduledStart, long initialCycle) {
+        clear();
+        this.takenOps = 0;
+        strideOp.reset();
+        strideOp.setCycle(initialCycle);
+        strideOp.setScheduledStart(strideScheduledStart);
+        this.idle = false;
+    }
+
+    /**
+     * @return true, if all ops of the last stride are complete and this tracker can be reset
+     */
+    public boolean isIdle() {
+        return idle;
+    }
+
+    @Override
+    public EventedOpImpl<D> takeOp(OpEvents<D> opTracker) {
+        if (takenOps >= size) {
+            throw new RuntimeException("Unable to take more than " + size + " ops for a stride of " + size);
+        }
+        EventedOpImpl<D> op;
+        if (takenOps < ops.size()) {
+            op = ops.get(takenOps);
+            if (op.isTrackedBy(opTracker)) {
+                op.reset();
+            } else {
+                op = new EventedOpImpl<>(opTracker, this);
+                ops.set(takenOps, op);
+            }
+        } else {
+            op = new EventedOpImpl<>(opTracker, this);
+            ops.add(op);
+        }
+        takenOps++;
+        return op;
+    }
+
     /**
      * Each strideOp opTracker must be started before any ops that it tracks
      *
@@ -74,17 +151,17 @@ public class StrideTracker<D> extends Buffer<CompletedOp<D>> implements OpEvents
     }
 
     @Override
-    public void onOpSuccess(SucceededOp<D> op) {
+    public synchronized void onOpSuccess(SucceededOp<D> op) {
         super.put(op);
     }
 
     @Override
-    public void onOpFailure(FailedOp<D> op) {
+    public synchronized void onOpFailure(FailedOp<D> op) {
         super.put(op);
     }
 
     @Override
-    public void onOpSkipped(SkippedOp<D> op) {
+    public synchronized void onOpSkipped(SkippedOp<D> op) {
         super.put(op);
     }
 
@@ -95,8 +172,10 @@ public class StrideTracker<D> extends Buffer<CompletedOp<D>> implements OpEvents
      */
     public void onFull() {
         strideOp.succeed(0);
-        logger.trace("completed strideOp with first result cycle (" + strideOp.getCycle() + ")");
-        strideServiceTimer.update(strideOp.getResponseTimeNanos(), TimeUnit.NANOSECONDS);
+        if (logger.isTraceEnabled()) {
+            logger.trace("completed strideOp with first result cycle (" + strideOp.getCycle() + ")");
+        }
+        strideServiceTimer.update(strideOp.getServiceTimeNanos(), TimeUnit.NANOSECONDS);
         if (strideResponseTimer!=null) {
             strideResponseTimer.update(strideOp.getResponseTimeNanos(),TimeUnit.NANOSECONDS);
         }
@@ -108,6 +187,7 @@ public class StrideTracker<D> extends Buffer<CompletedOp<D>> implements OpEvents
             List<CompletedOp<D>> flippedData = getFlippedData();
             outputReader.onStrideOutput(flippedData);
         }
+        idle = true;
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl.motor;
+
+import com.codahale.metrics.Timer;
+import io.engineblock.activityapi.cyclelog.buffers.op_output.StrideOutputConsumer;
+import io.engineblock.activityapi.output.Output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stride tracker pool keeps the {@link StrideTracker}s of one motor, so that
+ * they and their ops can be reused from stride to stride. It is only used by the
+ * motor thread, so it needs no locking. Completion threads only ever mark a
+ * tracker as idle, which the motor sees on its next scan.
+ *
+ * <p>New trackers are only created when none of the existing ones are idle. The
+ * number of trackers is bounded by the number of strides which can be in flight
+ * at once, which is limited by the op tracker.</p>
+ *
+ * @param <D> The payload data type of the tracked ops
+ */
+public class StrideTrackerPool<D> {
+
+    private final Timer strideServiceTimer;
+    private final Timer strideResponseTimer;
+    private final int stride;
+    private final Output output;
+    private final StrideOutputConsumer<D> outputReader;
+
+    private final List<StrideTracker<D>> trackers = new ArrayList<>();
+    private int cursor = 0;
+
+    public StrideTrackerPool(
+            Timer strideServiceTimer,
+            Timer strideResponseTimer,
+            int stride,
+            Output output,
+            StrideOutputConsumer<D> outputReader) {
+        this.strideServiceTimer = strideServiceTimer;
+        this.strideResponseTimer = strideResponseTimer;
+        this.stride = stride;
+        this.output = output;
+        this.outputReader = outputReader;
+    }
+
+    /**
+     * Take an idle stride tracker from the pool, or create a new one if none are idle.
+     *
+     * @param strideScheduledStart The time the stride was scheduled to start, from the strides rate limiter
+     * @param initialCycle The first cycle of the stride
+     * @return A stride tracker which is reset for the new stride
+     */
+    public StrideTracker<D> take(long strideScheduledStart, long initialCycle) {
+        int count = trackers.size();
+        for (int i = 0; i < count; i++) {
+            StrideTracker<D> tracker = trackers.get(cursor);
+            cursor = (cursor + 1) % count;
+            if (tracker.isIdle()) {
+                tracker.reset(strideScheduledStart, initialCycle);
+                return tracker;
+            }
+        }
+        StrideTracker<D> tracker = new StrideTracker<>(
+                strideServiceTimer,
+                strideResponseTimer,
+                strideScheduledStart,
+                initialCycle,
+                stride,
+                output,
+                outputReader);
+        trackers.add(tracker);
+        return tracker;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return the number of stride trackers created by this pool
+     */
+    public int size() {
+        return trackers.size();
+    }
+
+    @Override
+    public String toString() {
+        return "StrideTrackerPool stride=" + stride + " trackers=" + trackers.size();
+    }
+}
@@ -86,6 +86,21 @@ public class ActivityMetrics {
         return metric;
 
     }
+
+    private static Metric register(String name, MetricProvider metricProvider) {
+        Metric metric = get().getMetrics().get(name);
+        if (metric == null) {
+            synchronized (ActivityMetrics.class) {
+                metric = get().getMetrics().get(name);
+                if (metric == null) {
+                    metric = metricProvider.getMetric();
+                    return get().register(name, metric);
+                }
+            }
+        }
+        return metric;
+    }
+
     /**
      * <p>Create a timer associated with an activity.</p>
      * <p>This method ensures that if multiple threads attempt to create the same-named metric on a given activity,
@@ -96,12 +111,40 @@ public class ActivityMetrics {
      * @return the timer, perhaps a different one if it has already been registered
      */
     public static Timer timer(ActivityDef activityDef, String name) {
+        return timer(activityDef, name, false);
+    }
+
+    /**
+     * <p>Create a timer associated with an activity, optionally with a recorder for each thread
+     * which updates it. Thread-local timers are meant for timers which are updated by many threads
+     * at high rates. They are merged when they are read, and are reported the same way.</p>
+     * <p>This method ensures that if multiple threads attempt to create the same-named metric on a given activity,
+     * that only one of them succeeds.</p>
+     *
+     * @param activityDef an associated activity def
+     * @param name     a simple, descriptive name for the timer
+     * @param threadLocal whether to give each updating thread its own recorder
+     * @return the timer, perhaps a different one if it has already been registered
+     */
+    public static Timer timer(ActivityDef activityDef, String name, boolean threadLocal) {
         String fullMetricName = activityDef.getAlias() + "." + name;
         Timer registeredTimer = (Timer) register(activityDef, name, () ->
-                new NicerTimer(fullMetricName, new DeltaHdrHistogramReservoir(fullMetricName, 4)));
+                new NicerTimer(fullMetricName, new DeltaHdrHistogramReservoir(fullMetricName, 4, threadLocal)));
         return registeredTimer;
     }
 
+    /**
+     * <p>Create a timer which is not associated with any activity, for services which are
+     * shared by all activities in the JVM. The name is used as the full metric name.</p>
+     *
+     * @param name     a simple, descriptive name for the timer
+     * @return the timer, perhaps a different one if it has already been registered
+     */
+    public static Timer timer(String name) {
+        return (Timer) register(name, () ->
+                new NicerTimer(name, new DeltaHdrHistogramReservoir(name, 4)));
+    }
+
     /**
      * <p>Create a histogram associated with an activity.</p>
      * <p>This method ensures that if multiple threads attempt to create the same-named metric on a given activity,
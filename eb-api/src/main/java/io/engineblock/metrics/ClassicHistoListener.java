@@ -33,8 +33,7 @@ public class ClassicHistoListener extends CapabilityHook<HistogramAttachment> {
     public void onCapableAdded(String name, HistogramAttachment capable) {
         if (pattern.matcher(name).matches()) {
             String prefixed = prefix + "-" + name;
-            Histogram classicHisto = new Histogram(new ExponentiallyDecayingReservoir());
-            capable.attachHistogram(classicHisto);
+            Histogram classicHisto = capable.attachHistogram();
 
             this.histos.put(prefixed, new Attachment(name, prefix, capable, classicHisto));
             metricsRegistry.histogram(prefixed, () -> classicHisto);
@@ -1,6 +1,5 @@
 package io.engineblock.metrics;
 
-import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -36,8 +35,7 @@ public class ClassicTimerListener extends CapabilityHook<TimerAttachment> {
     public void onCapableAdded(String name, TimerAttachment capable) {
         if (pattern.matcher(name).matches()) {
             String prefixed = prefix + "-" + name;
-            Timer classicTimer = new Timer(new ExponentiallyDecayingReservoir());
-            capable.attachTimer(classicTimer);
+            Timer classicTimer = capable.attachTimer();
 
             this.histos.put(prefixed, new Attachment(name, prefix, capable, classicTimer));
             metricsRegistry.timer(prefixed, () -> classicTimer);
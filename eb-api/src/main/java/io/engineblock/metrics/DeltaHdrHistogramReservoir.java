@@ -25,12 +25,27 @@ import org.HdrHistogram.Recorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * A custom wrapping of snapshotting logic on the HdrHistogram. This histogram will always report the last histogram
  * since it was most recently asked for with the getDeltaSnapshot(...) method.
  * This provides local snapshot timing, but with a consistent view for reporting channels about what those snapshots
  * most recently looked like.
  *
+ * <p>Each value is recorded once, into a single {@link Recorder}. Any number of {@link Reader}s may be attached
+ * to read the same data, each with its own interval. Whenever any reader asks for its data, the recorder is
+ * drained, and the drained values are added to the pending data of every reader. This keeps the cost of
+ * recording the same no matter how many loggers, reporters or views are reading the reservoir.</p>
+ *
+ * <p>A reservoir may also be created with a recorder for each recording thread. This removes contention between
+ * threads which record into the same reservoir at high rates, at the cost of one recorder per thread. The thread
+ * recorders are only merged when the reservoir is drained. The recorder of a thread which has ended is dropped
+ * after its last values are drained, so threads which come and go do not leave recorders behind.</p>
+ *
  * <p>This implementation also supports attaching a single log writer. If a log writer is attached, each
  * time an interval is snapshotted internally, the data will also be written to an hdr log via the writer.</p>
  *
@@ -38,11 +53,14 @@ import org.slf4j.LoggerFactory;
 public final class DeltaHdrHistogramReservoir implements Reservoir {
     private final static Logger logger = LoggerFactory.getLogger(DeltaHdrHistogramReservoir.class);
 
-    private final Recorder recorder;
-    private Histogram lastHistogram;
+    private final Stripe stripe;
+    private final ThreadLocal<Stripe> threadStripes;
+    private final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private final int significantDigits;
+    private final List<Reader> readers = new ArrayList<>();
+    private final Reader reader;
 
-    private Histogram intervalHistogram;
-    private long intervalHistogramEndTime = System.currentTimeMillis();
+    private long drainedCount;
     private String metricName;
     private HistogramLogWriter writer;
 
@@ -53,18 +71,45 @@ public final class DeltaHdrHistogramReservoir implements Reservoir {
      * @param significantDigits how many significant digits to track in the reservoir
      */
     public DeltaHdrHistogramReservoir(String name, int significantDigits) {
+        this(name, significantDigits, false);
+    }
+
+    /**
+     * Create a reservoir, optionally with a recorder for each thread which records into it.
+     *
+     * @param name the name to give to the reservoir, for logging purposes
+     * @param significantDigits how many significant digits to track in the reservoir
+     * @param threadLocal whether to give each recording thread its own recorder
+     */
+    public DeltaHdrHistogramReservoir(String name, int significantDigits, boolean threadLocal) {
         this.metricName = name;
-        this.recorder = new Recorder(significantDigits);
-
-        /*
-         * Start by flipping the recorder's interval histogram.
-         * - it starts our counting at zero. Arguably this might be a bad thing if you wanted to feed in
-         *   a recorder that already had some measurements? But that seems crazy.
-         * - intervalHistogram can be nonnull.
-         * - it lets us figure out the number of significant digits to use in runningTotals.
-         */
-        intervalHistogram = recorder.getIntervalHistogram();
-        lastHistogram = new Histogram(intervalHistogram.getNumberOfSignificantValueDigits());
+        this.significantDigits = significantDigits;
+        if (threadLocal) {
+            this.stripe = null;
+            this.threadStripes = ThreadLocal.withInitial(this::addStripe);
+        } else {
+            this.stripe = addStripe();
+            this.threadStripes = null;
+        }
+        this.reader = attachReader();
+    }
+
+    private Stripe addStripe() {
+        Thread owner = threadStripes == null ? null : Thread.currentThread();
+        Stripe added = new Stripe(new Recorder(significantDigits), owner);
+        stripes.add(added);
+        return added;
+    }
+
+    /**
+     * @return the number of recorders which values are recorded into
+     */
+    synchronized int getStripeCount() {
+        return stripes.size();
+    }
+
+    public boolean isThreadLocal() {
+        return threadStripes != null;
     }
 
     @Override
@@ -75,7 +120,11 @@ public final class DeltaHdrHistogramReservoir implements Reservoir {
 
     @Override
     public void update(long value) {
-        recorder.recordValue(value);
+        if (threadStripes == null) {
+            stripe.recorder.recordValue(value);
+        } else {
+            threadStripes.get().recorder.recordValue(value);
+        }
     }
 
     /**
@@ -83,41 +132,64 @@ public final class DeltaHdrHistogramReservoir implements Reservoir {
      */
     @Override
     public Snapshot getSnapshot() {
-        lastHistogram = getNextHdrHistogram();
-        return new DeltaHistogramSnapshot(lastHistogram);
+        return new DeltaHistogramSnapshot(getNextHdrHistogram());
     }
 
     public Histogram getNextHdrHistogram() {
-        return getDataSinceLastSnapshotAndUpdate();
+        Histogram histogram = reader.getNextHdrDeltaHistogram();
+        if (writer != null) {
+            writer.outputIntervalHistogram(histogram);
+        }
+        return histogram;
     }
 
-
     /**
      * @return last histogram snapshot that was provided by {@link #getSnapshot()}
      */
     public Snapshot getLastSnapshot() {
-        return new DeltaHistogramSnapshot(lastHistogram);
+        return new DeltaHistogramSnapshot(reader.getLastHistogram());
     }
 
     /**
-     * @return a copy of the accumulated state since the reservoir last had a snapshot
+     * Attach a reader which sees each value recorded from now on once, in the interval histogram
+     * of the read after it was recorded.
+     *
+     * @return a new interval reader of this reservoir
      */
-    private synchronized Histogram getDataSinceLastSnapshotAndUpdate() {
-        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
-        long intervalHistogramStartTime = intervalHistogramEndTime;
-        intervalHistogramEndTime = System.currentTimeMillis();
-
-        intervalHistogram.setTag(metricName);
-        intervalHistogram.setStartTimeStamp(intervalHistogramStartTime);
-        intervalHistogram.setEndTimeStamp(intervalHistogramEndTime);
+    public synchronized Reader attachReader() {
+        drain();
+        Reader attached = new Reader();
+        readers.add(attached);
+        return attached;
+    }
 
-        lastHistogram = intervalHistogram.copy();
-        lastHistogram.setTag(metricName);
+    /**
+     * @return the number of values recorded into this reservoir so far
+     */
+    public synchronized long getRecordedCount() {
+        drain();
+        return drainedCount;
+    }
 
-        if (writer!=null) {
-            writer.outputIntervalHistogram(lastHistogram);
+    /**
+     * Move the values recorded since the last drain into the pending data of every reader.
+     */
+    private void drain() {
+        for (Stripe drained : stripes) {
+            // checked before draining, so that nothing is recorded after the final drain of a stripe
+            boolean ended = drained.isEnded();
+            Histogram histogram = drained.drain();
+            if (ended) {
+                stripes.remove(drained);
+            }
+            if (histogram.getTotalCount() == 0L) {
+                continue;
+            }
+            drainedCount += histogram.getTotalCount();
+            for (Reader attached : readers) {
+                attached.pending.add(histogram);
+            }
         }
-        return lastHistogram;
     }
 
     /**
@@ -125,11 +197,7 @@ public final class DeltaHdrHistogramReservoir implements Reservoir {
      * @param writer the log writer to use
      */
     public void write(HistogramLogWriter writer) {
-        writer.outputIntervalHistogram(lastHistogram);
-    }
-
-    public DeltaHdrHistogramReservoir copySettings() {
-        return new DeltaHdrHistogramReservoir(this.metricName, intervalHistogram.getNumberOfSignificantValueDigits());
+        writer.outputIntervalHistogram(reader.getLastHistogram());
     }
 
     public void attachLogWriter(HistogramLogWriter logWriter) {
@@ -137,6 +205,78 @@ public final class DeltaHdrHistogramReservoir implements Reservoir {
     }
 
     public Histogram getLastHistogram() {
-        return lastHistogram;
+        return reader.getLastHistogram();
+    }
+
+    /**
+     * A recorder, with the interval histogram it recycles, and the thread which records into it
+     * if it belongs to one thread.
+     */
+    private final static class Stripe {
+        private final Recorder recorder;
+        private final WeakReference<Thread> owner;
+        private Histogram intervalHistogram;
+
+        private Stripe(Recorder recorder, Thread owner) {
+            this.recorder = recorder;
+            this.owner = owner == null ? null : new WeakReference<>(owner);
+        }
+
+        private boolean isEnded() {
+            if (owner == null) {
+                return false;
+            }
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        private Histogram drain() {
+            intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+            return intervalHistogram;
+        }
+    }
+
+    /**
+     * A read cursor over the values recorded by this reservoir.
+     */
+    public final class Reader implements HdrDeltaHistogramProvider {
+        private final Histogram pending;
+        private long lastReadTime;
+        private Histogram lastHistogram;
+
+        private Reader() {
+            this.pending = new Histogram(significantDigits);
+            this.lastReadTime = System.currentTimeMillis();
+            this.lastHistogram = new Histogram(significantDigits);
+        }
+
+        /**
+         * @return a copy of the values seen by this reader since the last call to this method, or
+         * since it was attached
+         */
+        @Override
+        public Histogram getNextHdrDeltaHistogram() {
+            synchronized (DeltaHdrHistogramReservoir.this) {
+                drain();
+                long now = System.currentTimeMillis();
+                Histogram histogram = pending.copy();
+                histogram.setTag(metricName);
+                histogram.setStartTimeStamp(lastReadTime);
+                histogram.setEndTimeStamp(now);
+                pending.reset();
+                lastReadTime = now;
+                lastHistogram = histogram;
+                return histogram;
+            }
+        }
+
+        /**
+         * @return the histogram which was returned by the last call to {@link #getNextHdrDeltaHistogram()}
+         */
+        public Histogram getLastHistogram() {
+            synchronized (DeltaHdrHistogramReservoir.this) {
+                return lastHistogram;
+            }
+        }
     }
 }
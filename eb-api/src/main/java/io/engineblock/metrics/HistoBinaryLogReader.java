@@ -0,0 +1,182 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+
+/**
+ * Read the interval histograms of a binary histogram log, as written by {@link HistoBinaryLogWriter}.
+ * Only the index files of the log are read up front. The data files are only read for the intervals
+ * of the metrics which are asked for.
+ */
+public class HistoBinaryLogReader {
+
+    private final File logfile;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * @param logfile The log file which was given to the writer
+     */
+    public HistoBinaryLogReader(File logfile) {
+        this.logfile = logfile;
+        for (int segment = 0; ; segment++) {
+            File indexFile = HistoBinaryLogWriter.segmentFile(logfile, segment, HistoBinaryLogWriter.INDEX_SUFFIX);
+            if (!indexFile.exists()) {
+                break;
+            }
+            readIndex(segment, indexFile);
+        }
+    }
+
+    private void readIndex(int segment, File indexFile) {
+        ByteBuffer index;
+        try {
+            index = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read histogram log index " + indexFile, e);
+        }
+        if (index.remaining() < 8 || index.getInt() != HistoBinaryLogWriter.INDEX_MAGIC) {
+            throw new RuntimeException("Not a histogram log index: " + indexFile);
+        }
+        int version = index.getInt();
+        if (version != HistoBinaryLogWriter.VERSION) {
+            throw new RuntimeException("Unsupported histogram log index version " + version + " in " + indexFile);
+        }
+
+        Map<Integer, String> names = new HashMap<>();
+        try {
+            while (index.hasRemaining()) {
+                byte kind = index.get();
+                if (kind == HistoBinaryLogWriter.METRIC_RECORD) {
+                    int id = index.getInt();
+                    byte[] name = new byte[index.getShort()];
+                    index.get(name);
+                    names.put(id, new String(name, StandardCharsets.UTF_8));
+                } else if (kind == HistoBinaryLogWriter.INTERVAL_RECORD) {
+                    String name = names.get(index.getInt());
+                    long start = index.getLong();
+                    long end = index.getLong();
+                    long offset = index.getLong();
+                    int length = index.getInt();
+                    entries.add(new Entry(name, segment, start, end, offset, length));
+                } else {
+                    throw new RuntimeException("Unknown record type " + kind + " in histogram log index " + indexFile);
+                }
+            }
+        } catch (BufferUnderflowException ignored) {
+            // The last record was only partly written, as when the log was not closed
+        }
+    }
+
+    /**
+     * @return the names of all metrics in the log, in order
+     */
+    public SortedSet<String> getMetricNames() {
+        SortedSet<String> names = new TreeSet<>();
+        for (Entry entry : entries) {
+            names.add(entry.metricName);
+        }
+        return names;
+    }
+
+    /**
+     * @param metricName The name of a metric in the log
+     * @return the interval histograms of the metric, in order of their start times
+     */
+    public List<Histogram> getIntervals(String metricName) {
+        List<Entry> selected = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.metricName.equals(metricName)) {
+                selected.add(entry);
+            }
+        }
+        selected.sort(Comparator.comparingLong((Entry e) -> e.startMillis).thenComparingInt(e -> e.segment));
+
+        List<Histogram> histograms = new ArrayList<>(selected.size());
+        FileChannel data = null;
+        int openSegment = -1;
+        try {
+            for (Entry entry : selected) {
+                if (entry.segment != openSegment) {
+                    if (data != null) {
+                        data.close();
+                    }
+                    File dataFile = HistoBinaryLogWriter.segmentFile(logfile, entry.segment, HistoBinaryLogWriter.DATA_SUFFIX);
+                    data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+                    openSegment = entry.segment;
+                }
+                histograms.add(entry.read(data));
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new RuntimeException("Unable to read intervals of " + metricName + " from histogram log " + logfile, e);
+        } finally {
+            if (data != null) {
+                try {
+                    data.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return histograms;
+    }
+
+    private final static class Entry {
+        private final String metricName;
+        private final int segment;
+        private final long startMillis;
+        private final long endMillis;
+        private final long offset;
+        private final int length;
+
+        private Entry(String metricName, int segment, long startMillis, long endMillis, long offset, int length) {
+            this.metricName = metricName;
+            this.segment = segment;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private Histogram read(FileChannel data) throws IOException, DataFormatException {
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            long position = offset + HistoBinaryLogWriter.BLOCK_HEADER_SIZE;
+            while (payload.hasRemaining()) {
+                if (data.read(payload, position + payload.position()) < 0) {
+                    throw new IOException("Unexpected end of histogram log data at offset " + offset);
+                }
+            }
+            payload.flip();
+            Histogram histogram = Histogram.decodeFromCompressedByteBuffer(payload, 0L);
+            histogram.setTag(metricName);
+            histogram.setStartTimeStamp(startMillis);
+            histogram.setEndTimeStamp(endMillis);
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>Write interval histograms to a binary histogram log. Histograms are handed to this writer
+ * as they are taken, and are compressed and appended by a small pool of encoder threads, so
+ * that the caller is not held up by encoding or by the file system.</p>
+ *
+ * <H2>Layout</H2>
+ * <p>The log is written as a series of segments, which are named after the log file with a
+ * segment number, as in <em>histos-000000.hdrb</em>. A new segment is started when the current
+ * one reaches the rotation size or age. Each segment has a data file and an index file, and
+ * is readable on its own.</p>
+ * <ul>
+ * <li>The data file starts with a magic number, a version and the time the segment was started.
+ * It is followed by one block for each interval histogram: the payload length, the metric id,
+ * the interval start and end times in millis, and the compressed histogram.</li>
+ * <li>The index file starts with a magic number and a version. It is followed by a metric record,
+ * which assigns an id to a metric name, the first time each metric is written to the segment, and
+ * by an interval record for each block, with the metric id, the interval start and end times, and
+ * the offset and payload length of the block in the data file.</li>
+ * </ul>
+ * <p>Since the index is small, {@link HistoBinaryLogReader} can find all the intervals of one
+ * metric from it, and decode only those.</p>
+ */
+public class HistoBinaryLogWriter implements AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(HistoBinaryLogWriter.class);
+
+    public final static String DATA_SUFFIX = ".hdrb";
+    public final static String INDEX_SUFFIX = ".hdrx";
+    final static int DATA_MAGIC = 0x48445242;
+    final static int INDEX_MAGIC = 0x48445258;
+    final static int VERSION = 1;
+    final static int DATA_HEADER_SIZE = 16;
+    final static int BLOCK_HEADER_SIZE = 24;
+    final static byte METRIC_RECORD = 1;
+    final static byte INTERVAL_RECORD = 2;
+
+    public final static long DEFAULT_ROTATE_BYTES = 256L * 1024L * 1024L;
+    public final static long DEFAULT_ROTATE_MILLIS = TimeUnit.HOURS.toMillis(1L);
+
+    private final File logfile;
+    private final long rotateBytes;
+    private final long rotateMillis;
+    private final ExecutorService encoders;
+    private final ThreadLocal<ByteBuffer> encodeBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+
+    private final Map<String, Integer> metricIds = new HashMap<>();
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private final ByteBuffer indexRecord = ByteBuffer.allocate(1024);
+    private FileChannel data;
+    private FileChannel index;
+    private int segment = -1;
+    private long segmentStartMillis;
+
+    public HistoBinaryLogWriter(File logfile) {
+        this(logfile, Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+                DEFAULT_ROTATE_BYTES, DEFAULT_ROTATE_MILLIS);
+    }
+
+    /**
+     * @param logfile      The log file, which names the segments
+     * @param encoders     The number of threads to encode histograms with
+     * @param rotateBytes  The size of data file at which to start a new segment
+     * @param rotateMillis The age of segment at which to start a new segment
+     */
+    public HistoBinaryLogWriter(File logfile, int encoders, long rotateBytes, long rotateMillis) {
+        this.logfile = logfile;
+        this.rotateBytes = rotateBytes;
+        this.rotateMillis = rotateMillis;
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        this.encoders = Executors.newFixedThreadPool(encoders, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("histolog-encoder-" + threadNumber.getAndIncrement() + ":" + logfile.getName());
+            return thread;
+        });
+    }
+
+    /**
+     * Encode and append an interval histogram in the background. The histogram must not be
+     * modified after it is submitted.
+     *
+     * @param metricName The name of the metric which the histogram is for
+     * @param histogram  The interval histogram, with its start and end time stamps set
+     */
+    public void submit(String metricName, Histogram histogram) {
+        encoders.submit(() -> {
+            try {
+                ByteBuffer payload = encode(histogram);
+                append(metricName, histogram.getStartTimeStamp(), histogram.getEndTimeStamp(), payload);
+            } catch (Exception e) {
+                logger.error("Unable to write interval histogram for " + metricName + " to " + logfile + ": " + e, e);
+            }
+        });
+    }
+
+    private ByteBuffer encode(Histogram histogram) {
+        ByteBuffer buffer = encodeBuffers.get();
+        int needed = histogram.getNeededByteBufferCapacity();
+        if (buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocate(needed);
+            encodeBuffers.set(buffer);
+        }
+        buffer.clear();
+        histogram.encodeIntoCompressedByteBuffer(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private synchronized void append(String metricName, long startMillis, long endMillis, ByteBuffer payload)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        if (data == null || data.position() >= rotateBytes || now - segmentStartMillis >= rotateMillis) {
+            openSegment(now);
+        }
+
+        Integer id = metricIds.get(metricName);
+        if (id == null) {
+            id = metricIds.size();
+            metricIds.put(metricName, id);
+            byte[] name = metricName.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = name.length + 7 > indexRecord.capacity() ? ByteBuffer.allocate(name.length + 7) : indexRecord;
+            record.clear();
+            record.put(METRIC_RECORD).putInt(id).putShort((short) name.length).put(name).flip();
+            writeFully(index, record);
+        }
+
+        long offset = data.position();
+        int length = payload.remaining();
+        blockHeader.clear();
+        blockHeader.putInt(length).putInt(id).putLong(startMillis).putLong(endMillis).flip();
+        writeFully(data, blockHeader);
+        writeFully(data, payload);
+
+        indexRecord.clear();
+        indexRecord.put(INTERVAL_RECORD).putInt(id).putLong(startMillis).putLong(endMillis)
+                .putLong(offset).putInt(length).flip();
+        writeFully(index, indexRecord);
+    }
+
+    private void openSegment(long now) throws IOException {
+        closeSegment();
+        segment++;
+        segmentStartMillis = now;
+        metricIds.clear();
+        data = FileChannel.open(segmentFile(logfile, segment, DATA_SUFFIX).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        index = FileChannel.open(segmentFile(logfile, segment, INDEX_SUFFIX).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        header.putInt(DATA_MAGIC).putInt(VERSION).putLong(now).flip();
+        writeFully(data, header);
+        header.clear();
+        header.putInt(INDEX_MAGIC).putInt(VERSION).flip();
+        writeFully(index, header);
+        logger.debug("started histogram log segment " + segment + " for " + logfile);
+    }
+
+    private void closeSegment() throws IOException {
+        if (data != null) {
+            data.close();
+            index.close();
+            data = null;
+            index = null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @param logfile The log file, which names the segments
+     * @param segment The segment number
+     * @param suffix  The suffix of the data or index file
+     * @return the file of the segment
+     */
+    static File segmentFile(File logfile, int segment, String suffix) {
+        String name = logfile.getName();
+        if (name.endsWith(DATA_SUFFIX)) {
+            name = name.substring(0, name.length() - DATA_SUFFIX.length());
+        }
+        return new File(logfile.getAbsoluteFile().getParentFile(), String.format("%s-%06d%s", name, segment, suffix));
+    }
+
+    /**
+     * Wait for all submitted histograms to be written, and close the log.
+     */
+    @Override
+    public void close() {
+        encoders.shutdown();
+        try {
+            if (!encoders.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Timed out waiting for interval histograms to be written to " + logfile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                closeSegment();
+            } catch (IOException e) {
+                throw new RuntimeException("Error while closing histogram log " + logfile, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistoBinaryLogWriter:" + logfile.getPath() + ":segment=" + segment;
+    }
+}
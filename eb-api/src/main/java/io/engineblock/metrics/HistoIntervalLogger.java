@@ -18,6 +18,7 @@
 package io.engineblock.metrics;
 
 import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramLogWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,10 @@ import java.util.regex.Pattern;
  * It listens to the metrics registry for any new metrics that match the pattern. Any metrics
  * which both match the pattern and which are {@link EncodableHistogram}s are written the configured
  * logfile at the configured interval.
+ *
+ * <p>If the logfile name ends with {@link HistoBinaryLogWriter#DATA_SUFFIX}, the histograms are written to a
+ * binary histogram log instead. In that case, the logging thread only takes the interval histograms, and they
+ * are encoded and written in the background by a {@link HistoBinaryLogWriter}.</p>
  */
 public class HistoIntervalLogger extends  CapabilityHook<HdrDeltaHistogramAttachment> implements Runnable, MetricsCloseable  {
     private final static Logger logger = LoggerFactory.getLogger(HistoIntervalLogger.class);
@@ -49,6 +54,7 @@ public class HistoIntervalLogger extends  CapabilityHook<HdrDeltaHistogramAttach
     private File logfile;
     private PrintStream logStream;
     private HistogramLogWriter writer;
+    private HistoBinaryLogWriter binaryWriter;
     private Pattern pattern;
 
     private List<WriterTarget> targets = new CopyOnWriteArrayList<>();
@@ -67,6 +73,13 @@ public class HistoIntervalLogger extends  CapabilityHook<HdrDeltaHistogramAttach
         return pattern.matcher(metricName).matches();
     }
 
+    /**
+     * @return true, if this logger writes a binary histogram log
+     */
+    public boolean isBinary() {
+        return logfile.getName().endsWith(HistoBinaryLogWriter.DATA_SUFFIX);
+    }
+
     /**
      * By convention, it is typical for the logging application
      * to use a comment to indicate the logging application at the head
@@ -74,17 +87,21 @@ public class HistoIntervalLogger extends  CapabilityHook<HdrDeltaHistogramAttach
      * and a legend (in that order).
      */
     public void startLogging() {
-        try {
-            logStream = new PrintStream(logfile);
-            writer = new HistogramLogWriter(logStream);
-            writer.outputComment("logging histograms for session " + sessionName);
-            writer.outputLogFormatVersion();
-            long currentTimeMillis = System.currentTimeMillis();
-            writer.outputStartTime(currentTimeMillis);
-            writer.setBaseTime(currentTimeMillis);
-            writer.outputLegend();
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("Error while starting histogram log writer", e);
+        if (isBinary()) {
+            binaryWriter = new HistoBinaryLogWriter(logfile);
+        } else {
+            try {
+                logStream = new PrintStream(logfile);
+                writer = new HistogramLogWriter(logStream);
+                writer.outputComment("logging histograms for session " + sessionName);
+                writer.outputLogFormatVersion();
+                long currentTimeMillis = System.currentTimeMillis();
+                writer.outputStartTime(currentTimeMillis);
+                writer.setBaseTime(currentTimeMillis);
+                writer.outputLegend();
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException("Error while starting histogram log writer", e);
+            }
         }
 
         this.executor = new PeriodicRunnable<HistoIntervalLogger>(this.getInterval(),this);
@@ -121,7 +138,12 @@ public class HistoIntervalLogger extends  CapabilityHook<HdrDeltaHistogramAttach
     @Override
     public void run() {
         for (WriterTarget target : targets) {
-            writer.outputIntervalHistogram(target.histoProvider.getNextHdrDeltaHistogram());
+            Histogram histogram = target.histoProvider.getNextHdrDeltaHistogram();
+            if (binaryWriter != null) {
+                binaryWriter.submit(target.name, histogram);
+            } else {
+                writer.outputIntervalHistogram(histogram);
+            }
         }
         lastRunTime = System.currentTimeMillis();
     }
@@ -136,7 +158,11 @@ public class HistoIntervalLogger extends  CapabilityHook<HdrDeltaHistogramAttach
         } else {
             logger.debug("Not writing last partial histo log <1s:" + this);
         }
-        logStream.close();
+        if (binaryWriter != null) {
+            binaryWriter.close();
+        } else {
+            logStream.close();
+        }
     }
 
     @Override
@@ -35,24 +35,31 @@ public class HistoLogChartGenerator {
     public static void generateChartFromHistoLog(HistoIntervalLogger histoIntervalLogger) {
         File logFile = histoIntervalLogger.getLogfile();
 
-        try {
-            HistogramLogReader reader = new HistogramLogReader(logFile);
+        if (histoIntervalLogger.isBinary()) {
+            HistoBinaryLogReader reader = new HistoBinaryLogReader(logFile);
+            for (String metricName : reader.getMetricNames()) {
+                histogramsOverTime.put(metricName, new ArrayList<>(reader.getIntervals(metricName)));
+            }
+        } else {
+            try {
+                HistogramLogReader reader = new HistogramLogReader(logFile);
 
-            while (reader.hasNext()){
-                Histogram histogram = (Histogram)reader.nextIntervalHistogram();
-                if (histogram != null) {
-                    String tag = histogram.getTag();
+                while (reader.hasNext()){
+                    Histogram histogram = (Histogram)reader.nextIntervalHistogram();
+                    if (histogram != null) {
+                        String tag = histogram.getTag();
 
-                    ArrayList<Histogram> histogramList = histogramsOverTime.get(tag);
-                    if (histogramList == null) {
-                        histogramList = new ArrayList<>();
+                        ArrayList<Histogram> histogramList = histogramsOverTime.get(tag);
+                        if (histogramList == null) {
+                            histogramList = new ArrayList<>();
+                        }
+                        histogramList.add(histogram);
+                        histogramsOverTime.put(tag, histogramList);
                     }
-                    histogramList.add(histogram);
-                    histogramsOverTime.put(tag, histogramList);
                 }
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
         }
 
 
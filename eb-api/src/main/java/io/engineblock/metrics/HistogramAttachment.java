@@ -19,6 +19,15 @@ package io.engineblock.metrics;
 
 import com.codahale.metrics.Histogram;
 
+/**
+ * Allow a metric to provide attached views of the same data, for reporters which
+ * expect a {@link Histogram} with non-interval semantics.
+ */
 public interface HistogramAttachment {
-    Histogram attachHistogram(Histogram histogram);
+    /**
+     * Attach a histogram which reads the values recorded by this metric from the time it is
+     * attached, without the values being recorded a second time.
+     * @return the attached histogram
+     */
+    Histogram attachHistogram();
 }
@@ -18,9 +18,7 @@
 package io.engineblock.metrics;
 
 import com.codahale.metrics.Histogram;
-
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import com.codahale.metrics.Snapshot;
 
 
 public class NicerHistogram extends Histogram implements DeltaSnapshotter, HdrDeltaHistogramAttachment, HistogramAttachment {
@@ -29,7 +27,6 @@ public class NicerHistogram extends Histogram implements DeltaSnapshotter, HdrDe
     private long cacheExpiryMillis = 0L;
     private long cacheTimeMillis = 0L;
     private String metricName;
-    private List<Histogram> mirrors;
 
     public NicerHistogram(String metricName, DeltaHdrHistogramReservoir hdrHistogramReservoir) {
         super(hdrHistogramReservoir);
@@ -64,33 +61,13 @@ public class NicerHistogram extends Histogram implements DeltaSnapshotter, HdrDe
     }
 
     @Override
-    public synchronized NicerHistogram attachHdrDeltaHistogram() {
-        if (mirrors == null) {
-            mirrors = new CopyOnWriteArrayList<>();
-        }
-        DeltaHdrHistogramReservoir mirrorReservoir = this.hdrDeltaReservoir.copySettings();
-        NicerHistogram mirror = new NicerHistogram("mirror-" + this.metricName, mirrorReservoir);
-        mirrors.add(mirror);
-        return mirror;
-    }
-
-    @Override
-    public Histogram attachHistogram(Histogram histogram) {
-        if (mirrors == null) {
-            mirrors = new CopyOnWriteArrayList<>();
-        }
-        mirrors.add(histogram);
-        return histogram;
+    public HdrDeltaHistogramProvider attachHdrDeltaHistogram() {
+        return hdrDeltaReservoir.attachReader();
     }
 
     @Override
-    public void update(long value) {
-        super.update(value);
-        if (mirrors != null) {
-            for (Histogram mirror : mirrors) {
-                mirror.update(value);
-            }
-        }
+    public Histogram attachHistogram() {
+        return new HistogramView(this, hdrDeltaReservoir);
     }
 
     @Override
@@ -98,4 +75,34 @@ public class NicerHistogram extends Histogram implements DeltaSnapshotter, HdrDe
         return hdrDeltaReservoir.getNextHdrHistogram();
     }
 
+    /**
+     * A histogram which shares the count of the attaching histogram, and which reports
+     * the values recorded since its own last snapshot. Nothing is recorded through it.
+     */
+    private final static class HistogramView extends Histogram {
+        private final Histogram upstream;
+        private final DeltaHdrHistogramReservoir.Reader reader;
+
+        private HistogramView(Histogram upstream, DeltaHdrHistogramReservoir reservoir) {
+            super(reservoir);
+            this.upstream = upstream;
+            this.reader = reservoir.attachReader();
+        }
+
+        @Override
+        public void update(long value) {
+            upstream.update(value);
+        }
+
+        @Override
+        public long getCount() {
+            return upstream.getCount();
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return new DeltaHistogramSnapshot(reader.getNextHdrDeltaHistogram());
+        }
+    }
+
 }
@@ -17,24 +17,75 @@
 
 package io.engineblock.metrics;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
 import org.HdrHistogram.Histogram;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * <p>A timer which reports interval histograms from a {@link DeltaHdrHistogramReservoir}.</p>
+ *
+ * <p>When the reservoir has a recorder for each thread, updates only record into the recorder
+ * of the calling thread. The count and rates of the timer are then kept in a meter which is
+ * marked with the number of recorded values each time the reservoir is drained, rather than
+ * on every update.</p>
+ */
 public class NicerTimer extends Timer implements DeltaSnapshotter, HdrDeltaHistogramAttachment, TimerAttachment {
     private final String metricName;
     private DeltaHdrHistogramReservoir deltaHdrHistogramReservoir;
     private long cacheExpiry = 0L;
     private ConvenientSnapshot lastSnapshot;
-    private List<Timer> mirrors;
+    private final Meter mergedMeter;
+    private long mergedCount = 0L;
 
     public NicerTimer(String metricName, DeltaHdrHistogramReservoir deltaHdrHistogramReservoir) {
         super(deltaHdrHistogramReservoir);
         this.metricName = metricName;
         this.deltaHdrHistogramReservoir = deltaHdrHistogramReservoir;
+        this.mergedMeter = deltaHdrHistogramReservoir.isThreadLocal() ? new Meter() : null;
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+        if (mergedMeter == null) {
+            super.update(duration, unit);
+        } else if (duration >= 0) {
+            deltaHdrHistogramReservoir.update(unit.toNanos(duration));
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return mergedMeter == null ? super.getCount() : merge().getCount();
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return mergedMeter == null ? super.getFifteenMinuteRate() : merge().getFifteenMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return mergedMeter == null ? super.getFiveMinuteRate() : merge().getFiveMinuteRate();
+    }
+
+    @Override
+    public double getMeanRate() {
+        return mergedMeter == null ? super.getMeanRate() : merge().getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return mergedMeter == null ? super.getOneMinuteRate() : merge().getOneMinuteRate();
+    }
+
+    private synchronized Meter merge() {
+        long recorded = deltaHdrHistogramReservoir.getRecordedCount();
+        mergedMeter.mark(recorded - mergedCount);
+        mergedCount = recorded;
+        return mergedMeter;
     }
 
     @Override
@@ -57,37 +108,67 @@ public class NicerTimer extends Timer implements DeltaSnapshotter, HdrDeltaHisto
     }
 
     @Override
-    public synchronized NicerTimer attachHdrDeltaHistogram() {
-        if (mirrors==null) {
-            mirrors = new CopyOnWriteArrayList<>();
-        }
-        DeltaHdrHistogramReservoir sameConfigReservoir = this.deltaHdrHistogramReservoir.copySettings();
-        NicerTimer mirror = new NicerTimer(this.metricName, sameConfigReservoir);
-        mirrors.add(mirror);
-        return mirror;
+    public HdrDeltaHistogramProvider attachHdrDeltaHistogram() {
+        return deltaHdrHistogramReservoir.attachReader();
     }
+
     @Override
-    public Timer attachTimer(Timer timer) {
-        if (mirrors==null) {
-            mirrors = new CopyOnWriteArrayList<>();
-        }
-        mirrors.add(timer);
-        return timer;
+    public Timer attachTimer() {
+        return new TimerView(this, deltaHdrHistogramReservoir);
     }
 
-
     @Override
     public Histogram getNextHdrDeltaHistogram() {
         return this.deltaHdrHistogramReservoir.getNextHdrHistogram();
     }
 
-    @Override
-    public void update(long duration, TimeUnit unit) {
-        super.update(duration, unit);
-        if (mirrors!=null) {
-            for (Timer mirror : mirrors) {
-                mirror.update(duration,unit);
-            }
+    /**
+     * A timer which shares the counts and rates of the attaching timer, and which reports
+     * the values recorded since its own last snapshot. Nothing is recorded through it.
+     */
+    private final static class TimerView extends Timer {
+        private final Timer upstream;
+        private final DeltaHdrHistogramReservoir.Reader reader;
+
+        private TimerView(Timer upstream, DeltaHdrHistogramReservoir reservoir) {
+            super(reservoir);
+            this.upstream = upstream;
+            this.reader = reservoir.attachReader();
+        }
+
+        @Override
+        public void update(long duration, TimeUnit unit) {
+            upstream.update(duration, unit);
+        }
+
+        @Override
+        public long getCount() {
+            return upstream.getCount();
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            return upstream.getFifteenMinuteRate();
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            return upstream.getFiveMinuteRate();
+        }
+
+        @Override
+        public double getMeanRate() {
+            return upstream.getMeanRate();
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            return upstream.getOneMinuteRate();
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return new DeltaHistogramSnapshot(reader.getNextHdrDeltaHistogram());
         }
     }
 
@@ -0,0 +1,315 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+package io.engineblock.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>An append-only block of samples for one time series, compressed as described in
+ * the Gorilla paper from Facebook. Timestamps are stored as the difference between
+ * successive deltas, so that samples taken on a regular reporting interval take a single
+ * bit each. Values are stored as the XOR of each value with the one before it, so that
+ * values which do not change take a single bit, and values which change slowly only
+ * store the bits which differ.</p>
+ *
+ * <p>Samples must be appended in time order. Once a block is full, it is sealed by
+ * its owner, and may then be written out with {@link #writeTo(ByteBuffer)}.</p>
+ */
+public class TimeSeriesBlock {
+
+    private long[] words;
+    private int bits;
+    private int count;
+
+    private long firstTime;
+    private long lastTime;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading = Integer.MAX_VALUE;
+    private int lastTrailing;
+
+    public TimeSeriesBlock() {
+        this.words = new long[16];
+    }
+
+    private TimeSeriesBlock(long[] words, int bits, int count, long firstTime, long lastTime) {
+        this.words = words;
+        this.bits = bits;
+        this.count = count;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+    }
+
+    /**
+     * Add a sample to the end of this block.
+     *
+     * @param time  The time of the sample, in milliseconds since the epoch
+     * @param value The value of the sample
+     * @return false, if the sample was not added because it is older than the last sample
+     */
+    public boolean append(long time, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            firstTime = time;
+            writeBits(time, 64);
+            writeBits(valueBits, 64);
+        } else {
+            if (time < lastTime) {
+                return false;
+            }
+            long delta = time - lastTime;
+            writeTimeDelta(delta - lastDelta);
+            writeValue(valueBits);
+            lastDelta = delta;
+        }
+        lastTime = time;
+        lastValueBits = valueBits;
+        count++;
+        return true;
+    }
+
+    private void writeTimeDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0L) {
+            writeBits(0b0L, 1);
+        } else if (deltaOfDelta >= -63L && deltaOfDelta <= 64L) {
+            writeBits(0b10L, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -255L && deltaOfDelta <= 256L) {
+            writeBits(0b110L, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2047L && deltaOfDelta <= 2048L) {
+            writeBits(0b1110L, 4);
+            writeBits(deltaOfDelta, 12);
+        } else if (deltaOfDelta > Integer.MIN_VALUE && deltaOfDelta <= (1L << 31)) {
+            writeBits(0b11110L, 5);
+            writeBits(deltaOfDelta, 32);
+        } else {
+            writeBits(0b11111L, 5);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long valueBits) {
+        long xor = valueBits ^ lastValueBits;
+        if (xor == 0L) {
+            writeBits(0b0L, 1);
+            return;
+        }
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (leading >= lastLeading && trailing >= lastTrailing) {
+            writeBits(0b10L, 2);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            writeBits(0b11L, 2);
+            writeBits(leading, 5);
+            writeBits(significant - 1, 6);
+            writeBits(xor >>> trailing, significant);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    /**
+     * Visit the samples of this block which fall within a time range, in time order.
+     *
+     * @param from     The earliest time to include, inclusive
+     * @param to       The latest time to include, exclusive
+     * @param consumer The visitor for each sample
+     */
+    public void forEach(long from, long to, SampleConsumer consumer) {
+        if (count == 0 || from > lastTime || to <= firstTime) {
+            return;
+        }
+        BitReader reader = new BitReader();
+        long time = reader.read(64);
+        long valueBits = reader.read(64);
+        long delta = 0L;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; ; ) {
+            if (time >= to) {
+                return;
+            }
+            if (time >= from) {
+                consumer.accept(time, Double.longBitsToDouble(valueBits));
+            }
+            if (++i == count) {
+                return;
+            }
+
+            delta += readTimeDelta(reader);
+            time += delta;
+
+            if (reader.read(1) != 0L) {
+                if (reader.read(1) != 0L) {
+                    leading = (int) reader.read(5);
+                    int significant = (int) reader.read(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                valueBits ^= reader.read(64 - leading - trailing) << trailing;
+            }
+        }
+    }
+
+    public void forEach(SampleConsumer consumer) {
+        forEach(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    private static long readTimeDelta(BitReader reader) {
+        int prefix = 0;
+        while (prefix < 5 && reader.read(1) != 0L) {
+            prefix++;
+        }
+        switch (prefix) {
+            case 0:
+                return 0L;
+            case 1:
+                return signed(reader.read(7), 7);
+            case 2:
+                return signed(reader.read(9), 9);
+            case 3:
+                return signed(reader.read(12), 12);
+            case 4:
+                return signed(reader.read(32), 32);
+            default:
+                return reader.read(64);
+        }
+    }
+
+    /**
+     * Each range of deltas reaches one further on the positive side than on the negative
+     * side, as in the Gorilla encoding, so a field is only negative above the largest
+     * positive value.
+     */
+    private static long signed(long value, int width) {
+        long max = 1L << (width - 1);
+        return value > max ? value - (1L << width) : value;
+    }
+
+    private void writeBits(long value, int width) {
+        if (width == 0) {
+            return;
+        }
+        if (width < 64) {
+            value &= (1L << width) - 1;
+        }
+        int index = bits >>> 6;
+        int offset = bits & 63;
+        if (index + 1 >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        int free = 64 - offset;
+        if (width <= free) {
+            words[index] |= value << (free - width);
+        } else {
+            words[index] |= value >>> (width - free);
+            words[index + 1] |= value << (64 - (width - free));
+        }
+        bits += width;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * @return The number of bytes this block takes when written out
+     */
+    public int getEncodedSize() {
+        return 4 + 8 + 8 + 4 + ((bits + 63) >>> 6) * 8;
+    }
+
+    /**
+     * Write this block into a buffer, which must have at least {@link #getEncodedSize()} bytes remaining.
+     *
+     * @param buffer The buffer to write into
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(count);
+        buffer.putLong(firstTime);
+        buffer.putLong(lastTime);
+        buffer.putInt(bits);
+        for (int i = 0; i < (bits + 63) >>> 6; i++) {
+            buffer.putLong(words[i]);
+        }
+    }
+
+    /**
+     * Read a block which was written with {@link #writeTo(ByteBuffer)}. The block which is read can
+     * only be queried, since the encoder state is not written out.
+     *
+     * @param buffer The buffer to read from
+     * @return A read-only block
+     */
+    public static TimeSeriesBlock readFrom(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        long firstTime = buffer.getLong();
+        long lastTime = buffer.getLong();
+        int bits = buffer.getInt();
+        long[] words = new long[Math.max(1, (bits + 63) >>> 6)];
+        for (int i = 0; i < (bits + 63) >>> 6; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new TimeSeriesBlock(words, bits, count, firstTime, lastTime);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesBlock{" +
+                "count=" + count +
+                ", firstTime=" + firstTime +
+                ", lastTime=" + lastTime +
+                ", bytes=" + ((bits + 7) >>> 3) +
+                '}';
+    }
+
+    public interface SampleConsumer {
+        void accept(long time, double value);
+    }
+
+    private class BitReader {
+        private int position;
+
+        private long read(int width) {
+            if (width == 0) {
+                return 0L;
+            }
+            int index = position >>> 6;
+            int offset = position & 63;
+            int free = 64 - offset;
+            long value;
+            if (width <= free) {
+                value = words[index] >>> (free - width);
+            } else {
+                value = (words[index] << (width - free)) | (words[index + 1] >>> (64 - (width - free)));
+            }
+            position += width;
+            return width == 64 ? value : value & ((1L << width) - 1);
+        }
+    }
+}
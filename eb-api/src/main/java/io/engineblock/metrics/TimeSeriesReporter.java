@@ -0,0 +1,158 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+package io.engineblock.metrics;
+
+import com.codahale.metrics.*;
+import io.engineblock.metrics.TimeSeriesStore.Aggregate;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append the values of the metrics in a registry to a {@link TimeSeriesStore} on every report.
+ * Each metric is stored as one series per field, such as <em>cycles.p99</em> or
+ * <em>cycles.m1_rate</em>. Durations are stored in nanoseconds and rates per second.
+ *
+ * <p>Timers and histograms which can have HDR histograms attached are read through their own
+ * attached histogram, so their percentiles cover exactly the values recorded during each
+ * reporting interval, regardless of which other reporters or loggers read the same metric.</p>
+ */
+public class TimeSeriesReporter extends ScheduledReporter {
+
+    private final TimeSeriesStore store;
+    private final String prefix;
+    private final Clock clock;
+    private final Map<String, HdrDeltaHistogramProvider> attached = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry The registry to report
+     * @param filter   A filter for the metrics to report
+     * @param store    The store to append to
+     * @param prefix   A prefix for the series names, which may be empty
+     */
+    public TimeSeriesReporter(MetricRegistry registry, MetricFilter filter, TimeSeriesStore store, String prefix) {
+        super(registry, "timeseries-reporter", filter, TimeUnit.SECONDS, TimeUnit.NANOSECONDS);
+        this.store = store;
+        this.prefix = prefix == null || prefix.isEmpty() ? "" : (prefix.endsWith(".") ? prefix : prefix + ".");
+        this.clock = Clock.defaultClock();
+    }
+
+    public TimeSeriesStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void report(SortedMap<String, Gauge> gauges,
+                       SortedMap<String, Counter> counters,
+                       SortedMap<String, Histogram> histograms,
+                       SortedMap<String, Meter> meters,
+                       SortedMap<String, Timer> timers) {
+        long time = clock.getTime();
+
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            Object value = entry.getValue().getValue();
+            if (value instanceof Number) {
+                store.append(prefix + entry.getKey(), time, ((Number) value).doubleValue());
+            }
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            store.append(prefix + entry.getKey() + ".count", time, entry.getValue().getCount(), Aggregate.LAST);
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            store.append(prefix + entry.getKey() + ".count", time, entry.getValue().getCount(), Aggregate.LAST);
+            appendDistribution(entry.getKey(), entry.getValue(), time, false);
+        }
+        for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+            appendRates(entry.getKey(), entry.getValue(), time);
+        }
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            appendRates(entry.getKey(), entry.getValue(), time);
+            appendDistribution(entry.getKey(), entry.getValue(), time, true);
+        }
+
+        attached.keySet().removeIf(name -> !histograms.containsKey(name) && !timers.containsKey(name));
+    }
+
+    private void appendRates(String name, Metered metered, long time) {
+        store.append(prefix + name + ".count", time, metered.getCount(), Aggregate.LAST);
+        store.append(prefix + name + ".m1_rate", time, convertRate(metered.getOneMinuteRate()));
+        store.append(prefix + name + ".m5_rate", time, convertRate(metered.getFiveMinuteRate()));
+        store.append(prefix + name + ".m15_rate", time, convertRate(metered.getFifteenMinuteRate()));
+        store.append(prefix + name + ".mean_rate", time, convertRate(metered.getMeanRate()));
+    }
+
+    private void appendDistribution(String name, Sampling sampling, long time, boolean durations) {
+        if (sampling instanceof HdrDeltaHistogramAttachment) {
+            HdrDeltaHistogramProvider provider = attached.computeIfAbsent(
+                    name, n -> ((HdrDeltaHistogramAttachment) sampling).attachHdrDeltaHistogram());
+            org.HdrHistogram.Histogram interval = provider.getNextHdrDeltaHistogram();
+            if (interval.getTotalCount() == 0L) {
+                return;
+            }
+            String base = prefix + name;
+            store.append(base + ".min", time, interval.getMinValue());
+            store.append(base + ".max", time, interval.getMaxValue());
+            store.append(base + ".mean", time, interval.getMean());
+            store.append(base + ".stddev", time, interval.getStdDeviation());
+            store.append(base + ".p50", time, interval.getValueAtPercentile(50.0D));
+            store.append(base + ".p75", time, interval.getValueAtPercentile(75.0D));
+            store.append(base + ".p90", time, interval.getValueAtPercentile(90.0D));
+            store.append(base + ".p95", time, interval.getValueAtPercentile(95.0D));
+            store.append(base + ".p98", time, interval.getValueAtPercentile(98.0D));
+            store.append(base + ".p99", time, interval.getValueAtPercentile(99.0D));
+            store.append(base + ".p999", time, interval.getValueAtPercentile(99.9D));
+        } else {
+            Snapshot snapshot = sampling.getSnapshot();
+            String base = prefix + name;
+            store.append(base + ".min", time, scale(snapshot.getMin(), durations));
+            store.append(base + ".max", time, scale(snapshot.getMax(), durations));
+            store.append(base + ".mean", time, scale(snapshot.getMean(), durations));
+            store.append(base + ".stddev", time, scale(snapshot.getStdDev(), durations));
+            store.append(base + ".p50", time, scale(snapshot.getMedian(), durations));
+            store.append(base + ".p75", time, scale(snapshot.get75thPercentile(), durations));
+            store.append(base + ".p90", time, scale(snapshot.getValue(0.90D), durations));
+            store.append(base + ".p95", time, scale(snapshot.get95thPercentile(), durations));
+            store.append(base + ".p98", time, scale(snapshot.get98thPercentile(), durations));
+            store.append(base + ".p99", time, scale(snapshot.get99thPercentile(), durations));
+            store.append(base + ".p999", time, scale(snapshot.get999thPercentile(), durations));
+        }
+    }
+
+    /**
+     * Stop reporting, and close the store, so that the samples which have not yet been
+     * written out are appended to its file. The store can still be queried afterwards.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        store.close();
+    }
+
+    private double scale(double value, boolean duration) {
+        return duration ? convertDuration(value) : value;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesReporter{" +
+                "store=" + store +
+                ", prefix='" + prefix + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+package io.engineblock.metrics;
+
+import io.engineblock.util.Unit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * <H2>Synopsis</H2>
+ * <p>An embedded store for the history of numeric metrics, which keeps each metric as an
+ * append-only column of compressed {@link TimeSeriesBlock}s. It is fed by a
+ * {@link TimeSeriesReporter} on the reporting interval, and can be queried by name and time
+ * range, both from scripts and after a run.</p>
+ *
+ * <H2>Downsampling</H2>
+ * <p>Older samples are kept in memory at a coarser resolution, according to a downsampling
+ * spec such as <em>6h:1m,2d:10m</em>. With this spec, samples older than 6 hours are merged
+ * into one sample per minute, and those older than 2 days into one sample per 10 minutes.
+ * Samples are merged a whole block at a time, once the last sample of the block is old enough.
+ * Each series merges its samples either by their mean, or by keeping the last one, which suits
+ * counts.</p>
+ *
+ * <H2>Storage</H2>
+ * <p>When the store is given a file, every block is appended to it at full resolution as soon
+ * as it is full, and the blocks which are not yet full are appended when the store is closed.
+ * Downsampling only applies to the samples kept in memory, so a long run keeps its full history
+ * on disk for the cost of a few bytes per sample. Such a file can be read back with
+ * {@link #load(File)}.</p>
+ */
+public class TimeSeriesStore implements AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    public final static String DEFAULT_FILENAME = "timeseries.tsdb";
+    public final static String DEFAULT_DOWNSAMPLING = "6h:1m,2d:10m";
+    public final static int DEFAULT_BLOCK_SIZE = 360;
+
+    final static int MAGIC = 0x54534442;
+    final static int VERSION = 1;
+
+    private final static Map<String, TimeSeriesStore> stores = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final int blockSize;
+    private final long[] ages;
+    private final long[] resolutions;
+    private final ConcurrentSkipListMap<String, Series> series = new ConcurrentSkipListMap<>();
+    private volatile FileChannel channel;
+
+    /**
+     * Create a store which is only kept in memory, with the default downsampling.
+     */
+    public TimeSeriesStore() {
+        this(null, DEFAULT_BLOCK_SIZE, DEFAULT_DOWNSAMPLING);
+    }
+
+    /**
+     * @param file         The file to append blocks to, or null to keep the store only in memory
+     * @param blockSize    The number of samples in each block
+     * @param downsampling A comma separated list of age:resolution pairs, in increasing order,
+     *                     or <em>none</em> to keep every sample in memory
+     */
+    public TimeSeriesStore(File file, int blockSize, String downsampling) {
+        if (blockSize < 2) {
+            throw new RuntimeException("The block size of a time series store must be at least 2, but it was " + blockSize);
+        }
+        this.file = file;
+        this.blockSize = blockSize;
+
+        List<String> tiers = downsampling.trim().isEmpty() || downsampling.trim().equalsIgnoreCase("none") ?
+                Collections.emptyList() : Arrays.asList(downsampling.split(","));
+        this.ages = new long[tiers.size()];
+        this.resolutions = new long[tiers.size()];
+        for (int i = 0; i < tiers.size(); i++) {
+            String[] parts = tiers.get(i).trim().split(":");
+            if (parts.length != 2) {
+                throw new RuntimeException("Unable to parse downsampling tier '" + tiers.get(i) + "', expected age:resolution");
+            }
+            ages[i] = Unit.msFor(parts[0]).orElseThrow(
+                    () -> new RuntimeException("Unable to parse downsampling age '" + parts[0] + "'"));
+            resolutions[i] = Unit.msFor(parts[1]).orElseThrow(
+                    () -> new RuntimeException("Unable to parse downsampling resolution '" + parts[1] + "'"));
+            if (resolutions[i] <= 0L || (i > 0 && (ages[i] <= ages[i - 1] || resolutions[i] <= resolutions[i - 1]))) {
+                throw new RuntimeException("Downsampling tiers must have increasing ages and resolutions: " + downsampling);
+            }
+        }
+
+        if (file != null) {
+            open();
+        }
+    }
+
+    /**
+     * Get the shared store which appends to the default file in a directory, creating it if needed.
+     * This lets scripts query the same store that the command line reporter is feeding.
+     *
+     * @param directory The directory of the store file
+     * @return The store for the directory
+     */
+    public static synchronized TimeSeriesStore forDirectory(String directory) {
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            if (!dir.mkdirs()) {
+                throw new RuntimeException("Unable to make directory: " + dir);
+            }
+        }
+        File storeFile = new File(dir, DEFAULT_FILENAME).getAbsoluteFile();
+        return stores.computeIfAbsent(storeFile.getPath(),
+                k -> new TimeSeriesStore(storeFile, DEFAULT_BLOCK_SIZE, DEFAULT_DOWNSAMPLING));
+    }
+
+    private void open() {
+        try {
+            boolean appending = file.exists() && file.length() > 0L;
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (appending) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    in.read(header);
+                }
+                header.flip();
+                if (header.remaining() < 8 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new RuntimeException("Not a time series store of version " + VERSION + ": " + file);
+                }
+                logger.info("appending to time series store " + file);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(header);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open time series store " + file, e);
+        }
+    }
+
+    /**
+     * Add a sample to a series, which merges samples by their mean when it is downsampled.
+     *
+     * @param name  The name of the series
+     * @param time  The time of the sample, in milliseconds since the epoch
+     * @param value The value of the sample
+     */
+    public void append(String name, long time, double value) {
+        append(name, time, value, Aggregate.MEAN);
+    }
+
+    /**
+     * Add a sample to a series. Samples which are older than the last sample of the series are
+     * dropped.
+     *
+     * @param name      The name of the series
+     * @param time      The time of the sample, in milliseconds since the epoch
+     * @param value     The value of the sample
+     * @param aggregate How to merge samples when the series is downsampled. This only takes
+     *                  effect for the first sample of a series.
+     */
+    public void append(String name, long time, double value, Aggregate aggregate) {
+        series.computeIfAbsent(name, n -> new Series(n, aggregate)).append(time, value);
+    }
+
+    /**
+     * @return The names of all series in this store, in order
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(series.keySet());
+    }
+
+    /**
+     * @param regex A pattern which must match the whole name
+     * @return The names of the matching series in this store, in order
+     */
+    public List<String> getNames(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return series.keySet().stream().filter(n -> pattern.matcher(n).matches()).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the samples of a series within a time range, at the finest resolution still kept.
+     *
+     * @param name The name of the series
+     * @param from The earliest time to include, in milliseconds since the epoch, inclusive
+     * @param to   The latest time to include, in milliseconds since the epoch, exclusive
+     * @return The samples in time order, which is empty if there is no such series
+     */
+    public List<Sample> query(String name, long from, long to) {
+        Series s = series.get(name);
+        return s == null ? new ArrayList<>() : s.query(from, to);
+    }
+
+    /**
+     * Get the samples of a series over the most recent part of its history.
+     *
+     * @param name     The name of the series
+     * @param duration How far back to go from the last sample of the series, like <em>5m</em>
+     * @return The samples in time order, which is empty if there is no such series
+     */
+    public List<Sample> recent(String name, String duration) {
+        long span = Unit.msFor(duration).orElseThrow(
+                () -> new RuntimeException("Unable to parse duration '" + duration + "'"));
+        Sample last = last(name);
+        return last == null ? new ArrayList<>() : query(name, last.getTime() - span, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param name The name of the series
+     * @return The last sample of the series, or null if there is no such series
+     */
+    public Sample last(String name) {
+        Series s = series.get(name);
+        return s == null ? null : s.last();
+    }
+
+    /**
+     * @return The number of bytes taken by the compressed blocks of this store in memory
+     */
+    public long getEncodedSize() {
+        long size = 0L;
+        for (Series s : series.values()) {
+            size += s.getEncodedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Append the blocks which are not yet full to the file, and close it. The samples which are
+     * held in memory can still be queried.
+     */
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        for (Series s : series.values()) {
+            s.flush();
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Error while closing time series store " + file, e);
+            }
+            channel = null;
+        }
+        stores.remove(file.getAbsolutePath(), this);
+    }
+
+    private synchronized void write(String name, Aggregate aggregate, TimeSeriesBlock block) {
+        if (channel == null) {
+            return;
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 + nameBytes.length + 1 + block.getEncodedSize());
+        record.putShort((short) nameBytes.length).put(nameBytes).put((byte) aggregate.ordinal());
+        block.writeTo(record);
+        record.flip();
+        try {
+            writeFully(record);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write to time series store " + file, e);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Read a store file back into memory, with every sample at full resolution. The store
+     * which is returned is not attached to the file.
+     *
+     * @param file The store file
+     * @return A store holding all of the blocks in the file
+     */
+    public static TimeSeriesStore load(File file) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read time series store " + file, e);
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Not a time series store: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new RuntimeException("Unsupported time series store version " + version + " in " + file);
+        }
+
+        TimeSeriesStore store = new TimeSeriesStore(null, DEFAULT_BLOCK_SIZE, "none");
+        try {
+            while (buffer.hasRemaining()) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                Aggregate aggregate = Aggregate.values()[buffer.get()];
+                TimeSeriesBlock block = TimeSeriesBlock.readFrom(buffer);
+                store.series.computeIfAbsent(new String(name, StandardCharsets.UTF_8), n -> store.new Series(n, aggregate))
+                        .restore(block);
+            }
+        } catch (BufferUnderflowException e) {
+            logger.warn("Ignoring a partial block at the end of time series store " + file);
+        }
+        return store;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesStore{" +
+                "file=" + file +
+                ", series=" + series.size() +
+                ", bytes=" + getEncodedSize() +
+                '}';
+    }
+
+    /**
+     * How the samples of a series are merged when it is downsampled.
+     */
+    public enum Aggregate {
+        MEAN,
+        LAST
+    }
+
+    public static class Sample {
+        private final long time;
+        private final double value;
+
+        public Sample(long time, double value) {
+            this.time = time;
+            this.value = value;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return time + ":" + value;
+        }
+    }
+
+    /**
+     * The blocks of one series, at full resolution and at each downsampled resolution.
+     * Each level holds older samples than the level before it.
+     */
+    private class Series {
+        private final String name;
+        private final Aggregate aggregate;
+        private final Level raw = new Level(0L);
+        private final Level[] levels = new Level[resolutions.length];
+        private long lastTime;
+        private double lastValue;
+        private boolean empty = true;
+
+        private Series(String name, Aggregate aggregate) {
+            this.name = name;
+            this.aggregate = aggregate;
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new Level(resolutions[i]);
+            }
+        }
+
+        private synchronized void append(long time, double value) {
+            if (!raw.open.append(time, value)) {
+                logger.debug("dropping out of order sample for " + name + " at " + time);
+                return;
+            }
+            lastTime = time;
+            lastValue = value;
+            empty = false;
+            if (raw.open.getCount() >= blockSize) {
+                write(name, aggregate, raw.open);
+                raw.seal();
+                downsample(time);
+            }
+        }
+
+        /**
+         * Move each full block which is old enough into the next coarser level.
+         */
+        private void downsample(long now) {
+            Level source = raw;
+            for (int i = 0; i < levels.length; i++) {
+                Level target = levels[i];
+                while (!source.sealed.isEmpty() && source.sealed.peekFirst().getLastTime() < now - ages[i]) {
+                    source.sealed.removeFirst().forEach(target::accumulate);
+                }
+                source = target;
+            }
+        }
+
+        private synchronized void restore(TimeSeriesBlock block) {
+            raw.sealed.addLast(block);
+            if (block.getCount() > 0 && (empty || block.getLastTime() >= lastTime)) {
+                block.forEach(block.getLastTime(), Long.MAX_VALUE, (t, v) -> lastValue = v);
+                lastTime = block.getLastTime();
+                empty = false;
+            }
+        }
+
+        private synchronized void flush() {
+            if (raw.open.getCount() > 0) {
+                write(name, aggregate, raw.open);
+                raw.seal();
+            }
+        }
+
+        private synchronized Sample last() {
+            return empty ? null : new Sample(lastTime, lastValue);
+        }
+
+        private synchronized List<Sample> query(long from, long to) {
+            List<Sample> samples = new ArrayList<>();
+            TimeSeriesBlock.SampleConsumer collector = (t, v) -> samples.add(new Sample(t, v));
+            for (int i = levels.length - 1; i >= 0; i--) {
+                levels[i].forEach(from, to, collector);
+            }
+            raw.forEach(from, to, collector);
+            return samples;
+        }
+
+        private synchronized long getEncodedSize() {
+            long size = raw.getEncodedSize();
+            for (Level level : levels) {
+                size += level.getEncodedSize();
+            }
+            return size;
+        }
+
+        private class Level {
+            private final long resolution;
+            private final ArrayDeque<TimeSeriesBlock> sealed = new ArrayDeque<>();
+            private TimeSeriesBlock open = new TimeSeriesBlock();
+
+            private long bucket;
+            private int bucketCount;
+            private double bucketSum;
+            private double bucketLast;
+
+            private Level(long resolution) {
+                this.resolution = resolution;
+            }
+
+            private void seal() {
+                sealed.addLast(open);
+                open = new TimeSeriesBlock();
+            }
+
+            /**
+             * Merge a sample into the bucket of this level's resolution which holds it.
+             */
+            private void accumulate(long time, double value) {
+                long start = Math.floorDiv(time, resolution) * resolution;
+                if (bucketCount > 0 && start != bucket) {
+                    closeBucket();
+                }
+                bucket = start;
+                bucketCount++;
+                bucketSum += value;
+                bucketLast = value;
+            }
+
+            private void closeBucket() {
+                open.append(bucket, bucketValue());
+                if (open.getCount() >= blockSize) {
+                    seal();
+                }
+                bucketCount = 0;
+                bucketSum = 0.0D;
+            }
+
+            private double bucketValue() {
+                return aggregate == Aggregate.LAST ? bucketLast : bucketSum / bucketCount;
+            }
+
+            private void forEach(long from, long to, TimeSeriesBlock.SampleConsumer consumer) {
+                for (TimeSeriesBlock block : sealed) {
+                    block.forEach(from, to, consumer);
+                }
+                open.forEach(from, to, consumer);
+                if (bucketCount > 0 && bucket >= from && bucket < to) {
+                    consumer.accept(bucket, bucketValue());
+                }
+            }
+
+            private long getEncodedSize() {
+                long size = open.getEncodedSize();
+                for (TimeSeriesBlock block : sealed) {
+                    size += block.getEncodedSize();
+                }
+                return size;
+            }
+        }
+    }
+}
@@ -19,6 +19,15 @@ package io.engineblock.metrics;
 
 import com.codahale.metrics.Timer;
 
+/**
+ * Allow a metric to provide attached views of the same data, for reporters which
+ * expect a {@link Timer} with non-interval semantics.
+ */
 public interface TimerAttachment {
-    Timer attachTimer(Timer timer);
+    /**
+     * Attach a timer which reads the values recorded by this metric from the time it is
+     * attached, without the values being recorded a second time.
+     * @return the attached timer
+     */
+    Timer attachTimer();
 }
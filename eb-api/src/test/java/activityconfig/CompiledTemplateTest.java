@@ -0,0 +1,47 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package activityconfig;
+
+import io.virtdata.templates.BindPoint;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class CompiledTemplateTest {
+
+    public void testValuesAreRenderedIntoTheTemplate() {
+        CompiledTemplate template = new CompiledTemplate(
+                "insert {alpha} as {beta}, {alpha} {gamma}\n",
+                Arrays.asList(new BindPoint("alpha", "Identity()"), new BindPoint("beta", "NumberNameToString()")));
+        assertThat(template.bind(3L)).isEqualTo("insert 3 as three, 3 {gamma}\n");
+        RenderBuffer rendered = template.render(42L);
+        assertThat(rendered.toString()).isEqualTo("insert 42 as forty two, 42 {gamma}\n");
+        assertThat(template.render(5L)).isSameAs(rendered);
+    }
+
+    public void testValuesAreEscaped() {
+        CompiledTemplate template = new CompiledTemplate(
+                "/a b/{name}",
+                Arrays.asList(new BindPoint("name", "NumberNameToString()")),
+                "abcdefghijklmnopqrstuvwxyz/");
+        assertThat(template.bind(21L)).isEqualTo("/a%20b/twenty%20one");
+    }
+}
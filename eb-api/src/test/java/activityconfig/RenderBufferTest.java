@@ -0,0 +1,47 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package activityconfig;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class RenderBufferTest {
+
+    public void testCharsAreEncodedAsUtf8() {
+        RenderBuffer buffer = new RenderBuffer(1);
+        buffer.putChars("aé€😀", null);
+        assertThat(buffer.length()).isEqualTo(1 + 2 + 3 + 4);
+        assertThat(buffer.toString()).isEqualTo("aé€😀");
+    }
+
+    public void testLongsAreAddedAsDigits() {
+        RenderBuffer buffer = new RenderBuffer(1);
+        buffer.putLong(0L).put((byte) ',').putLong(-42L).put((byte) ',')
+                .putLong(Long.MAX_VALUE).put((byte) ',').putLong(Long.MIN_VALUE);
+        assertThat(buffer.toString()).isEqualTo("0,-42," + Long.MAX_VALUE + "," + Long.MIN_VALUE);
+    }
+
+    public void testCharsArePercentEncoded() {
+        RenderBuffer buffer = new RenderBuffer(1);
+        buffer.putChars("a b/é%", RenderBuffer.verbatim("ab/"));
+        assertThat(buffer.toString()).isEqualTo("a%20b/%C3%A9%25");
+        assertThat(buffer.clear().length()).isEqualTo(0);
+    }
+}
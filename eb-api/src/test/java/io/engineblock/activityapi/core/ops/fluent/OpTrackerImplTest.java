@@ -6,8 +6,14 @@ import io.engineblock.activityapi.core.ops.fluent.opfacets.SucceededOp;
 import io.engineblock.activityapi.core.ops.fluent.opfacets.EventedOpImpl;
 import io.engineblock.activityapi.core.ops.fluent.opfacets.StartedOp;
 import io.engineblock.activityapi.core.ops.fluent.opfacets.TrackedOp;
+import io.engineblock.activityimpl.motor.StrideTracker;
 import org.testng.annotations.Test;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 @Test
 public class OpTrackerImplTest {
 
@@ -20,4 +26,67 @@ public class OpTrackerImplTest {
         SucceededOp stop = started.succeed(23);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testResponseTimeIsMeasuredFromTheScheduledStart() {
+        Timer service = new Timer();
+        Timer response = new Timer();
+        OpTrackerImpl<String> tracker = new OpTrackerImpl<String>("test", 0, service, response, new Counter());
+        long scheduled = System.nanoTime() - TimeUnit.SECONDS.toNanos(1L);
+        TrackedOp<String> tracked = new EventedOpImpl<>(tracker).setScheduledStart(scheduled);
+        StartedOp<String> started = tracked.start();
+        SucceededOp<String> done = started.succeed(0);
+        tracker.onOpSuccess(done);
+
+        assertThat(done.getResponseTimeNanos() - done.getServiceTimeNanos())
+                .isEqualTo(done.getStartedAtNanos() - scheduled);
+        assertThat(response.getSnapshot().getMax()).isEqualTo(done.getResponseTimeNanos());
+        assertThat(service.getSnapshot().getMax()).isEqualTo(done.getServiceTimeNanos());
+    }
+
+    @Test
+    public void testScheduledStartIsNotAfterTheStart() {
+        OpTrackerImpl<String> tracker = new OpTrackerImpl<String>("test", 0, new Timer(), new Timer(), new Counter());
+        long scheduled = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+        SucceededOp<String> done = new EventedOpImpl<>(tracker).setScheduledStart(scheduled).start().succeed(0);
+        assertThat(done.getResponseTimeNanos()).isGreaterThanOrEqualTo(done.getServiceTimeNanos());
+    }
+
+    @Test
+    public void testPermitsLimitPendingOps() throws Exception {
+        Counter blocked = new Counter();
+        OpTrackerImpl<String> tracker = new OpTrackerImpl<String>("test", 0, new Timer(), new Timer(), new Counter(), blocked);
+        tracker.setCycleOpFunction(l -> "op" + l);
+        tracker.setMaxPendingOps(2);
+        StrideTracker<String> stride = new StrideTracker<>(new Timer(), null, System.nanoTime(), 0L, 4, null, null);
+
+        StartedOp<String> first = tracker.newOp(0L, stride).start();
+        tracker.newOp(1L, stride).skip(1);
+        StartedOp<String> second = tracker.newOp(2L, stride).start();
+        assertThat(tracker.getPendingOps()).isEqualTo(2);
+        assertThat(tracker.isFull()).isTrue();
+        assertThat(tracker.tryAcquirePermit()).isFalse();
+        assertThat(blocked.getCount()).isEqualTo(0L);
+
+        AtomicReference<TrackedOp<String>> third = new AtomicReference<>();
+        Thread submitter = new Thread(() -> third.set(tracker.newOp(3L, stride)));
+        submitter.start();
+        while (blocked.getCount() == 0L) {
+            Thread.sleep(1L);
+        }
+        assertThat(third.get()).isNull();
+
+        first.succeed(0);
+        submitter.join(10000L);
+        assertThat(third.get()).isNotNull();
+        assertThat(third.get().getCycle()).isEqualTo(3L);
+        assertThat(tracker.getPendingOps()).isEqualTo(2);
+        assertThat(blocked.getCount()).isEqualTo(1L);
+
+        second.fail(1);
+        third.get().start().succeed(0);
+        assertThat(tracker.awaitCompletion(1000L)).isTrue();
+        assertThat(tracker.getPendingOps()).isEqualTo(0);
+        assertThat(stride.isIdle()).isTrue();
+    }
+
+}
@@ -20,6 +20,7 @@ package io.engineblock.activityapi.cyclelog.buffers;
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferReadable;
 import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferTarget;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
@@ -81,6 +82,22 @@ public class CycleResultsRLEBufferTargetTest {
 
     }
 
+    @Test
+    public void testSpansAreFilteredAsAWhole() {
+        CycleResultsRLEBufferTarget tb = new CycleResultsRLEBufferTarget(10);
+        tb.setFilter(r -> r.getResult() != 2);
+
+        tb.onCycleResultSegment(new CycleSpanResults(0L, 1000000L, 1));
+        tb.onCycleResultSpan(1000000L, 2000000L, 1);
+        tb.onCycleResultSpan(2000000L, 3000000L, 2);
+        tb.onCycleResult(3000000L, 3);
+        tb.onCycleResultSpan(3000001L, 3000010L, 3);
+
+        ArrayList<String> spans = new ArrayList<>();
+        tb.toSegmentsReadable().forEach(s -> spans.add(s.toString()));
+        assertThat(spans).containsExactly("[0,2000000)->1", "[3000000,3000010)->3");
+    }
+
     @Test
     public void testResize() {
         CycleResultsRLEBufferTarget tb = new CycleResultsRLEBufferTarget(3);
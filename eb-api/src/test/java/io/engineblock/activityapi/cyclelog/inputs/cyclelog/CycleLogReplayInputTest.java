@@ -0,0 +1,75 @@
+package io.engineblock.activityapi.cyclelog.inputs.cyclelog;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogFormat;
+import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogOutput;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class CycleLogReplayInputTest {
+
+    private final static int CYCLES = 10000;
+
+    private File writeCycleLog(CycleLogFormat format) throws Exception {
+        File cyclefile = File.createTempFile("cycle-log-replay-test", ".cyclelog");
+        cyclefile.deleteOnExit();
+        CycleLogOutput out = new CycleLogOutput(cyclefile, 100, format);
+        for (long cycle = 0; cycle < CYCLES; cycle++) {
+            out.onCycleResult(cycle, (int) ((cycle / 10) % 3));
+        }
+        out.close();
+        return cyclefile;
+    }
+
+    @Test
+    public void testEachCycleIsReplayedOnceAcrossThreads() throws Exception {
+        CycleLogReplayInput input = new CycleLogReplayInput(writeCycleLog(CycleLogFormat.v1), 7);
+        AtomicIntegerArray seen = new AtomicIntegerArray(CYCLES);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                CycleSegment segment;
+                while ((segment = input.getInputSegment(13)) != null) {
+                    while (!segment.isExhausted()) {
+                        seen.incrementAndGet((int) segment.nextCycle());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            assertThat(seen.get(cycle)).as("cycle " + cycle).isEqualTo(1);
+        }
+        assertThat(input.getProgress()).isEqualTo(input.getTotal());
+    }
+
+    @Test
+    public void testFilterIsAppliedToSpans() throws Exception {
+        for (CycleLogFormat format : CycleLogFormat.values()) {
+            CycleLogReplayInput input = new CycleLogReplayInput(writeCycleLog(format), 7);
+            input.setFilter(r -> r.getResult() == 2);
+            long expected = 20L;
+            long count = 0L;
+            CycleSegment segment;
+            while ((segment = input.getInputSegment(8)) != null) {
+                while (!segment.isExhausted()) {
+                    assertThat(segment.nextCycle()).isEqualTo(expected);
+                    count++;
+                    expected = (expected % 10 == 9) ? expected + 21 : expected + 1;
+                }
+            }
+            assertThat(count).as(format.toString()).isEqualTo(3330L);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import com.codahale.metrics.Timer;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferReadable;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferTarget;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class CycleLogOutputTest {
+
+    @Test
+    public void testExtentsAreWrittenInBackground() throws Exception {
+        File cyclefile = File.createTempFile("cycle-log-output-test", ".cyclelog");
+        cyclefile.deleteOnExit();
+
+        Timer flushTimer = new Timer();
+        CycleLogOutput out = new CycleLogOutput(
+                cyclefile, 10, CycleLogExtentWriter.Durability.periodic, 1L, 1024L, flushTimer);
+        for (long cycle = 0; cycle < 10000; cycle++) {
+            out.onCycleResult(cycle, (int) ((cycle / 10) % 3));
+        }
+        out.close();
+
+        // runs which are in progress at the end of an extent are split across extents
+        assertThat(cyclefile.length() % CycleResultsRLEBufferTarget.BYTES).isEqualTo(0L);
+        long records = cyclefile.length() / CycleResultsRLEBufferTarget.BYTES;
+        assertThat(records).isBetween(1000L, 1100L);
+        assertThat(flushTimer.getCount()).isEqualTo(100L);
+
+        long expected = 0L;
+        CycleResultsRLEBufferReadable readable =
+                new CycleResultsRLEBufferReadable(ByteBuffer.wrap(Files.readAllBytes(cyclefile.toPath())));
+        for (CycleResultsSegment segment : readable) {
+            for (CycleResult result : segment) {
+                assertThat(result.getCycle()).isEqualTo(expected);
+                assertThat(result.getResult()).isEqualTo((int) ((expected / 10) % 3));
+                expected++;
+            }
+        }
+        assertThat(expected).isEqualTo(10000L);
+    }
+
+    @Test
+    public void testProducerWaitsAtBacklogLimit() throws Exception {
+        CountDownLatch unblocked = new CountDownLatch(1);
+        CycleLogSink blockedSink = new CycleLogSink() {
+            private long position = 0L;
+
+            @Override
+            public void append(ByteBuffer tuples) {
+                try {
+                    unblocked.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                position += tuples.remaining();
+            }
+
+            @Override
+            public void force() {
+            }
+
+            @Override
+            public void close(boolean force) {
+            }
+
+            @Override
+            public long getPosition() {
+                return position;
+            }
+        };
+        File cyclefile = new File("backlog-test.cyclelog");
+        CycleLogExtentWriter writer = new CycleLogExtentWriter(
+                cyclefile, blockedSink, CycleLogExtentWriter.Durability.none, 1000L, new Timer());
+        writer.write(ByteBuffer.allocate(1), () -> {});
+        writer.write(ByteBuffer.allocate(1), () -> {});
+
+        CountDownLatch waited = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            writer.awaitBacklogBelow(2);
+            waited.countDown();
+        });
+        producer.start();
+        assertThat(waited.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(writer.getBacklog()).isEqualTo(2);
+
+        unblocked.countDown();
+        assertThat(waited.await(10, TimeUnit.SECONDS)).isTrue();
+        writer.close();
+        assertThat(writer.getBacklog()).isEqualTo(0);
+        assertThat(blockedSink.getPosition()).isEqualTo(2L);
+    }
+}
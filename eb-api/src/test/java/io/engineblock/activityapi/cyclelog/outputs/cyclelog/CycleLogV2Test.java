@@ -0,0 +1,152 @@
+package io.engineblock.activityapi.cyclelog.outputs.cyclelog;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleResultsRLEBufferTarget;
+import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CycleLogInput;
+import io.engineblock.activityapi.cyclelog.inputs.cyclelog.CycleLogV2Reader;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class CycleLogV2Test {
+
+    private final static int SPANS = 1000;
+
+    private static int resultOf(int span) {
+        return span == 700 ? 5 : span % 3;
+    }
+
+    private File writeSpans(int blockSpans, boolean compress) throws Exception {
+        File cyclefile = File.createTempFile("cycle-log-v2-test", ".cyclelog");
+        cyclefile.deleteOnExit();
+        ByteBuffer tuples = ByteBuffer.allocate(SPANS * CycleResultsRLEBufferTarget.BYTES);
+        for (int span = 0; span < SPANS; span++) {
+            tuples.putLong(span * 10L).putLong(span * 10L + 10L).put((byte) resultOf(span));
+        }
+        tuples.flip();
+        CycleLogV2Writer writer = new CycleLogV2Writer(cyclefile, blockSpans, compress);
+        writer.append(tuples);
+        writer.close(false);
+        return cyclefile;
+    }
+
+    private static List<String> spansOf(Iterator<CycleResultsSegment> iter) {
+        List<String> spans = new ArrayList<>();
+        iter.forEachRemaining(s -> spans.add(s.toString()));
+        return spans;
+    }
+
+    private static List<String> expectedSpans() {
+        List<String> spans = new ArrayList<>();
+        for (int span = 0; span < SPANS; span++) {
+            spans.add("[" + (span * 10) + "," + (span * 10 + 10) + ")->" + resultOf(span));
+        }
+        return spans;
+    }
+
+    @Test
+    public void testRoundTripWithIndex() throws Exception {
+        for (boolean compress : new boolean[]{false, true}) {
+            File cyclefile = writeSpans(50, compress);
+            assertThat(CycleLogFormat.of(cyclefile)).isEqualTo(CycleLogFormat.v2);
+            CycleLogV2Reader reader = new CycleLogV2Reader(cyclefile);
+            assertThat(reader.getBlocks()).hasSize(20);
+            assertThat(reader.getBlocks().get(0).getMinCycle()).isEqualTo(0L);
+            assertThat(reader.getBlocks().get(0).getMaxCycle()).isEqualTo(500L);
+            assertThat(spansOf(reader.iterator())).isEqualTo(expectedSpans());
+            assertThat(cyclefile.length()).isLessThan((long) SPANS * CycleResultsRLEBufferTarget.BYTES);
+        }
+    }
+
+    @Test
+    public void testBlocksAreSkippedByResultAndRange() throws Exception {
+        CycleLogV2Reader reader = new CycleLogV2Reader(writeSpans(50, true));
+        assertThat(reader.getBlocks().stream().filter(b -> b.containsResult(5)).count()).isEqualTo(1L);
+        assertThat(spansOf(reader.iterator(Long.MIN_VALUE, Long.MAX_VALUE, r -> r.getResult() == 5)))
+                .containsExactly("[7000,7010)->5");
+        assertThat(spansOf(reader.iterator(2005L, 2015L, null)))
+                .containsExactly("[2005,2010)->2", "[2010,2015)->0");
+    }
+
+    @Test
+    public void testBlocksAreScannedWithoutFooter() throws Exception {
+        File cyclefile = writeSpans(50, true);
+        CycleLogV2Reader complete = new CycleLogV2Reader(cyclefile);
+        long indexOffset = complete.getBlocks().get(19).getOffset();
+        try (RandomAccessFile raf = new RandomAccessFile(cyclefile, "rw")) {
+            // drop the index and footer, and part of the last block
+            raf.setLength(indexOffset + 10);
+        }
+        CycleLogV2Reader scanned = new CycleLogV2Reader(cyclefile);
+        assertThat(scanned.getBlocks()).hasSize(19);
+        assertThat(spansOf(scanned.iterator())).isEqualTo(expectedSpans().subList(0, 950));
+    }
+
+    @Test
+    public void testCorruptBlocksAreReported() throws Exception {
+        File cyclefile = writeSpans(50, true);
+        CycleLogV2Block first = new CycleLogV2Reader(cyclefile).getBlocks().get(0);
+        long rawLengthAt = first.getOffset() + 1 + Integer.BYTES + Long.BYTES + Long.BYTES
+                + CycleLogV2.RESULT_WORDS * Long.BYTES;
+        int rawLength;
+        int storedLength;
+        try (RandomAccessFile raf = new RandomAccessFile(cyclefile, "rw")) {
+            raf.seek(rawLengthAt);
+            rawLength = raf.readInt();
+            storedLength = raf.readInt();
+
+            // a compressed stream which ends early
+            raf.seek(rawLengthAt + Integer.BYTES);
+            raf.writeInt(storedLength / 2);
+        }
+        CycleLogV2Reader truncated = new CycleLogV2Reader(cyclefile);
+        assertThatThrownBy(() -> truncated.readBlock(truncated.getBlocks().get(0)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("block@" + first.getOffset());
+
+        try (RandomAccessFile raf = new RandomAccessFile(cyclefile, "rw")) {
+            // a complete compressed stream which is shorter than the block says
+            raf.seek(rawLengthAt);
+            raf.writeInt(rawLength + 1);
+            raf.writeInt(storedLength);
+        }
+        CycleLogV2Reader overstated = new CycleLogV2Reader(cyclefile);
+        assertThatThrownBy(() -> overstated.readBlock(overstated.getBlocks().get(0)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("block@" + first.getOffset());
+    }
+
+    @Test
+    public void testOutputAndInputWithV2Format() throws Exception {
+        File cyclefile = File.createTempFile("cycle-log-v2-output-test", ".cyclelog");
+        cyclefile.deleteOnExit();
+        CycleLogOutput out = new CycleLogOutput(cyclefile, 10, CycleLogFormat.v2);
+        for (long cycle = 0; cycle < 10000; cycle++) {
+            out.onCycleResult(cycle, (int) ((cycle / 10) % 3));
+        }
+        out.close();
+
+        // runs which are split at extent boundaries are joined again in v2
+        CycleLogV2Reader reader = new CycleLogV2Reader(cyclefile);
+        assertThat(reader.getBlocks().stream().mapToInt(CycleLogV2Block::getSpans).sum()).isEqualTo(SPANS);
+
+        CycleLogInput input = new CycleLogInput(cyclefile.getPath());
+        input.setFilter(r -> r.getResult() == 2);
+        long count = 0L;
+        for (CycleResultsSegment segment : input) {
+            assertThat(segment.getMinCycle() % 30).isEqualTo(20L);
+            count += segment.getCount();
+        }
+        assertThat(count).isEqualTo(3330L);
+        input.close();
+    }
+}
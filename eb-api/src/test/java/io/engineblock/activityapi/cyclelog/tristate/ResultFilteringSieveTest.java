@@ -19,6 +19,8 @@ package io.engineblock.activityapi.cyclelog.tristate;
 
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleResult;
 import io.engineblock.activityapi.cyclelog.buffers.results.ResultReadable;
+import io.engineblock.activityapi.cyclelog.filters.ResultValueLookup;
+import io.engineblock.activityapi.cyclelog.filters.ResultValuePredicate;
 import io.engineblock.activityapi.cyclelog.filters.tristate.ResultFilteringSieve;
 import io.engineblock.activityapi.cyclelog.filters.tristate.TristateFilter;
 import io.engineblock.activityapi.cyclelog.buffers.results.MutableCycleResult;
@@ -58,6 +60,23 @@ public class ResultFilteringSieveTest {
         assertThat(sieve.apply(new MutableCycleResult(3L,10))).isEqualTo(TristateFilter.Policy.Keep);
     }
 
+    @Test
+    public void testPredicatesTestResultValues() {
+        ResultFilteringSieve sieve = new ResultFilteringSieve.Builder().include(3).exclude(4,6).build();
+        Predicate<ResultReadable> includer = sieve.toInclusivePredicate();
+        Predicate<ResultReadable> excluder = sieve.toExclusivePredicate();
+        assertThat(includer).isInstanceOf(ResultValuePredicate.class);
+        assertThat(excluder).isInstanceOf(ResultValuePredicate.class);
+        for (int result = -5; result < 200; result++) {
+            ResultValuePredicate lookup = new ResultValueLookup(excluder);
+            assertThat(((ResultValuePredicate) includer).testResult(result)).isEqualTo(result < 4 || result > 6);
+            assertThat(((ResultValuePredicate) excluder).testResult(result)).isEqualTo(result == 3);
+            assertThat(lookup.testResult(result)).isEqualTo(result == 3);
+        }
+        assertThat(sieve.getPolicy(5)).isEqualTo(TristateFilter.Policy.Discard);
+        assertThat(sieve.getPolicy(500)).isEqualTo(TristateFilter.Policy.Ignore);
+    }
+
     public void testPredicateConversions() {
         MutableCycleResult c1 = new MutableCycleResult(1,1);
         MutableCycleResult c2 = new MutableCycleResult(2,2);
@@ -0,0 +1,86 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.planning;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares the cost of {@link OpSequence#get(long)} for each
+ * sequencer type, with sequences of a few, some, and many ops. The ratios are
+ * varied so that the bucket and interval sequences interleave their ops. The
+ * indirect benchmark does the two lookups that each call used to do, through
+ * the sequence array and then the op list, as a baseline.
+ */
+@State(Scope.Thread)
+public class SequencePlannerBenchmark {
+
+    @Param({"bucket", "interval", "concat"})
+    public SequencerType sequencer;
+
+    @Param({"2", "20", "2000"})
+    public int ops;
+
+    private OpSequence<String> sequence;
+    private int[] seq;
+    private List<String> elems;
+    private long cycle;
+
+    @Setup
+    public void setup() {
+        SequencePlanner<String> planner = new SequencePlanner<>(sequencer);
+        for (int i = 0; i < ops; i++) {
+            planner.addOp("op" + i, (i % 5) + 1);
+        }
+        sequence = planner.resolve();
+        seq = sequence.getSequence();
+        elems = sequence.getOps();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, timeUnit = TimeUnit.SECONDS, time = 2)
+    @Measurement(iterations = 3, timeUnit = TimeUnit.SECONDS, time = 2)
+    public String get() {
+        return sequence.get(cycle++);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, timeUnit = TimeUnit.SECONDS, time = 2)
+    @Measurement(iterations = 3, timeUnit = TimeUnit.SECONDS, time = 2)
+    public String getIndirect() {
+        return elems.get(seq[(int) (cycle++ % seq.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SequencePlannerBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.planning;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SequencePlannerTest {
+
+    @Test
+    public void testDispatchTableMatchesSequence() {
+        for (SequencerType type : new SequencerType[]{SequencerType.bucket, SequencerType.interval, SequencerType.concat}) {
+            for (long[] ratios : new long[][]{{1, 3}, {2, 5}, {1, 1, 1}, {4, 4, 8}}) {
+                SequencePlanner<String> planner = new SequencePlanner<>(type);
+                for (int i = 0; i < ratios.length; i++) {
+                    planner.addOp("op" + i, ratios[i]);
+                }
+                OpSequence<String> sequence = planner.resolve();
+                int[] seq = sequence.getSequence();
+                for (long cycle = 0; cycle < 1000; cycle++) {
+                    assertThat(sequence.get(cycle))
+                            .isEqualTo(sequence.getOps().get(seq[(int) (cycle % seq.length)]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransformKeepsTheSequence() {
+        SequencePlanner<String> planner = new SequencePlanner<>(SequencerType.bucket);
+        planner.addOp("a", 2);
+        planner.addOp("b", 1);
+        OpSequence<Integer> sequence = planner.resolve().transform(String::length);
+        assertThat(sequence.get(0L)).isEqualTo(1);
+        assertThat(sequence.getSequence()).containsExactly(0, 1, 0);
+    }
+}
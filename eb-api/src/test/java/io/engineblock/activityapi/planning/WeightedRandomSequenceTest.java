@@ -0,0 +1,79 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.planning;
+
+import io.engineblock.activityimpl.ActivityDef;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeightedRandomSequenceTest {
+
+    @Test
+    public void testOpsArePickedInProportion() {
+        SequencePlanner<String> planner = new SequencePlanner<>(SequencerType.random);
+        planner.addOp("a", 1);
+        planner.addOp("b", 0);
+        planner.addOp("c", 9000);
+        planner.addOp("d", 999);
+        OpSequence<String> sequence = planner.resolve();
+        assertThat(sequence.getSequence()).containsExactly(0, 1, 2, 3);
+
+        int[] counts = new int[4];
+        for (long cycle = 0; cycle < 1_000_000; cycle++) {
+            counts[sequence.get(cycle).charAt(0) - 'a']++;
+        }
+        assertThat(counts[0]).isBetween(50, 150);
+        assertThat(counts[1]).isEqualTo(0);
+        assertThat(counts[2]).isBetween(895_000, 905_000);
+        assertThat(counts[3]).isBetween(95_000, 105_000);
+
+        for (long cycle = 0; cycle < 1000; cycle++) {
+            assertThat(sequence.get(cycle)).isEqualTo(sequence.get(cycle));
+        }
+    }
+
+    @Test
+    public void testAdaptiveSequenceIsReweighted() {
+        SequencePlanner<String> planner = new SequencePlanner<>(SequencerType.adaptive);
+        planner.addOp("read", 1);
+        planner.addOp("write", 1);
+        AdaptiveSequence<String> sequence = (AdaptiveSequence<String>) planner.resolve();
+        OpSequence<Integer> lengths = sequence.transform(String::length);
+
+        sequence.onActivityDefUpdate(ActivityDef.parseActivityDef("alias=foo;weights=0,1"));
+        assertThat(sequence.getRatios()).containsExactly(0L, 1L);
+        for (long cycle = 0; cycle < 1000; cycle++) {
+            assertThat(sequence.get(cycle)).isEqualTo("write");
+            assertThat(lengths.get(cycle)).isEqualTo(5);
+        }
+
+        sequence.setRatios(1, 0);
+        for (long cycle = 0; cycle < 1000; cycle++) {
+            assertThat(sequence.get(cycle)).isEqualTo("read");
+        }
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testWeightsMustMatchTheOps() {
+        SequencePlanner<String> planner = new SequencePlanner<>(SequencerType.adaptive);
+        planner.addOp("read", 1);
+        planner.addOp("write", 1);
+        ((AdaptiveSequence<String>) planner.resolve()).setRatios(1, 2, 3);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.ratelimits;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class AtomicTokenPoolTest {
+
+    public void testBackfillFullRate() {
+        AtomicTokenPool p = new AtomicTokenPool(100, 1.1);
+        assertThat(p.refill(100L)).isEqualTo(100L);
+        assertThat(p.getWaitPool()).isEqualTo(0L);
+        assertThat(p.refill(100L)).isEqualTo(200);
+        assertThat(p.getWaitPool()).isEqualTo(90L);
+        assertThat(p.refill(10L)).isEqualTo(210L);
+        assertThat(p.getWaitPool()).isEqualTo(100L);
+
+        assertThat(p.refill(10)).isEqualTo(220L);
+        assertThat(p.takeUpTo(100)).isEqualTo(100L);
+    }
+
+    public void testTakeRanges() {
+        AtomicTokenPool p = new AtomicTokenPool(100, 10);
+        p.refill(100);
+        assertThat(p.takeUpTo(99)).isEqualTo(99L);
+        assertThat(p.takeUpTo(10)).isEqualTo(1L);
+        assertThat(p.takeUpTo(1L)).isEqualTo(0L);
+    }
+
+    public void testGiveBackSpillsOverMaxActive() {
+        AtomicTokenPool p = new AtomicTokenPool(100, 1.1);
+        p.refill(100);
+        assertThat(p.takeUpTo(30)).isEqualTo(30L);
+        p.giveBack(50L);
+        assertThat(p.getActivePool()).isEqualTo(100L);
+        assertThat(p.getWaitPool()).isEqualTo(20L);
+    }
+
+    public void testBlockedTakersProceedAfterRefill() throws Exception {
+        AtomicTokenPool p = new AtomicTokenPool(1000, 1.1);
+        List<Thread> takers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread t = new Thread(() -> p.blockAndTake(100L));
+            t.start();
+            takers.add(t);
+        }
+        Thread.sleep(10);
+        for (Thread taker : takers) {
+            assertThat(taker.isAlive()).isTrue();
+        }
+        p.refill(400L);
+        for (Thread taker : takers) {
+            taker.join(5000);
+            assertThat(taker.isAlive()).isFalse();
+        }
+        assertThat(p.getActivePool()).isEqualTo(0L);
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.ratelimits;
+
+import io.engineblock.activityimpl.ActivityDef;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class BatchingRateLimiterTest {
+
+    private HybridRateLimiter unstartedLimiter() {
+        return new HybridRateLimiter(
+                ActivityDef.parseActivityDef("alias=batchingtest"),
+                "batching",
+                new RateSpec(1E6, 1.1, RateSpec.Verb.configure)
+        );
+    }
+
+    public void testWaitTimeMatchesUnbatched() {
+        HybridRateLimiter shared = unstartedLimiter();
+        shared.getTokenPool().refill(9000L);
+        assertThat(shared.getTokenPool().getActivePool()).isEqualTo(10000L);
+
+        BatchingRateLimiter batching = new BatchingRateLimiter(shared, 4);
+        long[] waits = new long[10];
+        for (int i = 0; i < waits.length; i++) {
+            waits[i] = batching.maybeWaitForOp();
+        }
+        assertThat(waits).containsExactly(9000L, 8000L, 7000L, 6000L, 5000L, 4000L, 3000L, 2000L, 1000L, 0L);
+        assertThat(shared.getTokenPool().getActivePool()).isEqualTo(0L);
+    }
+
+    public void testPartialBatchIsTakenWithoutBlocking() {
+        HybridRateLimiter shared = unstartedLimiter();
+        shared.getTokenPool().refill(1500L);
+        assertThat(shared.getTokenPool().getActivePool()).isEqualTo(2500L);
+
+        BatchingRateLimiter batching = new BatchingRateLimiter(shared, 4);
+        assertThat(batching.maybeWaitForOp()).isEqualTo(1500L);
+        assertThat(shared.getTokenPool().getActivePool()).isEqualTo(500L);
+        assertThat(batching.maybeWaitForOp()).isEqualTo(500L);
+    }
+
+    public void testReleaseGivesBackHeldTokens() {
+        HybridRateLimiter shared = unstartedLimiter();
+        shared.getTokenPool().refill(9000L);
+
+        BatchingRateLimiter batching = new BatchingRateLimiter(shared, 4);
+        batching.maybeWaitForOp();
+        assertThat(shared.getTokenPool().getActivePool()).isEqualTo(6000L);
+        assertThat(batching.release()).isEqualTo(3000L);
+        assertThat(shared.getTokenPool().getActivePool()).isEqualTo(9000L);
+        assertThat(batching.release()).isEqualTo(0L);
+    }
+
+    public void testScheduledStartsAreOneOpApart() {
+        HybridRateLimiter shared = unstartedLimiter();
+        shared.getTokenPool().refill(9000L);
+
+        BatchingRateLimiter batching = new BatchingRateLimiter(shared, 4);
+        long first = batching.maybeWaitForScheduledOp();
+        for (int op = 1; op < 6; op++) {
+            assertThat(batching.maybeWaitForScheduledOp()).isEqualTo(first + (op * 1000L));
+        }
+        assertThat(batching.release()).isEqualTo(2000L);
+        assertThat(shared.maybeWaitForScheduledOp()).isEqualTo(first + 6000L);
+        shared.maybeWaitForOp();
+        assertThat(batching.maybeWaitForScheduledOp()).isEqualTo(first + 8000L);
+        assertThat(batching.maybeWaitForScheduledOp()).isEqualTo(first + 9000L);
+    }
+
+    public void testBatchedOrShared() {
+        HybridRateLimiter shared = unstartedLimiter();
+        assertThat(RateLimiters.batchedOrShared(null, shared, 1)).isSameAs(shared);
+        assertThat(RateLimiters.batchedOrShared(null, null, 10)).isNull();
+
+        RateLimiter batched = RateLimiters.batchedOrShared(null, shared, 10);
+        assertThat(batched).isInstanceOf(BatchingRateLimiter.class);
+        assertThat(RateLimiters.batchedOrShared(batched, shared, 10)).isSameAs(batched);
+        assertThat(RateLimiters.batchedOrShared(batched, shared, 20)).isNotSameAs(batched);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+package io.engineblock.activityapi.ratelimits;
+
+import io.engineblock.activityimpl.ActivityDef;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class HybridRateLimiterTest {
+
+    public void testRateSpecKeepsThePoolInUse() {
+        HybridRateLimiter limiter = new HybridRateLimiter(
+                ActivityDef.parseActivityDef("alias=hybridtest"),
+                "hybrid",
+                new RateSpec(1000, 1.1, RateSpec.Verb.configure, RateSpec.Pool.atomic)
+        );
+        limiter.applyRateSpec(new RateSpec(2000, 1.1, RateSpec.Verb.configure, RateSpec.Pool.monitor));
+        assertThat(limiter.getRateSpec().getPool()).isEqualTo(RateSpec.Pool.atomic);
+        assertThat(limiter.getRateSpec().getRate()).isEqualTo(2000.0D);
+        assertThat(limiter.getTokenPool()).isInstanceOf(AtomicTokenPool.class);
+    }
+
+    public void testScheduleStartsWithTheLimiter() {
+        TestableHybridRateLimiter limiter = new TestableHybridRateLimiter(
+                new AtomicLong(5_000_000_000L),
+                new RateSpec(1E6, 1.1, RateSpec.Verb.configure),
+                ActivityDef.parseActivityDef("alias=scheduletest")
+        );
+        limiter.start();
+        long[] scheduled = new long[4];
+        for (int op = 0; op < scheduled.length; op++) {
+            scheduled[op] = limiter.maybeWaitForScheduledOp();
+        }
+        assertThat(scheduled).containsExactly(5_000_000_000L, 5_000_001_000L, 5_000_002_000L, 5_000_003_000L);
+    }
+}
@@ -44,4 +44,13 @@ public class RateSpecTest {
         RateSpec c = new RateSpec("12345,1.1");
         assertThat(c.verb== RateSpec.Verb.start);
     }
+
+    public void testPoolSelection() {
+        RateSpec a = new RateSpec("12345,1.4,start,atomic");
+        assertThat(a.getPool()).isEqualTo(RateSpec.Pool.atomic);
+        assertThat(a.withOpsPerSecond(100).getPool()).isEqualTo(RateSpec.Pool.atomic);
+        RateSpec b = new RateSpec("12345,1.4,start");
+        assertThat(b.getPool()).isEqualTo(RateSpec.Pool.monitor);
+        assertThat(a).isNotEqualTo(b);
+    }
 }
\ No newline at end of file
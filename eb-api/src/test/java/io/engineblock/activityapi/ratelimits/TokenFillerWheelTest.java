@@ -0,0 +1,55 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityapi.ratelimits;
+
+import io.engineblock.activityimpl.ActivityDef;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class TokenFillerWheelTest {
+
+    public void testSharedWheelRefillsAllLimiters() {
+        ActivityDef def = ActivityDef.parseActivityDef("alias=wheeltest");
+        RateLimiter fast = new HybridRateLimiter(def, "fast", new RateSpec(2000, 1.0));
+        RateLimiter slow = new HybridRateLimiter(def, "slow", new RateSpec(20, 1.0));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            fast.maybeWaitForOp();
+        }
+        for (int i = 0; i < 2; i++) {
+            slow.maybeWaitForOp();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(40L);
+        assertThat(elapsedMillis).isLessThan(2000L);
+
+        long wheelThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("TokenFillerWheel"))
+                .count();
+        assertThat(wheelThreads).isEqualTo(1L);
+    }
+
+    public void testIntervalFollowsRate() {
+        assertThat(new TokenFiller(new RateSpec(1E6, 1.1)).getIntervalNanos()).isEqualTo(1000L);
+        assertThat(new TokenFiller(new RateSpec(100, 1.1)).getIntervalNanos()).isEqualTo(10_000_000L);
+        assertThat(new TokenFiller(new RateSpec(1, 1.1)).getIntervalNanos()).isEqualTo(100_000_000L);
+    }
+}
@@ -25,7 +25,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class TokenPoolTest {
 
     public void testBackfillFullRate() {
-        TokenPool p = new TokenPool(100, 1.1);
+        TokenPool p = new ThreadDrivenTokenPool(100, 1.1);
         assertThat(p.refill(100L)).isEqualTo(100L);
         assertThat(p.getWaitPool()).isEqualTo(0L);
         assertThat(p.refill(100L)).isEqualTo(200);
@@ -39,7 +39,7 @@ public class TokenPoolTest {
     }
 
     public void testTakeRanges() {
-        TokenPool p = new TokenPool(100, 10);
+        TokenPool p = new ThreadDrivenTokenPool(100, 10);
         p.refill(100);
         assertThat(p.takeUpTo(99)).isEqualTo(99L);
         assertThat(p.takeUpTo(10)).isEqualTo(1L);
@@ -50,7 +50,7 @@ public class TokenPoolTest {
     public void testChangedParameters() {
 
         RateSpec s1 = new RateSpec(1000L, 1.10D);
-        TokenPool p = new TokenPool(s1);
+        TokenPool p = new ThreadDrivenTokenPool(s1);
         long r = p.refill(10000000);
         assertThat(r).isEqualTo(10000000L);
         assertThat(p.getWaitTime()).isEqualTo(10000000L);
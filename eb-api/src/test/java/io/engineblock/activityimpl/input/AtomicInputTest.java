@@ -19,8 +19,14 @@ package io.engineblock.activityimpl.input;
 
 import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
 import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.marker.CycleCheckpoint;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class AtomicInputTest {
@@ -32,4 +38,21 @@ public class AtomicInputTest {
         assertThat(inputSegment).isNull();
 
     }
+
+    @Test
+    public void testResumeSkipsCompletedCycles() throws Exception {
+        File file = Files.createTempFile("checkpoint", ".txt").toFile();
+        file.deleteOnExit();
+        new CycleCheckpoint(20L, 60L, new long[]{20L, 25L, 43L, 44L}).save(file);
+
+        AtomicInput i = new AtomicInput(ActivityDef.parseActivityDef(
+                "alias=foo;cycles=0..100;stride=10;resume=" + file.getPath()));
+        assertThat(i.isContiguous()).isFalse();
+        List<Long> starts = new ArrayList<>();
+        CycleSegment segment;
+        while ((segment = i.getInputSegment(10)) != null) {
+            starts.add(segment.peekNextCycle());
+        }
+        assertThat(starts).containsExactly(20L, 40L, 60L, 70L, 80L, 90L);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package io.engineblock.activityimpl.input;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
+import io.engineblock.activityimpl.ActivityDef;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class ShardedInputTest {
+
+    @Test
+    public void testShardsAreWholeStrides() {
+        assertThat(ShardedInput.split(new long[]{0L, 100L}, 3, 10L))
+                .containsExactly(0L, 40L, 40L, 80L, 80L, 100L);
+        assertThat(ShardedInput.split(new long[]{0L, 20L, 20L, 50L, 70L, 75L}, 2, 10L))
+                .containsExactly(0L, 30L, 30L, 50L, 70L, 75L);
+    }
+
+    @Test
+    public void testEmptyIntervalShouldNotProvideValues() {
+        ShardedInput i = new ShardedInput(ActivityDef.parseActivityDef("alias=foo,cycles=23..23"), 4);
+        assertThat(i.getInputSegment(1)).isNull();
+    }
+
+    @Test
+    public void testAllCyclesAreProvidedOnceWithRecycles() {
+        ShardedInput i = new ShardedInput(ActivityDef.parseActivityDef("alias=foo;cycles=3..105;stride=10;recycles=1"), 4);
+        List<Long> starts = new ArrayList<>();
+        CycleSegment segment;
+        while ((segment = i.getInputSegment(10)) != null) {
+            starts.add(segment.peekNextCycle());
+        }
+        assertThat(starts).hasSize(20);
+        assertThat(starts.subList(0, 10)).containsExactlyInAnyOrder(3L, 13L, 23L, 33L, 43L, 53L, 63L, 73L, 83L, 93L);
+        assertThat(starts.subList(10, 20)).containsExactlyInAnyOrder(3L, 13L, 23L, 33L, 43L, 53L, 63L, 73L, 83L, 93L);
+    }
+
+    @Test
+    public void testChangingTheEndCycleKeepsClaimedCycles() {
+        ActivityDef def = ActivityDef.parseActivityDef("alias=foo;cycles=0..100");
+        ShardedInput i = new ShardedInput(def, 4);
+        BitSet seen = new BitSet();
+        for (int n = 0; n < 30; n++) {
+            seen.set((int) i.getInputSegment(1).nextCycle());
+        }
+        def.getParams().set("cycles", "0..150");
+        i.onActivityDefUpdate(def);
+        CycleSegment segment;
+        while ((segment = i.getInputSegment(1)) != null) {
+            long cycle = segment.nextCycle();
+            assertThat(seen.get((int) cycle)).isFalse();
+            seen.set((int) cycle);
+        }
+        assertThat(seen.cardinality()).isEqualTo(150);
+        assertThat(seen.nextClearBit(0)).isEqualTo(150);
+    }
+
+    @Test
+    public void testConcurrentThreadsShareTheTail() throws Exception {
+        int cycles = 1_000_003;
+        int threads = 8;
+        ShardedInput input = new ShardedInput(ActivityDef.parseActivityDef("alias=foo;cycles=" + cycles), threads);
+        AtomicLongArray counts = new AtomicLongArray(cycles);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int delay = t;
+            futures.add(pool.submit(() -> {
+                CycleSegment segment;
+                while ((segment = input.getInputSegment(1)) != null) {
+                    counts.incrementAndGet((int) segment.nextCycle());
+                    if (delay == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        for (int i = 0; i < cycles; i++) {
+            assertThat(counts.get(i)).isEqualTo(1L);
+        }
+    }
+}
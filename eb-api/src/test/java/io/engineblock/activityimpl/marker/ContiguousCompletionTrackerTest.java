@@ -0,0 +1,192 @@
+package io.engineblock.activityimpl.marker;
+
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleResultsSegment;
+import io.engineblock.activityapi.cyclelog.buffers.results_rle.CycleSpanResults;
+import io.engineblock.activityapi.output.Output;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class ContiguousCompletionTrackerTest {
+
+    @Test
+    public void testEmitsWhenLowWaterMarkAdvances() throws Exception {
+        SpanReader reader = new SpanReader();
+        ContiguousCompletionTracker tracker = new ContiguousCompletionTracker(100L, 300L, 4096, reader);
+        for (long cycle = 101; cycle < 164; cycle++) {
+            tracker.onCycleResult(cycle, 1);
+        }
+        assertThat(reader.spans).isEmpty();
+        assertThat(tracker.getLowWaterMark()).isEqualTo(100L);
+
+        tracker.onCycleResult(100L, 2);
+        assertThat(reader.spans).containsExactly("[100,101)->2", "[101,164)->1");
+        assertThat(tracker.getLowWaterMark()).isEqualTo(164L);
+
+        for (long cycle = 164; cycle < 300; cycle++) {
+            tracker.onCycleResult(cycle, 1);
+        }
+        assertThat(reader.spans).containsExactly("[100,101)->2", "[101,164)->1", "[164,228)->1",
+                "[228,292)->1", "[292,300)->1");
+        assertThat(tracker.getLowWaterMark()).isEqualTo(300L);
+    }
+
+    @Test
+    public void testCloseSkipsIncompleteCycles() throws Exception {
+        SpanReader reader = new SpanReader();
+        ContiguousCompletionTracker tracker = new ContiguousCompletionTracker(0L, 10000L, 16384, reader);
+        tracker.onCycleResult(0L, 3);
+        tracker.onCycleResult(1L, 3);
+        tracker.onCycleResult(3L, 4);
+        tracker.onCycleResult(5000L, 5);
+        assertThat(reader.spans).isEmpty();
+        tracker.close();
+        assertThat(reader.spans).containsExactly("[0,2)->3", "[3,4)->4", "[5000,5001)->5");
+        assertThat(reader.closed).isTrue();
+    }
+
+    @Test
+    public void testFilteredResultsAreNotPassedOn() {
+        SpanReader reader = new SpanReader();
+        ContiguousCompletionTracker tracker = new ContiguousCompletionTracker(0L, 128L, 4096, reader);
+        tracker.setFilter(r -> r.getResult() != 1);
+        for (long cycle = 0; cycle < 128; cycle++) {
+            tracker.onCycleResult(cycle, cycle < 10 ? 1 : 0);
+        }
+        assertThat(reader.spans).containsExactly("[10,64)->0", "[64,128)->0");
+    }
+
+    @Test
+    public void testCompletedRangesAreSkipped() throws Exception {
+        SpanReader reader = new SpanReader();
+        ContiguousCompletionTracker tracker = new ContiguousCompletionTracker(
+                0L, 20000L, 4096, new long[]{10L, 20L, 100L, 10000L}, reader);
+        for (long cycle = 0; cycle < 100; cycle++) {
+            tracker.onCycleResult(cycle, 1);
+        }
+        assertThat(reader.spans).containsExactly("[0,10)->1", "[20,64)->1", "[64,100)->1");
+        assertThat(tracker.getLowWaterMark()).isEqualTo(10000L);
+
+        tracker.onCycleResult(10001L, 2);
+        CycleCheckpoint checkpoint = tracker.getCheckpoint();
+        assertThat(checkpoint.getLowWaterMark()).isEqualTo(10000L);
+        assertThat(checkpoint.getHighWaterMark()).isEqualTo(10002L);
+        assertThat(checkpoint.getGaps()).containsExactly(10000L, 10001L);
+    }
+
+    @Test
+    public void testCheckpointIncludesCompletedRangesBeyondTheWindow() {
+        ContiguousCompletionTracker tracker = new ContiguousCompletionTracker(
+                0L, 100000L, 4096, new long[]{50000L, 60000L}, new SpanReader());
+        tracker.onCycleResult(1L, 0);
+        CycleCheckpoint checkpoint = tracker.getCheckpoint();
+        assertThat(checkpoint.getLowWaterMark()).isEqualTo(0L);
+        assertThat(checkpoint.getHighWaterMark()).isEqualTo(60000L);
+        assertThat(checkpoint.getGaps()).containsExactly(0L, 1L, 2L, 50000L);
+    }
+
+    @Test
+    public void testConcurrentOutOfOrderCompletion() throws Exception {
+        long cycles = 200_003L;
+        SpanReader reader = new SpanReader();
+        ContiguousCompletionTracker tracker = new ContiguousCompletionTracker(7L, 7L + cycles, 8192, reader);
+
+        List<Long> order = LongStream.range(7L, 7L + cycles).boxed().collect(Collectors.toList());
+        int threads = 8;
+        int shuffleWindow = 4000;
+        for (int i = 0; i < order.size(); i += shuffleWindow) {
+            Collections.shuffle(order.subList(i, Math.min(order.size(), i + shuffleWindow)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = offset; i < order.size(); i += threads) {
+                    long cycle = order.get(i);
+                    tracker.onCycleResult(cycle, (int) ((cycle / 1000) % 3));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(tracker.getLowWaterMark()).isEqualTo(7L + cycles);
+        long next = 7L;
+        for (CycleSpanResults span : reader.segments) {
+            assertThat(span.getMinCycle()).isEqualTo(next);
+            for (long cycle = span.getMinCycle(); cycle < span.getMinCycle() + span.getCount(); cycle++) {
+                assertThat(span.getResult()).isEqualTo((int) ((cycle / 1000) % 3));
+            }
+            next = span.getMinCycle() + span.getCount();
+        }
+        assertThat(next).isEqualTo(7L + cycles);
+    }
+
+    @Test
+    public void testLowWordMarkedDuringCheckpointIsDrained() throws Exception {
+        long cycles = 2_000_000L;
+        SpanReader reader = new SpanReader();
+        ContiguousCompletionTracker tracker =
+                new ContiguousCompletionTracker(0L, cycles, ContiguousCompletionTracker.PAGE_SIZE, reader);
+
+        AtomicBoolean marking = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> checkpoints = executor.submit(() -> {
+            while (marking.get()) {
+                tracker.getCheckpoint();
+            }
+        });
+        Future<?> marks = executor.submit(() -> {
+            for (long cycle = 0L; cycle < cycles; cycle++) {
+                tracker.onCycleResult(cycle, 0);
+            }
+        });
+        try {
+            marks.get(60, TimeUnit.SECONDS);
+        } finally {
+            marking.set(false);
+            checkpoints.get(60, TimeUnit.SECONDS);
+            executor.shutdownNow();
+        }
+        assertThat(tracker.getLowWaterMark()).isEqualTo(cycles);
+    }
+
+    private static class SpanReader implements Output {
+        private final List<CycleSpanResults> segments = new ArrayList<>();
+        private final List<String> spans = new ArrayList<>();
+        private boolean closed;
+
+        @Override
+        public boolean onCycleResult(long completedCycle, int result) {
+            throw new RuntimeException("Only spans are expected");
+        }
+
+        @Override
+        public void onCycleResultSegment(CycleResultsSegment segment) {
+            CycleSpanResults span = (CycleSpanResults) segment;
+            segments.add(span);
+            spans.add(span.toString());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.engineblock.activityimpl.marker;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class CycleCheckpointTest {
+
+    @Test
+    public void testGapsFromCompletedRanges() {
+        CycleCheckpoint checkpoint = CycleCheckpoint.ofCompleted(100L, new long[]{100L, 110L, 115L, 120L, 130L, 131L}, 6);
+        assertThat(checkpoint.getLowWaterMark()).isEqualTo(110L);
+        assertThat(checkpoint.getHighWaterMark()).isEqualTo(131L);
+        assertThat(checkpoint.getGaps()).containsExactly(110L, 115L, 120L, 130L);
+
+        CycleCheckpoint none = CycleCheckpoint.ofCompleted(100L, new long[0], 0);
+        assertThat(none.getLowWaterMark()).isEqualTo(100L);
+        assertThat(none.getHighWaterMark()).isEqualTo(100L);
+        assertThat(none.getGaps()).isEmpty();
+    }
+
+    @Test
+    public void testRemainingIsWidenedToStrides() {
+        CycleCheckpoint checkpoint = new CycleCheckpoint(23L, 61L, new long[]{23L, 25L, 27L, 31L, 43L, 44L});
+        assertThat(checkpoint.getRemaining(3L, 100L, 10L)).containsExactly(23L, 33L, 43L, 100L);
+        assertThat(checkpoint.getRemaining(0L, 100L, 1L)).containsExactly(23L, 25L, 27L, 31L, 43L, 44L, 61L, 100L);
+        assertThat(CycleCheckpoint.complement(0L, 100L, new long[]{23L, 25L, 61L, 100L}))
+                .containsExactly(0L, 23L, 25L, 61L);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = Files.createTempFile("checkpoint", ".txt").toFile();
+        file.deleteOnExit();
+        CycleCheckpoint checkpoint = new CycleCheckpoint(1000L, 1210L, new long[]{1000L, 1020L, 1100L, 1101L});
+        checkpoint.save(file);
+        assertThat(new String(Files.readAllBytes(file.toPath())))
+                .isEqualTo("lowwatermark=1000\nhighwatermark=1210\ngap=1000,1020\ngap=1100,1101\n");
+        assertThat(CycleCheckpoint.load(file)).isEqualTo(checkpoint);
+    }
+}
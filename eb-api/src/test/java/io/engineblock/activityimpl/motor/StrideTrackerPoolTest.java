@@ -0,0 +1,132 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.activityimpl.motor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import io.engineblock.activityapi.core.ops.fluent.OpTrackerImpl;
+import io.engineblock.activityapi.core.ops.fluent.opfacets.StartedOp;
+import io.engineblock.activityapi.core.ops.fluent.opfacets.TrackedOp;
+import io.engineblock.activityapi.cyclelog.buffers.results.CycleSegment;
+import io.engineblock.activityimpl.ActivityDef;
+import io.engineblock.activityimpl.input.AtomicInput;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class StrideTrackerPoolTest {
+
+    private OpTrackerImpl<String> newOpTracker() {
+        OpTrackerImpl<String> opTracker = new OpTrackerImpl<>(
+                "test", 0, new Timer(new UniformReservoir()), null, new Counter());
+        opTracker.setCycleOpFunction(l -> "op");
+        return opTracker;
+    }
+
+    private TrackedOp<String> runOp(OpTrackerImpl<String> opTracker, StrideTracker<String> strideTracker, long cycle) {
+        TrackedOp<String> op = opTracker.newOp(cycle, strideTracker);
+        op.setWaitTime(0L);
+        op.start().succeed(0);
+        return op;
+    }
+
+    @Test
+    public void testTrackerAndOpsAreReusedAfterStride() {
+        OpTrackerImpl<String> opTracker = newOpTracker();
+        StrideTrackerPool<String> pool = new StrideTrackerPool<>(new Timer(), null, 2, null, null);
+
+        StrideTracker<String> first = pool.take(System.nanoTime(), 0L);
+        first.start();
+        TrackedOp<String> op0 = runOp(opTracker, first, 0L);
+        TrackedOp<String> op1 = runOp(opTracker, first, 1L);
+        assertThat(first.isIdle()).isTrue();
+
+        StrideTracker<String> second = pool.take(System.nanoTime(), 2L);
+        second.start();
+        assertThat(second == first).isTrue();
+        assertThat(second.isIdle()).isFalse();
+        assertThat(second.getCount()).isEqualTo(0L);
+
+        TrackedOp<String> op2 = runOp(opTracker, second, 2L);
+        assertThat(op2).isSameAs(op0);
+        assertThat(op2.getCycle()).isEqualTo(2L);
+        TrackedOp<String> op3 = runOp(opTracker, second, 3L);
+        assertThat(op3).isSameAs(op1);
+        assertThat(second.getMinCycle()).isEqualTo(2L);
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTrackerIsNotReusedWhileInFlight() {
+        OpTrackerImpl<String> opTracker = newOpTracker();
+        StrideTrackerPool<String> pool = new StrideTrackerPool<>(new Timer(), null, 2, null, null);
+
+        StrideTracker<String> first = pool.take(System.nanoTime(), 0L);
+        first.start();
+        runOp(opTracker, first, 0L);
+        TrackedOp<String> pending = opTracker.newOp(1L, first);
+        StartedOp<String> started = pending.start();
+        assertThat(first.isIdle()).isFalse();
+
+        StrideTracker<String> second = pool.take(System.nanoTime(), 2L);
+        assertThat(second == first).isFalse();
+        assertThat(pool.size()).isEqualTo(2);
+
+        started.succeed(0);
+        assertThat(first.isIdle()).isTrue();
+        assertThat(pool.take(System.nanoTime(), 4L) == first).isTrue();
+    }
+
+    @Test
+    public void testSteadyStateIsAllocationFree() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        AtomicInput input = new AtomicInput(ActivityDef.parseActivityDef("alias=pooltest;cycles=1000000000"));
+        OpTrackerImpl<String> opTracker = newOpTracker();
+        StrideTrackerPool<String> pool = new StrideTrackerPool<>(new Timer(new UniformReservoir()), null, 10, null, null);
+
+        runStrides(input, opTracker, pool, 10000);
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        runStrides(input, opTracker, pool, 10000);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(allocated / 100000L).isEqualTo(0L);
+    }
+
+    private void runStrides(AtomicInput input, OpTrackerImpl<String> opTracker, StrideTrackerPool<String> pool, int strides) {
+        for (int i = 0; i < strides; i++) {
+            CycleSegment segment = input.getInputSegment(pool.getStride());
+            StrideTracker<String> strideTracker = pool.take(System.nanoTime(), segment.peekNextCycle());
+            strideTracker.start();
+            while (!segment.isExhausted()) {
+                runOp(opTracker, strideTracker, segment.nextCycle());
+            }
+        }
+    }
+
+}
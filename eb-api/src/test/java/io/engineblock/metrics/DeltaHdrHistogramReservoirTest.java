@@ -1,11 +1,114 @@
 package io.engineblock.metrics;
 
 import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.HdrHistogram.Histogram;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 @Test
 public class DeltaHdrHistogramReservoirTest {
 
+    @Test
+    public void testReadersHaveTheirOwnIntervals() {
+        DeltaHdrHistogramReservoir dhhr = new DeltaHdrHistogramReservoir("readers", 3);
+        DeltaHdrHistogramReservoir.Reader first = dhhr.attachReader();
+        DeltaHdrHistogramReservoir.Reader second = dhhr.attachReader();
+
+        dhhr.update(10L);
+        dhhr.update(20L);
+        assertThat(first.getNextHdrDeltaHistogram().getTotalCount()).isEqualTo(2L);
+
+        dhhr.update(30L);
+        assertThat(first.getNextHdrDeltaHistogram().getTotalCount()).isEqualTo(1L);
+        Histogram secondInterval = second.getNextHdrDeltaHistogram();
+        assertThat(secondInterval.getTotalCount()).isEqualTo(3L);
+        assertThat(secondInterval.getMaxValue()).isEqualTo(30L);
+        assertThat(second.getNextHdrDeltaHistogram().getTotalCount()).isEqualTo(0L);
+        assertThat(dhhr.getNextHdrHistogram().getTotalCount()).isEqualTo(3L);
+
+        assertThat(second.getLastHistogram().getTag()).isEqualTo("readers");
+    }
+
+    @Test
+    public void testThreadLocalRecordersAreMergedWhenRead() throws InterruptedException {
+        NicerTimer timer = new NicerTimer("threads", new DeltaHdrHistogramReservoir("threads", 3, true));
+        HdrDeltaHistogramProvider logged = timer.attachHdrDeltaHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 1; i <= 1000; i++) {
+                    timer.update(i, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(timer.getCount()).isEqualTo(4000L);
+        assertThat(timer.getMeanRate()).isGreaterThan(0.0D);
+        Histogram interval = logged.getNextHdrDeltaHistogram();
+        assertThat(interval.getTotalCount()).isEqualTo(4000L);
+        assertThat(interval.getMaxValue()).isEqualTo(1000L);
+        assertThat(timer.getSnapshot().size()).isEqualTo(4000);
+        assertThat(timer.getCount()).isEqualTo(4000L);
+    }
+
+    @Test
+    public void testRecordersOfEndedThreadsAreDropped() throws InterruptedException {
+        DeltaHdrHistogramReservoir dhhr = new DeltaHdrHistogramReservoir("ended", 3, true);
+        DeltaHdrHistogramReservoir.Reader reader = dhhr.attachReader();
+        for (int round = 0; round < 3; round++) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    for (int i = 1; i <= 100; i++) {
+                        dhhr.update(i);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertThat(dhhr.getStripeCount()).isEqualTo(4);
+            assertThat(reader.getNextHdrDeltaHistogram().getTotalCount()).isEqualTo(400L);
+            assertThat(dhhr.getStripeCount()).isEqualTo(0);
+        }
+        assertThat(dhhr.getRecordedCount()).isEqualTo(1200L);
+    }
+
+    @Test
+    public void testAttachedTimerSharesRecordedValues() {
+        NicerTimer timer = new NicerTimer("timer", new DeltaHdrHistogramReservoir("timer", 3));
+        Timer classic = timer.attachTimer();
+        HdrDeltaHistogramProvider logged = timer.attachHdrDeltaHistogram();
+        for (int i = 1; i <= 100; i++) {
+            timer.update(i, TimeUnit.NANOSECONDS);
+        }
+        assertThat(classic.getCount()).isEqualTo(100L);
+        assertThat(classic.getSnapshot().getMax()).isEqualTo(100L);
+        assertThat(logged.getNextHdrDeltaHistogram().getTotalCount()).isEqualTo(100L);
+        assertThat(timer.getSnapshot().getMax()).isEqualTo(100L);
+
+        timer.update(7L, TimeUnit.NANOSECONDS);
+        Snapshot interval = classic.getSnapshot();
+        assertThat(interval.size()).isEqualTo(1);
+        assertThat(interval.getMax()).isEqualTo(7L);
+        assertThat(classic.getCount()).isEqualTo(101L);
+        assertThat(classic.getSnapshot().size()).isEqualTo(0);
+    }
+
 //    @Test
 //    public void testStartAndEndTimes() throws IOException {
 ////        File tempFile = new File("/tmp/test.hdr");
@@ -0,0 +1,54 @@
+package io.engineblock.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class HistoBinaryLogWriterTest {
+
+    @Test
+    public void testIntervalsAreReadBackByMetric() throws IOException {
+        File dir = Files.createTempDirectory("histobinarylog").toFile();
+        dir.deleteOnExit();
+        File logfile = new File(dir, "histos.hdrb");
+
+        HistoBinaryLogWriter writer = new HistoBinaryLogWriter(logfile, 2, 200L, Long.MAX_VALUE);
+        for (int interval = 0; interval < 10; interval++) {
+            for (String metric : new String[]{"alpha.cycles", "beta.cycles"}) {
+                Histogram histogram = new Histogram(3);
+                histogram.setStartTimeStamp(interval * 1000L);
+                histogram.setEndTimeStamp(interval * 1000L + 1000L);
+                for (int i = 0; i <= interval; i++) {
+                    histogram.recordValue(metric.startsWith("alpha") ? 100L : 200L);
+                }
+                writer.submit(metric, histogram);
+            }
+        }
+        writer.close();
+
+        assertThat(HistoBinaryLogWriter.segmentFile(logfile, 1, HistoBinaryLogWriter.INDEX_SUFFIX)).exists();
+
+        HistoBinaryLogReader reader = new HistoBinaryLogReader(logfile);
+        assertThat(reader.getMetricNames()).containsExactly("alpha.cycles", "beta.cycles");
+        List<Histogram> betas = reader.getIntervals("beta.cycles");
+        assertThat(betas).hasSize(10);
+        for (int interval = 0; interval < 10; interval++) {
+            Histogram histogram = betas.get(interval);
+            assertThat(histogram.getTag()).isEqualTo("beta.cycles");
+            assertThat(histogram.getStartTimeStamp()).isEqualTo(interval * 1000L);
+            assertThat(histogram.getTotalCount()).isEqualTo(interval + 1L);
+            assertThat(histogram.getMaxValue()).isEqualTo(200L);
+        }
+
+        for (File file : dir.listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.engineblock.metrics;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class TimeSeriesStoreTest {
+
+    @Test
+    public void testBlockReadsBackExactSamples() {
+        Random random = new Random(42);
+        long[] times = new long[2000];
+        double[] values = new double[2000];
+        TimeSeriesBlock block = new TimeSeriesBlock();
+        long time = 1500000000000L;
+        for (int i = 0; i < times.length; i++) {
+            time += (i % 7 == 0) ? random.nextInt(100000) : 10000L;
+            if (i % 500 == 0) {
+                time += 5000000000L;
+            }
+            times[i] = time;
+            values[i] = i % 3 == 0 ? random.nextDouble() * 1E6 : (i % 3 == 1 ? i / 10 : Double.NaN);
+            assertThat(block.append(times[i], values[i])).isTrue();
+        }
+        assertThat(block.append(time - 1L, 1.0D)).isFalse();
+
+        ByteBuffer buffer = ByteBuffer.allocate(block.getEncodedSize());
+        block.writeTo(buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        buffer.flip();
+
+        List<Long> readTimes = new ArrayList<>();
+        List<Double> readValues = new ArrayList<>();
+        TimeSeriesBlock.readFrom(buffer).forEach((t, v) -> {
+            readTimes.add(t);
+            readValues.add(v);
+        });
+        assertThat(readTimes).hasSize(times.length);
+        for (int i = 0; i < times.length; i++) {
+            assertThat(readTimes.get(i)).isEqualTo(times[i]);
+            assertThat(Double.doubleToRawLongBits(readValues.get(i))).isEqualTo(Double.doubleToRawLongBits(values[i]));
+        }
+    }
+
+    @Test
+    public void testRegularSamplesAreCompressed() {
+        TimeSeriesBlock block = new TimeSeriesBlock();
+        for (int i = 0; i < 360; i++) {
+            block.append(1500000000000L + i * 10000L, 42.0D + (i / 60));
+        }
+        assertThat(block.getEncodedSize()).isLessThan(360);
+    }
+
+    @Test
+    public void testOlderSamplesAreDownsampled() {
+        TimeSeriesStore store = new TimeSeriesStore(null, 10, "100s:20s");
+        for (int i = 0; i < 100; i++) {
+            store.append("mean", i * 5000L, i);
+            store.append("last", i * 5000L, i, TimeSeriesStore.Aggregate.LAST);
+        }
+
+        List<TimeSeriesStore.Sample> means = store.query("mean", 0L, Long.MAX_VALUE);
+        assertThat(means.get(0).getTime()).isEqualTo(0L);
+        assertThat(means.get(0).getValue()).isEqualTo(1.5D);
+        assertThat(means.get(1).getTime()).isEqualTo(20000L);
+        assertThat(store.query("last", 0L, 1L).get(0).getValue()).isEqualTo(3.0D);
+
+        long previous = -1L;
+        for (TimeSeriesStore.Sample sample : means) {
+            assertThat(sample.getTime()).isGreaterThan(previous);
+            previous = sample.getTime();
+        }
+        assertThat(means).hasSize(48);
+        assertThat(store.query("mean", 395000L, Long.MAX_VALUE)).hasSize(21);
+        assertThat(store.recent("mean", "20s")).hasSize(5);
+        assertThat(store.last("mean").getValue()).isEqualTo(99.0D);
+        assertThat(store.getNames("m.*")).containsExactly("mean");
+    }
+
+    @Test
+    public void testFileKeepsFullResolution() throws IOException {
+        File file = Files.createTempFile("timeseries", ".tsdb").toFile();
+        file.delete();
+        file.deleteOnExit();
+
+        TimeSeriesStore store = new TimeSeriesStore(file, 10, "100s:20s");
+        for (int i = 0; i < 95; i++) {
+            store.append("alpha", i * 5000L, i);
+            store.append("beta", i * 5000L, -i);
+        }
+        store.close();
+
+        TimeSeriesStore loaded = TimeSeriesStore.load(file);
+        assertThat(loaded.getNames()).containsExactly("alpha", "beta");
+        List<TimeSeriesStore.Sample> betas = loaded.query("beta", 0L, Long.MAX_VALUE);
+        assertThat(betas).hasSize(95);
+        for (int i = 0; i < 95; i++) {
+            assertThat(betas.get(i).getTime()).isEqualTo(i * 5000L);
+            assertThat(betas.get(i).getValue()).isEqualTo(-i);
+        }
+        assertThat(loaded.last("alpha").getValue()).isEqualTo(94.0D);
+    }
+}
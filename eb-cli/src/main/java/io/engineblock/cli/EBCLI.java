@@ -5,6 +5,7 @@ import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogDumperUtilit
 import io.engineblock.activityapi.cyclelog.outputs.cyclelog.CycleLogImporterUtility;
 import io.engineblock.activityapi.input.InputType;
 import io.engineblock.activityapi.output.OutputType;
+import io.engineblock.activityapi.ratelimits.TokenFillerWheel;
 import io.engineblock.core.MarkdownDocInfo;
 import io.engineblock.core.ScenarioLogger;
 import io.engineblock.core.ScenariosResults;
@@ -135,7 +136,7 @@ public class EBCLI {
             }
         }
 
-        if (reportGraphiteTo != null || options.wantsReportCsvTo() != null) {
+        if (reportGraphiteTo != null || options.wantsReportCsvTo() != null || options.wantsReportTimeSeriesTo() != null) {
             MetricReporters reporters = MetricReporters.getInstance();
             reporters.addRegistry("workloads", ActivityMetrics.getMetricRegistry());
 
@@ -145,6 +146,9 @@ public class EBCLI {
             if (options.wantsReportCsvTo() != null) {
                 reporters.addCSVReporter(options.wantsReportCsvTo(), options.wantsMetricsPrefix());
             }
+            if (options.wantsReportTimeSeriesTo() != null) {
+                reporters.addTimeSeriesStore(options.wantsReportTimeSeriesTo(), options.wantsMetricsPrefix());
+            }
             reporters.start(10, options.getReportInterval());
         }
 
@@ -171,6 +175,8 @@ public class EBCLI {
             ActivityMetrics.addClassicHistos(sessionName, classicConfigs.pattern, classicConfigs.file, classicConfigs.interval);
         }
 
+        options.getRateRefillTickNanos().ifPresent(TokenFillerWheel::setTickNanos);
+
         ConsoleLogging.enableConsoleLogging(options.wantsConsoleLogLevel(), options.getConsoleLoggingPattern());
         // intentionally not shown for warn-only
         logger.info("console logging level is " + options.wantsConsoleLogLevel());
@@ -57,6 +57,7 @@ public class EBCLIOptions {
     private static final String REPORT_INTERVAL = "--report-interval";
     private static final String REPORT_GRAPHITE_TO = "--report-graphite-to";
     private static final String REPORT_CSV_TO = "--report-csv-to";
+    private static final String REPORT_TIMESERIES_TO = "--report-timeseries-to";
     private static final String METRICS_PREFIX = "--metrics-prefix";
     private static final String PROGRESS_INDICATOR = "--progress";
     private static final String WITH_LOGGING_PATTERN = "--with-logging-pattern";
@@ -66,6 +67,7 @@ public class EBCLIOptions {
     private final static String LOG_LEVEL_OVERRIDE = "--log-level-override";
     private final static String ENABLE_CHART = "--enable-chart";
     private final static String DOCKER_METRICS = "--docker-metrics";
+    private final static String RATE_REFILL_TICK = "--rate-refill-tick";
 
     private static final Set<String> reserved_words = new HashSet<String>() {{
         addAll(
@@ -86,6 +88,7 @@ public class EBCLIOptions {
     private boolean wantsBasicHelp = false;
     private String reportGraphiteTo = null;
     private String reportCsvTo = null;
+    private String reportTimeSeriesTo = null;
     private int reportInterval = 10;
     private String metricsPrefix = "engineblock.";
     private String wantsMetricsForActivity;
@@ -107,6 +110,7 @@ public class EBCLIOptions {
     private Map<String,Level> logLevelsOverrides = new HashMap<>();
     private boolean enableChart = false;
     private boolean dockerMetrics = false;
+    private Long rateRefillTickNanos = null;
 
     EBCLIOptions(String[] args) {
         parse(args);
@@ -263,10 +267,21 @@ public class EBCLIOptions {
                     arglist.removeFirst();
                     reportInterval = Integer.valueOf(readWordOrThrow(arglist, "report interval"));
                     break;
+                case RATE_REFILL_TICK:
+                    arglist.removeFirst();
+                    String tickSpec = readWordOrThrow(arglist, "rate refill tick");
+                    rateRefillTickNanos = Unit.nanosecondsFor(tickSpec).orElseThrow(
+                            () -> new RuntimeException("Unable to parse rate refill tick '" + tickSpec + "'")
+                    );
+                    break;
                 case REPORT_CSV_TO:
                     arglist.removeFirst();
                     reportCsvTo = arglist.removeFirst();
                     break;
+                case REPORT_TIMESERIES_TO:
+                    arglist.removeFirst();
+                    reportTimeSeriesTo = readWordOrThrow(arglist, "time series store directory");
+                    break;
                 case REPORT_GRAPHITE_TO:
                     arglist.removeFirst();
                     reportGraphiteTo = arglist.removeFirst();
@@ -389,6 +404,10 @@ public class EBCLIOptions {
         return enableChart;
     }
 
+    public Optional<Long> getRateRefillTickNanos() {
+        return Optional.ofNullable(rateRefillTickNanos);
+    }
+
     public boolean wantsDockerMetrics() {
         return dockerMetrics;
     }
@@ -502,6 +521,10 @@ public class EBCLIOptions {
         return reportCsvTo;
     }
 
+    public String wantsReportTimeSeriesTo() {
+        return reportTimeSeriesTo;
+    }
+
     public String getLogsDirectory() {
         return logsDirectory;
     }
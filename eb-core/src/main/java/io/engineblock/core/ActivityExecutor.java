@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -69,12 +70,48 @@ public class ActivityExecutor implements ActivityController, ParameterMap.Listen
                 0, Integer.MAX_VALUE,
                 0L, TimeUnit.SECONDS,
                 new SynchronousQueue<>(),
-                new IndexedThreadFactory(activity.getAlias(), new ActivityExceptionHandler(this))
+                newMotorThreadFactory()
         );
         activity.getActivityDef().getParams().addListener(this);
         activity.setActivityController(this);
     }
 
+    /**
+     * The kind of threads which motors run on, as set by the executor activity parameter.
+     * This is only read when the activity executor is created.
+     */
+    public enum MotorThreads {
+        /**
+         * Each motor runs on its own platform thread. This is the default.
+         */
+        platform,
+        /**
+         * Each motor runs on its own virtual thread. This allows for many more
+         * threads of synchronous activities, but requires Java 21 or newer.
+         */
+        virtual
+    }
+
+    private ThreadFactory newMotorThreadFactory() {
+        String executor = activityDef.getParams().getOptionalString("executor").orElse(MotorThreads.platform.toString());
+        MotorThreads motorThreads;
+        try {
+            motorThreads = MotorThreads.valueOf(executor);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("executor=" + executor + " is not valid. Valid values are " +
+                    Arrays.toString(MotorThreads.values()));
+        }
+
+        switch (motorThreads) {
+            case virtual:
+                logger.info("motors for activity " + activity.getAlias() + " will run on virtual threads");
+                return new VirtualThreadFactory(activity.getAlias(), new ActivityExceptionHandler(this));
+            case platform:
+            default:
+                return new IndexedThreadFactory(activity.getAlias(), new ActivityExceptionHandler(this));
+        }
+    }
+
 
     // TODO: Doc how uninitialized activities do not propagate parameter map changes and how
     // TODO: this is different from preventing modification to uninitialized activities
@@ -0,0 +1,80 @@
+/*
+ *
+ *       Copyright 2015 Jonathan Shook
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+
+package io.engineblock.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A named and indexed thread factory for virtual threads. Threads are named
+ * the same way as with {@link IndexedThreadFactory}.
+ *
+ * <p>This project is built for an older Java release than the one which
+ * added virtual threads, so the virtual thread builder is found reflectively.
+ * When the running JVM does not support virtual threads, creating this factory
+ * throws an exception which says so.</p>
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+
+    private final static ThreadFactory virtualThreads = findVirtualThreadFactory();
+
+    private final Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+    private final String name;
+    private final AtomicInteger threadIndexer = new AtomicInteger(0);
+
+    public VirtualThreadFactory(String name, Thread.UncaughtExceptionHandler exceptionHandler) {
+        if (virtualThreads == null) {
+            throw new RuntimeException("Virtual threads are not supported by this JVM (Java " +
+                    System.getProperty("java.version") + "). Use Java 21 or newer, or executor=platform.");
+        }
+        this.name = name;
+        this.uncaughtExceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * @return true, if the running JVM can create virtual threads
+     */
+    public static boolean isSupported() {
+        return virtualThreads != null;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        int threadIndex = threadIndexer.incrementAndGet();
+
+        Thread thread = virtualThreads.newThread(r);
+        thread.setName(name + String.format(":%03d", threadIndex));
+        if (uncaughtExceptionHandler != null) {
+            thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
+        }
+        return thread;
+    }
+
+    private static ThreadFactory findVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
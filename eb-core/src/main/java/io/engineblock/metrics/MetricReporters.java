@@ -89,6 +89,31 @@ public class MetricReporters implements Shutdownable {
         }
     }
 
+    /**
+     * Append the metrics of every registry to the shared time series store of a directory.
+     * Scripts can query the same store with the timeseries extension.
+     * @param directoryName the directory of the store file
+     * @param prefix a prefix for the series names
+     * @return this MetricReporters, for method chaining
+     */
+    public MetricReporters addTimeSeriesStore(String directoryName, String prefix) {
+        logger.debug("Adding time series store reporter to " + directoryName + " with prefix " + prefix);
+
+        if (metricRegistries.isEmpty()) {
+            throw new RuntimeException("There are no metric registries.");
+        }
+
+        TimeSeriesStore store = TimeSeriesStore.forDirectory(directoryName);
+        for (PrefixedRegistry prefixedRegistry : metricRegistries) {
+            String seriesPrefix = prefixedRegistry.prefix != null && !prefixedRegistry.prefix.isEmpty() ?
+                    prefix + prefixedRegistry.prefix : prefix;
+            TimeSeriesReporter reporter = new TimeSeriesReporter(
+                    prefixedRegistry.metricRegistry, ActivityMetrics.METRIC_FILTER, store, seriesPrefix);
+            scheduledReporters.add(reporter);
+        }
+        return this;
+    }
+
     public MetricReporters addGraphite(String host, int graphitePort, String prefix) {
 
         logger.debug("Adding graphite reporter to " + host + " with port " + graphitePort + " and prefix " + prefix);
@@ -0,0 +1,52 @@
+/*
+ *
+ *       Copyright 2015 Jonathan Shook
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+
+package io.engineblock.core;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@Test
+public class VirtualThreadFactoryTest {
+
+    @Test
+    public void testVirtualThreadsOrUnsupported() throws Exception {
+        if (!VirtualThreadFactory.isSupported()) {
+            try {
+                new VirtualThreadFactory("test", null);
+                fail("expected an error for virtual threads on Java " + System.getProperty("java.version"));
+            } catch (RuntimeException expected) {
+                assertThat(expected.getMessage()).contains("executor=platform");
+            }
+            return;
+        }
+
+        AtomicBoolean ran = new AtomicBoolean(false);
+        Thread thread = new VirtualThreadFactory("test", null).newThread(() -> ran.set(true));
+        assertThat(thread.getName()).isEqualTo("test:001");
+        assertThat((Boolean) Thread.class.getMethod("isVirtual").invoke(thread)).isTrue();
+        thread.start();
+        thread.join(10000L);
+        assertThat(ran.get()).isTrue();
+    }
+
+}
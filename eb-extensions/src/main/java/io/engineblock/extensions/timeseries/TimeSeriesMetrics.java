@@ -0,0 +1,102 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.extensions.timeseries;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import io.engineblock.extensions.csvmetrics.MetricInstanceFilter;
+import io.engineblock.metrics.TimeSeriesReporter;
+import io.engineblock.metrics.TimeSeriesStore;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TimeSeriesMetrics {
+
+    private final MetricRegistry registry;
+    private final TimeSeriesStore store;
+    private final MetricInstanceFilter filter = new MetricInstanceFilter();
+    private TimeSeriesReporter reporter;
+
+    /**
+     * Create a time series reporter that is not automatically reporting.
+     * @param store the store to append metrics to
+     * @param registry a MetricRegistry to report
+     */
+    public TimeSeriesMetrics(TimeSeriesStore store, MetricRegistry registry) {
+        this.store = store;
+        this.registry = registry;
+    }
+
+    private void initReporter() {
+        if (reporter != null) {
+            return;
+        }
+        reporter = new TimeSeriesReporter(registry, filter, store, "");
+    }
+
+    public TimeSeriesMetrics start(long period, String timeUnitName) {
+        initReporter();
+        TimeUnit timeUnit = TimeUnit.valueOf(timeUnitName);
+        reporter.start(period, timeUnit);
+        return this;
+    }
+
+    public TimeSeriesMetrics add(Metric metric) {
+        filter.add(metric);
+        return this;
+    }
+
+    public TimeSeriesMetrics addPattern(String regex) {
+        filter.addPattern(regex);
+        return this;
+    }
+
+    public TimeSeriesMetrics stop() {
+        if (reporter != null) {
+            reporter.stop();
+        }
+        return this;
+    }
+
+    public TimeSeriesMetrics report() {
+        initReporter();
+        reporter.report();
+        return this;
+    }
+
+    public TimeSeriesStore getStore() {
+        return store;
+    }
+
+    public List<String> names(String regex) {
+        return store.getNames(regex);
+    }
+
+    public List<TimeSeriesStore.Sample> query(String name, long from, long to) {
+        return store.query(name, from, to);
+    }
+
+    public List<TimeSeriesStore.Sample> recent(String name, String duration) {
+        return store.recent(name, duration);
+    }
+
+    public TimeSeriesStore.Sample last(String name) {
+        return store.last(name);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *    Copyright 2016 jshook
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * /
+ */
+
+package io.engineblock.extensions.timeseries;
+
+import com.codahale.metrics.MetricRegistry;
+import io.engineblock.metrics.TimeSeriesStore;
+import org.slf4j.Logger;
+
+import javax.script.ScriptContext;
+import java.io.File;
+import java.io.IOException;
+
+public class TimeSeriesPlugin {
+    private final ScriptContext context;
+    private final Logger logger;
+    private final MetricRegistry metricRegistry;
+
+    public TimeSeriesPlugin(Logger logger, MetricRegistry metricRegistry, ScriptContext scriptContext) {
+        this.logger = logger;
+        this.metricRegistry = metricRegistry;
+        this.context = scriptContext;
+    }
+
+    /**
+     * Get the shared time series store of a directory, for querying. This is the same store
+     * which is fed by --report-timeseries-to with the same directory.
+     * @param directory The directory of the store file
+     * @return the TimeSeriesStore instance
+     */
+    public TimeSeriesStore open(String directory) {
+        return TimeSeriesStore.forDirectory(directory);
+    }
+
+    /**
+     * Read a store file which was written during an earlier run.
+     * @param filename The store file to read
+     * @return a TimeSeriesStore instance with all of the samples in the file
+     */
+    public TimeSeriesStore load(String filename) {
+        return TimeSeriesStore.load(new File(filename));
+    }
+
+    /**
+     * Create a new time series logger, without starting it.
+     * @param directory The directory of the store file to append metrics to
+     * @return the TimeSeriesMetrics instance, for method chaining
+     */
+    public TimeSeriesMetrics log(String directory) {
+        TimeSeriesMetrics timeSeriesMetrics = new TimeSeriesMetrics(TimeSeriesStore.forDirectory(directory), metricRegistry);
+        writeStdout("started new timeseries logger: " + directory + "\n");
+        return timeSeriesMetrics;
+    }
+
+    /**
+     * Create a new time series logger, configure it with a regex filter pattern, and start it.
+     * @param directory The directory of the store file to append metrics to
+     * @param period The time period to report at
+     * @param timeUnit A time unit for the time period, from NANOSECONDS, MICROSECONDS, MILLISECONDS, SECONDS, MINUTES
+     * @param pattern Zero or more patterns to use for filtering metric names
+     * @return the TimeSeriesMetrics instance, for method chaining
+     */
+    public TimeSeriesMetrics start(String directory, long period, String timeUnit, String... pattern) {
+        TimeSeriesMetrics log = log(directory);
+        for (String p : pattern) {
+            log.addPattern(p);
+        }
+        return log.start(period, timeUnit);
+    }
+
+    private void writeStdout(String msg) {
+        try {
+            context.getWriter().write(msg);
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+}